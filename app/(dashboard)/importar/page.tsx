@@ -154,8 +154,11 @@ export default function ImportPage() {
         return <CheckCircle className="h-4 w-4 text-primary" />
       case "UPLOADED":
       case "PARSED":
+      case "COMMITTING":
         return <Clock className="h-4 w-4 text-yellow-500" />
       case "FAILED":
+      case "CANCELLED":
+      case "DELETING":
         return <AlertCircle className="h-4 w-4 text-destructive" />
       default:
         return <FileText className="h-4 w-4 text-muted-foreground" />
@@ -170,8 +173,14 @@ export default function ImportPage() {
         return "Enviada"
       case "PARSED":
         return "Validada"
+      case "COMMITTING":
+        return "Comitando"
       case "FAILED":
         return "Falhou"
+      case "CANCELLED":
+        return "Cancelada"
+      case "DELETING":
+        return "Excluindo"
       default:
         return status
     }
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 
 public interface AccountRepository extends JpaRepository<Account, Long> {
   List<Account> findAllByUserIdAndIsActiveTrue(Long userId);
+  List<Account> findAllByUserIdOrderByIdAsc(Long userId);
   Optional<Account> findByIdAndUserId(Long id, Long userId);
   Optional<Account> findByUserIdAndNameIgnoreCaseAndIsActiveTrue(Long userId, String name);
 }
@@ -12,6 +12,7 @@ import com.moneta.txn.TxnDirection;
 import com.moneta.txn.TxnStatus;
 import java.time.YearMonth;
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import org.springframework.stereotype.Service;
@@ -98,6 +99,19 @@ public class AlertService {
     }
   }
 
+  /**
+   * Evaluates each budget of the given months once, for writes that add many transactions at
+   * a time and would otherwise evaluate the same budgets over and over.
+   */
+  @Transactional
+  public void evaluateBudgetsForMonths(Long userId, Collection<String> monthRefs) {
+    for (String monthRef : monthRefs) {
+      for (Budget budget : budgetRepository.findAllByUserIdAndMonthRef(userId, monthRef)) {
+        evaluateBudget(budget);
+      }
+    }
+  }
+
   private boolean matchesBudget(Txn txn, Budget budget) {
     if (budget.getSubcategoryId() != null) {
       return budget.getSubcategoryId().equals(txn.getSubcategoryId());
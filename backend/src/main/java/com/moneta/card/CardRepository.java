@@ -15,4 +15,6 @@ public interface CardRepository extends JpaRepository<Card, Long> {
   Optional<Card> findByIdAndUserIdAndIsActiveTrue(Long id, Long userId);
   
   Optional<Card> findByUserIdAndNameIgnoreCaseAndIsActiveTrue(Long userId, String name);
+
+  List<Card> findAllByUserIdAndIsActiveTrueOrderByIdAsc(Long userId);
 }
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 
 public interface CategoryRepository extends JpaRepository<Category, Long> {
   List<Category> findAllByUserIdAndIsActiveTrue(Long userId);
+  List<Category> findAllByUserIdOrderByIdAsc(Long userId);
   Optional<Category> findByIdAndUserId(Long id, Long userId);
   Optional<Category> findByUserIdAndNameIgnoreCase(Long userId, String name);
 }
@@ -1,5 +1,11 @@
 package com.moneta.common;
 
+import com.moneta.importer.ImportBatchConflictException;
+import com.moneta.importer.ImportJobRejectedException;
+import com.moneta.rule.RuleApplyConflictException;
+import com.moneta.txn.TxnFeedRejectedException;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -25,4 +31,35 @@ public class ApiExceptionHandler {
     return ResponseEntity.status(HttpStatus.BAD_REQUEST)
       .body(new ApiError("VALIDATION_ERROR", ex.getMessage()));
   }
+
+  @ExceptionHandler(ImportBatchConflictException.class)
+  public ResponseEntity<ApiError> handleImportBatchConflict(ImportBatchConflictException ex) {
+    return ResponseEntity.status(HttpStatus.CONFLICT)
+      .body(new ApiError("CONFLICT", ex.getMessage()));
+  }
+
+  @ExceptionHandler(RuleApplyConflictException.class)
+  public ResponseEntity<ApiError> handleRuleApplyConflict(RuleApplyConflictException ex) {
+    return ResponseEntity.status(HttpStatus.CONFLICT)
+      .body(new ApiError("CONFLICT", ex.getMessage()));
+  }
+
+  @ExceptionHandler(TxnFeedRejectedException.class)
+  public ResponseEntity<ApiError> handleFeedRejected(TxnFeedRejectedException ex) {
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+      .header(HttpHeaders.RETRY_AFTER, "1")
+      .body(new ApiError("TOO_MANY_REQUESTS", ex.getMessage()));
+  }
+
+  @ExceptionHandler(ImportJobRejectedException.class)
+  public ResponseEntity<ApiError> handleImportJobRejected(ImportJobRejectedException ex) {
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+      .body(new ApiError("TOO_MANY_REQUESTS", ex.getMessage()));
+  }
+
+  @ExceptionHandler(TaskRejectedException.class)
+  public ResponseEntity<ApiError> handleTaskRejected(TaskRejectedException ex) {
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+      .body(new ApiError("TOO_MANY_REQUESTS", "servidor ocupado, tente novamente em instantes"));
+  }
 }
@@ -0,0 +1,47 @@
+package com.moneta.config;
+
+import com.moneta.txn.TxnFingerprinter;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Placeholders for migrations that depend on application settings. Import rows of batches not
+ * yet committed are UNLOGGED by default to keep mass imports out of the WAL and off the
+ * replicas; LOGGED brings them back to normal durability. Committed rows are always logged.
+ *
+ * <p>The fingerprint strategy is passed along so a switch is noticed at migrate time and the
+ * stored fingerprints are recomputed, instead of silently never matching new ones.
+ */
+@Configuration
+public class FlywayPlaceholderConfig {
+
+  @Bean
+  public FlywayConfigurationCustomizer importRowPersistence(
+    @Value("${app.import.staging-persistence:UNLOGGED}") String stagingPersistence
+  ) {
+    String persistence = stagingPersistence.trim().toUpperCase(Locale.ROOT);
+    if (!persistence.equals("LOGGED") && !persistence.equals("UNLOGGED")) {
+      throw new IllegalArgumentException("app.import.staging-persistence deve ser LOGGED ou UNLOGGED");
+    }
+    return configuration -> {
+      Map<String, String> placeholders = new HashMap<>(configuration.getPlaceholders());
+      placeholders.put("import_row_persistence", persistence);
+      configuration.placeholders(placeholders);
+    };
+  }
+
+  @Bean
+  public FlywayConfigurationCustomizer fingerprintStrategy(TxnFingerprinter txnFingerprinter) {
+    String strategy = txnFingerprinter.strategy().name();
+    return configuration -> {
+      Map<String, String> placeholders = new HashMap<>(configuration.getPlaceholders());
+      placeholders.put("fingerprint_strategy", strategy);
+      configuration.placeholders(placeholders);
+    };
+  }
+}
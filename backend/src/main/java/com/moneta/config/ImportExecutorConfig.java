@@ -0,0 +1,57 @@
+package com.moneta.config;
+
+import java.util.concurrent.ForkJoinPool;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Worker pool for CSV import jobs. Both the number of workers and the queue are bounded, so a
+ * burst of uploads waits here (or is rejected with 429) instead of tying up request threads.
+ * Large CSV files are parsed on a separate fork-join pool shared by all jobs.
+ */
+@Configuration
+public class ImportExecutorConfig {
+
+  @Bean
+  public ThreadPoolTaskExecutor importExecutor(
+    @Value("${app.import.workers:2}") int workers,
+    @Value("${app.import.queue-capacity:16}") int queueCapacity
+  ) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(workers);
+    executor.setMaxPoolSize(workers);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("import-");
+    // Jobs still queued at shutdown run just long enough to see they were cancelled
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    executor.setAwaitTerminationSeconds(30);
+    return executor;
+  }
+
+  /**
+   * Purges of large deleted batches run on their own single worker, so a run of deletes can
+   * neither hold back queued imports nor fill the import queue and get uploads rejected.
+   */
+  @Bean
+  public ThreadPoolTaskExecutor importPurgeExecutor(
+    @Value("${app.import.purge-workers:1}") int workers,
+    @Value("${app.import.purge-queue-capacity:64}") int queueCapacity
+  ) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(workers);
+    executor.setMaxPoolSize(workers);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("import-purge-");
+    // A purge cut short leaves its batch DELETING, and deleting it again resumes it
+    executor.setAwaitTerminationSeconds(5);
+    return executor;
+  }
+
+  /** Parallelism 0 uses every available processor; 1 keeps parsing on the job thread. */
+  @Bean(destroyMethod = "shutdownNow")
+  public ForkJoinPool importParsePool(@Value("${app.import.parse-parallelism:0}") int parallelism) {
+    return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+  }
+}
@@ -0,0 +1,21 @@
+package com.moneta.config;
+
+import java.util.concurrent.ForkJoinPool;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Fork-join pool for matching rules against large batches of transactions. It is shared by
+ * every apply in progress, so concurrent applies split the cores instead of each claiming
+ * all of them.
+ */
+@Configuration
+public class RuleExecutorConfig {
+
+  /** Parallelism 0 uses every available processor; 1 keeps matching on the request thread. */
+  @Bean(destroyMethod = "shutdownNow")
+  public ForkJoinPool ruleMatchPool(@Value("${app.rule.match-parallelism:0}") int parallelism) {
+    return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+  }
+}
@@ -1,5 +1,6 @@
 package com.moneta.config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -41,6 +42,7 @@ public class SecurityConfig {
       )
       .authorizeHttpRequests(auth -> auth
         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll() // Allow preflight requests without authentication
+        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll() // Async results of requests already authorized
         .requestMatchers(SecurityConstants.AUTH_PATH_PATTERN).permitAll()
         .requestMatchers(SecurityConstants.ACTUATOR_HEALTH_PATH, SecurityConstants.ACTUATOR_INFO_PATH).permitAll()
         .anyRequest().authenticated()
@@ -0,0 +1,93 @@
+package com.moneta.importer;
+
+/**
+ * Reads a decimal amount straight into signed cents, without going through {@code BigDecimal}.
+ * Accepts an optional sign, integer digits optionally grouped in threes, and a fraction of which
+ * only the first two digits count, as truncating with {@code BigDecimal.longValue()} did.
+ * Anything else, including exponents and values beyond a {@code long} of cents, is rejected
+ * with {@link NumberFormatException}.
+ */
+final class AmountParser {
+  static final AmountParser DOT_DECIMAL = new AmountParser('.', '\0');
+  /** {@code 1,234.56}, as QIF files write amounts */
+  static final AmountParser DOT_DECIMAL_GROUPED = new AmountParser('.', ',');
+  static final AmountParser COMMA_DECIMAL = new AmountParser(',', '.');
+
+  private final char decimalSeparator;
+  private final char groupingSeparator;
+
+  private AmountParser(char decimalSeparator, char groupingSeparator) {
+    this.decimalSeparator = decimalSeparator;
+    this.groupingSeparator = groupingSeparator;
+  }
+
+  static AmountParser of(ImportAmountFormat format) {
+    return format == ImportAmountFormat.COMMA_DECIMAL ? COMMA_DECIMAL : DOT_DECIMAL;
+  }
+
+  long parseCents(String value) {
+    try {
+      return parse(value);
+    } catch (ArithmeticException ex) {
+      throw invalid(value);
+    }
+  }
+
+  private long parse(String value) {
+    int length = value.length();
+    int i = 0;
+    boolean negative = false;
+    if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+      negative = value.charAt(0) == '-';
+      i++;
+    }
+
+    long units = 0;
+    int digits = 0;
+    // Digits since the last grouping separator, or -1 before the first one
+    int groupDigits = -1;
+    for (; i < length; i++) {
+      char c = value.charAt(i);
+      if (c >= '0' && c <= '9') {
+        units = Math.addExact(Math.multiplyExact(units, 10), c - '0');
+        digits++;
+        if (groupDigits >= 0) {
+          groupDigits++;
+        }
+      } else if (c == groupingSeparator && groupingSeparator != '\0' && digits > 0
+        && (groupDigits < 0 || groupDigits == 3)) {
+        groupDigits = 0;
+      } else {
+        break;
+      }
+    }
+    if (groupDigits >= 0 && groupDigits != 3) {
+      throw invalid(value);
+    }
+
+    long cents = Math.multiplyExact(units, 100);
+    int fractionDigits = 0;
+    if (i < length && value.charAt(i) == decimalSeparator) {
+      for (i++; i < length; i++) {
+        char c = value.charAt(i);
+        if (c < '0' || c > '9') {
+          throw invalid(value);
+        }
+        if (fractionDigits == 0) {
+          cents = Math.addExact(cents, (c - '0') * 10L);
+        } else if (fractionDigits == 1) {
+          cents = Math.addExact(cents, c - '0');
+        }
+        fractionDigits++;
+      }
+    }
+    if (i < length || digits + fractionDigits == 0) {
+      throw invalid(value);
+    }
+    return negative ? -cents : cents;
+  }
+
+  private static NumberFormatException invalid(String value) {
+    return new NumberFormatException("valor inválido: " + value);
+  }
+}
@@ -5,125 +5,249 @@ import com.moneta.txn.TxnDirection;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.math.BigDecimal;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
 public class CsvParserService {
-  private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+  private final ParallelCsvParser parallelParser;
 
-  public CsvParseResult parse(InputStream inputStream) throws IOException {
-    try (CSVParser parser = CSVFormat.DEFAULT.builder()
-      .setHeader()
-      .setSkipHeaderRecord(true)
-      .setIgnoreEmptyLines(true)
-      .setTrim(true)
-      .build()
-      .parse(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+  public CsvParserService() {
+    this(null, 0);
+  }
+
+  /**
+   * With a pool of more than one thread, files longer than {@code segmentChars} are parsed in
+   * segments on that pool; otherwise every file is parsed on the calling thread.
+   */
+  @Autowired
+  public CsvParserService(
+    @Qualifier("importParsePool") ForkJoinPool parsePool,
+    @Value("${app.import.parse-segment-chars:262144}") int segmentChars
+  ) {
+    this.parallelParser = parsePool != null && parsePool.getParallelism() > 1
+      ? new ParallelCsvParser(parsePool, segmentChars)
+      : null;
+  }
+
+  /**
+   * Parses the CSV incrementally, handing each row to {@code consumer} as it goes.
+   * No row is retained after the consumer returns, so memory use does not depend on file size.
+   *
+   * @return the number of rows read
+   */
+  public int stream(InputStream inputStream, Consumer<CsvParsedRow> consumer) throws IOException {
+    return stream(inputStream, Writer.nullWriter(), consumer);
+  }
+
+  /**
+   * Like {@link #stream(InputStream, Consumer)}, also copying the decoded text to
+   * {@code source} as it is read. Rows carry the character range of their record in that text
+   * rather than a copy of the line; a row is handed over once the next record has been read,
+   * since that is where its range ends.
+   *
+   * <p>{@code inputStream} is read as plain CSV; gzip and zip uploads are unwrapped once, by
+   * {@link ImportFileReader}, before they get here.
+   */
+  public int stream(InputStream inputStream, Writer source, Consumer<CsvParsedRow> consumer) throws IOException {
+    return stream(inputStream, source, CsvProfile.DEFAULT, consumer);
+  }
+
+  /**
+   * Like {@link #stream(InputStream, Writer, Consumer)}, reading the file as laid out by
+   * {@code profile} instead of the default comma-separated UTF-8 layout. Rows reach the
+   * consumer on the calling thread and in file order whether or not the file is parsed in
+   * parallel.
+   */
+  public int stream(
+    InputStream inputStream,
+    Writer source,
+    CsvProfile profile,
+    Consumer<CsvParsedRow> consumer
+  ) throws IOException {
+    SourceTeeReader reader = new SourceTeeReader(new InputStreamReader(inputStream, profile.charset()), source);
+    if (parallelParser != null) {
+      return parallelParser.stream(reader, profile, consumer);
+    }
+    try (CSVParser parser = profile.format().parse(reader)) {
       Map<String, Integer> headerMap = parser.getHeaderMap();
       if (headerMap == null) {
         throw new IllegalArgumentException("CSV sem cabeçalho");
       }
+      CsvColumns columns = CsvColumns.compile(headerMap, profile.columnNames());
 
-      ensureRequiredHeader(headerMap, "date");
-      ensureRequiredHeader(headerMap, "description");
-      ensureRequiredHeader(headerMap, "amount");
-
-      List<CsvParsedRow> rows = new ArrayList<>();
+      CSVRecord pending = null;
+      int count = 0;
       for (CSVRecord record : parser) {
-        int rowIndex = (int) record.getRecordNumber();
-        String rawLine = String.join(",", record.toList());
-        rows.add(parseRecord(rowIndex, rawLine, record, headerMap));
+        if (pending != null) {
+          consumer.accept(parseRecord(pending, record.getCharacterPosition(), columns, profile));
+          count++;
+        }
+        pending = record;
       }
-      return new CsvParseResult(rows);
+      if (pending != null) {
+        consumer.accept(parseRecord(pending, reader.position(), columns, profile));
+        count++;
+      }
+      return count;
     }
   }
 
-  private CsvParsedRow parseRecord(
+  /**
+   * Compiles an import profile into the format, decoders and header names the parser runs
+   * with. Fails with {@link IllegalArgumentException} on a delimiter, charset or date pattern
+   * that cannot be used.
+   */
+  public CsvProfile compile(ImportProfile profile) {
+    String delimiter = profile.getDelimiter();
+    if (delimiter == null || delimiter.length() != 1 || "\"\r\n".contains(delimiter)) {
+      throw new IllegalArgumentException("delimitador inválido");
+    }
+    Charset charset;
+    try {
+      charset = Charset.forName(profile.getCharset());
+    } catch (IllegalArgumentException ex) {
+      throw new IllegalArgumentException("charset inválido: " + profile.getCharset());
+    }
+    DateTimeFormatter dateFormatter;
+    try {
+      dateFormatter = DateTimeFormatter.ofPattern(profile.getDateFormat());
+    } catch (IllegalArgumentException | NullPointerException ex) {
+      throw new IllegalArgumentException("formato de data inválido: " + profile.getDateFormat());
+    }
+    return new CsvProfile(
+      csvFormat(delimiter.charAt(0)),
+      charset,
+      dateFormatter,
+      AmountParser.of(profile.getAmountFormat()),
+      new CsvColumnNames(
+        columnName(profile.getDateColumn(), CsvColumnNames.DEFAULT.date()),
+        columnName(profile.getDescriptionColumn(), CsvColumnNames.DEFAULT.description()),
+        columnName(profile.getAmountColumn(), CsvColumnNames.DEFAULT.amount()),
+        columnName(profile.getCategoryColumn(), CsvColumnNames.DEFAULT.category()),
+        columnName(profile.getSubcategoryColumn(), CsvColumnNames.DEFAULT.subcategory()),
+        columnName(profile.getPaymentMethodColumn(), CsvColumnNames.DEFAULT.paymentMethod()),
+        columnName(profile.getAccountColumn(), CsvColumnNames.DEFAULT.account()),
+        columnName(profile.getCardColumn(), CsvColumnNames.DEFAULT.card())
+      )
+    );
+  }
+
+  private static CSVFormat csvFormat(char delimiter) {
+    return CSVFormat.DEFAULT.builder()
+      .setDelimiter(delimiter)
+      .setHeader()
+      .setSkipHeaderRecord(true)
+      .setIgnoreEmptyLines(true)
+      .setTrim(true)
+      .build();
+  }
+
+  private static String columnName(String configured, String fallback) {
+    return configured == null || configured.isBlank() ? fallback : configured.trim();
+  }
+
+  private CsvParsedRow parseRecord(CSVRecord record, long sourceEnd, CsvColumns columns, CsvProfile profile) {
+    long sourceOffset = record.getCharacterPosition();
+    return parseRecord(
+      (int) record.getRecordNumber(),
+      sourceOffset,
+      (int) (sourceEnd - sourceOffset),
+      record,
+      columns,
+      profile
+    );
+  }
+
+  static CsvParsedRow parseRecord(
     int rowIndex,
-    String rawLine,
+    long sourceOffset,
+    int sourceLength,
     CSVRecord record,
-    Map<String, Integer> headerMap
+    CsvColumns columns,
+    CsvProfile profile
   ) {
-    String dateValue = getValue(record, headerMap, "date");
-    String description = getValue(record, headerMap, "description");
-    String amountValue = getValue(record, headerMap, "amount");
-    String category = getOptionalValue(record, headerMap, "category").orElse(null);
-    String subcategory = getOptionalValue(record, headerMap, "subcategory").orElse(null);
-    
-    // Check if payment_method column exists in CSV
-    boolean hasPaymentMethodColumn = headerMap.keySet().stream()
-      .anyMatch(header -> header.equalsIgnoreCase("payment_method"));
-    
-    String paymentMethodValue = getOptionalValue(record, headerMap, "payment_method").orElse("PIX");
-    String accountName = getOptionalValue(record, headerMap, "account").orElse(null);
-    String cardName = getOptionalValue(record, headerMap, "card").orElse(null);
+    String dateValue = value(record, columns.date());
+    String description = value(record, columns.description());
+    String amountValue = value(record, columns.amount());
+    String category = optionalValue(record, columns.category());
+    String subcategory = optionalValue(record, columns.subcategory());
+    String paymentMethodValue = optionalValue(record, columns.paymentMethod());
+    if (paymentMethodValue == null) {
+      paymentMethodValue = "PIX";
+    }
+    String accountName = optionalValue(record, columns.account());
+    String cardName = optionalValue(record, columns.card());
 
     if (dateValue == null || dateValue.isBlank()) {
-      return CsvParsedRow.error(rowIndex, rawLine, "data inválida");
+      return CsvParsedRow.error(rowIndex, sourceOffset, sourceLength, "data inválida");
     }
     if (amountValue == null || amountValue.isBlank()) {
-      return CsvParsedRow.error(rowIndex, rawLine, "valor inválido");
+      return CsvParsedRow.error(rowIndex, sourceOffset, sourceLength, "valor inválido");
     }
 
     LocalDate parsedDate;
     try {
-      parsedDate = LocalDate.parse(dateValue.trim(), DATE_FORMATTER);
+      parsedDate = LocalDate.parse(dateValue.trim(), profile.dateFormatter());
     } catch (DateTimeParseException ex) {
-      return CsvParsedRow.error(rowIndex, rawLine, "data inválida");
+      return CsvParsedRow.error(rowIndex, sourceOffset, sourceLength, "data inválida");
     }
 
-    BigDecimal amount;
+    long signedCents;
     try {
-      amount = new BigDecimal(amountValue.trim());
+      signedCents = profile.amountParser().parseCents(amountValue.trim());
     } catch (NumberFormatException ex) {
-      return CsvParsedRow.error(rowIndex, rawLine, "valor inválido");
+      return CsvParsedRow.error(rowIndex, sourceOffset, sourceLength, "valor inválido");
     }
 
-    if (amount.compareTo(BigDecimal.ZERO) == 0) {
-      return CsvParsedRow.error(rowIndex, rawLine, "valor não pode ser zero");
+    if (signedCents == 0) {
+      return CsvParsedRow.error(rowIndex, sourceOffset, sourceLength, "valor não pode ser zero");
     }
 
-    TxnDirection direction = amount.signum() < 0 ? TxnDirection.OUT : TxnDirection.IN;
-    long amountCents = amount.abs().movePointRight(2).longValue();
+    TxnDirection direction = signedCents < 0 ? TxnDirection.OUT : TxnDirection.IN;
+    long amountCents = Math.abs(signedCents);
 
     // Parse payment method
     PaymentType paymentType;
     try {
       paymentType = PaymentType.valueOf(paymentMethodValue.trim().toUpperCase());
     } catch (IllegalArgumentException ex) {
-      return CsvParsedRow.error(rowIndex, rawLine, "payment_method inválido: deve ser PIX ou CARD");
+      return CsvParsedRow.error(rowIndex, sourceOffset, sourceLength, "payment_method inválido: deve ser PIX ou CARD");
     }
 
     // Only validate account/card requirements if payment_method column is explicitly provided
     // For backward compatibility, CSVs without payment_method column don't require account/card columns
-    if (hasPaymentMethodColumn) {
+    if (columns.hasPaymentMethod()) {
       // Validate PIX requires account
       if (paymentType == PaymentType.PIX && (accountName == null || accountName.isBlank())) {
-        return CsvParsedRow.error(rowIndex, rawLine, "transação PIX requer coluna 'account'");
+        return CsvParsedRow.error(rowIndex, sourceOffset, sourceLength, "transação PIX requer coluna 'account'");
       }
 
       // Validate CARD requires card
       if (paymentType == PaymentType.CARD && (cardName == null || cardName.isBlank())) {
-        return CsvParsedRow.error(rowIndex, rawLine, "transação CARD requer coluna 'card'");
+        return CsvParsedRow.error(rowIndex, sourceOffset, sourceLength, "transação CARD requer coluna 'card'");
       }
     }
 
     return CsvParsedRow.parsed(
       rowIndex,
-      rawLine,
+      sourceOffset,
+      sourceLength,
       parsedDate,
       description,
       amountCents,
@@ -136,33 +260,114 @@ public class CsvParserService {
     );
   }
 
-  private void ensureRequiredHeader(Map<String, Integer> headerMap, String expected) {
-    boolean present = headerMap.keySet().stream()
-      .anyMatch(header -> header.equalsIgnoreCase(expected));
-    if (!present) {
-      throw new IllegalArgumentException("coluna obrigatória ausente: " + expected);
-    }
+  private static String value(CSVRecord record, int index) {
+    // Short records simply lack the trailing columns
+    return index < 0 || index >= record.size() ? null : record.get(index);
+  }
+
+  private static String optionalValue(CSVRecord record, int index) {
+    String value = value(record, index);
+    return value == null || value.isBlank() ? null : value;
   }
 
-  private String getValue(CSVRecord record, Map<String, Integer> headerMap, String expected) {
-    return headerMap.keySet().stream()
-      .filter(header -> header.equalsIgnoreCase(expected))
-      .findFirst()
-      .map(record::get)
-      .orElse(null);
+  /**
+   * Everything a profile decides about reading a file, built once by {@link #compile} so the
+   * per-row path only uses ready-made formatters.
+   */
+  public record CsvProfile(
+    CSVFormat format,
+    Charset charset,
+    DateTimeFormatter dateFormatter,
+    AmountParser amountParser,
+    CsvColumnNames columnNames
+  ) {
+    public static final CsvProfile DEFAULT = new CsvProfile(
+      csvFormat(','),
+      StandardCharsets.UTF_8,
+      DateTimeFormatter.ofPattern("yyyy-MM-dd"),
+      AmountParser.DOT_DECIMAL,
+      CsvColumnNames.DEFAULT
+    );
   }
 
-  private Optional<String> getOptionalValue(CSVRecord record, Map<String, Integer> headerMap, String expected) {
-    return headerMap.keySet().stream()
-      .filter(header -> header.equalsIgnoreCase(expected))
-      .findFirst()
-      .map(record::get)
-      .map(value -> value.isBlank() ? null : value);
+  /** The header name each field is read from. */
+  public record CsvColumnNames(
+    String date,
+    String description,
+    String amount,
+    String category,
+    String subcategory,
+    String paymentMethod,
+    String account,
+    String card
+  ) {
+    public static final CsvColumnNames DEFAULT = new CsvColumnNames(
+      "date",
+      "description",
+      "amount",
+      "category",
+      "subcategory",
+      "payment_method",
+      "account",
+      "card"
+    );
+  }
+
+  /**
+   * Column positions resolved once from the header, matched case-insensitively; -1 when a
+   * column is absent. When a name appears twice the first occurrence wins.
+   */
+  record CsvColumns(
+    int date,
+    int description,
+    int amount,
+    int category,
+    int subcategory,
+    int paymentMethod,
+    int account,
+    int card
+  ) {
+    static CsvColumns compile(Map<String, Integer> headerMap, CsvColumnNames names) {
+      CsvColumns columns = new CsvColumns(
+        indexOf(headerMap, names.date()),
+        indexOf(headerMap, names.description()),
+        indexOf(headerMap, names.amount()),
+        indexOf(headerMap, names.category()),
+        indexOf(headerMap, names.subcategory()),
+        indexOf(headerMap, names.paymentMethod()),
+        indexOf(headerMap, names.account()),
+        indexOf(headerMap, names.card())
+      );
+      ensureRequired(columns.date(), names.date());
+      ensureRequired(columns.description(), names.description());
+      ensureRequired(columns.amount(), names.amount());
+      return columns;
+    }
+
+    boolean hasPaymentMethod() {
+      return paymentMethod >= 0;
+    }
+
+    private static int indexOf(Map<String, Integer> headerMap, String expected) {
+      for (Map.Entry<String, Integer> header : headerMap.entrySet()) {
+        if (header.getKey().equalsIgnoreCase(expected)) {
+          return header.getValue();
+        }
+      }
+      return -1;
+    }
+
+    private static void ensureRequired(int index, String expected) {
+      if (index < 0) {
+        throw new IllegalArgumentException("coluna obrigatória ausente: " + expected);
+      }
+    }
   }
 
   public record CsvParsedRow(
     int rowIndex,
-    String rawLine,
+    long sourceOffset,
+    int sourceLength,
     LocalDate parsedDate,
     String description,
     Long amountCents,
@@ -177,7 +382,8 @@ public class CsvParserService {
   ) {
     public static CsvParsedRow parsed(
       int rowIndex,
-      String rawLine,
+      long sourceOffset,
+      int sourceLength,
       LocalDate parsedDate,
       String description,
       Long amountCents,
@@ -190,7 +396,8 @@ public class CsvParserService {
     ) {
       return new CsvParsedRow(
         rowIndex,
-        rawLine,
+        sourceOffset,
+        sourceLength,
         parsedDate,
         description,
         amountCents,
@@ -205,10 +412,30 @@ public class CsvParserService {
       );
     }
 
-    public static CsvParsedRow error(int rowIndex, String rawLine, String errorMessage) {
+    CsvParsedRow withRowIndex(int rowIndex) {
+      return new CsvParsedRow(
+        rowIndex,
+        sourceOffset,
+        sourceLength,
+        parsedDate,
+        description,
+        amountCents,
+        direction,
+        paymentType,
+        accountName,
+        cardName,
+        categoryName,
+        subcategoryName,
+        status,
+        errorMessage
+      );
+    }
+
+    public static CsvParsedRow error(int rowIndex, long sourceOffset, int sourceLength, String errorMessage) {
       return new CsvParsedRow(
         rowIndex,
-        rawLine,
+        sourceOffset,
+        sourceLength,
         null,
         null,
         null,
@@ -223,6 +450,4 @@ public class CsvParserService {
       );
     }
   }
-
-  public record CsvParseResult(List<CsvParsedRow> rows) {}
 }
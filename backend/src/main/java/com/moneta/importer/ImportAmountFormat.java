@@ -0,0 +1,8 @@
+package com.moneta.importer;
+
+public enum ImportAmountFormat {
+  /** {@code 1234.56}, no digit grouping */
+  DOT_DECIMAL,
+  /** {@code 1.234,56} or {@code 1234,56} */
+  COMMA_DECIMAL
+}
@@ -30,6 +30,10 @@ public class ImportBatch {
   @JoinColumn(name = "account_id", nullable = false)
   private Account account;
 
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "import_profile_id")
+  private ImportProfile profile;
+
   @Column(nullable = false)
   private String filename;
 
@@ -55,6 +59,15 @@ public class ImportBatch {
   @Column(name = "committed_rows", nullable = false)
   private int committedRows;
 
+  @Column(name = "reference_hits", nullable = false)
+  private int referenceHits;
+
+  @Column(name = "reference_misses", nullable = false)
+  private int referenceMisses;
+
+  @Column(name = "commit_checkpoint_row_index")
+  private Integer commitCheckpointRowIndex;
+
   @Column(name = "created_at", nullable = false)
   private OffsetDateTime createdAt = OffsetDateTime.now();
 
@@ -81,6 +94,14 @@ public class ImportBatch {
     this.account = account;
   }
 
+  public ImportProfile getProfile() {
+    return profile;
+  }
+
+  public void setProfile(ImportProfile profile) {
+    this.profile = profile;
+  }
+
   public String getFilename() {
     return filename;
   }
@@ -145,6 +166,30 @@ public class ImportBatch {
     this.committedRows = committedRows;
   }
 
+  public int getReferenceHits() {
+    return referenceHits;
+  }
+
+  public void setReferenceHits(int referenceHits) {
+    this.referenceHits = referenceHits;
+  }
+
+  public int getReferenceMisses() {
+    return referenceMisses;
+  }
+
+  public void setReferenceMisses(int referenceMisses) {
+    this.referenceMisses = referenceMisses;
+  }
+
+  public Integer getCommitCheckpointRowIndex() {
+    return commitCheckpointRowIndex;
+  }
+
+  public void setCommitCheckpointRowIndex(Integer commitCheckpointRowIndex) {
+    this.commitCheckpointRowIndex = commitCheckpointRowIndex;
+  }
+
   public OffsetDateTime getCreatedAt() {
     return createdAt;
   }
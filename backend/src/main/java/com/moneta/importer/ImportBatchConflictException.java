@@ -0,0 +1,8 @@
+package com.moneta.importer;
+
+/** The batch is in a state that does not allow the operation, e.g. deleting it mid-commit. */
+public class ImportBatchConflictException extends RuntimeException {
+  public ImportBatchConflictException(String message) {
+    super(message);
+  }
+}
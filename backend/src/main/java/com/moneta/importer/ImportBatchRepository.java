@@ -1,10 +1,25 @@
 package com.moneta.importer;
 
+import jakarta.persistence.LockModeType;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface ImportBatchRepository extends JpaRepository<ImportBatch, Long> {
   List<ImportBatch> findAllByUserIdOrderByUploadedAtDesc(Long userId);
   Optional<ImportBatch> findByIdAndUserId(Long id, Long userId);
+
+  /** Loads the batch with a row lock, so concurrent commits of the same batch run one at a time. */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select b from ImportBatch b where b.id = :id and b.user.id = :userId")
+  Optional<ImportBatch> findByIdAndUserIdForUpdate(@Param("id") Long id, @Param("userId") Long userId);
+
+  /** Deletes the batch in one statement; its rows go with it through ON DELETE CASCADE. */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("delete from ImportBatch b where b.id = :id and b.user.id = :userId")
+  int deleteByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId);
 }
@@ -3,6 +3,9 @@ package com.moneta.importer;
 public enum ImportBatchStatus {
   UPLOADED,
   PARSED,
+  COMMITTING,
   COMMITTED,
-  FAILED
+  FAILED,
+  CANCELLED,
+  DELETING
 }
@@ -5,8 +5,10 @@ import com.moneta.importer.ImportDtos.ImportBatchDetailResponse;
 import com.moneta.importer.ImportDtos.ImportBatchResponse;
 import com.moneta.importer.ImportDtos.ImportCommitRequest;
 import com.moneta.importer.ImportDtos.ImportCommitResponse;
+import com.moneta.importer.ImportDtos.ImportJobResponse;
 import com.moneta.importer.ImportDtos.ImportRowsPageResponse;
 import java.util.List;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -22,18 +24,40 @@ import org.springframework.web.multipart.MultipartFile;
 @RequestMapping("/api/import")
 public class ImportController {
   private final ImportService importService;
+  private final ImportJobService importJobService;
 
-  public ImportController(ImportService importService) {
+  public ImportController(ImportService importService, ImportJobService importJobService) {
     this.importService = importService;
+    this.importJobService = importJobService;
   }
 
   @PostMapping("/csv")
-  public ImportBatchResponse uploadCsv(
+  public ResponseEntity<ImportJobResponse> uploadCsv(
     @AuthenticationPrincipal UserPrincipal principal,
     @RequestParam("file") MultipartFile file,
-    @RequestParam("accountId") Long accountId
+    @RequestParam("accountId") Long accountId,
+    @RequestParam(required = false) Long profileId,
+    @RequestParam(defaultValue = "false") boolean direct
   ) {
-    return importService.uploadCsv(principal.getId(), accountId, file);
+    return ResponseEntity.accepted().body(
+      importJobService.submitCsv(principal.getId(), accountId, profileId, file, direct)
+    );
+  }
+
+  @GetMapping("/batches/{id}/progress")
+  public ImportJobResponse getProgress(
+    @AuthenticationPrincipal UserPrincipal principal,
+    @PathVariable Long id
+  ) {
+    return importJobService.getProgress(principal.getId(), id);
+  }
+
+  @PostMapping("/batches/{id}/cancel")
+  public ImportJobResponse cancel(
+    @AuthenticationPrincipal UserPrincipal principal,
+    @PathVariable Long id
+  ) {
+    return importJobService.cancel(principal.getId(), id);
   }
 
   @GetMapping("/batches")
@@ -57,9 +81,11 @@ public class ImportController {
     @PathVariable Long id,
     @RequestParam(required = false) ImportRowStatus status,
     @RequestParam(defaultValue = "0") int page,
-    @RequestParam(defaultValue = "20") int size
+    @RequestParam(defaultValue = "20") int size,
+    @RequestParam(required = false) String cursor,
+    @RequestParam(defaultValue = "false") boolean includeRaw
   ) {
-    return importService.listRows(principal.getId(), id, status, page, size);
+    return importService.listRows(principal.getId(), id, status, page, size, cursor, includeRaw);
   }
 
   @PostMapping("/batches/{id}/commit")
@@ -69,16 +95,19 @@ public class ImportController {
     @RequestBody(required = false) ImportCommitRequest request
   ) {
     ImportCommitRequest effectiveRequest = request == null
-      ? new ImportCommitRequest(true, true, true)
+      ? new ImportCommitRequest(true, true, true, null)
       : request;
-    return importService.commitBatch(principal.getId(), id, effectiveRequest);
+    return effectiveRequest.chunkSize() != null
+      ? importService.commitBatchInChunks(principal.getId(), id, effectiveRequest)
+      : importService.commitBatch(principal.getId(), id, effectiveRequest);
   }
 
   @DeleteMapping("/batches/{id}")
-  public void deleteBatch(
+  public ResponseEntity<Void> deleteBatch(
     @AuthenticationPrincipal UserPrincipal principal,
     @PathVariable Long id
   ) {
-    importService.deleteBatch(principal.getId(), id);
+    boolean purging = importJobService.deleteBatch(principal.getId(), id);
+    return purging ? ResponseEntity.accepted().build() : ResponseEntity.ok().build();
   }
 }
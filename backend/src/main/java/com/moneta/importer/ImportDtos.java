@@ -1,6 +1,8 @@
 package com.moneta.importer;
 
 import com.moneta.txn.TxnDirection;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.util.List;
@@ -17,6 +19,7 @@ public class ImportDtos {
   public record ImportBatchResponse(
     Long batchId,
     Long accountId,
+    Long profileId,
     String filename,
     OffsetDateTime uploadedAt,
     ImportBatchStatus status,
@@ -26,10 +29,17 @@ public class ImportDtos {
   public record ImportBatchDetailResponse(
     Long batchId,
     Long accountId,
+    Long profileId,
     String filename,
     OffsetDateTime uploadedAt,
     ImportBatchStatus status,
-    ImportBatchTotals totals
+    ImportBatchTotals totals,
+    ImportReferenceStats referenceStats
+  ) {}
+
+  public record ImportReferenceStats(
+    int hits,
+    int misses
   ) {}
 
   public record ImportRowResponse(
@@ -43,7 +53,8 @@ public class ImportDtos {
     Long resolvedSubcategoryId,
     ImportRowStatus status,
     String errorMessage,
-    Long createdTxnId
+    Long createdTxnId,
+    String rawLine
   ) {}
 
   public record ImportRowsPageResponse(
@@ -51,13 +62,27 @@ public class ImportDtos {
     int page,
     int size,
     long totalElements,
-    ImportBatchTotals totals
+    ImportBatchTotals totals,
+    String nextCursor
+  ) {}
+
+  public record ImportJobResponse(
+    Long batchId,
+    ImportBatchStatus status,
+    long rowsParsed,
+    long rowsResolved,
+    long rowsHashed,
+    boolean cancelRequested,
+    OffsetDateTime startedAt,
+    OffsetDateTime finishedAt,
+    String errorMessage
   ) {}
 
   public record ImportCommitRequest(
     Boolean applyRulesAfterCommit,
     Boolean skipDuplicates,
-    Boolean commitOnlyReady
+    Boolean commitOnlyReady,
+    Integer chunkSize
   ) {}
 
   public record ImportCommitResponse(
@@ -67,4 +92,40 @@ public class ImportDtos {
     int updated,
     ImportBatchStatus batchStatus
   ) {}
+
+  public record ImportProfileRequest(
+    @NotNull(message = "instituição é obrigatória") Long institutionId,
+    @NotBlank(message = "nome é obrigatório") String name,
+    String delimiter,
+    String charset,
+    String dateFormat,
+    ImportAmountFormat amountFormat,
+    String dateColumn,
+    String descriptionColumn,
+    String amountColumn,
+    String categoryColumn,
+    String subcategoryColumn,
+    String paymentMethodColumn,
+    String accountColumn,
+    String cardColumn
+  ) {}
+
+  public record ImportProfileResponse(
+    Long id,
+    Long institutionId,
+    String name,
+    String delimiter,
+    String charset,
+    String dateFormat,
+    ImportAmountFormat amountFormat,
+    String dateColumn,
+    String descriptionColumn,
+    String amountColumn,
+    String categoryColumn,
+    String subcategoryColumn,
+    String paymentMethodColumn,
+    String accountColumn,
+    String cardColumn,
+    boolean isActive
+  ) {}
 }
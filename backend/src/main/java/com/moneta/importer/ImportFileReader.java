@@ -0,0 +1,67 @@
+package com.moneta.importer;
+
+import com.moneta.importer.CsvParserService.CsvParsedRow;
+import com.moneta.importer.CsvParserService.CsvProfile;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Picks the parser for an upload from its content: after any gzip/zip wrapper is removed, OFX
+ * and QIF are recognised by their headers and anything else is read as CSV.
+ */
+@Component
+public class ImportFileReader {
+  static final int HEAD_BYTES = 1024;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final CsvParserService csvParserService;
+  private final List<StatementParser> statementParsers;
+  private final long maxInflatedBytes;
+
+  public ImportFileReader(
+    CsvParserService csvParserService,
+    OfxStatementParser ofxStatementParser,
+    QifStatementParser qifStatementParser,
+    @Value("${app.import.max-inflated-bytes:2147483648}") long maxInflatedBytes
+  ) {
+    this.csvParserService = csvParserService;
+    this.statementParsers = List.of(ofxStatementParser, qifStatementParser);
+    this.maxInflatedBytes = maxInflatedBytes;
+  }
+
+  /**
+   * Streams the rows of the upload to {@code consumer}, copying its decoded text to
+   * {@code source}. The profile sets the CSV layout; OFX takes its charset from its own header.
+   *
+   * @return the number of rows read
+   */
+  public int stream(
+    InputStream inputStream,
+    Writer source,
+    CsvProfile profile,
+    Consumer<CsvParsedRow> consumer
+  ) throws IOException {
+    InputStream upload = new BufferedInputStream(UploadDecompressor.open(inputStream, maxInflatedBytes), BUFFER_SIZE);
+    upload.mark(HEAD_BYTES);
+    String head = new String(upload.readNBytes(HEAD_BYTES), StandardCharsets.ISO_8859_1);
+    upload.reset();
+    if (head.startsWith("\u00ef\u00bb\u00bf")) {
+      // UTF-8 byte order mark, as read in Latin-1
+      head = head.substring(3);
+    }
+
+    for (StatementParser parser : statementParsers) {
+      if (parser.accepts(head)) {
+        return parser.stream(upload, source, profile, consumer);
+      }
+    }
+    return csvParserService.stream(upload, source, profile, consumer);
+  }
+}
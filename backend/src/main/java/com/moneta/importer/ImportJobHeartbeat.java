@@ -0,0 +1,167 @@
+package com.moneta.importer;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Makes the import jobs of this node visible to every node. A job is registered in
+ * {@code import_job_heartbeat} when it is queued, and a background thread refreshes the
+ * heartbeat of each job still registered here every {@code app.import.job-heartbeat-interval-ms}
+ * until the job releases it. A job whose heartbeat is older than
+ * {@code app.import.job-stale-after-ms} is taken to be dead, whichever node it ran on.
+ *
+ * <p>The same thread sweeps for orphans at startup and once per stale window afterwards: an
+ * UPLOADED batch with no live heartbeat lost its job to a restart or a crash and would
+ * otherwise stay UPLOADED for good, so it is marked FAILED.
+ *
+ * <p>Each statement runs on its own, outside the caller's transaction.
+ */
+@Component
+public class ImportJobHeartbeat implements SmartLifecycle {
+  private static final Logger logger = LoggerFactory.getLogger(ImportJobHeartbeat.class);
+  private static final long STOP_TIMEOUT_MILLIS = 5_000;
+  // Ages are measured on the database clock, so nodes with skewed clocks still agree
+  private static final String CUTOFF = "now() - ? * interval '1 millisecond'";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final Duration interval;
+  private final Duration staleAfter;
+  private final Set<Long> batchIds = ConcurrentHashMap.newKeySet();
+  private volatile boolean running;
+  private Thread worker;
+
+  public ImportJobHeartbeat(
+    JdbcTemplate jdbcTemplate,
+    @Value("${app.import.job-heartbeat-interval-ms:10000}") long intervalMillis,
+    @Value("${app.import.job-stale-after-ms:60000}") long staleAfterMillis
+  ) {
+    if (staleAfterMillis <= intervalMillis) {
+      throw new IllegalArgumentException("app.import.job-stale-after-ms deve ser maior que o intervalo do heartbeat");
+    }
+    this.jdbcTemplate = jdbcTemplate;
+    this.interval = Duration.ofMillis(intervalMillis);
+    this.staleAfter = Duration.ofMillis(staleAfterMillis);
+  }
+
+  /** Records that the job of {@code batchId} runs on this node. */
+  public void register(Long batchId) {
+    batchIds.add(batchId);
+    jdbcTemplate.update(
+      "insert into import_job_heartbeat (batch_id, heartbeat_at) values (?, now()) "
+        + "on conflict (batch_id) do update set heartbeat_at = excluded.heartbeat_at",
+      batchId
+    );
+  }
+
+  /** Records that the job of {@code batchId} is over; failures are left to the sweep. */
+  public void release(Long batchId) {
+    batchIds.remove(batchId);
+    try {
+      jdbcTemplate.update("delete from import_job_heartbeat where batch_id = ?", batchId);
+    } catch (RuntimeException ex) {
+      logger.warn("Could not release import job heartbeat batchId={}", batchId, ex);
+    }
+  }
+
+  /** Whether some node still runs or queues the job of {@code batchId}. */
+  public boolean isAlive(Long batchId) {
+    if (batchIds.contains(batchId)) {
+      return true;
+    }
+    Boolean alive = jdbcTemplate.queryForObject(
+      "select exists (select 1 from import_job_heartbeat where batch_id = ? and heartbeat_at > " + CUTOFF + ")",
+      Boolean.class,
+      batchId,
+      staleAfter.toMillis()
+    );
+    return Boolean.TRUE.equals(alive);
+  }
+
+  /**
+   * Marks FAILED the UPLOADED batches whose job is dead. A batch is only considered once it is
+   * older than the stale window, so one whose job is being registered is left alone.
+   *
+   * @return how many batches were marked
+   */
+  public int failOrphans() {
+    long staleMillis = staleAfter.toMillis();
+    int failed = jdbcTemplate.update(
+      "update import_batch b set status = 'FAILED', updated_at = now() "
+        + "where b.status = 'UPLOADED' and b.updated_at < " + CUTOFF
+        + " and not exists (select 1 from import_job_heartbeat h where h.batch_id = b.id and h.heartbeat_at > " + CUTOFF + ")",
+      staleMillis,
+      staleMillis
+    );
+    jdbcTemplate.update("delete from import_job_heartbeat where heartbeat_at <= " + CUTOFF, staleMillis);
+    return failed;
+  }
+
+  @Override
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+    running = true;
+    worker = new Thread(this::beat, "import-job-heartbeat");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    worker.interrupt();
+    try {
+      worker.join(STOP_TIMEOUT_MILLIS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  private void beat() {
+    long nextSweep = System.nanoTime();
+    while (running) {
+      try {
+        if (!batchIds.isEmpty()) {
+          // An upsert, so a job whose heartbeat was swept while it was stalled shows up again
+          jdbcTemplate.update(
+            "insert into import_job_heartbeat (batch_id, heartbeat_at) "
+              + "select b.id, now() from import_batch b where b.id = any(?) "
+              + "on conflict (batch_id) do update set heartbeat_at = excluded.heartbeat_at",
+            (Object) batchIds.toArray(new Long[0])
+          );
+        }
+        if (System.nanoTime() - nextSweep >= 0) {
+          int failed = failOrphans();
+          if (failed > 0) {
+            logger.info("Marked orphaned import batches failed count={}", failed);
+          }
+          nextSweep = System.nanoTime() + staleAfter.toNanos();
+        }
+      } catch (RuntimeException ex) {
+        // Missed beats only age the heartbeats; the next one catches up
+        logger.warn("Import job heartbeat failed: {}", ex.getMessage());
+      }
+      try {
+        Thread.sleep(interval.toMillis());
+      } catch (InterruptedException ex) {
+        return;
+      }
+    }
+  }
+}
@@ -0,0 +1,8 @@
+package com.moneta.importer;
+
+/** The import or purge pool has no room for another job; the client may retry shortly. */
+public class ImportJobRejectedException extends RuntimeException {
+  public ImportJobRejectedException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
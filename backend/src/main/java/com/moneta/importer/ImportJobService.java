@@ -0,0 +1,295 @@
+package com.moneta.importer;
+
+import com.moneta.importer.ImportDtos.ImportBatchDetailResponse;
+import com.moneta.importer.ImportDtos.ImportBatchResponse;
+import com.moneta.importer.ImportDtos.ImportBatchTotals;
+import com.moneta.importer.ImportDtos.ImportJobResponse;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Runs CSV uploads as background jobs on the bounded import executor. The upload is spooled to
+ * a temp file before the request returns, since the multipart body is gone afterwards.
+ *
+ * <p>Progress lives in memory on the node that accepted the upload. Other nodes, or this one
+ * after the retention window, answer progress requests from the batch row instead. Whether a
+ * job is still queued or running is known to every node through {@link ImportJobHeartbeat}.
+ */
+@Service
+public class ImportJobService {
+  private static final Logger logger = LoggerFactory.getLogger(ImportJobService.class);
+  private static final Duration FINISHED_RETENTION = Duration.ofMinutes(15);
+  private static final int PURGE_CHUNK_SIZE = 10_000;
+
+  private final ImportService importService;
+  private final TaskExecutor importExecutor;
+  private final TaskExecutor importPurgeExecutor;
+  private final ImportJobHeartbeat importJobHeartbeat;
+  private final int purgeAsyncThreshold;
+  private final Map<Long, ImportProgress> jobs = new ConcurrentHashMap<>();
+  // Batches whose purge is queued or running on this node
+  private final Set<Long> purging = ConcurrentHashMap.newKeySet();
+
+  public ImportJobService(
+    ImportService importService,
+    @Qualifier("importExecutor") TaskExecutor importExecutor,
+    @Qualifier("importPurgeExecutor") TaskExecutor importPurgeExecutor,
+    ImportJobHeartbeat importJobHeartbeat,
+    @Value("${app.import.purge-async-threshold:50000}") int purgeAsyncThreshold
+  ) {
+    this.importService = importService;
+    this.importExecutor = importExecutor;
+    this.importPurgeExecutor = importPurgeExecutor;
+    this.importJobHeartbeat = importJobHeartbeat;
+    this.purgeAsyncThreshold = purgeAsyncThreshold;
+  }
+
+  public ImportJobResponse submitCsv(Long userId, Long accountId, MultipartFile file) {
+    return submitCsv(userId, accountId, null, file, false);
+  }
+
+  /**
+   * Like {@link #submitCsv(Long, Long, MultipartFile)}, reading the file with the given import
+   * profile when {@code profileId} is set. With {@code direct} the job writes the transactions
+   * itself through {@link ImportService#importDirect} instead of staging for review.
+   */
+  public ImportJobResponse submitCsv(
+    Long userId,
+    Long accountId,
+    Long profileId,
+    MultipartFile file,
+    boolean direct
+  ) {
+    pruneFinished();
+    Path upload = spool(file);
+    ImportBatchResponse batch;
+    try {
+      batch = importService.createBatch(userId, accountId, profileId, file.getOriginalFilename());
+    } catch (RuntimeException ex) {
+      deleteQuietly(upload);
+      throw ex;
+    }
+
+    ImportProgress progress = new ImportProgress(userId, batch.batchId());
+    jobs.put(batch.batchId(), progress);
+    try {
+      importJobHeartbeat.register(batch.batchId());
+      importExecutor.execute(() -> run(progress, upload, direct));
+    } catch (RuntimeException ex) {
+      jobs.remove(batch.batchId());
+      importJobHeartbeat.release(batch.batchId());
+      deleteQuietly(upload);
+      importService.deleteBatch(userId, batch.batchId());
+      if (ex instanceof TaskRejectedException) {
+        throw new ImportJobRejectedException("muitas importações em andamento, tente novamente em instantes", ex);
+      }
+      throw ex;
+    }
+    return toResponse(progress);
+  }
+
+  public ImportJobResponse getProgress(Long userId, Long batchId) {
+    ImportProgress progress = jobs.get(batchId);
+    if (progress != null && progress.getUserId().equals(userId)) {
+      return toResponse(progress);
+    }
+    ImportBatchDetailResponse batch = importService.getBatch(userId, batchId);
+    ImportBatchTotals totals = batch.totals();
+    long staged = (long) totals.readyRows() + totals.duplicateRows() + totals.committedRows();
+    return new ImportJobResponse(
+      batch.batchId(),
+      batch.status(),
+      totals.totalRows(),
+      staged,
+      staged,
+      false,
+      null,
+      null,
+      null
+    );
+  }
+
+  /**
+   * Asks a queued or running job to stop. The worker checks between chunks and marks the batch
+   * CANCELLED, keeping the chunks it had already written.
+   */
+  public ImportJobResponse cancel(Long userId, Long batchId) {
+    ImportProgress progress = jobs.get(batchId);
+    if (progress == null || !progress.getUserId().equals(userId)) {
+      importService.getBatch(userId, batchId);
+      throw new IllegalArgumentException("importação não está em andamento");
+    }
+    if (progress.isFinished()) {
+      throw new IllegalArgumentException("importação já finalizada");
+    }
+    progress.requestCancel();
+    return toResponse(progress);
+  }
+
+  /**
+   * Deletes a batch. An UPLOADED batch is refused while its job is queued or running on any
+   * node, and accepted once the job is known to be dead. One with at least
+   * {@code app.import.purge-async-threshold} rows is marked DELETING and its rows are purged in
+   * bounded chunks on the purge executor, so neither the request nor a single transaction has
+   * to cover them all. Deleting it again while its purge is still queued or running here
+   * returns at once; a purge cut short (e.g. by a restart) leaves the batch DELETING, and
+   * deleting it again then picks the purge back up.
+   *
+   * @return whether the purge continues in the background
+   */
+  public boolean deleteBatch(Long userId, Long batchId) {
+    ImportBatchDetailResponse batch = importService.getBatch(userId, batchId);
+    ImportProgress progress = jobs.get(batchId);
+    boolean running = progress != null && !progress.isFinished();
+    if (running || (batch.status() == ImportBatchStatus.UPLOADED && importJobHeartbeat.isAlive(batchId))) {
+      throw new ImportBatchConflictException("importação em andamento; cancele antes de excluir");
+    }
+    jobs.remove(batchId);
+    if (purging.contains(batchId)) {
+      return true;
+    }
+    if (batch.totals().totalRows() < purgeAsyncThreshold) {
+      importService.deleteBatch(userId, batchId);
+      return false;
+    }
+    if (!purging.add(batchId)) {
+      return true;
+    }
+    boolean submitted = false;
+    try {
+      importService.markDeleting(userId, batchId);
+      importPurgeExecutor.execute(() -> purge(userId, batchId));
+      submitted = true;
+    } catch (TaskRejectedException ex) {
+      // Nothing was purged yet, so the batch goes back to what it was
+      importService.markBatchStatus(userId, batchId, batch.status());
+      throw new ImportJobRejectedException("muitas exclusões em andamento, tente novamente em instantes", ex);
+    } finally {
+      if (!submitted) {
+        purging.remove(batchId);
+      }
+    }
+    return true;
+  }
+
+  @PreDestroy
+  void cancelAll() {
+    jobs.values().forEach(ImportProgress::requestCancel);
+  }
+
+  private void run(ImportProgress progress, Path upload, boolean direct) {
+    Long userId = progress.getUserId();
+    Long batchId = progress.getBatchId();
+    progress.start();
+    try (InputStream inputStream = Files.newInputStream(upload)) {
+      if (progress.isCancelRequested()) {
+        throw new CancellationException("importação cancelada");
+      }
+      ImportBatchResponse staged = direct
+        ? importService.importDirect(userId, batchId, inputStream, progress)
+        : importService.stageUpload(userId, batchId, inputStream, progress);
+      progress.finish(staged.status(), null);
+    } catch (CancellationException ex) {
+      logger.info("Import job cancelled userId={} batchId={}", userId, batchId);
+      finishUnstaged(progress, ImportBatchStatus.CANCELLED, null);
+    } catch (Exception ex) {
+      logger.warn("Import job failed userId={} batchId={}", userId, batchId, ex);
+      String message = ex instanceof IllegalArgumentException ? ex.getMessage() : "erro ao processar CSV";
+      finishUnstaged(progress, ImportBatchStatus.FAILED, message);
+    } finally {
+      importJobHeartbeat.release(batchId);
+      deleteQuietly(upload);
+    }
+  }
+
+  private void purge(Long userId, Long batchId) {
+    long started = System.nanoTime();
+    try {
+      long purged = 0;
+      int deleted;
+      do {
+        deleted = importService.purgeRows(userId, batchId, PURGE_CHUNK_SIZE);
+        purged += deleted;
+      } while (deleted > 0);
+      importService.deleteBatch(userId, batchId);
+      logger.info(
+        "Import batch purged userId={} batchId={} rows={} seconds={}",
+        userId,
+        batchId,
+        purged,
+        String.format(Locale.ROOT, "%.3f", (System.nanoTime() - started) / 1_000_000_000.0)
+      );
+    } catch (RuntimeException ex) {
+      logger.warn("Import batch purge failed userId={} batchId={}", userId, batchId, ex);
+    } finally {
+      purging.remove(batchId);
+    }
+  }
+
+  private void finishUnstaged(ImportProgress progress, ImportBatchStatus status, String errorMessage) {
+    try {
+      importService.markBatchStatus(progress.getUserId(), progress.getBatchId(), status);
+    } catch (RuntimeException ex) {
+      logger.warn("Could not update import batch status batchId={}", progress.getBatchId(), ex);
+    }
+    progress.finish(status, errorMessage);
+  }
+
+  private void pruneFinished() {
+    OffsetDateTime cutoff = OffsetDateTime.now().minus(FINISHED_RETENTION);
+    jobs.values().removeIf(progress -> progress.isFinished() && progress.getFinishedAt().isBefore(cutoff));
+  }
+
+  private Path spool(MultipartFile file) {
+    try {
+      Path upload = Files.createTempFile("moneta-import-", ".csv");
+      try (InputStream inputStream = file.getInputStream()) {
+        Files.copy(inputStream, upload, StandardCopyOption.REPLACE_EXISTING);
+      }
+      return upload;
+    } catch (IOException ex) {
+      throw new IllegalStateException("erro ao ler CSV", ex);
+    }
+  }
+
+  private void deleteQuietly(Path upload) {
+    try {
+      Files.deleteIfExists(upload);
+    } catch (IOException ex) {
+      logger.warn("Could not delete import upload {}", upload, ex);
+    }
+  }
+
+  private ImportJobResponse toResponse(ImportProgress progress) {
+    return new ImportJobResponse(
+      progress.getBatchId(),
+      progress.getStatus(),
+      progress.getRowsParsed(),
+      progress.getRowsResolved(),
+      progress.getRowsHashed(),
+      progress.isCancelRequested(),
+      progress.getStartedAt(),
+      progress.getFinishedAt(),
+      progress.getErrorMessage()
+    );
+  }
+}
@@ -0,0 +1,225 @@
+package com.moneta.importer;
+
+import com.moneta.auth.User;
+import com.moneta.institution.Institution;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import java.time.OffsetDateTime;
+
+@Entity
+@Table(name = "import_profile")
+public class ImportProfile {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "user_id", nullable = false)
+  private User user;
+
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "institution_id", nullable = false)
+  private Institution institution;
+
+  @Column(nullable = false)
+  private String name;
+
+  @Column(nullable = false)
+  private String delimiter = ",";
+
+  @Column(nullable = false)
+  private String charset = "UTF-8";
+
+  @Column(name = "date_format", nullable = false)
+  private String dateFormat = "yyyy-MM-dd";
+
+  @Enumerated(EnumType.STRING)
+  @Column(name = "amount_format", nullable = false)
+  private ImportAmountFormat amountFormat = ImportAmountFormat.DOT_DECIMAL;
+
+  @Column(name = "date_column")
+  private String dateColumn;
+
+  @Column(name = "description_column")
+  private String descriptionColumn;
+
+  @Column(name = "amount_column")
+  private String amountColumn;
+
+  @Column(name = "category_column")
+  private String categoryColumn;
+
+  @Column(name = "subcategory_column")
+  private String subcategoryColumn;
+
+  @Column(name = "payment_method_column")
+  private String paymentMethodColumn;
+
+  @Column(name = "account_column")
+  private String accountColumn;
+
+  @Column(name = "card_column")
+  private String cardColumn;
+
+  @Column(name = "is_active", nullable = false)
+  private boolean isActive = true;
+
+  @Column(name = "created_at", nullable = false)
+  private OffsetDateTime createdAt = OffsetDateTime.now();
+
+  @Column(name = "updated_at", nullable = false)
+  private OffsetDateTime updatedAt = OffsetDateTime.now();
+
+  public Long getId() {
+    return id;
+  }
+
+  public User getUser() {
+    return user;
+  }
+
+  public void setUser(User user) {
+    this.user = user;
+  }
+
+  public Institution getInstitution() {
+    return institution;
+  }
+
+  public void setInstitution(Institution institution) {
+    this.institution = institution;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public String getDelimiter() {
+    return delimiter;
+  }
+
+  public void setDelimiter(String delimiter) {
+    this.delimiter = delimiter;
+  }
+
+  public String getCharset() {
+    return charset;
+  }
+
+  public void setCharset(String charset) {
+    this.charset = charset;
+  }
+
+  public String getDateFormat() {
+    return dateFormat;
+  }
+
+  public void setDateFormat(String dateFormat) {
+    this.dateFormat = dateFormat;
+  }
+
+  public ImportAmountFormat getAmountFormat() {
+    return amountFormat;
+  }
+
+  public void setAmountFormat(ImportAmountFormat amountFormat) {
+    this.amountFormat = amountFormat;
+  }
+
+  public String getDateColumn() {
+    return dateColumn;
+  }
+
+  public void setDateColumn(String dateColumn) {
+    this.dateColumn = dateColumn;
+  }
+
+  public String getDescriptionColumn() {
+    return descriptionColumn;
+  }
+
+  public void setDescriptionColumn(String descriptionColumn) {
+    this.descriptionColumn = descriptionColumn;
+  }
+
+  public String getAmountColumn() {
+    return amountColumn;
+  }
+
+  public void setAmountColumn(String amountColumn) {
+    this.amountColumn = amountColumn;
+  }
+
+  public String getCategoryColumn() {
+    return categoryColumn;
+  }
+
+  public void setCategoryColumn(String categoryColumn) {
+    this.categoryColumn = categoryColumn;
+  }
+
+  public String getSubcategoryColumn() {
+    return subcategoryColumn;
+  }
+
+  public void setSubcategoryColumn(String subcategoryColumn) {
+    this.subcategoryColumn = subcategoryColumn;
+  }
+
+  public String getPaymentMethodColumn() {
+    return paymentMethodColumn;
+  }
+
+  public void setPaymentMethodColumn(String paymentMethodColumn) {
+    this.paymentMethodColumn = paymentMethodColumn;
+  }
+
+  public String getAccountColumn() {
+    return accountColumn;
+  }
+
+  public void setAccountColumn(String accountColumn) {
+    this.accountColumn = accountColumn;
+  }
+
+  public String getCardColumn() {
+    return cardColumn;
+  }
+
+  public void setCardColumn(String cardColumn) {
+    this.cardColumn = cardColumn;
+  }
+
+  public boolean isActive() {
+    return isActive;
+  }
+
+  public void setActive(boolean active) {
+    isActive = active;
+  }
+
+  public OffsetDateTime getCreatedAt() {
+    return createdAt;
+  }
+
+  public OffsetDateTime getUpdatedAt() {
+    return updatedAt;
+  }
+
+  public void setUpdatedAt(OffsetDateTime updatedAt) {
+    this.updatedAt = updatedAt;
+  }
+}
@@ -0,0 +1,79 @@
+package com.moneta.importer;
+
+import com.moneta.config.UserPrincipal;
+import com.moneta.importer.ImportDtos.ImportProfileRequest;
+import com.moneta.importer.ImportDtos.ImportProfileResponse;
+import jakarta.validation.Valid;
+import java.util.List;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/import/profiles")
+public class ImportProfileController {
+  private final ImportProfileService importProfileService;
+
+  public ImportProfileController(ImportProfileService importProfileService) {
+    this.importProfileService = importProfileService;
+  }
+
+  @GetMapping
+  public List<ImportProfileResponse> list(@AuthenticationPrincipal UserPrincipal principal) {
+    return importProfileService.list(principal.getId()).stream()
+      .map(this::toResponse)
+      .toList();
+  }
+
+  @PostMapping
+  public ImportProfileResponse create(
+    @AuthenticationPrincipal UserPrincipal principal,
+    @Valid @RequestBody ImportProfileRequest request
+  ) {
+    return toResponse(importProfileService.create(principal.getId(), request));
+  }
+
+  @PatchMapping("/{id}")
+  public ImportProfileResponse update(
+    @AuthenticationPrincipal UserPrincipal principal,
+    @PathVariable Long id,
+    @Valid @RequestBody ImportProfileRequest request
+  ) {
+    return toResponse(importProfileService.update(principal.getId(), id, request));
+  }
+
+  @DeleteMapping("/{id}")
+  public void delete(
+    @AuthenticationPrincipal UserPrincipal principal,
+    @PathVariable Long id
+  ) {
+    importProfileService.softDelete(principal.getId(), id);
+  }
+
+  private ImportProfileResponse toResponse(ImportProfile profile) {
+    return new ImportProfileResponse(
+      profile.getId(),
+      profile.getInstitution().getId(),
+      profile.getName(),
+      profile.getDelimiter(),
+      profile.getCharset(),
+      profile.getDateFormat(),
+      profile.getAmountFormat(),
+      profile.getDateColumn(),
+      profile.getDescriptionColumn(),
+      profile.getAmountColumn(),
+      profile.getCategoryColumn(),
+      profile.getSubcategoryColumn(),
+      profile.getPaymentMethodColumn(),
+      profile.getAccountColumn(),
+      profile.getCardColumn(),
+      profile.isActive()
+    );
+  }
+}
@@ -0,0 +1,10 @@
+package com.moneta.importer;
+
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ImportProfileRepository extends JpaRepository<ImportProfile, Long> {
+  List<ImportProfile> findAllByUserIdAndIsActiveTrueOrderByNameAsc(Long userId);
+  Optional<ImportProfile> findByIdAndUserIdAndIsActiveTrue(Long id, Long userId);
+}
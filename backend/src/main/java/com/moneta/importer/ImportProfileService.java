@@ -0,0 +1,115 @@
+package com.moneta.importer;
+
+import com.moneta.auth.User;
+import com.moneta.auth.UserRepository;
+import com.moneta.importer.CsvParserService.CsvProfile;
+import com.moneta.importer.ImportDtos.ImportProfileRequest;
+import com.moneta.institution.Institution;
+import com.moneta.institution.InstitutionRepository;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Manages the per-institution import profiles and hands out their compiled parsers. A profile
+ * is compiled the first time a file is read with it and reused until the profile changes; the
+ * cache entry carries the {@code updatedAt} it was compiled from, so an edit made on another
+ * node is picked up on the next import here as well.
+ */
+@Service
+public class ImportProfileService {
+  private final ImportProfileRepository importProfileRepository;
+  private final InstitutionRepository institutionRepository;
+  private final UserRepository userRepository;
+  private final CsvParserService csvParserService;
+  private final Map<Long, CompiledProfile> compiled = new ConcurrentHashMap<>();
+
+  public ImportProfileService(
+    ImportProfileRepository importProfileRepository,
+    InstitutionRepository institutionRepository,
+    UserRepository userRepository,
+    CsvParserService csvParserService
+  ) {
+    this.importProfileRepository = importProfileRepository;
+    this.institutionRepository = institutionRepository;
+    this.userRepository = userRepository;
+    this.csvParserService = csvParserService;
+  }
+
+  public List<ImportProfile> list(Long userId) {
+    return importProfileRepository.findAllByUserIdAndIsActiveTrueOrderByNameAsc(userId);
+  }
+
+  public ImportProfile get(Long userId, Long id) {
+    return importProfileRepository.findByIdAndUserIdAndIsActiveTrue(id, userId)
+      .orElseThrow(() -> new IllegalArgumentException("perfil de importação não encontrado"));
+  }
+
+  @Transactional
+  public ImportProfile create(Long userId, ImportProfileRequest request) {
+    User user = userRepository.findById(userId)
+      .orElseThrow(() -> new IllegalArgumentException("usuário não encontrado"));
+    ImportProfile profile = new ImportProfile();
+    profile.setUser(user);
+    apply(userId, profile, request);
+    return importProfileRepository.save(profile);
+  }
+
+  @Transactional
+  public ImportProfile update(Long userId, Long id, ImportProfileRequest request) {
+    ImportProfile profile = get(userId, id);
+    apply(userId, profile, request);
+    profile.setUpdatedAt(OffsetDateTime.now());
+    return importProfileRepository.save(profile);
+  }
+
+  @Transactional
+  public void softDelete(Long userId, Long id) {
+    ImportProfile profile = get(userId, id);
+    profile.setActive(false);
+    profile.setUpdatedAt(OffsetDateTime.now());
+    importProfileRepository.save(profile);
+    compiled.remove(id);
+  }
+
+  /** The parser for {@code profile}, or the default layout when the batch has none. */
+  public CsvProfile parserFor(ImportProfile profile) {
+    if (profile == null) {
+      return CsvProfile.DEFAULT;
+    }
+    CompiledProfile cached = compiled.get(profile.getId());
+    if (cached != null && cached.updatedAt().equals(profile.getUpdatedAt())) {
+      return cached.parser();
+    }
+    CsvProfile parser = csvParserService.compile(profile);
+    compiled.put(profile.getId(), new CompiledProfile(profile.getUpdatedAt(), parser));
+    return parser;
+  }
+
+  private void apply(Long userId, ImportProfile profile, ImportProfileRequest request) {
+    Institution institution = institutionRepository.findByIdAndUserId(request.institutionId(), userId)
+      .filter(Institution::isActive)
+      .orElseThrow(() -> new IllegalArgumentException("instituição não encontrada"));
+    profile.setInstitution(institution);
+    profile.setName(request.name());
+    profile.setDelimiter(request.delimiter() == null ? "," : request.delimiter());
+    profile.setCharset(request.charset() == null ? "UTF-8" : request.charset());
+    profile.setDateFormat(request.dateFormat() == null ? "yyyy-MM-dd" : request.dateFormat());
+    profile.setAmountFormat(request.amountFormat() == null ? ImportAmountFormat.DOT_DECIMAL : request.amountFormat());
+    profile.setDateColumn(request.dateColumn());
+    profile.setDescriptionColumn(request.descriptionColumn());
+    profile.setAmountColumn(request.amountColumn());
+    profile.setCategoryColumn(request.categoryColumn());
+    profile.setSubcategoryColumn(request.subcategoryColumn());
+    profile.setPaymentMethodColumn(request.paymentMethodColumn());
+    profile.setAccountColumn(request.accountColumn());
+    profile.setCardColumn(request.cardColumn());
+    // Rejects an unusable delimiter, charset or date pattern before it is saved
+    csvParserService.compile(profile);
+  }
+
+  private record CompiledProfile(OffsetDateTime updatedAt, CsvProfile parser) {}
+}
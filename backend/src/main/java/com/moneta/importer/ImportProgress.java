@@ -0,0 +1,96 @@
+package com.moneta.importer;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters for one import job. Written by the worker thread staging the batch and read
+ * concurrently by the progress endpoint, so every field is either atomic or volatile.
+ */
+public class ImportProgress {
+  private final Long userId;
+  private final Long batchId;
+  private final AtomicLong rowsParsed = new AtomicLong();
+  private final AtomicLong rowsResolved = new AtomicLong();
+  private final AtomicLong rowsHashed = new AtomicLong();
+  private volatile boolean cancelRequested;
+  private volatile ImportBatchStatus status = ImportBatchStatus.UPLOADED;
+  private volatile String errorMessage;
+  private volatile OffsetDateTime startedAt;
+  private volatile OffsetDateTime finishedAt;
+
+  public ImportProgress(Long userId, Long batchId) {
+    this.userId = userId;
+    this.batchId = batchId;
+  }
+
+  public void rowParsed() {
+    rowsParsed.incrementAndGet();
+  }
+
+  public void rowResolved() {
+    rowsResolved.incrementAndGet();
+  }
+
+  public void rowHashed() {
+    rowsHashed.incrementAndGet();
+  }
+
+  public void requestCancel() {
+    cancelRequested = true;
+  }
+
+  public void start() {
+    startedAt = OffsetDateTime.now();
+  }
+
+  public void finish(ImportBatchStatus status, String errorMessage) {
+    this.errorMessage = errorMessage;
+    this.status = status;
+    this.finishedAt = OffsetDateTime.now();
+  }
+
+  public boolean isFinished() {
+    return finishedAt != null;
+  }
+
+  public Long getUserId() {
+    return userId;
+  }
+
+  public Long getBatchId() {
+    return batchId;
+  }
+
+  public long getRowsParsed() {
+    return rowsParsed.get();
+  }
+
+  public long getRowsResolved() {
+    return rowsResolved.get();
+  }
+
+  public long getRowsHashed() {
+    return rowsHashed.get();
+  }
+
+  public boolean isCancelRequested() {
+    return cancelRequested;
+  }
+
+  public ImportBatchStatus getStatus() {
+    return status;
+  }
+
+  public String getErrorMessage() {
+    return errorMessage;
+  }
+
+  public OffsetDateTime getStartedAt() {
+    return startedAt;
+  }
+
+  public OffsetDateTime getFinishedAt() {
+    return finishedAt;
+  }
+}
@@ -0,0 +1,94 @@
+package com.moneta.importer;
+
+import com.moneta.account.Account;
+import com.moneta.card.Card;
+import com.moneta.category.Category;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Resolves the category, account and card names of one import batch from maps loaded once
+ * up front, instead of one repository query per row. Lookups follow the same rules as the
+ * repository queries they replace: names are case-insensitive, accounts by id may be
+ * inactive, accounts and cards by name and cards by id must be active.
+ *
+ * <p>Not thread-safe; one instance serves one batch.
+ */
+public class ImportReferenceResolver {
+  private final Map<String, Long> categoryIdsByName = new HashMap<>();
+  private final Map<Long, Long> accountIds = new HashMap<>();
+  private final Map<String, Long> accountIdsByName = new HashMap<>();
+  private final Map<Long, Long> cardIds = new HashMap<>();
+  private final Map<String, Long> cardIdsByName = new HashMap<>();
+  private int hits;
+  private int misses;
+
+  public ImportReferenceResolver(List<Category> categories, List<Account> accounts, List<Card> activeCards) {
+    // Lists come ordered by id, so the oldest entry wins when two share a name
+    for (Category category : categories) {
+      categoryIdsByName.putIfAbsent(normalize(category.getName()), category.getId());
+    }
+    for (Account account : accounts) {
+      accountIds.put(account.getId(), account.getId());
+      if (account.isActive()) {
+        accountIdsByName.putIfAbsent(normalize(account.getName()), account.getId());
+      }
+    }
+    for (Card card : activeCards) {
+      cardIds.put(card.getId(), card.getId());
+      cardIdsByName.putIfAbsent(normalize(card.getName()), card.getId());
+    }
+  }
+
+  public Optional<Long> resolveCategory(String name) {
+    if (name == null || name.isBlank()) {
+      return Optional.empty();
+    }
+    return record(categoryIdsByName.get(normalize(name.trim())));
+  }
+
+  public Optional<Long> resolveAccount(String nameOrId) {
+    return resolve(nameOrId, accountIds, accountIdsByName);
+  }
+
+  public Optional<Long> resolveCard(String nameOrId) {
+    return resolve(nameOrId, cardIds, cardIdsByName);
+  }
+
+  public int getHits() {
+    return hits;
+  }
+
+  public int getMisses() {
+    return misses;
+  }
+
+  private Optional<Long> resolve(String nameOrId, Map<Long, Long> byId, Map<String, Long> byName) {
+    if (nameOrId == null || nameOrId.isBlank()) {
+      return Optional.empty();
+    }
+    String value = nameOrId.trim();
+    // Try to resolve by ID first
+    try {
+      return record(byId.get(Long.parseLong(value)));
+    } catch (NumberFormatException e) {
+      return record(byName.get(normalize(value)));
+    }
+  }
+
+  private Optional<Long> record(Long id) {
+    if (id == null) {
+      misses++;
+      return Optional.empty();
+    }
+    hits++;
+    return Optional.of(id);
+  }
+
+  private static String normalize(String name) {
+    return name.toLowerCase(Locale.ROOT);
+  }
+}
@@ -2,8 +2,11 @@ package com.moneta.importer;
 
 import com.moneta.auth.User;
 import com.moneta.card.PaymentType;
+import com.moneta.txn.Fingerprint;
+import com.moneta.txn.FingerprintConverter;
 import com.moneta.txn.TxnDirection;
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
@@ -38,6 +41,13 @@ public class ImportRow {
   @Column(name = "raw_line")
   private String rawLine;
 
+  /** Character range of the row's record in the batch's stored source; see ImportSourceStore. */
+  @Column(name = "raw_offset")
+  private Long rawOffset;
+
+  @Column(name = "raw_length")
+  private Integer rawLength;
+
   @Column(name = "parsed_date")
   private LocalDate parsedDate;
 
@@ -73,8 +83,9 @@ public class ImportRow {
   @Column(name = "resolved_card_id")
   private Long resolvedCardId;
 
+  @Convert(converter = FingerprintConverter.class)
   @Column
-  private String hash;
+  private Fingerprint hash;
 
   @Enumerated(EnumType.STRING)
   @Column(nullable = false)
@@ -86,6 +97,10 @@ public class ImportRow {
   @Column(name = "created_txn_id")
   private Long createdTxnId;
 
+  /** Whether the row is in the possibly UNLOGGED import_row_staged partition; see V18. */
+  @Column(nullable = false)
+  private boolean staged = true;
+
   @Column(name = "created_at", nullable = false)
   private OffsetDateTime createdAt = OffsetDateTime.now();
 
@@ -128,6 +143,22 @@ public class ImportRow {
     this.rawLine = rawLine;
   }
 
+  public Long getRawOffset() {
+    return rawOffset;
+  }
+
+  public void setRawOffset(Long rawOffset) {
+    this.rawOffset = rawOffset;
+  }
+
+  public Integer getRawLength() {
+    return rawLength;
+  }
+
+  public void setRawLength(Integer rawLength) {
+    this.rawLength = rawLength;
+  }
+
   public LocalDate getParsedDate() {
     return parsedDate;
   }
@@ -216,11 +247,11 @@ public class ImportRow {
     this.resolvedCardId = resolvedCardId;
   }
 
-  public String getHash() {
+  public Fingerprint getHash() {
     return hash;
   }
 
-  public void setHash(String hash) {
+  public void setHash(Fingerprint hash) {
     this.hash = hash;
   }
 
@@ -248,6 +279,14 @@ public class ImportRow {
     this.createdTxnId = createdTxnId;
   }
 
+  public boolean isStaged() {
+    return staged;
+  }
+
+  public void setStaged(boolean staged) {
+    this.staged = staged;
+  }
+
   public OffsetDateTime getCreatedAt() {
     return createdAt;
   }
@@ -1,14 +1,21 @@
 package com.moneta.importer;
 
+import com.moneta.txn.Fingerprint;
+import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface ImportRowRepository extends JpaRepository<ImportRow, Long> {
-  Page<ImportRow> findByBatchIdAndUserId(Long batchId, Long userId, Pageable pageable);
-  Page<ImportRow> findByBatchIdAndUserIdAndStatus(
+  Slice<ImportRow> findByBatchIdAndUserIdOrderByRowIndexAsc(Long batchId, Long userId, Pageable pageable);
+  Slice<ImportRow> findByBatchIdAndUserIdAndStatusOrderByRowIndexAsc(
     Long batchId,
     Long userId,
     ImportRowStatus status,
@@ -17,8 +24,126 @@ public interface ImportRowRepository extends JpaRepository<ImportRow, Long> {
 
   List<ImportRow> findByBatchIdAndUserId(Long batchId, Long userId);
   List<ImportRow> findByBatchIdAndUserIdAndStatus(Long batchId, Long userId, ImportRowStatus status);
+  List<ImportRow> findByBatchIdAndUserIdAndRowIndexGreaterThanOrderByRowIndexAsc(
+    Long batchId,
+    Long userId,
+    int rowIndex,
+    Limit limit
+  );
+  List<ImportRow> findByBatchIdAndUserIdAndStatusAndRowIndexGreaterThanOrderByRowIndexAsc(
+    Long batchId,
+    Long userId,
+    ImportRowStatus status,
+    int rowIndex,
+    Limit limit
+  );
 
   long countByBatchIdAndUserId(Long batchId, Long userId);
-  long countByBatchIdAndUserIdAndStatus(Long batchId, Long userId, ImportRowStatus status);
+  boolean existsByBatchIdAndUserIdAndStatus(Long batchId, Long userId, ImportRowStatus status);
   Optional<ImportRow> findByIdAndUserId(Long id, Long userId);
+
+  @Query("""
+    select r.status as status, count(r) as rowCount
+    from ImportRow r
+    where r.batch.id = :batchId
+      and r.user.id = :userId
+    group by r.status
+  """)
+  List<StatusCount> countByStatus(@Param("batchId") Long batchId, @Param("userId") Long userId);
+
+  @Query("""
+    select r.hash
+    from ImportRow r
+    where r.user.id = :userId
+      and r.batch.id = :batchId
+      and r.hash in :hashes
+  """)
+  List<Fingerprint> findHashesByUserIdAndBatchIdAndHashIn(
+    @Param("userId") Long userId,
+    @Param("batchId") Long batchId,
+    @Param("hashes") Collection<Fingerprint> hashes
+  );
+
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("""
+    update ImportRow r
+    set r.status = :status,
+      r.errorMessage = :errorMessage,
+      r.hash = null,
+      r.updatedAt = :updatedAt
+    where r.id in :ids
+  """)
+  int updateStatus(
+    @Param("ids") Collection<Long> ids,
+    @Param("status") ImportRowStatus status,
+    @Param("errorMessage") String errorMessage,
+    @Param("updatedAt") OffsetDateTime updatedAt
+  );
+
+  /**
+   * Marks the given rows as COMMITTED and links them to the transactions that point back at
+   * them, in one statement per call, after a bulk insert.
+   */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query(value = """
+    update import_row r
+    set created_txn_id = t.id,
+      status = 'COMMITTED',
+      hash = t.fingerprint,
+      error_message = null,
+      updated_at = now()
+    from txn t
+    where r.id in (:ids)
+      and t.import_row_id = r.id
+      and r.created_txn_id is null
+  """, nativeQuery = true)
+  int markCommittedFromTxns(@Param("ids") Collection<Long> ids);
+
+  /**
+   * Moves the rows of a batch whose row_index is in ({@code afterRowIndex}, {@code toRowIndex}]
+   * out of the staged partition into import_row_kept, before any transaction is linked to them.
+   * A chunked commit moves only its chunk's range, in the chunk's transaction, so no statement
+   * rewrites the whole batch; rows already moved are left alone. Until the commit ends the
+   * batch spans both partitions, where the unique indexes of V18 no longer see each other;
+   * nothing inserts rows into a batch past UPLOADED, so no repeat can get in meanwhile.
+   */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query(value = """
+    update import_row
+    set staged = false
+    where batch_id = :batchId
+      and user_id = :userId
+      and row_index > :afterRowIndex
+      and row_index <= :toRowIndex
+      and staged
+  """, nativeQuery = true)
+  int keepRowRange(
+    @Param("batchId") Long batchId,
+    @Param("userId") Long userId,
+    @Param("afterRowIndex") int afterRowIndex,
+    @Param("toRowIndex") int toRowIndex
+  );
+
+  /** Deletes up to {@code limit} rows of a batch, so a large purge runs in bounded transactions. */
+  @Modifying
+  @Query(value = """
+    delete from import_row
+    where id in (
+      select id
+      from import_row
+      where batch_id = :batchId
+        and user_id = :userId
+      limit :limit
+    )
+  """, nativeQuery = true)
+  int deleteChunkByBatchIdAndUserId(
+    @Param("batchId") Long batchId,
+    @Param("userId") Long userId,
+    @Param("limit") int limit
+  );
+
+  interface StatusCount {
+    ImportRowStatus getStatus();
+    long getRowCount();
+  }
 }
@@ -4,51 +4,65 @@ import com.moneta.account.Account;
 import com.moneta.account.AccountRepository;
 import com.moneta.auth.User;
 import com.moneta.auth.UserRepository;
-import com.moneta.card.Card;
 import com.moneta.card.CardRepository;
 import com.moneta.card.PaymentType;
-import com.moneta.category.Category;
 import com.moneta.category.CategoryRepository;
-import com.moneta.importer.CsvParserService.CsvParseResult;
 import com.moneta.importer.CsvParserService.CsvParsedRow;
+import com.moneta.importer.CsvParserService.CsvProfile;
 import com.moneta.importer.ImportDtos.ImportBatchDetailResponse;
 import com.moneta.importer.ImportDtos.ImportBatchResponse;
 import com.moneta.importer.ImportDtos.ImportBatchTotals;
 import com.moneta.importer.ImportDtos.ImportCommitRequest;
 import com.moneta.importer.ImportDtos.ImportCommitResponse;
+import com.moneta.importer.ImportDtos.ImportReferenceStats;
 import com.moneta.importer.ImportDtos.ImportRowResponse;
 import com.moneta.importer.ImportDtos.ImportRowsPageResponse;
+import com.moneta.importer.ImportRowRepository.StatusCount;
 import com.moneta.rule.RuleService;
+import com.moneta.txn.Fingerprint;
 import com.moneta.txn.Txn;
 import com.moneta.txn.TxnCategorizationMode;
-import com.moneta.txn.TxnDirection;
+import com.moneta.txn.TxnBulkWriter;
+import com.moneta.txn.TxnBulkWriter.NewTxn;
+import com.moneta.txn.TxnFingerprintService;
 import com.moneta.txn.TxnRepository;
 import com.moneta.txn.TxnStatus;
 import com.moneta.txn.TxnType;
+import jakarta.persistence.EntityManager;
 import java.io.IOException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.time.LocalDate;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.HexFormat;
+import java.util.Base64;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import org.springframework.data.domain.Page;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 @Service
 public class ImportService {
   private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM");
+  private static final Logger logger = LoggerFactory.getLogger(ImportService.class);
+  private static final int ID_CHUNK_SIZE = 1000;
 
   private final ImportBatchRepository importBatchRepository;
   private final ImportRowRepository importRowRepository;
@@ -57,8 +71,15 @@ public class ImportService {
   private final CardRepository cardRepository;
   private final CategoryRepository categoryRepository;
   private final TxnRepository txnRepository;
-  private final CsvParserService csvParserService;
+  private final TxnFingerprintService txnFingerprintService;
+  private final TxnBulkWriter txnBulkWriter;
+  private final ImportFileReader importFileReader;
+  private final ImportSourceStore importSourceStore;
+  private final ImportProfileService importProfileService;
   private final RuleService ruleService;
+  private final EntityManager entityManager;
+  private final TransactionTemplate transactionTemplate;
+  private final int chunkSize;
 
   public ImportService(
     ImportBatchRepository importBatchRepository,
@@ -68,8 +89,15 @@ public class ImportService {
     CardRepository cardRepository,
     CategoryRepository categoryRepository,
     TxnRepository txnRepository,
-    CsvParserService csvParserService,
-    RuleService ruleService
+    TxnFingerprintService txnFingerprintService,
+    TxnBulkWriter txnBulkWriter,
+    ImportFileReader importFileReader,
+    ImportSourceStore importSourceStore,
+    ImportProfileService importProfileService,
+    RuleService ruleService,
+    EntityManager entityManager,
+    TransactionTemplate transactionTemplate,
+    @Value("${app.import.chunk-size:1000}") int chunkSize
   ) {
     this.importBatchRepository = importBatchRepository;
     this.importRowRepository = importRowRepository;
@@ -78,109 +106,180 @@ public class ImportService {
     this.cardRepository = cardRepository;
     this.categoryRepository = categoryRepository;
     this.txnRepository = txnRepository;
-    this.csvParserService = csvParserService;
+    this.txnFingerprintService = txnFingerprintService;
+    this.txnBulkWriter = txnBulkWriter;
+    this.importFileReader = importFileReader;
+    this.importSourceStore = importSourceStore;
+    this.importProfileService = importProfileService;
     this.ruleService = ruleService;
+    this.entityManager = entityManager;
+    this.transactionTemplate = transactionTemplate;
+    this.chunkSize = chunkSize;
   }
 
-  @Transactional
+  /**
+   * Creates and stages a batch in the calling thread. Kept for callers that want the parsed
+   * batch back directly; HTTP uploads go through {@link ImportJobService} instead.
+   */
   public ImportBatchResponse uploadCsv(Long userId, Long accountId, MultipartFile file) {
+    ImportBatchResponse created = createBatch(userId, accountId, file.getOriginalFilename());
+    try (InputStream inputStream = file.getInputStream()) {
+      return stageUpload(userId, created.batchId(), inputStream, new ImportProgress(userId, created.batchId()));
+    } catch (IOException ex) {
+      throw new IllegalStateException("erro ao ler CSV", ex);
+    }
+  }
+
+  @Transactional
+  public ImportBatchResponse createBatch(Long userId, Long accountId, String filename) {
+    return createBatch(userId, accountId, null, filename);
+  }
+
+  /** Creates a batch whose file will be read with the given import profile, if any. */
+  @Transactional
+  public ImportBatchResponse createBatch(Long userId, Long accountId, Long profileId, String filename) {
     User user = userRepository.findById(userId)
       .orElseThrow(() -> new IllegalArgumentException("usuário não encontrado"));
     Account account = accountRepository.findByIdAndUserId(accountId, userId)
       .orElseThrow(() -> new IllegalArgumentException("conta não encontrada"));
 
-    CsvParseResult parseResult = parseFile(file);
-
     ImportBatch batch = new ImportBatch();
     batch.setUser(user);
     batch.setAccount(account);
-    batch.setFilename(file.getOriginalFilename() == null ? "upload.csv" : file.getOriginalFilename());
-    batch.setStatus(ImportBatchStatus.PARSED);
+    if (profileId != null) {
+      batch.setProfile(importProfileService.get(userId, profileId));
+    }
+    batch.setFilename(filename == null ? "upload.csv" : filename);
+    batch.setStatus(ImportBatchStatus.UPLOADED);
     batch.setUploadedAt(OffsetDateTime.now());
     batch.setUpdatedAt(OffsetDateTime.now());
     importBatchRepository.save(batch);
+    return toBatchResponse(batch);
+  }
 
-    Set<String> existingHashes = buildExistingTxnHashes(userId);
-    Set<String> batchHashes = new HashSet<>();
-
-    List<ImportRow> rows = new ArrayList<>();
-    for (CsvParsedRow parsedRow : parseResult.rows()) {
-      ImportRow row = new ImportRow();
-      row.setBatch(batch);
-      row.setUser(user);
-      row.setRowIndex(parsedRow.rowIndex());
-      row.setRawLine(parsedRow.rawLine());
-      row.setParsedDate(parsedRow.parsedDate());
-      row.setDescription(parsedRow.description());
-      row.setAmountCents(parsedRow.amountCents());
-      row.setDirection(parsedRow.direction());
-      row.setPaymentType(parsedRow.paymentType());
-      row.setParsedAccountName(parsedRow.accountName());
-      row.setParsedCardName(parsedRow.cardName());
-      row.setStatus(parsedRow.status());
-      row.setErrorMessage(parsedRow.errorMessage());
-      row.setUpdatedAt(OffsetDateTime.now());
-
-      if (parsedRow.status() == ImportRowStatus.PARSED) {
-        resolveCategory(userId, parsedRow.categoryName()).ifPresent(row::setResolvedCategoryId);
-        
-        // Resolve account or card based on payment type
-        if (parsedRow.paymentType() == PaymentType.PIX) {
-          // If account name is provided in CSV, try to resolve it
-          // Otherwise, leave resolvedAccountId null to use batch account later
-          if (parsedRow.accountName() != null && !parsedRow.accountName().isBlank()) {
-            Optional<Long> resolvedAccountId = resolveAccount(userId, parsedRow.accountName());
-            if (resolvedAccountId.isPresent()) {
-              row.setResolvedAccountId(resolvedAccountId.get());
-            } else {
-              row.setStatus(ImportRowStatus.ERROR);
-              row.setErrorMessage("conta não encontrada: " + parsedRow.accountName());
-            }
-          }
-          // If no account specified in CSV, resolvedAccountId remains null and batch account will be used
-        } else if (parsedRow.paymentType() == PaymentType.CARD) {
-          Optional<Long> resolvedCardId = resolveCard(userId, parsedRow.cardName());
-          if (resolvedCardId.isPresent()) {
-            row.setResolvedCardId(resolvedCardId.get());
-          } else {
-            row.setStatus(ImportRowStatus.ERROR);
-            row.setErrorMessage("cartão não encontrado: " + parsedRow.cardName());
-          }
-        }
-        
-        if (row.getStatus() == ImportRowStatus.PARSED) {
-          Long accountOrCardId = parsedRow.paymentType() == PaymentType.PIX 
-            ? (row.getResolvedAccountId() != null ? row.getResolvedAccountId() : accountId)
-            : row.getResolvedCardId();
-          String hash = buildHash(
-            userId,
-            parsedRow.paymentType(),
-            accountOrCardId,
-            parsedRow.parsedDate(),
-            parsedRow.amountCents(),
-            parsedRow.direction(),
-            parsedRow.description()
-          );
-          if (existingHashes.contains(hash) || batchHashes.contains(hash)) {
-            row.setStatus(ImportRowStatus.DUPLICATE);
-            row.setErrorMessage("duplicado");
-            row.setHash(null);
-          } else {
-            row.setStatus(ImportRowStatus.READY);
-            row.setHash(hash);
-            batchHashes.add(hash);
-          }
+  /**
+   * Parses {@code inputStream} into the rows of an UPLOADED batch, reporting to
+   * {@code progress} as it goes. Each chunk is staged in its own transaction, so no transaction
+   * spans the whole file. The batch stays UPLOADED until the last chunk is in and only then
+   * becomes PARSED; a cancellation (thrown as {@link CancellationException} between chunks) or a
+   * failure leaves it UPLOADED with the chunks staged so far, for the caller to mark CANCELLED
+   * or FAILED, and {@link ImportJobHeartbeat} fails it if the job dies instead. Such a batch
+   * can only be deleted, which takes its rows with it.
+   */
+  public ImportBatchResponse stageUpload(
+    Long userId,
+    Long batchId,
+    InputStream inputStream,
+    ImportProgress progress
+  ) {
+    return ingest(userId, batchId, inputStream, progress, false);
+  }
+
+  /**
+   * Imports {@code inputStream} straight into transactions in one streaming pass, for trusted
+   * feeds that skip review. Each chunk is resolved, de-duplicated against the user's txns (the
+   * ones written by earlier chunks included) and bulk inserted, with rules applied to what it
+   * created. Only ERROR and DUPLICATE rows are kept as import rows; the batch ends COMMITTED
+   * and stays as the audit record of the import. Like {@link #stageUpload} it writes each chunk
+   * in its own transaction, so a cancellation or failure keeps the transactions of the chunks
+   * already written; importing the file again skips those as duplicates.
+   */
+  public ImportBatchResponse importDirect(
+    Long userId,
+    Long batchId,
+    InputStream inputStream,
+    ImportProgress progress
+  ) {
+    return ingest(userId, batchId, inputStream, progress, true);
+  }
+
+  private ImportBatchResponse ingest(
+    Long userId,
+    Long batchId,
+    InputStream inputStream,
+    ImportProgress progress,
+    boolean direct
+  ) {
+    long started = System.nanoTime();
+    CsvProfile profile = transactionTemplate.execute(status -> {
+      ImportBatch batch = getBatchEntity(userId, batchId);
+      checkUploaded(batch);
+      return importProfileService.parserFor(batch.getProfile());
+    });
+    ImportReferenceResolver resolver = new ImportReferenceResolver(
+      categoryRepository.findAllByUserIdOrderByIdAsc(userId),
+      accountRepository.findAllByUserIdOrderByIdAsc(userId),
+      cardRepository.findAllByUserIdAndIsActiveTrueOrderByIdAsc(userId)
+    );
+    txnFingerprintService.fingerprintPending(userId);
+
+    // Rows are staged in bounded chunks as the parser yields them, so heap use stays flat
+    // regardless of file size. Duplicates across chunks are detected against the rows
+    // already committed for this batch.
+    List<CsvParsedRow> chunk = new ArrayList<>(chunkSize);
+    streamUpload(batchId, inputStream, profile, parsedRow -> {
+      chunk.add(parsedRow);
+      progress.rowParsed();
+      if (chunk.size() >= chunkSize) {
+        if (progress.isCancelRequested()) {
+          throw new CancellationException("importação cancelada");
         }
+        writeChunk(userId, batchId, chunk, resolver, progress, direct);
+        chunk.clear();
       }
-
-      rows.add(row);
+    });
+    if (progress.isCancelRequested()) {
+      throw new CancellationException("importação cancelada");
+    }
+    if (!chunk.isEmpty()) {
+      writeChunk(userId, batchId, chunk, resolver, progress, direct);
     }
 
-    importRowRepository.saveAll(rows);
-    updateTotals(batch, userId);
+    return transactionTemplate.execute(status -> finishStaging(userId, batchId, resolver, direct, started));
+  }
+
+  private ImportBatchResponse finishStaging(
+    Long userId,
+    Long batchId,
+    ImportReferenceResolver resolver,
+    boolean direct,
+    long started
+  ) {
+    ImportBatch batch = getBatchEntityForUpdate(userId, batchId);
+    checkUploaded(batch);
+    batch.setReferenceHits(resolver.getHits());
+    batch.setReferenceMisses(resolver.getMisses());
+    logger.info(
+      "Import batch staged userId={} batchId={} referenceHits={} referenceMisses={}",
+      userId,
+      batchId,
+      resolver.getHits(),
+      resolver.getMisses()
+    );
+    if (direct) {
+      batch.setStatus(ImportBatchStatus.COMMITTED);
+      logCommit(userId, batchId, new CommitOutcome(
+        batch.getTotalRows(),
+        batch.getCommittedRows(),
+        batch.getDuplicateRows()
+      ), started);
+    }
+    saveTotals(batch);
     return toBatchResponse(batch);
   }
 
+  /**
+   * Records how an import job ended when staging did not complete, leaving the batch's rows
+   * and source as far as they got.
+   */
+  @Transactional
+  public void markBatchStatus(Long userId, Long batchId, ImportBatchStatus status) {
+    ImportBatch batch = getBatchEntity(userId, batchId);
+    batch.setStatus(status);
+    batch.setUpdatedAt(OffsetDateTime.now());
+    importBatchRepository.save(batch);
+  }
+
   public List<ImportBatchResponse> listBatches(Long userId) {
     return importBatchRepository.findAllByUserIdOrderByUploadedAtDesc(userId).stream()
       .map(this::toBatchResponse)
@@ -192,38 +291,83 @@ public class ImportService {
     return new ImportBatchDetailResponse(
       batch.getId(),
       batch.getAccount().getId(),
+      batch.getProfile() == null ? null : batch.getProfile().getId(),
       batch.getFilename(),
       batch.getUploadedAt(),
       batch.getStatus(),
-      toTotals(batch)
+      toTotals(batch),
+      new ImportReferenceStats(batch.getReferenceHits(), batch.getReferenceMisses())
     );
   }
 
+  /**
+   * Lists a batch's rows in row order. Following pages are requested with the previous page's
+   * {@code nextCursor}, which resumes after its last row_index on the (batch_id, row_index)
+   * indexes, so a deep page costs the same as the first. Page numbers still work but skip rows
+   * with OFFSET. {@code totalElements} comes from the batch counters, not a count query. The
+   * source line of each row is only read, from the stored upload, when {@code includeRaw}.
+   */
   public ImportRowsPageResponse listRows(
     Long userId,
     Long batchId,
     ImportRowStatus status,
     int page,
-    int size
+    int size,
+    String cursor,
+    boolean includeRaw
   ) {
+    if (size < 1) {
+      throw new IllegalArgumentException("size deve ser maior que zero");
+    }
     ImportBatch batch = getBatchEntity(userId, batchId);
-    PageRequest pageRequest = PageRequest.of(page, size);
-    Page<ImportRow> rows = status == null
-      ? importRowRepository.findByBatchIdAndUserId(batchId, userId, pageRequest)
-      : importRowRepository.findByBatchIdAndUserIdAndStatus(batchId, userId, status, pageRequest);
+    List<ImportRow> rows;
+    boolean hasNext;
+    if (cursor != null || page == 0) {
+      int afterRowIndex = cursor == null ? 0 : decodeRowCursor(cursor);
+      // One extra row tells whether there is a next page without counting
+      Limit limit = Limit.of(size + 1);
+      rows = status == null
+        ? importRowRepository.findByBatchIdAndUserIdAndRowIndexGreaterThanOrderByRowIndexAsc(
+          batchId, userId, afterRowIndex, limit)
+        : importRowRepository.findByBatchIdAndUserIdAndStatusAndRowIndexGreaterThanOrderByRowIndexAsc(
+          batchId, userId, status, afterRowIndex, limit);
+      hasNext = rows.size() > size;
+      if (hasNext) {
+        rows = rows.subList(0, size);
+      }
+    } else {
+      PageRequest pageRequest = PageRequest.of(page, size);
+      Slice<ImportRow> slice = status == null
+        ? importRowRepository.findByBatchIdAndUserIdOrderByRowIndexAsc(batchId, userId, pageRequest)
+        : importRowRepository.findByBatchIdAndUserIdAndStatusOrderByRowIndexAsc(batchId, userId, status, pageRequest);
+      rows = slice.getContent();
+      hasNext = slice.hasNext();
+    }
 
+    Map<Long, String> rawLines = includeRaw ? importSourceStore.readLines(batchId, rows) : Map.of();
+    ImportBatchTotals totals = toTotals(batch);
     return new ImportRowsPageResponse(
-      rows.stream().map(this::toRowResponse).toList(),
-      rows.getNumber(),
-      rows.getSize(),
-      rows.getTotalElements(),
-      toTotals(batch)
+      rows.stream().map(row -> toRowResponse(row, includeRaw ? rawLine(row, rawLines) : null)).toList(),
+      page,
+      size,
+      countCached(totals, status),
+      totals,
+      hasNext ? encodeRowCursor(rows.get(rows.size() - 1).getRowIndex()) : null
     );
   }
 
-  @Transactional
+  /** Commits every row of the batch in one transaction. */
   public ImportCommitResponse commitBatch(Long userId, Long batchId, ImportCommitRequest request) {
-    ImportBatch batch = getBatchEntity(userId, batchId);
+    txnFingerprintService.fingerprintPending(userId);
+    return transactionTemplate.execute(status -> commitAll(userId, batchId, request));
+  }
+
+  private ImportCommitResponse commitAll(Long userId, Long batchId, ImportCommitRequest request) {
+    long started = System.nanoTime();
+    ImportBatch batch = getBatchEntityForUpdate(userId, batchId);
+    checkCommittable(batch);
+    checkStagedRows(batch, userId);
+    importRowRepository.keepRowRange(batchId, userId, 0, Integer.MAX_VALUE);
 
     boolean applyRulesAfterCommit = request.applyRulesAfterCommit() == null || request.applyRulesAfterCommit();
     boolean skipDuplicates = request.skipDuplicates() == null || request.skipDuplicates();
@@ -232,278 +376,655 @@ public class ImportService {
     List<ImportRow> rowsToCommit = commitOnlyReady
       ? importRowRepository.findByBatchIdAndUserIdAndStatus(batchId, userId, ImportRowStatus.READY)
       : importRowRepository.findByBatchIdAndUserId(batchId, userId);
+    // Rows are only read from here on; every status change goes through bulk statements, so
+    // keeping them managed would just make each later query dirty-check the whole batch.
+    entityManager.clear();
 
-    Set<String> existingHashes = buildExistingTxnHashes(userId);
-    int createdCount = 0;
-    int duplicateCount = 0;
-    List<Txn> createdTxns = new ArrayList<>();
+    CommitOutcome outcome = commitRows(batch, userId, rowsToCommit, skipDuplicates, applyRulesAfterCommit);
+    logCommit(userId, batchId, outcome, started);
+    return finishCommit(batch, userId, outcome);
+  }
 
+  /**
+   * Commits the READY rows of a batch {@code request.chunkSize()} at a time, in row order and
+   * each chunk in its own transaction, so a large batch never holds locks or a persistence
+   * context for the whole run. Until the last chunk the batch stays COMMITTING with the
+   * row_index of the last written row as checkpoint; calling this again after an interruption
+   * resumes after it instead of starting over.
+   */
+  public ImportCommitResponse commitBatchInChunks(Long userId, Long batchId, ImportCommitRequest request) {
+    if (request.chunkSize() == null || request.chunkSize() < 1) {
+      throw new IllegalArgumentException("chunkSize deve ser maior que zero");
+    }
+    long started = System.nanoTime();
+    int commitChunkSize = request.chunkSize();
+    boolean applyRulesAfterCommit = request.applyRulesAfterCommit() == null || request.applyRulesAfterCommit();
+    boolean skipDuplicates = request.skipDuplicates() == null || request.skipDuplicates();
+
+    txnFingerprintService.fingerprintPending(userId);
+    Integer checkpoint = transactionTemplate.execute(status -> beginChunkedCommit(userId, batchId));
+    if (checkpoint != null) {
+      logger.info("Resuming import commit userId={} batchId={} afterRowIndex={}", userId, batchId, checkpoint);
+    }
+
+    int rows = 0;
+    int created = 0;
+    int duplicates = 0;
+    CommitOutcome chunk;
+    do {
+      chunk = transactionTemplate.execute(status ->
+        commitChunk(userId, batchId, commitChunkSize, skipDuplicates, applyRulesAfterCommit)
+      );
+      rows += chunk.rows();
+      created += chunk.created();
+      duplicates += chunk.duplicates();
+    } while (chunk.rows() > 0);
+
+    CommitOutcome outcome = new CommitOutcome(rows, created, duplicates);
+    logCommit(userId, batchId, outcome, started);
+    return transactionTemplate.execute(status ->
+      finishCommit(getBatchEntityForUpdate(userId, batchId), userId, outcome)
+    );
+  }
+
+  /**
+   * Deletes a batch with a single statement; the database removes its rows through the
+   * import_row ON DELETE CASCADE instead of them being loaded and deleted one by one.
+   */
+  @Transactional
+  public void deleteBatch(Long userId, Long batchId) {
+    checkDeletable(getBatchEntity(userId, batchId));
+    importBatchRepository.deleteByIdAndUserId(batchId, userId);
+  }
+
+  /**
+   * Hides a batch behind DELETING before its rows are purged in the background. A DELETING
+   * batch can be neither committed nor staged, only deleted again.
+   */
+  @Transactional
+  public void markDeleting(Long userId, Long batchId) {
+    ImportBatch batch = getBatchEntityForUpdate(userId, batchId);
+    checkDeletable(batch);
+    batch.setStatus(ImportBatchStatus.DELETING);
+    batch.setUpdatedAt(OffsetDateTime.now());
+    importBatchRepository.save(batch);
+  }
+
+  /** Deletes up to {@code limit} rows of a batch in its own transaction; returns how many went. */
+  @Transactional
+  public int purgeRows(Long userId, Long batchId, int limit) {
+    return importRowRepository.deleteChunkByBatchIdAndUserId(batchId, userId, limit);
+  }
+
+  private void checkCommittable(ImportBatch batch) {
+    if (batch.getStatus() == ImportBatchStatus.UPLOADED) {
+      throw new ImportBatchConflictException("batch ainda em processamento");
+    }
+    if (batch.getStatus() == ImportBatchStatus.FAILED
+      || batch.getStatus() == ImportBatchStatus.CANCELLED
+      || batch.getStatus() == ImportBatchStatus.DELETING) {
+      throw new ImportBatchConflictException("batch não pode ser comitado");
+    }
+  }
+
+  /**
+   * import_row_staged may be UNLOGGED, and crash recovery empties an unlogged table. A batch
+   * whose staged rows are gone must be uploaded again rather than committed as if it were empty.
+   * READY rows are always still staged, even when an interrupted chunked commit already moved
+   * the rows before its checkpoint, so their counter tells whether any should be there.
+   */
+  private void checkStagedRows(ImportBatch batch, Long userId) {
+    boolean staged = batch.getStatus() == ImportBatchStatus.PARSED || batch.getStatus() == ImportBatchStatus.COMMITTING;
+    if (staged && batch.getReadyRows() > 0
+      && !importRowRepository.existsByBatchIdAndUserIdAndStatus(batch.getId(), userId, ImportRowStatus.READY)) {
+      throw new IllegalArgumentException("linhas do batch não estão mais disponíveis; envie o arquivo novamente");
+    }
+  }
+
+  private void checkDeletable(ImportBatch batch) {
+    if (batch.getStatus() == ImportBatchStatus.COMMITTED) {
+      throw new ImportBatchConflictException("batch já comitado");
+    }
+    if (batch.getStatus() == ImportBatchStatus.COMMITTING) {
+      throw new ImportBatchConflictException("batch com commit em andamento");
+    }
+  }
+
+  private Integer beginChunkedCommit(Long userId, Long batchId) {
+    ImportBatch batch = getBatchEntityForUpdate(userId, batchId);
+    checkCommittable(batch);
+    checkStagedRows(batch, userId);
+    if (batch.getStatus() == ImportBatchStatus.COMMITTING) {
+      // Reconciles the counters once before resuming, in case the interrupted run was one
+      // that predates them being kept per chunk
+      recountTotals(batch, userId);
+    }
+    batch.setStatus(ImportBatchStatus.COMMITTING);
+    batch.setUpdatedAt(OffsetDateTime.now());
+    importBatchRepository.save(batch);
+    return batch.getCommitCheckpointRowIndex();
+  }
+
+  /**
+   * Commits the next READY rows after the checkpoint and advances it in the same transaction,
+   * so the checkpoint never runs ahead of what was written. The batch row lock keeps two
+   * callers from taking the same chunk. Every row up to the chunk's last one moves into
+   * import_row_kept with it, whatever its status, and the final call moves the rows left after
+   * the last READY one, so a committed batch ends up entirely logged.
+   */
+  private CommitOutcome commitChunk(
+    Long userId,
+    Long batchId,
+    int commitChunkSize,
+    boolean skipDuplicates,
+    boolean applyRulesAfterCommit
+  ) {
+    ImportBatch batch = getBatchEntityForUpdate(userId, batchId);
+    int afterRowIndex = batch.getCommitCheckpointRowIndex() == null ? 0 : batch.getCommitCheckpointRowIndex();
+    List<ImportRow> rows = importRowRepository.findByBatchIdAndUserIdAndStatusAndRowIndexGreaterThanOrderByRowIndexAsc(
+      batchId,
+      userId,
+      ImportRowStatus.READY,
+      afterRowIndex,
+      Limit.of(commitChunkSize)
+    );
+    if (rows.isEmpty()) {
+      importRowRepository.keepRowRange(batchId, userId, afterRowIndex, Integer.MAX_VALUE);
+      return new CommitOutcome(0, 0, 0);
+    }
+    importRowRepository.keepRowRange(batchId, userId, afterRowIndex, rows.get(rows.size() - 1).getRowIndex());
+    entityManager.clear();
+
+    CommitOutcome outcome = commitRows(batch, userId, rows, skipDuplicates, applyRulesAfterCommit);
+    batch.setCommitCheckpointRowIndex(rows.get(rows.size() - 1).getRowIndex());
+    batch.setUpdatedAt(OffsetDateTime.now());
+    importBatchRepository.save(batch);
+    return outcome;
+  }
+
+  private CommitOutcome commitRows(
+    ImportBatch batch,
+    Long userId,
+    List<ImportRow> rowsToCommit,
+    boolean skipDuplicates,
+    boolean applyRulesAfterCommit
+  ) {
+    List<ImportRow> readyRows = new ArrayList<>();
+    List<Fingerprint> readyHashes = new ArrayList<>();
     for (ImportRow row : rowsToCommit) {
       if (row.getStatus() != ImportRowStatus.READY) {
         continue;
       }
-      
-      Long accountOrCardId;
-      if (row.getPaymentType() == PaymentType.PIX) {
-        accountOrCardId = row.getResolvedAccountId() != null 
-          ? row.getResolvedAccountId() 
-          : batch.getAccount().getId();
-      } else {
-        accountOrCardId = row.getResolvedCardId();
-      }
-      
-      String hash = row.getHash();
-      if (hash == null) {
-        hash = buildHash(
-          userId,
-          row.getPaymentType(),
-          accountOrCardId,
-          row.getParsedDate(),
-          row.getAmountCents(),
-          row.getDirection(),
-          row.getDescription()
-        );
+      if (row.getHash() == null) {
+        row.setHash(buildRowHash(batch, userId, row));
       }
+      readyRows.add(row);
+      readyHashes.add(row.getHash());
+    }
+
+    Set<Fingerprint> existingHashes = new HashSet<>(txnFingerprintService.findExisting(userId, readyHashes));
+    List<Long> duplicateRowIds = new ArrayList<>();
+    List<Long> missingCardRowIds = new ArrayList<>();
+    List<Long> committedRowIds = new ArrayList<>();
+    List<NewTxn> newTxns = new ArrayList<>();
+
+    for (ImportRow row : readyRows) {
+      Fingerprint hash = row.getHash();
       if (skipDuplicates && existingHashes.contains(hash)) {
-        row.setStatus(ImportRowStatus.DUPLICATE);
-        row.setErrorMessage("duplicado");
-        row.setHash(null);
-        row.setUpdatedAt(OffsetDateTime.now());
-        duplicateCount++;
+        duplicateRowIds.add(row.getId());
         continue;
       }
-
-      Txn txn = buildTxnFromRow(batch, row);
-      Txn savedTxn = txnRepository.save(txn);
-      row.setCreatedTxnId(savedTxn.getId());
-      row.setStatus(ImportRowStatus.COMMITTED);
-      row.setUpdatedAt(OffsetDateTime.now());
-      row.setHash(hash);
-      createdCount++;
-      createdTxns.add(savedTxn);
+      if (row.getPaymentType() == PaymentType.CARD && row.getResolvedCardId() == null) {
+        // The card was deleted after upload and the FK nulled the resolved id
+        missingCardRowIds.add(row.getId());
+        continue;
+      }
+      newTxns.add(toNewTxn(batch, userId, row));
+      committedRowIds.add(row.getId());
       existingHashes.add(hash);
     }
 
-    importRowRepository.saveAll(rowsToCommit);
+    List<Long> createdTxnIds = txnBulkWriter.insertAll(newTxns);
+    updateRowStatus(duplicateRowIds, ImportRowStatus.DUPLICATE, "duplicado");
+    updateRowStatus(missingCardRowIds, ImportRowStatus.ERROR, "cartão não encontrado");
+    int committedCount = markRowsCommitted(committedRowIds);
+    countRows(batch, ImportRowStatus.READY, -(duplicateRowIds.size() + missingCardRowIds.size() + committedCount));
+    countRows(batch, ImportRowStatus.DUPLICATE, duplicateRowIds.size());
+    countRows(batch, ImportRowStatus.ERROR, missingCardRowIds.size());
+    countRows(batch, ImportRowStatus.COMMITTED, committedCount);
 
-    if (applyRulesAfterCommit && !createdTxns.isEmpty()) {
-      List<Txn> updatedTxns = ruleService.applyRules(userId, createdTxns);
-      for (Txn txn : updatedTxns) {
-        if (txn.getCategorizationMode() != TxnCategorizationMode.MANUAL) {
-          txn.setCategorizationMode(TxnCategorizationMode.RULE);
-        }
-      }
-      txnRepository.saveAll(updatedTxns);
+    if (applyRulesAfterCommit && !createdTxnIds.isEmpty()) {
+      applyRulesToCreatedTxns(userId, createdTxnIds);
     }
+    return new CommitOutcome(readyRows.size(), createdTxnIds.size(), duplicateRowIds.size());
+  }
 
-    updateTotals(batch, userId);
+  private ImportCommitResponse finishCommit(ImportBatch batch, Long userId, CommitOutcome outcome) {
+    batch.setCommitCheckpointRowIndex(null);
+    if (batch.getStatus() == ImportBatchStatus.COMMITTING) {
+      batch.setStatus(ImportBatchStatus.PARSED);
+    }
+    saveTotals(batch);
 
-    int errorCount = (int) importRowRepository.countByBatchIdAndUserIdAndStatus(
-      batchId,
-      userId,
-      ImportRowStatus.ERROR
-    );
-    int updatedCount = createdCount + duplicateCount;
+    int errorCount = batch.getErrorRows();
+    int updatedCount = outcome.created() + outcome.duplicates();
 
     return new ImportCommitResponse(
-      createdCount,
-      duplicateCount,
+      outcome.created(),
+      outcome.duplicates(),
       errorCount,
       updatedCount,
       batch.getStatus()
     );
   }
 
-  @Transactional
-  public void deleteBatch(Long userId, Long batchId) {
-    ImportBatch batch = getBatchEntity(userId, batchId);
-    if (batch.getStatus() == ImportBatchStatus.COMMITTED) {
-      throw new IllegalStateException("batch já comitado");
-    }
-    importRowRepository.deleteAll(importRowRepository.findByBatchIdAndUserId(batchId, userId));
-    importBatchRepository.delete(batch);
+  private void logCommit(Long userId, Long batchId, CommitOutcome outcome, long started) {
+    double seconds = Math.max((System.nanoTime() - started) / 1_000_000_000.0, 1e-9);
+    logger.info(
+      "Import batch committed userId={} batchId={} created={} duplicates={} seconds={} rowsPerSecond={}",
+      userId,
+      batchId,
+      outcome.created(),
+      outcome.duplicates(),
+      String.format(Locale.ROOT, "%.3f", seconds),
+      Math.round(outcome.rows() / seconds)
+    );
   }
 
-  private CsvParseResult parseFile(MultipartFile file) {
-    try {
-      return csvParserService.parse(file.getInputStream());
+  private void streamUpload(
+    Long batchId,
+    InputStream inputStream,
+    CsvProfile profile,
+    Consumer<CsvParsedRow> consumer
+  ) {
+    // The upload text is stored once for the batch; rows only keep their range in it
+    try (Writer source = importSourceStore.open(batchId)) {
+      importFileReader.stream(inputStream, source, profile, consumer);
     } catch (IOException ex) {
       throw new IllegalStateException("erro ao ler CSV", ex);
     }
   }
 
-  private void updateTotals(ImportBatch batch, Long userId) {
-    int totalRows = (int) importRowRepository.countByBatchIdAndUserId(batch.getId(), userId);
-    int errorRows = (int) importRowRepository.countByBatchIdAndUserIdAndStatus(
-      batch.getId(),
-      userId,
-      ImportRowStatus.ERROR
-    );
-    int duplicateRows = (int) importRowRepository.countByBatchIdAndUserIdAndStatus(
-      batch.getId(),
-      userId,
-      ImportRowStatus.DUPLICATE
-    );
-    int readyRows = (int) importRowRepository.countByBatchIdAndUserIdAndStatus(
-      batch.getId(),
-      userId,
-      ImportRowStatus.READY
-    );
-    int committedRows = (int) importRowRepository.countByBatchIdAndUserIdAndStatus(
-      batch.getId(),
-      userId,
-      ImportRowStatus.COMMITTED
-    );
+  /**
+   * Writes one chunk and the batch counters in a transaction of its own. The batch row lock
+   * orders it against anything that changes the batch meanwhile; one that is no longer UPLOADED,
+   * e.g. failed by the heartbeat sweep, stops the job.
+   */
+  private void writeChunk(
+    Long userId,
+    Long batchId,
+    List<CsvParsedRow> parsedRows,
+    ImportReferenceResolver resolver,
+    ImportProgress progress,
+    boolean direct
+  ) {
+    transactionTemplate.executeWithoutResult(status -> {
+      ImportBatch batch = getBatchEntityForUpdate(userId, batchId);
+      checkUploaded(batch);
+      writeChunk(batch, batch.getUser(), batch.getAccount().getId(), parsedRows, resolver, progress, direct);
+    });
+  }
+
+  private void writeChunk(
+    ImportBatch batch,
+    User user,
+    Long accountId,
+    List<CsvParsedRow> parsedRows,
+    ImportReferenceResolver resolver,
+    ImportProgress progress,
+    boolean direct
+  ) {
+    List<ImportRow> rows = new ArrayList<>(parsedRows.size());
+    List<Fingerprint> candidateHashes = new ArrayList<>();
+    for (CsvParsedRow parsedRow : parsedRows) {
+      ImportRow row = buildRow(batch, user, accountId, parsedRow, resolver, progress);
+      if (row.getHash() != null) {
+        candidateHashes.add(row.getHash());
+      }
+      rows.add(row);
+    }
 
-    batch.setTotalRows(totalRows);
-    batch.setErrorRows(errorRows);
-    batch.setDuplicateRows(duplicateRows);
-    batch.setReadyRows(readyRows);
-    batch.setCommittedRows(committedRows);
+    Set<Fingerprint> existingHashes = txnFingerprintService.findExisting(user.getId(), candidateHashes);
+    if (direct) {
+      insertChunk(batch, user.getId(), rows, existingHashes);
+    } else {
+      stageChunk(batch, user.getId(), rows, candidateHashes, existingHashes);
+    }
+  }
+
+  private void stageChunk(
+    ImportBatch batch,
+    Long userId,
+    List<ImportRow> rows,
+    List<Fingerprint> candidateHashes,
+    Set<Fingerprint> existingHashes
+  ) {
+    Set<Fingerprint> stagedHashes = candidateHashes.isEmpty()
+      ? Set.of()
+      : new HashSet<>(importRowRepository.findHashesByUserIdAndBatchIdAndHashIn(
+        userId,
+        batch.getId(),
+        candidateHashes
+      ));
+    Set<Fingerprint> chunkHashes = new HashSet<>();
+    for (ImportRow row : rows) {
+      Fingerprint hash = row.getHash();
+      if (hash == null) {
+        continue;
+      }
+      if (existingHashes.contains(hash) || stagedHashes.contains(hash) || !chunkHashes.add(hash)) {
+        row.setStatus(ImportRowStatus.DUPLICATE);
+        row.setErrorMessage("duplicado");
+        row.setHash(null);
+      } else {
+        row.setStatus(ImportRowStatus.READY);
+      }
+    }
+
+    batch.setTotalRows(batch.getTotalRows() + rows.size());
+    for (ImportRow row : rows) {
+      countRows(batch, row.getStatus(), 1);
+    }
+    importRowRepository.saveAll(rows);
+    entityManager.flush();
+    entityManager.clear();
+  }
+
+  /**
+   * Inserts the new rows of a direct import as txns and keeps only the rejected ones. Txns from
+   * earlier chunks are already in {@code existingHashes}, since those chunks are committed, so
+   * only repeats within the chunk need tracking here.
+   */
+  private void insertChunk(ImportBatch batch, Long userId, List<ImportRow> rows, Set<Fingerprint> existingHashes) {
+    List<ImportRow> rejectedRows = new ArrayList<>();
+    List<NewTxn> newTxns = new ArrayList<>();
+    Set<Fingerprint> chunkHashes = new HashSet<>();
+    for (ImportRow row : rows) {
+      Fingerprint hash = row.getHash();
+      if (hash == null) {
+        rejectedRows.add(row);
+      } else if (existingHashes.contains(hash) || !chunkHashes.add(hash)) {
+        row.setStatus(ImportRowStatus.DUPLICATE);
+        row.setErrorMessage("duplicado");
+        row.setHash(null);
+        rejectedRows.add(row);
+      } else {
+        newTxns.add(toNewTxn(batch, userId, row));
+      }
+    }
+
+    List<Long> createdTxnIds = txnBulkWriter.insertAll(newTxns);
+    batch.setTotalRows(batch.getTotalRows() + rows.size());
+    countRows(batch, ImportRowStatus.COMMITTED, createdTxnIds.size());
+    for (ImportRow row : rejectedRows) {
+      // The batch ends COMMITTED, so these rows are its audit record rather than scratch
+      row.setStaged(false);
+      countRows(batch, row.getStatus(), 1);
+    }
+    importRowRepository.saveAll(rejectedRows);
+    if (!createdTxnIds.isEmpty()) {
+      applyRulesToCreatedTxns(userId, createdTxnIds);
+    }
+    entityManager.flush();
+    entityManager.clear();
+  }
+
+  private ImportRow buildRow(
+    ImportBatch batch,
+    User user,
+    Long accountId,
+    CsvParsedRow parsedRow,
+    ImportReferenceResolver resolver,
+    ImportProgress progress
+  ) {
+    Long userId = user.getId();
+    ImportRow row = new ImportRow();
+    row.setBatch(batch);
+    row.setUser(user);
+    row.setRowIndex(parsedRow.rowIndex());
+    row.setRawOffset(parsedRow.sourceOffset());
+    row.setRawLength(parsedRow.sourceLength());
+    row.setParsedDate(parsedRow.parsedDate());
+    row.setDescription(parsedRow.description());
+    row.setAmountCents(parsedRow.amountCents());
+    row.setDirection(parsedRow.direction());
+    row.setPaymentType(parsedRow.paymentType());
+    row.setParsedAccountName(parsedRow.accountName());
+    row.setParsedCardName(parsedRow.cardName());
+    row.setStatus(parsedRow.status());
+    row.setErrorMessage(parsedRow.errorMessage());
+    row.setUpdatedAt(OffsetDateTime.now());
+
+    if (parsedRow.status() != ImportRowStatus.PARSED) {
+      return row;
+    }
+
+    resolver.resolveCategory(parsedRow.categoryName()).ifPresent(row::setResolvedCategoryId);
+
+    // Resolve account or card based on payment type
+    if (parsedRow.paymentType() == PaymentType.PIX) {
+      // If account name is provided in CSV, try to resolve it
+      // Otherwise, leave resolvedAccountId null to use batch account later
+      if (parsedRow.accountName() != null && !parsedRow.accountName().isBlank()) {
+        Optional<Long> resolvedAccountId = resolver.resolveAccount(parsedRow.accountName());
+        if (resolvedAccountId.isPresent()) {
+          row.setResolvedAccountId(resolvedAccountId.get());
+        } else {
+          row.setStatus(ImportRowStatus.ERROR);
+          row.setErrorMessage("conta não encontrada: " + parsedRow.accountName());
+        }
+      }
+      // If no account specified in CSV, resolvedAccountId remains null and batch account will be used
+    } else if (parsedRow.paymentType() == PaymentType.CARD) {
+      Optional<Long> resolvedCardId = resolver.resolveCard(parsedRow.cardName());
+      if (resolvedCardId.isPresent()) {
+        row.setResolvedCardId(resolvedCardId.get());
+      } else {
+        row.setStatus(ImportRowStatus.ERROR);
+        row.setErrorMessage("cartão não encontrado: " + parsedRow.cardName());
+      }
+    }
+    progress.rowResolved();
+
+    if (row.getStatus() == ImportRowStatus.PARSED) {
+      Long accountOrCardId = parsedRow.paymentType() == PaymentType.PIX
+        ? (row.getResolvedAccountId() != null ? row.getResolvedAccountId() : accountId)
+        : row.getResolvedCardId();
+      // Status stays PARSED until writeChunk has checked the hash for duplicates
+      row.setHash(txnFingerprintService.fingerprinter().fingerprint(
+        userId,
+        parsedRow.paymentType(),
+        accountOrCardId,
+        parsedRow.parsedDate(),
+        parsedRow.amountCents(),
+        parsedRow.direction(),
+        parsedRow.description()
+      ));
+      progress.rowHashed();
+    }
+    return row;
+  }
+
+  /**
+   * Saves the batch counters and moves the batch to PARSED or COMMITTED from them. The counters
+   * are kept in step by staging and commit as rows change status, so nothing is recounted here.
+   */
+  private void saveTotals(ImportBatch batch) {
     batch.setUpdatedAt(OffsetDateTime.now());
     if (batch.getStatus() == ImportBatchStatus.UPLOADED || batch.getStatus() == ImportBatchStatus.PARSED) {
       batch.setStatus(ImportBatchStatus.PARSED);
     }
-    if (totalRows > 0 && committedRows > 0 && readyRows == 0 && committedRows + duplicateRows + errorRows == totalRows) {
+    int totalRows = batch.getTotalRows();
+    int committedRows = batch.getCommittedRows();
+    if (totalRows > 0 && committedRows > 0 && batch.getReadyRows() == 0
+      && committedRows + batch.getDuplicateRows() + batch.getErrorRows() == totalRows) {
       batch.setStatus(ImportBatchStatus.COMMITTED);
     }
 
     importBatchRepository.save(batch);
   }
 
+  /** Rebuilds the batch counters from its rows with one grouped count. */
+  private void recountTotals(ImportBatch batch, Long userId) {
+    batch.setTotalRows(0);
+    batch.setErrorRows(0);
+    batch.setDuplicateRows(0);
+    batch.setReadyRows(0);
+    batch.setCommittedRows(0);
+    for (StatusCount count : importRowRepository.countByStatus(batch.getId(), userId)) {
+      batch.setTotalRows(batch.getTotalRows() + (int) count.getRowCount());
+      countRows(batch, count.getStatus(), (int) count.getRowCount());
+    }
+  }
+
+  private void countRows(ImportBatch batch, ImportRowStatus status, int delta) {
+    switch (status) {
+      case ERROR -> batch.setErrorRows(batch.getErrorRows() + delta);
+      case DUPLICATE -> batch.setDuplicateRows(batch.getDuplicateRows() + delta);
+      case READY -> batch.setReadyRows(batch.getReadyRows() + delta);
+      case COMMITTED -> batch.setCommittedRows(batch.getCommittedRows() + delta);
+      default -> {
+        // PARSED rows only exist mid-staging and are not part of the totals
+      }
+    }
+  }
+
+  private void checkUploaded(ImportBatch batch) {
+    if (batch.getStatus() != ImportBatchStatus.UPLOADED) {
+      throw new IllegalStateException("batch já processado");
+    }
+  }
+
   private ImportBatch getBatchEntity(Long userId, Long batchId) {
     return importBatchRepository.findByIdAndUserId(batchId, userId)
       .orElseThrow(() -> new IllegalArgumentException("batch não encontrado"));
   }
 
-  private Optional<Long> resolveCategory(Long userId, String name) {
-    if (name == null || name.isBlank()) {
-      return Optional.empty();
+  private ImportBatch getBatchEntityForUpdate(Long userId, Long batchId) {
+    return importBatchRepository.findByIdAndUserIdForUpdate(batchId, userId)
+      .orElseThrow(() -> new IllegalArgumentException("batch não encontrado"));
+  }
+
+  private Fingerprint buildRowHash(ImportBatch batch, Long userId, ImportRow row) {
+    Long accountOrCardId;
+    if (row.getPaymentType() == PaymentType.PIX) {
+      accountOrCardId = row.getResolvedAccountId() != null
+        ? row.getResolvedAccountId()
+        : batch.getAccount().getId();
+    } else {
+      accountOrCardId = row.getResolvedCardId();
     }
-    return categoryRepository.findByUserIdAndNameIgnoreCase(userId, name.trim())
-      .map(Category::getId);
+    return txnFingerprintService.fingerprinter().fingerprint(
+      userId,
+      row.getPaymentType(),
+      accountOrCardId,
+      row.getParsedDate(),
+      row.getAmountCents(),
+      row.getDirection(),
+      row.getDescription()
+    );
   }
 
-  private Optional<Long> resolveAccount(Long userId, String name) {
-    if (name == null || name.isBlank()) {
-      return Optional.empty();
+  private NewTxn toNewTxn(ImportBatch batch, Long userId, ImportRow row) {
+    Long accountId = null;
+    Long cardId = null;
+    if (row.getPaymentType() == PaymentType.PIX) {
+      accountId = row.getResolvedAccountId() != null
+        ? row.getResolvedAccountId()
+        : batch.getAccount().getId();
+    } else if (row.getPaymentType() == PaymentType.CARD) {
+      cardId = row.getResolvedCardId();
     }
-    // Try to resolve by ID first
-    try {
-      Long id = Long.parseLong(name.trim());
-      return accountRepository.findByIdAndUserId(id, userId).map(Account::getId);
-    } catch (NumberFormatException e) {
-      // Not an ID, try by name
-      return accountRepository.findByUserIdAndNameIgnoreCaseAndIsActiveTrue(userId, name.trim())
-        .map(Account::getId);
+    return new NewTxn(
+      userId,
+      accountId,
+      cardId,
+      row.getPaymentType(),
+      row.getAmountCents(),
+      row.getDirection(),
+      row.getDescription(),
+      row.getParsedDate().atStartOfDay().atOffset(ZoneOffset.UTC),
+      row.getParsedDate().format(MONTH_FORMATTER),
+      TxnStatus.POSTED,
+      TxnType.NORMAL,
+      row.getResolvedCategoryId(),
+      row.getResolvedSubcategoryId(),
+      null,
+      TxnCategorizationMode.IMPORT,
+      batch.getId(),
+      row.getId(),
+      row.getHash()
+    );
+  }
+
+  private int markRowsCommitted(List<Long> rowIds) {
+    int committed = 0;
+    for (int start = 0; start < rowIds.size(); start += ID_CHUNK_SIZE) {
+      committed += importRowRepository.markCommittedFromTxns(
+        rowIds.subList(start, Math.min(start + ID_CHUNK_SIZE, rowIds.size()))
+      );
     }
+    return committed;
   }
 
-  private Optional<Long> resolveCard(Long userId, String name) {
-    if (name == null || name.isBlank()) {
-      return Optional.empty();
+  private void updateRowStatus(List<Long> rowIds, ImportRowStatus status, String errorMessage) {
+    for (int start = 0; start < rowIds.size(); start += ID_CHUNK_SIZE) {
+      List<Long> chunk = rowIds.subList(start, Math.min(start + ID_CHUNK_SIZE, rowIds.size()));
+      importRowRepository.updateStatus(chunk, status, errorMessage, OffsetDateTime.now());
     }
-    // Try to resolve by ID first
-    try {
-      Long id = Long.parseLong(name.trim());
-      return cardRepository.findByIdAndUserIdAndIsActiveTrue(id, userId).map(Card::getId);
-    } catch (NumberFormatException e) {
-      // Not an ID, try by name
-      return cardRepository.findByUserIdAndNameIgnoreCaseAndIsActiveTrue(userId, name.trim())
-        .map(Card::getId);
-    }
-  }
-
-  private Set<String> buildExistingTxnHashes(Long userId) {
-    List<Txn> txns = txnRepository.findAllByUserIdAndIsActiveTrue(userId);
-    Set<String> hashes = new HashSet<>();
-    for (Txn txn : txns) {
-      LocalDate date = txn.getOccurredAt().toLocalDate();
-      Long accountOrCardId = txn.getPaymentType() == PaymentType.PIX 
-        ? (txn.getAccount() != null ? txn.getAccount().getId() : null)
-        : (txn.getCard() != null ? txn.getCard().getId() : null);
-      if (accountOrCardId != null) {
-        hashes.add(buildHash(
-          userId,
-          txn.getPaymentType(),
-          accountOrCardId,
-          date,
-          txn.getAmountCents(),
-          txn.getDirection(),
-          txn.getDescription()
-        ));
+  }
+
+  private void applyRulesToCreatedTxns(Long userId, List<Long> txnIds) {
+    for (int start = 0; start < txnIds.size(); start += ID_CHUNK_SIZE) {
+      List<Long> chunk = txnIds.subList(start, Math.min(start + ID_CHUNK_SIZE, txnIds.size()));
+      List<Txn> updatedTxns = ruleService.applyRules(userId, txnRepository.findAllById(chunk));
+      for (Txn txn : updatedTxns) {
+        if (txn.getCategorizationMode() != TxnCategorizationMode.MANUAL) {
+          txn.setCategorizationMode(TxnCategorizationMode.RULE);
+        }
       }
+      txnRepository.saveAll(updatedTxns);
     }
-    return hashes;
   }
 
-  private String buildHash(
-    Long userId,
-    PaymentType paymentType,
-    Long accountOrCardId,
-    LocalDate date,
-    Long amountCents,
-    TxnDirection direction,
-    String description
-  ) {
-    String normalizedDescription = normalizeDescription(description);
-    String input = userId + "|" + paymentType + "|" + accountOrCardId + "|" + date + "|" + amountCents + "|" + direction + "|"
-      + normalizedDescription;
-    try {
-      MessageDigest digest = MessageDigest.getInstance("SHA-256");
-      byte[] hash = digest.digest(input.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-      return HexFormat.of().formatHex(hash);
-    } catch (NoSuchAlgorithmException ex) {
-      throw new IllegalStateException("hash algorithm missing", ex);
+  /** What committing a set of rows produced: READY rows looked at, txns created, duplicates. */
+  private record CommitOutcome(int rows, int created, int duplicates) {}
+
+  private long countCached(ImportBatchTotals totals, ImportRowStatus status) {
+    if (status == null) {
+      return totals.totalRows();
     }
+    return switch (status) {
+      case ERROR -> totals.errorRows();
+      case DUPLICATE -> totals.duplicateRows();
+      case READY -> totals.readyRows();
+      case COMMITTED -> totals.committedRows();
+      default -> 0;
+    };
   }
 
-  private String normalizeDescription(String description) {
-    if (description == null) {
-      return "";
-    }
-    return description.trim().replaceAll("\\s+", " ").toUpperCase(Locale.ROOT);
+  private String encodeRowCursor(int rowIndex) {
+    return Base64.getUrlEncoder().withoutPadding()
+      .encodeToString(("r" + rowIndex).getBytes(StandardCharsets.US_ASCII));
   }
 
-  private Txn buildTxnFromRow(ImportBatch batch, ImportRow row) {
-    Txn txn = new Txn();
-    txn.setUser(batch.getUser());
-    txn.setPaymentType(row.getPaymentType());
-    
-    if (row.getPaymentType() == PaymentType.PIX) {
-      Long accountId = row.getResolvedAccountId() != null 
-        ? row.getResolvedAccountId() 
-        : batch.getAccount().getId();
-      Account account = accountRepository.findById(accountId)
-        .orElseThrow(() -> new IllegalStateException("conta não encontrada"));
-      txn.setAccount(account);
-      txn.setCard(null);
-    } else if (row.getPaymentType() == PaymentType.CARD) {
-      Card card = cardRepository.findById(row.getResolvedCardId())
-        .orElseThrow(() -> new IllegalStateException("cartão não encontrado"));
-      txn.setCard(card);
-      txn.setAccount(null);
-    }
-    
-    txn.setAmountCents(row.getAmountCents());
-    txn.setDirection(row.getDirection());
-    txn.setDescription(row.getDescription());
-    txn.setOccurredAt(row.getParsedDate().atStartOfDay().atOffset(ZoneOffset.UTC));
-    txn.setMonthRef(row.getParsedDate().format(MONTH_FORMATTER));
-    txn.setStatus(TxnStatus.POSTED);
-    txn.setTxnType(TxnType.NORMAL);
-    txn.setCategoryId(row.getResolvedCategoryId());
-    txn.setSubcategoryId(row.getResolvedSubcategoryId());
-    txn.setImportBatchId(batch.getId());
-    txn.setImportRowId(row.getId());
-    txn.setCategorizationMode(TxnCategorizationMode.IMPORT);
-    return txn;
+  private int decodeRowCursor(String cursor) {
+    try {
+      String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+      if (decoded.startsWith("r")) {
+        return Integer.parseInt(decoded.substring(1));
+      }
+    } catch (IllegalArgumentException ex) {
+      // Not Base64 or not a number: rejected below like any other malformed cursor
+    }
+    throw new IllegalArgumentException("cursor inválido");
   }
 
   private ImportBatchResponse toBatchResponse(ImportBatch batch) {
     return new ImportBatchResponse(
       batch.getId(),
       batch.getAccount().getId(),
+      batch.getProfile() == null ? null : batch.getProfile().getId(),
       batch.getFilename(),
       batch.getUploadedAt(),
       batch.getStatus(),
@@ -521,7 +1042,12 @@ public class ImportService {
     );
   }
 
-  private ImportRowResponse toRowResponse(ImportRow row) {
+  private String rawLine(ImportRow row, Map<Long, String> rawLines) {
+    // Rows staged before the source was stored kept their own copy
+    return row.getRawLine() != null ? row.getRawLine() : rawLines.get(row.getId());
+  }
+
+  private ImportRowResponse toRowResponse(ImportRow row, String rawLine) {
     return new ImportRowResponse(
       row.getId(),
       row.getRowIndex(),
@@ -533,7 +1059,8 @@ public class ImportService {
       row.getResolvedSubcategoryId(),
       row.getStatus(),
       row.getErrorMessage(),
-      row.getCreatedTxnId()
+      row.getCreatedTxnId(),
+      rawLine
     );
   }
 }
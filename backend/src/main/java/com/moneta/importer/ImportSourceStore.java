@@ -0,0 +1,212 @@
+package com.moneta.importer;
+
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the decoded text of an upload once per batch, so rows only store the character range
+ * of their record. The text is cut into fixed blocks of {@link #BLOCK_CHARS} characters, each
+ * deflated on its own: a row's block follows from its offset, and reading a page of rows
+ * inflates just the blocks those rows fall in.
+ *
+ * <p>Blocks hold UTF-16BE rather than UTF-8 so that a block boundary may split a surrogate pair
+ * without losing it; deflate takes out most of the extra width on Latin text.
+ */
+@Component
+public class ImportSourceStore {
+  static final int BLOCK_CHARS = 32 * 1024;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public ImportSourceStore(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  /**
+   * Opens a writer for the source of {@code batchId}. Full blocks are inserted as they fill and
+   * the last one on {@link Writer#close()}, on the caller's transaction if there is one and
+   * each on its own otherwise.
+   */
+  public Writer open(Long batchId) {
+    return new BlockWriter(batchId);
+  }
+
+  /**
+   * Returns the source text of each row that has a stored range, keyed by row id, without the
+   * line breaks around the record.
+   */
+  public Map<Long, String> readLines(Long batchId, List<ImportRow> rows) {
+    TreeSet<Integer> blockIndexes = new TreeSet<>();
+    for (ImportRow row : rows) {
+      if (row.getRawOffset() != null && row.getRawLength() != null && row.getRawLength() > 0) {
+        long end = row.getRawOffset() + row.getRawLength() - 1;
+        for (long block = row.getRawOffset() / BLOCK_CHARS; block <= end / BLOCK_CHARS; block++) {
+          blockIndexes.add((int) block);
+        }
+      }
+    }
+    if (blockIndexes.isEmpty()) {
+      return Map.of();
+    }
+
+    Map<Integer, char[]> blocks = new HashMap<>();
+    jdbcTemplate.query(
+      "select block_index, data from import_source_block where batch_id = ? and block_index = any(?)",
+      rs -> {
+        blocks.put(rs.getInt("block_index"), inflate(rs.getBytes("data")));
+      },
+      batchId,
+      blockIndexes.toArray(Integer[]::new)
+    );
+
+    Map<Long, String> lines = new HashMap<>();
+    StringBuilder line = new StringBuilder(128);
+    for (ImportRow row : rows) {
+      if (row.getRawOffset() == null || row.getRawLength() == null || row.getRawLength() <= 0) {
+        continue;
+      }
+      line.setLength(0);
+      long offset = row.getRawOffset();
+      long end = offset + row.getRawLength();
+      while (offset < end) {
+        char[] block = blocks.get((int) (offset / BLOCK_CHARS));
+        if (block == null) {
+          break;
+        }
+        int from = (int) (offset % BLOCK_CHARS);
+        int to = (int) Math.min(block.length, from + (end - offset));
+        if (from >= to) {
+          break;
+        }
+        line.append(block, from, to - from);
+        offset += to - from;
+      }
+      lines.put(row.getId(), stripLineBreaks(line));
+    }
+    return lines;
+  }
+
+  private static String stripLineBreaks(StringBuilder line) {
+    int start = 0;
+    int end = line.length();
+    while (start < end && isLineBreak(line.charAt(start))) {
+      start++;
+    }
+    while (end > start && isLineBreak(line.charAt(end - 1))) {
+      end--;
+    }
+    return line.substring(start, end);
+  }
+
+  private static boolean isLineBreak(char c) {
+    return c == '\n' || c == '\r';
+  }
+
+  private static char[] inflate(byte[] data) {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(data);
+      byte[] bytes = new byte[BLOCK_CHARS * 2];
+      int length = 0;
+      while (!inflater.finished() && length < bytes.length) {
+        int read = inflater.inflate(bytes, length, bytes.length - length);
+        if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        length += read;
+      }
+      char[] chars = new char[length / 2];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = (char) ((bytes[2 * i] & 0xff) << 8 | bytes[2 * i + 1] & 0xff);
+      }
+      return chars;
+    } catch (DataFormatException ex) {
+      throw new IllegalStateException("bloco de origem corrompido", ex);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  private final class BlockWriter extends Writer {
+    private final Long batchId;
+    private final char[] buffer = new char[BLOCK_CHARS];
+    private final byte[] encoded = new byte[BLOCK_CHARS * 2];
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private int length;
+    private int blockIndex;
+    private boolean closed;
+
+    private BlockWriter(Long batchId) {
+      this.batchId = batchId;
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int count) {
+      while (count > 0) {
+        int copied = Math.min(count, BLOCK_CHARS - length);
+        System.arraycopy(chars, offset, buffer, length, copied);
+        length += copied;
+        offset += copied;
+        count -= copied;
+        if (length == BLOCK_CHARS) {
+          writeBlock();
+        }
+      }
+    }
+
+    @Override
+    public void flush() {
+      // Only whole blocks are written before close, so block offsets stay fixed
+    }
+
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        if (length > 0) {
+          writeBlock();
+        }
+      } finally {
+        deflater.end();
+      }
+    }
+
+    private void writeBlock() {
+      for (int i = 0; i < length; i++) {
+        encoded[2 * i] = (byte) (buffer[i] >>> 8);
+        encoded[2 * i + 1] = (byte) buffer[i];
+      }
+      deflater.reset();
+      deflater.setInput(encoded, 0, length * 2);
+      deflater.finish();
+      byte[] compressed = new byte[Math.max(64, length / 2)];
+      int size = 0;
+      while (!deflater.finished()) {
+        if (size == compressed.length) {
+          compressed = Arrays.copyOf(compressed, compressed.length * 2);
+        }
+        size += deflater.deflate(compressed, size, compressed.length - size);
+      }
+      jdbcTemplate.update(
+        "insert into import_source_block (batch_id, block_index, data) values (?, ?, ?)",
+        batchId,
+        blockIndex,
+        Arrays.copyOf(compressed, size)
+      );
+      blockIndex++;
+      length = 0;
+    }
+  }
+}
@@ -0,0 +1,278 @@
+package com.moneta.importer;
+
+import com.moneta.card.PaymentType;
+import com.moneta.importer.CsvParserService.CsvParsedRow;
+import com.moneta.importer.CsvParserService.CsvProfile;
+import com.moneta.txn.TxnDirection;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.springframework.stereotype.Component;
+
+/**
+ * Streams the {@code STMTTRN} records of an OFX statement. Both variants go through the same
+ * pull tokenizer: OFX 1.x is SGML whose leaf elements have no end tag, which no XML parser
+ * accepts, and OFX 2.x is XML with the same element names. The tokenizer only keeps the
+ * fields of the transaction being read, so statement size does not matter.
+ *
+ * <p>Rows are PIX rows against the batch account, like CSV rows without a payment_method.
+ */
+@Component
+class OfxStatementParser implements StatementParser {
+  private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+  private static final Pattern SGML_CHARSET = Pattern.compile("CHARSET:\\s*([\\w-]+)");
+  private static final Pattern XML_ENCODING = Pattern.compile("encoding=[\"']([\\w-]+)[\"']");
+  private static final int BUFFER_SIZE = 8192;
+
+  @Override
+  public boolean accepts(String head) {
+    String start = head.stripLeading();
+    return start.startsWith("OFXHEADER") || head.toUpperCase(Locale.ROOT).contains("<OFX>");
+  }
+
+  @Override
+  public int stream(
+    InputStream inputStream,
+    Writer source,
+    CsvProfile profile,
+    Consumer<CsvParsedRow> consumer
+  ) throws IOException {
+    inputStream.mark(ImportFileReader.HEAD_BYTES);
+    String head = new String(inputStream.readNBytes(ImportFileReader.HEAD_BYTES), StandardCharsets.ISO_8859_1);
+    inputStream.reset();
+
+    Tokenizer tokenizer = new Tokenizer(new SourceTeeReader(new InputStreamReader(inputStream, charset(head)), source));
+    Map<String, String> fields = new HashMap<>();
+    String field = null;
+    long recordStart = -1;
+    int rowIndex = 0;
+    for (int token = tokenizer.next(); token != Tokenizer.EOF; token = tokenizer.next()) {
+      String name = tokenizer.name();
+      if (token == Tokenizer.START && name.equals("STMTTRN")) {
+        if (recordStart >= 0) {
+          consumer.accept(toRow(++rowIndex, recordStart, tokenizer.tokenStart(), fields));
+        }
+        recordStart = tokenizer.tokenStart();
+        fields.clear();
+        field = null;
+      } else if (recordStart < 0) {
+        continue;
+      } else if (token == Tokenizer.START) {
+        field = name;
+      } else if (token == Tokenizer.TEXT) {
+        if (field != null) {
+          fields.put(field, tokenizer.text());
+          field = null;
+        }
+      } else if (name.equals("STMTTRN")) {
+        consumer.accept(toRow(++rowIndex, recordStart, tokenizer.tokenEnd(), fields));
+        recordStart = -1;
+      } else if (name.equals("BANKTRANLIST")) {
+        // An SGML writer that also dropped the STMTTRN end tag
+        consumer.accept(toRow(++rowIndex, recordStart, tokenizer.tokenStart(), fields));
+        recordStart = -1;
+      } else {
+        field = null;
+      }
+    }
+    if (recordStart >= 0) {
+      consumer.accept(toRow(++rowIndex, recordStart, tokenizer.tokenStart(), fields));
+    }
+    return rowIndex;
+  }
+
+  private CsvParsedRow toRow(int rowIndex, long start, long end, Map<String, String> fields) {
+    int length = (int) (end - start);
+    String posted = fields.get("DTPOSTED");
+    LocalDate date;
+    try {
+      date = LocalDate.parse(posted.substring(0, 8), DATE_FORMATTER);
+    } catch (DateTimeParseException | NullPointerException | IndexOutOfBoundsException ex) {
+      return CsvParsedRow.error(rowIndex, start, length, "data inválida");
+    }
+
+    String amount = fields.get("TRNAMT");
+    if (amount == null || amount.isBlank()) {
+      return CsvParsedRow.error(rowIndex, start, length, "valor inválido");
+    }
+    long signedCents;
+    try {
+      // Some banks write OFX amounts with a decimal comma
+      signedCents = amount.indexOf(',') >= 0 && amount.indexOf('.') < 0
+        ? AmountParser.COMMA_DECIMAL.parseCents(amount)
+        : AmountParser.DOT_DECIMAL.parseCents(amount);
+    } catch (NumberFormatException ex) {
+      return CsvParsedRow.error(rowIndex, start, length, "valor inválido");
+    }
+    if (signedCents == 0) {
+      return CsvParsedRow.error(rowIndex, start, length, "valor não pode ser zero");
+    }
+
+    String description = fields.get("NAME");
+    if (description == null || description.isBlank()) {
+      description = fields.get("MEMO");
+    }
+    return CsvParsedRow.parsed(
+      rowIndex,
+      start,
+      length,
+      date,
+      description,
+      Math.abs(signedCents),
+      signedCents < 0 ? TxnDirection.OUT : TxnDirection.IN,
+      PaymentType.PIX,
+      null,
+      null,
+      null,
+      null
+    );
+  }
+
+  /**
+   * The charset the headers declare. OFX 1.x files marked USASCII are in practice often
+   * Windows-1252, which decodes plain ASCII the same way.
+   */
+  static Charset charset(String head) {
+    Matcher encoding = XML_ENCODING.matcher(head);
+    if (head.stripLeading().startsWith("<?xml") && encoding.find()) {
+      try {
+        return Charset.forName(encoding.group(1));
+      } catch (IllegalArgumentException ex) {
+        throw new IllegalArgumentException("charset inválido: " + encoding.group(1));
+      }
+    }
+    if (head.contains("ENCODING:UTF-8")) {
+      return StandardCharsets.UTF_8;
+    }
+    Matcher charset = SGML_CHARSET.matcher(head);
+    if (charset.find() && charset.group(1).contains("8859-1")) {
+      return StandardCharsets.ISO_8859_1;
+    }
+    if (head.contains("OFXHEADER")) {
+      return Charset.forName("windows-1252");
+    }
+    return StandardCharsets.UTF_8;
+  }
+
+  /**
+   * Splits OFX into start tags, end tags and the text between them, tracking the character
+   * offset of each token. Processing instructions, comments and declarations are skipped.
+   */
+  private static final class Tokenizer {
+    static final int EOF = 0;
+    static final int START = 1;
+    static final int END = 2;
+    static final int TEXT = 3;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder token = new StringBuilder(64);
+    private int length;
+    private int index;
+    private long offset;
+    private long tokenStart;
+    private String name;
+
+    private Tokenizer(Reader reader) {
+      this.reader = reader;
+    }
+
+    int next() throws IOException {
+      while (true) {
+        tokenStart = offset;
+        int c = read();
+        if (c < 0) {
+          return EOF;
+        }
+        token.setLength(0);
+        if (c != '<') {
+          token.append((char) c);
+          while ((c = peek()) >= 0 && c != '<') {
+            token.append((char) read());
+          }
+          if (!token.toString().isBlank()) {
+            return TEXT;
+          }
+          continue;
+        }
+        while ((c = read()) >= 0 && c != '>') {
+          token.append((char) c);
+        }
+        if (token.isEmpty() || token.charAt(0) == '?' || token.charAt(0) == '!') {
+          continue;
+        }
+        boolean end = token.charAt(0) == '/';
+        int nameEnd = end ? 1 : 0;
+        while (nameEnd < token.length() && !Character.isWhitespace(token.charAt(nameEnd))
+          && token.charAt(nameEnd) != '/') {
+          nameEnd++;
+        }
+        name = token.substring(end ? 1 : 0, nameEnd).toUpperCase(Locale.ROOT);
+        return end ? END : START;
+      }
+    }
+
+    String name() {
+      return name;
+    }
+
+    String text() {
+      return unescape(token.toString().strip());
+    }
+
+    long tokenStart() {
+      return tokenStart;
+    }
+
+    long tokenEnd() {
+      return offset;
+    }
+
+    private int read() throws IOException {
+      int c = peek();
+      if (c >= 0) {
+        index++;
+        offset++;
+      }
+      return c;
+    }
+
+    private int peek() throws IOException {
+      if (index == length) {
+        length = reader.read(buffer, 0, buffer.length);
+        index = 0;
+        if (length <= 0) {
+          length = 0;
+          return -1;
+        }
+      }
+      return buffer[index];
+    }
+
+    private static String unescape(String value) {
+      if (value.indexOf('&') < 0) {
+        return value;
+      }
+      return value
+        .replace("&lt;", "<")
+        .replace("&gt;", ">")
+        .replace("&quot;", "\"")
+        .replace("&apos;", "'")
+        .replace("&nbsp;", " ")
+        .replace("&amp;", "&");
+    }
+  }
+}
@@ -0,0 +1,280 @@
+package com.moneta.importer;
+
+import com.moneta.importer.CsvParserService.CsvColumns;
+import com.moneta.importer.CsvParserService.CsvParsedRow;
+import com.moneta.importer.CsvParserService.CsvProfile;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+/**
+ * Parses a large CSV on a fork-join pool. The calling thread reads the text, cuts it into
+ * segments at record boundaries and submits each segment; the rows come back to the calling
+ * thread in file order, numbered as a single-threaded read would number them, so everything
+ * downstream (de-duplication included) sees exactly the same sequence of rows.
+ *
+ * <p>Boundaries come from a scan that follows the quoting rules of the CSV lexer, so a line
+ * break inside a quoted field is never taken for the end of a record. A file that fits in one
+ * segment is parsed on the calling thread.
+ */
+final class ParallelCsvParser {
+  private static final int READ_SIZE = 8192;
+
+  private final ForkJoinPool pool;
+  private final int segmentChars;
+  private final int maxInFlight;
+
+  ParallelCsvParser(ForkJoinPool pool, int segmentChars) {
+    this.pool = pool;
+    this.segmentChars = segmentChars;
+    // Enough segments queued to keep every worker busy while the reader fills the next one
+    this.maxInFlight = pool.getParallelism() * 2;
+  }
+
+  int stream(Reader reader, CsvProfile profile, Consumer<CsvParsedRow> consumer) throws IOException {
+    BoundaryScanner scanner = new BoundaryScanner(profile.format());
+    CSVFormat segmentFormat = profile.format().builder()
+      .setHeader((String[]) null)
+      .setSkipHeaderRecord(false)
+      .build();
+    StringBuilder pending = new StringBuilder(segmentChars + READ_SIZE);
+    char[] buffer = new char[READ_SIZE];
+    Deque<Future<List<CsvParsedRow>>> inFlight = new ArrayDeque<>();
+    CsvColumns columns = null;
+    long pendingOffset = 0;
+    int count = 0;
+    try {
+      int read;
+      while ((read = reader.read(buffer, 0, buffer.length)) >= 0) {
+        int from = pending.length();
+        pending.append(buffer, 0, read);
+        scanner.scan(pending, from);
+        if (columns == null) {
+          int headerEnd = scanner.firstCut();
+          if (!isFinal(headerEnd, pending)) {
+            continue;
+          }
+          columns = columns(pending.substring(0, headerEnd), profile);
+          pending.delete(0, headerEnd);
+          scanner.shift(headerEnd);
+          pendingOffset = headerEnd;
+        }
+        int cut = scanner.lastCut();
+        if (pending.length() < segmentChars || !isFinal(cut, pending)) {
+          continue;
+        }
+        String segment = pending.substring(0, cut);
+        long segmentOffset = pendingOffset;
+        CsvColumns segmentColumns = columns;
+        inFlight.add(pool.submit(() -> parseSegment(segment, segmentOffset, segmentFormat, segmentColumns, profile)));
+        pending.delete(0, cut);
+        scanner.shift(cut);
+        pendingOffset += cut;
+        while (inFlight.size() >= maxInFlight) {
+          count = emit(inFlight.removeFirst(), count, consumer);
+        }
+      }
+
+      if (columns == null) {
+        // No record ended, so the whole text is at most a header
+        columns(pending.toString(), profile);
+        return 0;
+      }
+      while (!inFlight.isEmpty()) {
+        count = emit(inFlight.removeFirst(), count, consumer);
+      }
+      // The tail, or a file that fit in one segment, is parsed on this thread
+      for (CsvParsedRow row : parseSegment(pending.toString(), pendingOffset, segmentFormat, columns, profile)) {
+        consumer.accept(row.withRowIndex(++count));
+      }
+      return count;
+    } finally {
+      inFlight.forEach(future -> future.cancel(true));
+    }
+  }
+
+  /** A cut right after a CR that ends the text read so far may still move past an LF. */
+  private static boolean isFinal(int cut, CharSequence text) {
+    return cut > 0 && (cut < text.length() || text.charAt(cut - 1) != '\r');
+  }
+
+  private static CsvColumns columns(String header, CsvProfile profile) throws IOException {
+    try (CSVParser parser = profile.format().parse(new StringReader(header))) {
+      Map<String, Integer> headerMap = parser.getHeaderMap();
+      if (headerMap == null) {
+        throw new IllegalArgumentException("CSV sem cabeçalho");
+      }
+      return CsvColumns.compile(headerMap, profile.columnNames());
+    }
+  }
+
+  private static int emit(Future<List<CsvParsedRow>> future, int count, Consumer<CsvParsedRow> consumer) {
+    List<CsvParsedRow> rows;
+    try {
+      rows = future.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("leitura do CSV interrompida", ex);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof RuntimeException runtime) {
+        throw runtime;
+      }
+      if (ex.getCause() instanceof Error error) {
+        throw error;
+      }
+      throw new IllegalStateException("erro ao ler CSV", ex.getCause());
+    }
+    for (CsvParsedRow row : rows) {
+      consumer.accept(row.withRowIndex(++count));
+    }
+    return count;
+  }
+
+  /**
+   * Parses one segment of whole records. Row indexes are local to the segment and renumbered
+   * when the rows are emitted; offsets are already absolute.
+   */
+  private static List<CsvParsedRow> parseSegment(
+    String segment,
+    long segmentOffset,
+    CSVFormat format,
+    CsvColumns columns,
+    CsvProfile profile
+  ) {
+    List<CsvParsedRow> rows = new ArrayList<>();
+    try (CSVParser parser = format.parse(new StringReader(segment))) {
+      CSVRecord pending = null;
+      for (CSVRecord record : parser) {
+        if (pending != null) {
+          rows.add(toRow(pending, record.getCharacterPosition(), segmentOffset, columns, profile));
+        }
+        pending = record;
+      }
+      if (pending != null) {
+        rows.add(toRow(pending, segment.length(), segmentOffset, columns, profile));
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return rows;
+  }
+
+  private static CsvParsedRow toRow(
+    CSVRecord record,
+    long end,
+    long segmentOffset,
+    CsvColumns columns,
+    CsvProfile profile
+  ) {
+    long start = record.getCharacterPosition();
+    return CsvParserService.parseRecord(
+      (int) record.getRecordNumber(),
+      segmentOffset + start,
+      (int) (end - start),
+      record,
+      columns,
+      profile
+    );
+  }
+
+  /**
+   * Finds where records end, following the lexer: a quote only opens a field as its first
+   * character, a doubled quote inside a quoted field is a literal quote, and a line break
+   * ends a record only outside quotes. Blank lines belong to the record after them, as the
+   * parser skips them while reading that record, so a cut is only placed after a line with
+   * content.
+   */
+  static final class BoundaryScanner {
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_SEEN = 3;
+
+    private final char delimiter;
+    private final int quote;
+    private int state = FIELD_START;
+    private boolean lineHasContent;
+    private boolean afterCarriageReturn;
+    private int firstCut = -1;
+    private int lastCut = -1;
+
+    BoundaryScanner(CSVFormat format) {
+      this.delimiter = format.getDelimiterString().charAt(0);
+      this.quote = format.getQuoteCharacter() == null ? -1 : format.getQuoteCharacter();
+    }
+
+    /** Scans {@code text} from {@code from}, which continues the text scanned so far. */
+    void scan(CharSequence text, int from) {
+      for (int i = from; i < text.length(); i++) {
+        char c = text.charAt(i);
+        boolean carriageReturn = afterCarriageReturn;
+        afterCarriageReturn = false;
+        if (state == QUOTED) {
+          if (c == quote) {
+            state = QUOTE_SEEN;
+          }
+          continue;
+        }
+        if (c == '\n' || c == '\r') {
+          if (lineHasContent) {
+            cut(i + 1);
+            lineHasContent = false;
+            afterCarriageReturn = c == '\r';
+          } else if (c == '\n' && carriageReturn) {
+            // The LF of a CRLF belongs to the record the CR ended
+            if (firstCut == i) {
+              firstCut = i + 1;
+            }
+            lastCut = i + 1;
+          }
+          state = FIELD_START;
+          continue;
+        }
+        lineHasContent = true;
+        if (c == delimiter) {
+          state = FIELD_START;
+        } else if (state == FIELD_START) {
+          state = c == quote ? QUOTED : UNQUOTED;
+        } else if (state == QUOTE_SEEN) {
+          state = c == quote ? QUOTED : UNQUOTED;
+        }
+      }
+    }
+
+    /** The position right after the first record end found, or -1 when there is none yet. */
+    int firstCut() {
+      return firstCut;
+    }
+
+    /** The position right after the last record end found, or -1 when there is none yet. */
+    int lastCut() {
+      return lastCut;
+    }
+
+    /** Rebases positions after the first {@code count} characters were taken off the text. */
+    void shift(int count) {
+      firstCut = firstCut - count > 0 ? firstCut - count : -1;
+      lastCut = lastCut - count > 0 ? lastCut - count : -1;
+    }
+
+    private void cut(int position) {
+      if (firstCut < 0) {
+        firstCut = position;
+      }
+      lastCut = position;
+    }
+  }
+}
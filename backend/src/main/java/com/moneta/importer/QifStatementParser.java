@@ -0,0 +1,243 @@
+package com.moneta.importer;
+
+import com.moneta.card.PaymentType;
+import com.moneta.importer.CsvParserService.CsvParsedRow;
+import com.moneta.importer.CsvParserService.CsvProfile;
+import com.moneta.txn.TxnDirection;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Streams the transactions of a QIF file line by line. Only the {@code Bank}, {@code Cash},
+ * {@code CCard} and liability sections hold transactions; records of other sections (account
+ * lists, categories, memorized payees, investments) are skipped.
+ *
+ * <p>QIF has no standard date or amount format. Without a profile dates are read US style
+ * ({@code 12/31/2024}, {@code 12/31'24}) and amounts as {@code 1,234.56}; with one, its date
+ * and amount formats apply. Rows are PIX rows against the batch account.
+ */
+@Component
+class QifStatementParser implements StatementParser {
+  private static final List<String> TRANSACTION_TYPES = List.of("BANK", "CASH", "CCARD", "OTH A", "OTH L");
+  private static final List<DateTimeFormatter> DEFAULT_DATE_FORMATTERS = List.of(
+    DateTimeFormatter.ofPattern("M/d/yyyy"),
+    DateTimeFormatter.ofPattern("M/d/yy")
+  );
+  private static final int BUFFER_SIZE = 8192;
+
+  @Override
+  public boolean accepts(String head) {
+    String start = head.stripLeading().toUpperCase(Locale.ROOT);
+    return start.startsWith("!TYPE:") || start.startsWith("!ACCOUNT") || start.startsWith("!OPTION:");
+  }
+
+  @Override
+  public int stream(
+    InputStream inputStream,
+    Writer source,
+    CsvProfile profile,
+    Consumer<CsvParsedRow> consumer
+  ) throws IOException {
+    LineReader reader = new LineReader(new SourceTeeReader(new InputStreamReader(inputStream, profile.charset()), source));
+    Record record = new Record();
+    boolean transactions = false;
+    int rowIndex = 0;
+    for (String line = reader.next(); line != null; line = reader.next()) {
+      if (!line.isEmpty() && line.charAt(0) == '\uFEFF') {
+        line = line.substring(1);
+      }
+      if (line.isBlank()) {
+        continue;
+      }
+      char code = line.charAt(0);
+      if (code == '!') {
+        String header = line.substring(1).strip().toUpperCase(Locale.ROOT);
+        if (header.startsWith("TYPE:")) {
+          transactions = TRANSACTION_TYPES.contains(header.substring(5).strip());
+        } else if (header.equals("ACCOUNT")) {
+          transactions = false;
+        }
+        record.clear();
+        continue;
+      }
+      if (!record.started()) {
+        record.start = reader.lineStart();
+      }
+      if (code == '^') {
+        if (transactions) {
+          consumer.accept(toRow(++rowIndex, record, reader.lineEnd(), profile));
+        }
+        record.clear();
+        continue;
+      }
+      String value = line.substring(1).strip();
+      switch (code) {
+        case 'D' -> record.date = value;
+        case 'T', 'U' -> record.amount = value;
+        case 'P' -> record.payee = value;
+        case 'M' -> record.memo = value;
+        case 'L' -> record.category = value;
+        default -> {
+          // Check numbers, cleared flags, addresses and splits are not imported
+        }
+      }
+    }
+    if (transactions && record.started() && record.date != null) {
+      // A last record without its closing caret
+      consumer.accept(toRow(++rowIndex, record, reader.lineEnd(), profile));
+    }
+    return rowIndex;
+  }
+
+  private CsvParsedRow toRow(int rowIndex, Record record, long end, CsvProfile profile) {
+    long start = record.start;
+    int length = (int) (end - start);
+    LocalDate date = parseDate(record.date, profile);
+    if (date == null) {
+      return CsvParsedRow.error(rowIndex, start, length, "data inválida");
+    }
+    if (record.amount == null || record.amount.isBlank()) {
+      return CsvParsedRow.error(rowIndex, start, length, "valor inválido");
+    }
+    long signedCents;
+    try {
+      signedCents = (profile == CsvProfile.DEFAULT ? AmountParser.DOT_DECIMAL_GROUPED : profile.amountParser())
+        .parseCents(record.amount);
+    } catch (NumberFormatException ex) {
+      return CsvParsedRow.error(rowIndex, start, length, "valor inválido");
+    }
+    if (signedCents == 0) {
+      return CsvParsedRow.error(rowIndex, start, length, "valor não pode ser zero");
+    }
+
+    String description = record.payee == null || record.payee.isBlank() ? record.memo : record.payee;
+    return CsvParsedRow.parsed(
+      rowIndex,
+      start,
+      length,
+      date,
+      description,
+      Math.abs(signedCents),
+      signedCents < 0 ? TxnDirection.OUT : TxnDirection.IN,
+      PaymentType.PIX,
+      null,
+      null,
+      category(record.category),
+      null
+    );
+  }
+
+  private static LocalDate parseDate(String value, CsvProfile profile) {
+    if (value == null || value.isBlank()) {
+      return null;
+    }
+    List<DateTimeFormatter> formatters = profile == CsvProfile.DEFAULT
+      ? DEFAULT_DATE_FORMATTERS
+      : List.of(profile.dateFormatter());
+    // Quicken writes years after 1999 as 12/31'24 and sometimes pads with spaces
+    String normalized = profile == CsvProfile.DEFAULT ? value.replace('\'', '/').replace(" ", "") : value;
+    for (DateTimeFormatter formatter : formatters) {
+      try {
+        return LocalDate.parse(normalized, formatter);
+      } catch (DateTimeParseException ex) {
+        // Tries the next pattern
+      }
+    }
+    return null;
+  }
+
+  private static String category(String value) {
+    // [Account] marks a transfer, not a category; Category:Subcategory keeps the category
+    if (value == null || value.isBlank() || value.startsWith("[")) {
+      return null;
+    }
+    int separator = value.indexOf(':');
+    return separator < 0 ? value : value.substring(0, separator);
+  }
+
+  private static final class Record {
+    private long start = -1;
+    private String date;
+    private String amount;
+    private String payee;
+    private String memo;
+    private String category;
+
+    private boolean started() {
+      return start >= 0;
+    }
+
+    private void clear() {
+      start = -1;
+      date = null;
+      amount = null;
+      payee = null;
+      memo = null;
+      category = null;
+    }
+  }
+
+  /** Reads lines while tracking the character offsets where each starts and ends. */
+  private static final class LineReader {
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder line = new StringBuilder(128);
+    private int length;
+    private int index;
+    private long offset;
+    private long lineStart;
+
+    private LineReader(Reader reader) {
+      this.reader = reader;
+    }
+
+    String next() throws IOException {
+      lineStart = offset;
+      line.setLength(0);
+      int c;
+      while ((c = read()) >= 0) {
+        if (c == '\n') {
+          break;
+        }
+        if (c != '\r') {
+          line.append((char) c);
+        }
+      }
+      if (c < 0 && line.isEmpty() && offset == lineStart) {
+        return null;
+      }
+      return line.toString();
+    }
+
+    long lineStart() {
+      return lineStart;
+    }
+
+    long lineEnd() {
+      return offset;
+    }
+
+    private int read() throws IOException {
+      if (index == length) {
+        length = reader.read(buffer, 0, buffer.length);
+        index = 0;
+        if (length <= 0) {
+          length = 0;
+          return -1;
+        }
+      }
+      offset++;
+      return buffer[index++];
+    }
+  }
+}
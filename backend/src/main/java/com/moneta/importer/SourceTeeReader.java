@@ -0,0 +1,41 @@
+package com.moneta.importer;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/** Copies every character a parser reads to the source writer and counts them. */
+final class SourceTeeReader extends FilterReader {
+  private final Writer source;
+  private long position;
+
+  SourceTeeReader(Reader in, Writer source) {
+    super(in);
+    this.source = source;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int c = super.read();
+    if (c >= 0) {
+      source.write(c);
+      position++;
+    }
+    return c;
+  }
+
+  @Override
+  public int read(char[] buffer, int offset, int length) throws IOException {
+    int read = super.read(buffer, offset, length);
+    if (read > 0) {
+      source.write(buffer, offset, read);
+      position += read;
+    }
+    return read;
+  }
+
+  long position() {
+    return position;
+  }
+}
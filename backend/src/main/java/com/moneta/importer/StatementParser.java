@@ -0,0 +1,31 @@
+package com.moneta.importer;
+
+import com.moneta.importer.CsvParserService.CsvParsedRow;
+import com.moneta.importer.CsvParserService.CsvProfile;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.function.Consumer;
+
+/**
+ * Reads a bank statement format other than CSV into the same rows the CSV parser produces, so
+ * staging, hashing and commit do not depend on where a row came from. Implementations stream:
+ * each transaction is handed to the consumer as soon as it is complete, and the decoded text is
+ * copied to {@code source} with the rows carrying their character range in it.
+ */
+interface StatementParser {
+  /**
+   * Whether the upload looks like this format, judged from its first bytes read as Latin-1.
+   */
+  boolean accepts(String head);
+
+  /**
+   * @return the number of rows read
+   */
+  int stream(
+    InputStream inputStream,
+    Writer source,
+    CsvProfile profile,
+    Consumer<CsvParsedRow> consumer
+  ) throws IOException;
+}
@@ -0,0 +1,89 @@
+package com.moneta.importer;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Unwraps gzip and zip uploads on the fly, telling them apart from plain text by their magic
+ * bytes rather than the filename. The inflated data is only ever streamed to the caller; it is
+ * not written anywhere nor buffered beyond the inflater's window. A zip contributes its first
+ * file entry. Inflated output is capped at {@code maxInflatedBytes} so a small archive cannot
+ * expand into an unbounded import.
+ */
+final class UploadDecompressor {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private UploadDecompressor() {
+  }
+
+  static InputStream open(InputStream inputStream, long maxInflatedBytes) throws IOException {
+    BufferedInputStream buffered = new BufferedInputStream(inputStream, BUFFER_SIZE);
+    buffered.mark(4);
+    int first = buffered.read();
+    int second = buffered.read();
+    int third = buffered.read();
+    int fourth = buffered.read();
+    buffered.reset();
+
+    if (first == 0x1f && second == 0x8b) {
+      return new LimitedInputStream(new GZIPInputStream(buffered, BUFFER_SIZE), maxInflatedBytes);
+    }
+    if (first == 'P' && second == 'K' && third == 3 && fourth == 4) {
+      ZipInputStream zip = new ZipInputStream(buffered);
+      ZipEntry entry = zip.getNextEntry();
+      while (entry != null && (entry.isDirectory() || isMetadata(entry.getName()))) {
+        entry = zip.getNextEntry();
+      }
+      if (entry == null) {
+        throw new IllegalArgumentException("arquivo zip sem CSV");
+      }
+      return new LimitedInputStream(zip, maxInflatedBytes);
+    }
+    return buffered;
+  }
+
+  private static boolean isMetadata(String name) {
+    // Archives made on macOS carry resource forks alongside the real file
+    return name.startsWith("__MACOSX/") || name.substring(name.lastIndexOf('/') + 1).startsWith(".");
+  }
+
+  private static final class LimitedInputStream extends FilterInputStream {
+    private final long limit;
+    private long count;
+
+    private LimitedInputStream(InputStream inputStream, long limit) {
+      super(inputStream);
+      this.limit = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int value = super.read();
+      if (value >= 0) {
+        count(1);
+      }
+      return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int read = super.read(buffer, offset, length);
+      if (read > 0) {
+        count(read);
+      }
+      return read;
+    }
+
+    private void count(int read) {
+      count += read;
+      if (count > limit) {
+        throw new IllegalArgumentException("arquivo descompactado excede o limite de " + limit + " bytes");
+      }
+    }
+  }
+}
@@ -0,0 +1,275 @@
+package com.moneta.rule;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.function.IntUnaryOperator;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A user's active rules compiled for matching many descriptions. CONTAINS and STARTS_WITH
+ * patterns go into one Aho-Corasick automaton, so a description is scanned once whatever the
+ * number of rules; REGEX patterns are compiled once. The result is the same as trying the
+ * rules one by one in priority order: the first rule, in the order given, whose account
+ * filter accepts the transaction and whose pattern matches.
+ *
+ * <p>Instances are immutable and hold no entities, so they can be shared between threads and
+ * outlive the transaction that loaded the rules.
+ */
+public final class CompiledRuleSet {
+  private static final int NONE = Integer.MAX_VALUE;
+  private static final int[] NO_RULES = new int[0];
+
+  private final CompiledRule[] rules;
+  // Literal rules: lower-cased pattern length, and whether the pattern must start the text
+  private final int[] patternLengths;
+  private final boolean[] startsWith;
+  private final int[] emptyPatternRules;
+  // Automaton over character classes; class 0 is every character absent from the patterns
+  private final int[] asciiClasses;
+  private final char[] otherChars;
+  private final int[] otherClasses;
+  private final int classCount;
+  private final int[] transitions;
+  private final int[][] outputs;
+  private final int[] regexRules;
+  private final Pattern[] regexPatterns;
+
+  /** A rule as the matcher sees it; {@code accountId} null means any account. */
+  public record CompiledRule(Long id, Long categoryId, Long subcategoryId, Long accountId) {}
+
+  private CompiledRuleSet(List<Rule> rules) {
+    int count = rules.size();
+    this.rules = new CompiledRule[count];
+    this.patternLengths = new int[count];
+    this.startsWith = new boolean[count];
+    List<String> literals = new ArrayList<>();
+    List<Integer> literalRules = new ArrayList<>();
+    List<Integer> emptyRules = new ArrayList<>();
+    List<Integer> regexIndexes = new ArrayList<>();
+    List<Pattern> patterns = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Rule rule = rules.get(i);
+      Long accountId = rule.getAccount() == null ? null : rule.getAccount().getId();
+      this.rules[i] = new CompiledRule(rule.getId(), rule.getCategoryId(), rule.getSubcategoryId(), accountId);
+      if (rule.getMatchType() == RuleMatchType.REGEX) {
+        regexIndexes.add(i);
+        patterns.add(compileRegex(rule));
+        continue;
+      }
+      String literal = rule.getPattern().toLowerCase(Locale.ROOT);
+      patternLengths[i] = literal.length();
+      startsWith[i] = rule.getMatchType() == RuleMatchType.STARTS_WITH;
+      if (literal.isEmpty()) {
+        emptyRules.add(i);
+      } else {
+        literals.add(literal);
+        literalRules.add(i);
+      }
+    }
+    this.emptyPatternRules = emptyRules.stream().mapToInt(Integer::intValue).toArray();
+    this.regexRules = regexIndexes.stream().mapToInt(Integer::intValue).toArray();
+    this.regexPatterns = patterns.toArray(Pattern[]::new);
+
+    TreeSet<Character> alphabet = new TreeSet<>();
+    literals.forEach(literal -> literal.chars().forEach(c -> alphabet.add((char) c)));
+    this.classCount = alphabet.size() + 1;
+    this.asciiClasses = new int[128];
+    this.otherChars = new char[alphabet.size()];
+    this.otherClasses = new int[alphabet.size()];
+    int index = 0;
+    for (char c : alphabet) {
+      otherChars[index] = c;
+      otherClasses[index] = index + 1;
+      if (c < 128) {
+        asciiClasses[c] = index + 1;
+      }
+      index++;
+    }
+
+    Automaton automaton = new Automaton(classCount);
+    for (int i = 0; i < literals.size(); i++) {
+      automaton.add(literals.get(i), literalRules.get(i), c -> classOf((char) c));
+    }
+    automaton.build();
+    this.transitions = automaton.transitions();
+    this.outputs = automaton.outputs();
+  }
+
+  /** Compiles {@code rules}, which must already be in priority order. */
+  public static CompiledRuleSet compile(List<Rule> rules) {
+    return new CompiledRuleSet(rules);
+  }
+
+  public boolean isEmpty() {
+    return rules.length == 0;
+  }
+
+  public int size() {
+    return rules.length;
+  }
+
+  /**
+   * The first rule that matches {@code description} for a transaction of {@code accountId},
+   * or null. A null description is matched as an empty one.
+   */
+  public CompiledRule firstMatch(String description, Long accountId) {
+    String text = description == null ? "" : description;
+    int best = firstLiteralMatch(text.toLowerCase(Locale.ROOT), accountId);
+    for (int i = 0; i < regexRules.length && regexRules[i] < best; i++) {
+      if (accepts(regexRules[i], accountId) && regexPatterns[i].matcher(text).find()) {
+        return rules[regexRules[i]];
+      }
+    }
+    return best == NONE ? null : rules[best];
+  }
+
+  private int firstLiteralMatch(String text, Long accountId) {
+    int best = NONE;
+    for (int rule : emptyPatternRules) {
+      if (accepts(rule, accountId)) {
+        best = rule;
+        break;
+      }
+    }
+    int state = 0;
+    for (int i = 0; i < text.length(); i++) {
+      state = transitions[state * classCount + classOf(text.charAt(i))];
+      // Outputs are in priority order, so the first acceptable one is the best at this position
+      for (int rule : outputs[state]) {
+        if (rule >= best) {
+          break;
+        }
+        if (startsWith[rule] && patternLengths[rule] != i + 1) {
+          continue;
+        }
+        if (accepts(rule, accountId)) {
+          best = rule;
+          break;
+        }
+      }
+    }
+    return best;
+  }
+
+  private boolean accepts(int rule, Long accountId) {
+    Long ruleAccountId = rules[rule].accountId();
+    return ruleAccountId == null || Objects.equals(ruleAccountId, accountId);
+  }
+
+  private int classOf(char c) {
+    if (c < 128) {
+      return asciiClasses[c];
+    }
+    int found = Arrays.binarySearch(otherChars, c);
+    return found >= 0 ? otherClasses[found] : 0;
+  }
+
+  private static Pattern compileRegex(Rule rule) {
+    try {
+      return Pattern.compile(rule.getPattern(), Pattern.CASE_INSENSITIVE);
+    } catch (PatternSyntaxException ex) {
+      throw new IllegalArgumentException("regex inválido na regra " + rule.getId());
+    }
+  }
+
+  /** Trie of the literal patterns, turned into a full transition table by {@link #build}. */
+  private static final class Automaton {
+    private final int classCount;
+    private int[] transitions;
+    private final List<List<Integer>> ownOutputs = new ArrayList<>();
+    private int[][] outputs;
+    private int nodes;
+
+    private Automaton(int classCount) {
+      this.classCount = classCount;
+      this.transitions = new int[classCount * 16];
+      newNode();
+    }
+
+    private void add(String literal, int rule, IntUnaryOperator classifier) {
+      int node = 0;
+      for (int i = 0; i < literal.length(); i++) {
+        int slot = node * classCount + classifier.applyAsInt(literal.charAt(i));
+        if (transitions[slot] < 0) {
+          int child = newNode();
+          transitions[slot] = child;
+        }
+        node = transitions[slot];
+      }
+      ownOutputs.get(node).add(rule);
+    }
+
+    /**
+     * Breadth-first over the trie: each node's failure is the longest proper suffix of its
+     * path that is also in the trie, missing transitions follow the failure's, and outputs
+     * take in the failure's, so every pattern ending at a position is seen in one step.
+     */
+    private void build() {
+      int[] failure = new int[nodes];
+      outputs = new int[nodes][];
+      outputs[0] = NO_RULES;
+      Deque<Integer> queue = new ArrayDeque<>();
+      for (int c = 0; c < classCount; c++) {
+        int child = transitions[c];
+        if (child < 0) {
+          transitions[c] = 0;
+        } else {
+          failure[child] = 0;
+          queue.add(child);
+        }
+      }
+      while (!queue.isEmpty()) {
+        int node = queue.poll();
+        outputs[node] = merge(ownOutputs.get(node), outputs[failure[node]]);
+        for (int c = 0; c < classCount; c++) {
+          int slot = node * classCount + c;
+          int child = transitions[slot];
+          int fallback = transitions[failure[node] * classCount + c];
+          if (child < 0) {
+            transitions[slot] = fallback;
+          } else {
+            failure[child] = fallback;
+            queue.add(child);
+          }
+        }
+      }
+      transitions = Arrays.copyOf(transitions, nodes * classCount);
+    }
+
+    private int[] transitions() {
+      return transitions;
+    }
+
+    private int[][] outputs() {
+      return outputs;
+    }
+
+    private int newNode() {
+      int needed = (nodes + 1) * classCount;
+      if (needed > transitions.length) {
+        transitions = Arrays.copyOf(transitions, Math.max(needed, transitions.length * 2));
+      }
+      Arrays.fill(transitions, nodes * classCount, needed, -1);
+      ownOutputs.add(new ArrayList<>(1));
+      return nodes++;
+    }
+
+    private static int[] merge(List<Integer> own, int[] inherited) {
+      if (own.isEmpty()) {
+        return inherited;
+      }
+      TreeSet<Integer> merged = new TreeSet<>(own);
+      for (int rule : inherited) {
+        merged.add(rule);
+      }
+      return merged.stream().mapToInt(Integer::intValue).toArray();
+    }
+  }
+}
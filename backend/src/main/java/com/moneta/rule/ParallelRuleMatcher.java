@@ -0,0 +1,78 @@
+package com.moneta.rule;
+
+import com.moneta.rule.CompiledRuleSet.CompiledRule;
+import com.moneta.txn.TxnRepository.RuleCandidateProjection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Matches a batch of candidates against a {@link CompiledRuleSet} on a fork-join pool. The
+ * batch is halved until the parts are at most {@code partitionSize} candidates, and each part
+ * writes its matches into its own slice of one array, so the result lines up with the
+ * candidates whatever the thread that matched them. Callers go through it in order, which
+ * keeps the writes the same as a single-threaded run.
+ *
+ * <p>Matching only reads the candidates and the immutable rule set; no part of it touches the
+ * persistence context, so the pool threads need no transaction.
+ */
+final class ParallelRuleMatcher {
+  private final ForkJoinPool pool;
+  private final int partitionSize;
+
+  ParallelRuleMatcher(ForkJoinPool pool, int partitionSize) {
+    this.pool = pool;
+    this.partitionSize = Math.max(1, partitionSize);
+  }
+
+  /** The first matching rule of each candidate, or null, at the candidate's index. */
+  CompiledRule[] match(CompiledRuleSet rules, List<? extends RuleCandidateProjection> candidates) {
+    CompiledRule[] matches = new CompiledRule[candidates.size()];
+    Partition all = new Partition(rules, candidates, matches, 0, candidates.size());
+    if (candidates.size() <= partitionSize) {
+      // Not worth a hand-off
+      all.compute();
+    } else {
+      pool.invoke(all);
+    }
+    return matches;
+  }
+
+  private final class Partition extends RecursiveAction {
+    private final CompiledRuleSet rules;
+    private final List<? extends RuleCandidateProjection> candidates;
+    private final CompiledRule[] matches;
+    private final int from;
+    private final int to;
+
+    Partition(
+      CompiledRuleSet rules,
+      List<? extends RuleCandidateProjection> candidates,
+      CompiledRule[] matches,
+      int from,
+      int to
+    ) {
+      this.rules = rules;
+      this.candidates = candidates;
+      this.matches = matches;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > partitionSize) {
+        int middle = (from + to) >>> 1;
+        invokeAll(
+          new Partition(rules, candidates, matches, from, middle),
+          new Partition(rules, candidates, matches, middle, to)
+        );
+        return;
+      }
+      for (int i = from; i < to; i++) {
+        RuleCandidateProjection candidate = candidates.get(i);
+        matches[i] = rules.firstMatch(candidate.getDescription(), candidate.getAccountId());
+      }
+    }
+  }
+}
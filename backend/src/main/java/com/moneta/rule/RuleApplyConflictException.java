@@ -0,0 +1,8 @@
+package com.moneta.rule;
+
+/** The user already has a rule application running, so another one cannot start. */
+public class RuleApplyConflictException extends RuntimeException {
+  public RuleApplyConflictException(String message) {
+    super(message);
+  }
+}
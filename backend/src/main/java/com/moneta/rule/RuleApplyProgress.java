@@ -0,0 +1,49 @@
+package com.moneta.rule;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters for one {@code POST /rules/apply} run. Written by the request thread after
+ * each chunk and read concurrently by the progress endpoint.
+ */
+public class RuleApplyProgress {
+  private final OffsetDateTime startedAt = OffsetDateTime.now();
+  private final AtomicLong chunks = new AtomicLong();
+  private final AtomicLong evaluated = new AtomicLong();
+  private final AtomicLong matched = new AtomicLong();
+  private final AtomicLong updated = new AtomicLong();
+  private volatile Long lastTxnId;
+
+  public void chunkDone(int chunkEvaluated, int chunkMatched, int chunkUpdated, Long chunkLastTxnId) {
+    evaluated.addAndGet(chunkEvaluated);
+    matched.addAndGet(chunkMatched);
+    updated.addAndGet(chunkUpdated);
+    lastTxnId = chunkLastTxnId;
+    chunks.incrementAndGet();
+  }
+
+  public OffsetDateTime getStartedAt() {
+    return startedAt;
+  }
+
+  public long getChunks() {
+    return chunks.get();
+  }
+
+  public long getEvaluated() {
+    return evaluated.get();
+  }
+
+  public long getMatched() {
+    return matched.get();
+  }
+
+  public long getUpdated() {
+    return updated.get();
+  }
+
+  public Long getLastTxnId() {
+    return lastTxnId;
+  }
+}
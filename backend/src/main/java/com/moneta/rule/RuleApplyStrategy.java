@@ -0,0 +1,9 @@
+package com.moneta.rule;
+
+/** Where {@code POST /rules/apply} matches the rules against the transactions. */
+public enum RuleApplyStrategy {
+  /** Reads the transactions in chunks and matches them with the compiled rule set. */
+  JVM,
+  /** Runs one prioritized UPDATE in PostgreSQL; no description leaves the database. */
+  DATABASE
+}
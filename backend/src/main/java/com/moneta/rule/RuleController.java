@@ -1,6 +1,7 @@
 package com.moneta.rule;
 
 import com.moneta.config.UserPrincipal;
+import com.moneta.rule.RuleDtos.RuleApplyProgressResponse;
 import com.moneta.rule.RuleDtos.RuleApplyRequest;
 import com.moneta.rule.RuleDtos.RuleApplyResponse;
 import com.moneta.rule.RuleDtos.RuleRequest;
@@ -66,6 +67,11 @@ public class RuleController {
     return ruleService.apply(principal.getId(), request);
   }
 
+  @GetMapping("/apply/progress")
+  public RuleApplyProgressResponse applyProgress(@AuthenticationPrincipal UserPrincipal principal) {
+    return ruleService.getApplyProgress(principal.getId());
+  }
+
   private RuleResponse toResponse(Rule rule) {
     return new RuleResponse(
       rule.getId(),
@@ -3,6 +3,7 @@ package com.moneta.rule;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import java.time.OffsetDateTime;
 import java.util.List;
 
 public class RuleDtos {
@@ -34,7 +35,8 @@ public class RuleDtos {
     Long accountId,
     Boolean onlyUncategorized,
     Boolean dryRun,
-    Boolean overrideManual
+    Boolean overrideManual,
+    RuleApplyStrategy strategy
   ) {}
 
   public record RuleApplyDetail(
@@ -44,6 +46,16 @@ public class RuleDtos {
     Long subcategoryId
   ) {}
 
+  public record RuleApplyProgressResponse(
+    boolean running,
+    OffsetDateTime startedAt,
+    long chunks,
+    long evaluated,
+    long matched,
+    long updated,
+    Long lastTxnId
+  ) {}
+
   public record RuleApplyResponse(
     int evaluated,
     int matched,
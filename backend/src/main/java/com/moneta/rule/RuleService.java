@@ -6,44 +6,75 @@ import com.moneta.auth.User;
 import com.moneta.auth.UserRepository;
 import com.moneta.category.CategoryRepository;
 import com.moneta.common.MonthRefValidator;
+import com.moneta.rule.CompiledRuleSet.CompiledRule;
 import com.moneta.rule.RuleDtos.RuleApplyDetail;
+import com.moneta.rule.RuleDtos.RuleApplyProgressResponse;
 import com.moneta.rule.RuleDtos.RuleApplyRequest;
 import com.moneta.rule.RuleDtos.RuleApplyResponse;
 import com.moneta.rule.RuleDtos.RuleRequest;
 import com.moneta.txn.Txn;
 import com.moneta.txn.TxnCategorizationMode;
 import com.moneta.txn.TxnRepository;
-import com.moneta.txn.TxnStatus;
+import com.moneta.txn.TxnRepository.RuleCandidateProjection;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
-import java.util.Objects;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
-import org.springframework.data.jpa.domain.Specification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
 @Service
 public class RuleService {
+  private static final Logger logger = LoggerFactory.getLogger(RuleService.class);
+
   private final RuleRepository ruleRepository;
   private final UserRepository userRepository;
   private final CategoryRepository categoryRepository;
   private final AccountRepository accountRepository;
   private final TxnRepository txnRepository;
+  private final RuleSetCache ruleSetCache;
+  private final TransactionTemplate transactionTemplate;
+  private final int applyChunkSize;
+  private final ParallelRuleMatcher parallelMatcher;
+  private final RuleSqlApplier ruleSqlApplier;
+  private final Map<Long, RuleApplyProgress> applies = new ConcurrentHashMap<>();
 
   public RuleService(
     RuleRepository ruleRepository,
     UserRepository userRepository,
     CategoryRepository categoryRepository,
     AccountRepository accountRepository,
-    TxnRepository txnRepository
+    TxnRepository txnRepository,
+    RuleSetCache ruleSetCache,
+    TransactionTemplate transactionTemplate,
+    @Value("${app.rule.apply-chunk-size:1000}") int applyChunkSize,
+    @Qualifier("ruleMatchPool") ForkJoinPool matchPool,
+    @Value("${app.rule.match-partition-size:128}") int matchPartitionSize,
+    RuleSqlApplier ruleSqlApplier
   ) {
     this.ruleRepository = ruleRepository;
     this.userRepository = userRepository;
     this.categoryRepository = categoryRepository;
     this.accountRepository = accountRepository;
     this.txnRepository = txnRepository;
+    this.ruleSetCache = ruleSetCache;
+    this.transactionTemplate = transactionTemplate;
+    this.applyChunkSize = applyChunkSize;
+    this.parallelMatcher = matchPool != null && matchPool.getParallelism() > 1
+      ? new ParallelRuleMatcher(matchPool, matchPartitionSize)
+      : null;
+    this.ruleSqlApplier = ruleSqlApplier;
   }
 
   @Transactional
@@ -64,7 +95,9 @@ public class RuleService {
     rule.setSubcategoryId(request.subcategoryId());
     rule.setAccount(account);
     rule.setActive(request.isActive() == null || request.isActive());
-    return ruleRepository.save(rule);
+    Rule saved = ruleRepository.save(rule);
+    ruleSetCache.invalidate(userId);
+    return saved;
   }
 
   public List<Rule> list(Long userId) {
@@ -91,7 +124,9 @@ public class RuleService {
     rule.setSubcategoryId(request.subcategoryId());
     rule.setAccount(account);
     rule.setActive(request.isActive() == null || request.isActive());
-    return ruleRepository.save(rule);
+    Rule saved = ruleRepository.save(rule);
+    ruleSetCache.invalidate(userId);
+    return saved;
   }
 
   @Transactional
@@ -99,109 +134,194 @@ public class RuleService {
     Rule rule = get(userId, id);
     rule.setActive(false);
     ruleRepository.save(rule);
+    ruleSetCache.invalidate(userId);
   }
 
-  @Transactional
+  /**
+   * Applies the user's rules to matching transactions, however many there are. Transactions
+   * are read {@code app.rule.apply-chunk-size} at a time in id order, as projections, and each
+   * chunk is matched and written back in its own short transaction with one UPDATE per rule
+   * that matched. Chunks larger than {@code app.rule.match-partition-size} are matched on the
+   * {@code ruleMatchPool}, and the matches are then taken in id order exactly as a sequential
+   * run would take them. A failure keeps the chunks already written; running again picks up
+   * the rest.
+   *
+   * <p>With strategy DATABASE the whole scope is matched and written by one statement in
+   * PostgreSQL instead, without reading any transaction; see {@link RuleSqlApplier}.
+   *
+   * <p>Either way a user has one run at a time on this node, and {@link #getApplyProgress}
+   * reports on it. Both rely on an in-memory map, so a run on another node is neither refused
+   * nor reported.
+   */
   public RuleApplyResponse apply(Long userId, RuleApplyRequest request) {
     if (request.month() != null && !request.month().isBlank()) {
       MonthRefValidator.validate(request.month());
     }
+    String month = request.month() == null || request.month().isBlank() ? null : request.month();
     boolean onlyUncategorized = request.onlyUncategorized() == null || request.onlyUncategorized();
     boolean dryRun = request.dryRun() != null && request.dryRun();
     boolean overrideManual = request.overrideManual() != null && request.overrideManual();
+    RuleApplyStrategy strategy = request.strategy() == null ? RuleApplyStrategy.JVM : request.strategy();
 
-    List<Rule> rules = ruleRepository.findAllByUserIdAndIsActiveTrueOrderByPriorityAsc(userId);
+    CompiledRuleSet rules = compiledRules(userId);
     if (rules.isEmpty()) {
       return new RuleApplyResponse(0, 0, 0, List.of());
     }
 
-    Specification<Txn> spec = (root, query, cb) -> {
-      List<jakarta.persistence.criteria.Predicate> predicates = new ArrayList<>();
-      predicates.add(cb.equal(root.get("user").get("id"), userId));
-      predicates.add(cb.isTrue(root.get("isActive")));
-      predicates.add(cb.equal(root.get("status"), TxnStatus.POSTED));
-      if (request.month() != null && !request.month().isBlank()) {
-        predicates.add(cb.equal(root.get("monthRef"), request.month()));
-      }
-      if (request.accountId() != null) {
-        predicates.add(cb.equal(root.get("account").get("id"), request.accountId()));
-      }
-      if (onlyUncategorized) {
-        predicates.add(cb.isNull(root.get("categoryId")));
-        predicates.add(cb.isNull(root.get("subcategoryId")));
-      }
-      if (!overrideManual) {
-        predicates.add(
-          cb.or(
-            cb.isNull(root.get("categorizationMode")),
-            cb.notEqual(root.get("categorizationMode"), TxnCategorizationMode.MANUAL)
-          )
+    RuleApplyProgress progress = new RuleApplyProgress();
+    if (applies.putIfAbsent(userId, progress) != null) {
+      throw new RuleApplyConflictException("aplicação de regras já em andamento");
+    }
+    List<RuleApplyDetail> details = new ArrayList<>();
+    long started = System.nanoTime();
+    try {
+      if (strategy == RuleApplyStrategy.DATABASE) {
+        RuleApplyResponse applied = ruleSqlApplier.apply(
+          userId,
+          ruleRepository.findAllByUserIdAndIsActiveTrueOrderByPriorityAsc(userId),
+          month,
+          request.accountId(),
+          onlyUncategorized,
+          overrideManual,
+          dryRun
         );
+        progress.chunkDone(applied.evaluated(), applied.matched(), applied.updated(), null);
+        details.addAll(applied.detailsSample());
+      } else {
+        Long afterId = 0L;
+        while (afterId != null) {
+          Long chunkAfterId = afterId;
+          afterId = transactionTemplate.execute(status -> applyChunk(
+            userId, rules, chunkAfterId, month, request.accountId(), onlyUncategorized, overrideManual, dryRun,
+            progress, details
+          ));
+        }
       }
-      return cb.and(predicates.toArray(new jakarta.persistence.criteria.Predicate[0]));
-    };
+    } finally {
+      applies.remove(userId);
+    }
+    logger.info(
+      "Rules applied userId={} strategy={} chunks={} evaluated={} matched={} updated={} dryRun={} durationMs={}",
+      userId,
+      strategy,
+      progress.getChunks(),
+      progress.getEvaluated(),
+      progress.getMatched(),
+      progress.getUpdated(),
+      dryRun,
+      (System.nanoTime() - started) / 1_000_000
+    );
+    return new RuleApplyResponse(
+      Math.toIntExact(progress.getEvaluated()),
+      Math.toIntExact(progress.getMatched()),
+      Math.toIntExact(progress.getUpdated()),
+      details
+    );
+  }
 
-    List<Txn> txns = txnRepository.findAll(spec);
-    int evaluated = txns.size();
-    int matched = 0;
-    int updated = 0;
-    List<RuleApplyDetail> details = new ArrayList<>();
-    List<Txn> modifiedTxns = new ArrayList<>();
+  public RuleApplyProgressResponse getApplyProgress(Long userId) {
+    RuleApplyProgress progress = applies.get(userId);
+    if (progress == null) {
+      return new RuleApplyProgressResponse(false, null, 0, 0, 0, 0, null);
+    }
+    return new RuleApplyProgressResponse(
+      true,
+      progress.getStartedAt(),
+      progress.getChunks(),
+      progress.getEvaluated(),
+      progress.getMatched(),
+      progress.getUpdated(),
+      progress.getLastTxnId()
+    );
+  }
 
-    for (Txn txn : txns) {
-      Rule matchedRule = findFirstMatch(rules, txn);
-      if (matchedRule == null) {
+  /** @return the id to continue after, or null when this was the last chunk */
+  private Long applyChunk(
+    Long userId,
+    CompiledRuleSet rules,
+    Long afterId,
+    String month,
+    Long accountId,
+    boolean onlyUncategorized,
+    boolean overrideManual,
+    boolean dryRun,
+    RuleApplyProgress progress,
+    List<RuleApplyDetail> details
+  ) {
+    List<RuleCandidateProjection> candidates = txnRepository.findRuleCandidates(
+      userId, afterId, month, accountId, onlyUncategorized, overrideManual, Limit.of(applyChunkSize)
+    );
+    if (candidates.isEmpty()) {
+      return null;
+    }
+    // Insertion order keeps the UPDATEs in the order rules first matched, for stable lock order
+    Map<CompiledRule, List<Long>> idsByRule = new LinkedHashMap<>();
+    int matched = 0;
+    CompiledRule[] matches = matchAll(rules, candidates);
+    for (int i = 0; i < matches.length; i++) {
+      CompiledRule rule = matches[i];
+      if (rule == null) {
         continue;
       }
+      RuleCandidateProjection candidate = candidates.get(i);
       matched++;
-      if (matchedRule.getCategoryId() != null) {
-        txn.setCategoryId(matchedRule.getCategoryId());
-      }
-      if (matchedRule.getSubcategoryId() != null) {
-        txn.setSubcategoryId(matchedRule.getSubcategoryId());
-      }
-      txn.setRuleId(matchedRule.getId());
-      txn.setCategorizationMode(TxnCategorizationMode.RULE);
-      modifiedTxns.add(txn);
+      idsByRule.computeIfAbsent(rule, ignored -> new ArrayList<>()).add(candidate.getId());
       if (details.size() < 20) {
         details.add(new RuleApplyDetail(
-          txn.getId(),
-          matchedRule.getId(),
-          txn.getCategoryId(),
-          txn.getSubcategoryId()
+          candidate.getId(),
+          rule.id(),
+          rule.categoryId() != null ? rule.categoryId() : candidate.getCategoryId(),
+          rule.subcategoryId() != null ? rule.subcategoryId() : candidate.getSubcategoryId()
         ));
       }
     }
+    int updated = 0;
+    if (!dryRun) {
+      for (Map.Entry<CompiledRule, List<Long>> entry : idsByRule.entrySet()) {
+        CompiledRule rule = entry.getKey();
+        updated += txnRepository.applyRuleCategorization(
+          entry.getValue(), rule.id(), rule.categoryId(), rule.subcategoryId(), onlyUncategorized, overrideManual
+        );
+      }
+    }
+    Long lastId = candidates.get(candidates.size() - 1).getId();
+    progress.chunkDone(candidates.size(), matched, updated, lastId);
+    return candidates.size() < applyChunkSize ? null : lastId;
+  }
 
-    if (!dryRun && !modifiedTxns.isEmpty()) {
-      txnRepository.saveAll(modifiedTxns);
-      updated = modifiedTxns.size();
+  private CompiledRule[] matchAll(CompiledRuleSet rules, List<RuleCandidateProjection> candidates) {
+    if (parallelMatcher != null) {
+      return parallelMatcher.match(rules, candidates);
     }
+    CompiledRule[] matches = new CompiledRule[candidates.size()];
+    for (int i = 0; i < matches.length; i++) {
+      RuleCandidateProjection candidate = candidates.get(i);
+      matches[i] = rules.firstMatch(candidate.getDescription(), candidate.getAccountId());
+    }
+    return matches;
+  }
 
-    return new RuleApplyResponse(evaluated, matched, updated, details);
+  private CompiledRuleSet compiledRules(Long userId) {
+    return ruleSetCache.get(
+      userId,
+      () -> CompiledRuleSet.compile(ruleRepository.findAllByUserIdAndIsActiveTrueOrderByPriorityAsc(userId))
+    );
   }
 
-  private Rule findFirstMatch(List<Rule> rules, Txn txn) {
-    String description = txn.getDescription() == null ? "" : txn.getDescription();
-    for (Rule rule : rules) {
-      if (rule.getAccount() != null && !Objects.equals(rule.getAccount().getId(), txn.getAccount().getId())) {
-        continue;
-      }
-      if (matches(rule, description)) {
-        return rule;
-      }
-    }
-    return null;
+  private CompiledRule findFirstMatch(CompiledRuleSet rules, Txn txn) {
+    Long accountId = txn.getAccount() == null ? null : txn.getAccount().getId();
+    return rules.firstMatch(txn.getDescription(), accountId);
   }
 
-  private boolean matches(Rule rule, String description) {
-    String target = description.toLowerCase(Locale.ROOT);
-    String pattern = rule.getPattern();
-    return switch (rule.getMatchType()) {
-      case CONTAINS -> target.contains(pattern.toLowerCase(Locale.ROOT));
-      case STARTS_WITH -> target.startsWith(pattern.toLowerCase(Locale.ROOT));
-      case REGEX -> Pattern.compile(pattern, Pattern.CASE_INSENSITIVE).matcher(description).find();
-    };
+  private void assign(Txn txn, CompiledRule rule) {
+    if (rule.categoryId() != null) {
+      txn.setCategoryId(rule.categoryId());
+    }
+    if (rule.subcategoryId() != null) {
+      txn.setSubcategoryId(rule.subcategoryId());
+    }
+    txn.setRuleId(rule.id());
+    txn.setCategorizationMode(TxnCategorizationMode.RULE);
   }
 
   private void validateCategory(Long userId, Long categoryId) {
@@ -236,7 +356,7 @@ public class RuleService {
     if (txns == null || txns.isEmpty()) {
       return Collections.emptyList();
     }
-    List<Rule> rules = ruleRepository.findAllByUserIdAndIsActiveTrueOrderByPriorityAsc(userId);
+    CompiledRuleSet rules = compiledRules(userId);
     if (rules.isEmpty()) {
       return Collections.emptyList();
     }
@@ -246,18 +366,11 @@ public class RuleService {
         // Cannot safely apply rules without an associated account
         continue;
       }
-      Rule matchedRule = findFirstMatch(rules, txn);
+      CompiledRule matchedRule = findFirstMatch(rules, txn);
       if (matchedRule == null) {
         continue;
       }
-      if (matchedRule.getCategoryId() != null) {
-        txn.setCategoryId(matchedRule.getCategoryId());
-      }
-      if (matchedRule.getSubcategoryId() != null) {
-        txn.setSubcategoryId(matchedRule.getSubcategoryId());
-      }
-      txn.setRuleId(matchedRule.getId());
-      txn.setCategorizationMode(TxnCategorizationMode.RULE);
+      assign(txn, matchedRule);
       modifiedTxns.add(txn);
     }
     if (modifiedTxns.isEmpty()) {
@@ -0,0 +1,105 @@
+package com.moneta.rule;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Compiled rule sets of the most recently used users, at most {@code app.rule.cache.max-users}.
+ *
+ * <p>The cache has a version that goes up on every eviction. A rule set is only stored if the
+ * version did not move while it was being loaded, so a load that read the rules before a
+ * concurrent change committed cannot put a stale set back after the eviction. Evictions are
+ * rare next to reads, so an unrelated one only costs a load that is not kept.
+ *
+ * <p>Rule changes invalidate the entry once their transaction commits. With
+ * {@code app.rule.cache.cluster-invalidation} on, they also send the user id on the
+ * {@value #CHANNEL} channel in the same transaction; Postgres only delivers it on commit, and
+ * {@link RuleSetChangeListener} evicts the entry on every node, this one included.
+ */
+@Component
+public class RuleSetCache {
+  static final String CHANNEL = "rule_set_changed";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final boolean clusterInvalidation;
+  private final Map<Long, CompiledRuleSet> entries;
+  private long version;
+
+  public RuleSetCache(
+    JdbcTemplate jdbcTemplate,
+    @Value("${app.rule.cache.max-users:1000}") int maxUsers,
+    @Value("${app.rule.cache.cluster-invalidation:true}") boolean clusterInvalidation
+  ) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.clusterInvalidation = clusterInvalidation;
+    // Access order, so the eldest entry is the least recently used one
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, CompiledRuleSet> eldest) {
+        return size() > maxUsers;
+      }
+    };
+  }
+
+  /** The cached rule set of {@code userId}, or the one {@code loader} builds, stored if still current. */
+  public CompiledRuleSet get(Long userId, Supplier<CompiledRuleSet> loader) {
+    long loadedVersion;
+    synchronized (this) {
+      CompiledRuleSet cached = entries.get(userId);
+      if (cached != null) {
+        return cached;
+      }
+      loadedVersion = version;
+    }
+    CompiledRuleSet loaded = loader.get();
+    synchronized (this) {
+      if (version == loadedVersion) {
+        entries.put(userId, loaded);
+      }
+    }
+    return loaded;
+  }
+
+  /**
+   * Marks the rules of {@code userId} as changed. Within a transaction the entry is evicted
+   * after commit, and not at all on rollback; outside one, right away, and the notification
+   * commits on its own so the other nodes get it right away too.
+   */
+  public void invalidate(Long userId) {
+    if (clusterInvalidation) {
+      jdbcTemplate.queryForObject("select pg_notify(?, ?)", Object.class, CHANNEL, userId.toString());
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      evict(userId);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        evict(userId);
+      }
+    });
+  }
+
+  /** Drops the entry of {@code userId}, and any load of it still in progress. */
+  public synchronized void evict(Long userId) {
+    entries.remove(userId);
+    version++;
+  }
+
+  /** Drops every entry, for when invalidations may have been missed. */
+  public synchronized void evictAll() {
+    entries.clear();
+    version++;
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+}
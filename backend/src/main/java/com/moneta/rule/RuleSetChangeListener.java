@@ -0,0 +1,107 @@
+package com.moneta.rule;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import javax.sql.DataSource;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Listens on the {@value RuleSetCache#CHANNEL} channel and evicts the rule sets other nodes
+ * (and this one) changed. Holds one pooled connection for as long as the application runs.
+ *
+ * <p>Notifications sent while the connection is down are lost, so every (re)connect clears
+ * the whole cache before listening again.
+ */
+@Component
+@ConditionalOnProperty(name = "app.rule.cache.cluster-invalidation", havingValue = "true", matchIfMissing = true)
+public class RuleSetChangeListener implements SmartLifecycle {
+  private static final Logger logger = LoggerFactory.getLogger(RuleSetChangeListener.class);
+  private static final int POLL_MILLIS = 500;
+  private static final long RECONNECT_MILLIS = 5_000;
+
+  private final DataSource dataSource;
+  private final RuleSetCache ruleSetCache;
+  private volatile boolean running;
+  private Thread listener;
+
+  public RuleSetChangeListener(DataSource dataSource, RuleSetCache ruleSetCache) {
+    this.dataSource = dataSource;
+    this.ruleSetCache = ruleSetCache;
+  }
+
+  @Override
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+    running = true;
+    listener = new Thread(this::listen, "rule-set-listener");
+    listener.setDaemon(true);
+    listener.start();
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    try {
+      listener.join(POLL_MILLIS * 4L);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  private void listen() {
+    while (running) {
+      try (Connection connection = dataSource.getConnection()) {
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+          statement.execute("LISTEN " + RuleSetCache.CHANNEL);
+        }
+        ruleSetCache.evictAll();
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        while (running) {
+          PGNotification[] notifications = pgConnection.getNotifications(POLL_MILLIS);
+          if (notifications != null) {
+            for (PGNotification notification : notifications) {
+              evict(notification.getParameter());
+            }
+          }
+        }
+      } catch (SQLException ex) {
+        if (!running) {
+          return;
+        }
+        logger.warn("Rule set listener lost its connection, reconnecting: {}", ex.getMessage());
+        try {
+          Thread.sleep(RECONNECT_MILLIS);
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  private void evict(String payload) {
+    try {
+      ruleSetCache.evict(Long.valueOf(payload));
+    } catch (NumberFormatException ex) {
+      logger.warn("Ignoring rule set notification with payload '{}'", payload);
+    }
+  }
+}
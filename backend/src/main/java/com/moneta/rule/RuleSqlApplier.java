@@ -0,0 +1,234 @@
+package com.moneta.rule;
+
+import com.moneta.rule.RuleDtos.RuleApplyDetail;
+import com.moneta.rule.RuleDtos.RuleApplyResponse;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies a user's rules with one statement in PostgreSQL, for re-categorizing a whole history
+ * without reading it into the JVM. Each rule becomes a predicate with its pattern as a bind
+ * value: CONTAINS and STARTS_WITH an escaped {@code ILIKE}, REGEX a {@code ~*}. A {@code CASE}
+ * over the predicates in priority order picks the first rule that matches each transaction,
+ * the same one {@link CompiledRuleSet} would, and their {@code OR} filters the transactions so
+ * {@code idx_txn_description_trgm} can serve the scan.
+ *
+ * <p>REGEX patterns are evaluated by PostgreSQL, whose dialect differs from Java's in places
+ * ({@code \y} rather than {@code \b} for a word boundary, for one). Each is tried on the
+ * database first, so a pattern it does not accept fails the request instead of the statement.
+ *
+ * <p>The statement runs on its own and commits or fails as a whole.
+ */
+@Component
+public class RuleSqlApplier {
+  private static final int DETAILS_SAMPLE = 20;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public RuleSqlApplier(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  /**
+   * Categorizes the transactions in scope by the first of {@code rules}, which must be in
+   * priority order, that matches them. With {@code dryRun} nothing is written and only the
+   * counts and sample are returned.
+   */
+  public RuleApplyResponse apply(
+    Long userId,
+    List<Rule> rules,
+    String month,
+    Long accountId,
+    boolean onlyUncategorized,
+    boolean overrideManual,
+    boolean dryRun
+  ) {
+    boolean[] regexMatchesEmpty = checkRegexes(rules);
+    StringBuilder sql = new StringBuilder(512 + rules.size() * 160);
+    List<Object> args = new ArrayList<>();
+
+    sql.append("with matches as (\n")
+      .append("  select c.id, r.rule_id,\n")
+      .append("    r.category_id as rule_category_id,\n")
+      .append("    r.subcategory_id as rule_subcategory_id,\n")
+      .append("    coalesce(r.category_id, c.category_id) as category_id,\n")
+      .append("    coalesce(r.subcategory_id, c.subcategory_id) as subcategory_id\n")
+      .append("  from (\n")
+      .append("    select t.id, t.category_id, t.subcategory_id,\n")
+      .append("      case");
+    for (int i = 0; i < rules.size(); i++) {
+      sql.append("\n        when ");
+      appendPredicate(sql, args, rules.get(i), regexMatchesEmpty[i]);
+      sql.append(" then ").append(i);
+    }
+    sql.append("\n      end as rule_index\n")
+      .append("    from txn t\n")
+      .append("    where ");
+    appendScope(sql, args, userId, month, accountId, onlyUncategorized, overrideManual);
+    sql.append("\n      and (");
+    for (int i = 0; i < rules.size(); i++) {
+      sql.append(i == 0 ? "\n        " : "\n        or ");
+      appendPredicate(sql, args, rules.get(i), regexMatchesEmpty[i]);
+    }
+    sql.append("\n      )\n")
+      .append("  ) c\n")
+      .append("  join (values");
+    for (int i = 0; i < rules.size(); i++) {
+      Rule rule = rules.get(i);
+      sql.append(i == 0 ? "\n    " : ",\n    ").append('(').append(i).append(", ?::bigint, ?::bigint, ?::bigint)");
+      args.add(rule.getId());
+      args.add(rule.getCategoryId());
+      args.add(rule.getSubcategoryId());
+    }
+    sql.append("\n  ) as r (rule_index, rule_id, category_id, subcategory_id) on r.rule_index = c.rule_index\n")
+      .append(")");
+    if (!dryRun) {
+      // The guards are checked again on the row being updated, in case it changed meanwhile
+      sql.append(",\nupdated as (\n")
+        .append("  update txn t\n")
+        .append("  set category_id = coalesce(m.rule_category_id, t.category_id),\n")
+        .append("    subcategory_id = coalesce(m.rule_subcategory_id, t.subcategory_id),\n")
+        .append("    rule_id = m.rule_id,\n")
+        .append("    categorization_mode = 'RULE'\n")
+        .append("  from matches m\n")
+        .append("  where t.id = m.id\n")
+        .append("    and t.is_active = true");
+      appendGuards(sql, onlyUncategorized, overrideManual);
+      sql.append("\n  returning t.id\n")
+        .append(")");
+    }
+    sql.append(",\ntotals as (\n")
+      .append("  select (select count(*) from txn t where ");
+    appendScope(sql, args, userId, month, accountId, onlyUncategorized, overrideManual);
+    sql.append(") as evaluated,\n")
+      .append("    (select count(*) from matches) as matched,\n")
+      .append(dryRun ? "    0 as updated\n" : "    (select count(*) from updated) as updated\n")
+      .append(")\n")
+      .append("select totals.evaluated, totals.matched, totals.updated,\n")
+      .append("  s.id, s.rule_id, s.category_id, s.subcategory_id\n")
+      .append("from totals\n")
+      .append("  left join lateral (select * from matches order by id limit ").append(DETAILS_SAMPLE)
+      .append(") s on true\n")
+      .append("order by s.id");
+
+    return jdbcTemplate.query(sql.toString(), rs -> {
+      long evaluated = 0;
+      long matched = 0;
+      long updated = 0;
+      List<RuleApplyDetail> details = new ArrayList<>();
+      while (rs.next()) {
+        evaluated = rs.getLong("evaluated");
+        matched = rs.getLong("matched");
+        updated = rs.getLong("updated");
+        Long txnId = rs.getObject("id", Long.class);
+        if (txnId != null) {
+          details.add(new RuleApplyDetail(
+            txnId,
+            rs.getObject("rule_id", Long.class),
+            rs.getObject("category_id", Long.class),
+            rs.getObject("subcategory_id", Long.class)
+          ));
+        }
+      }
+      return new RuleApplyResponse(
+        Math.toIntExact(evaluated),
+        Math.toIntExact(matched),
+        Math.toIntExact(updated),
+        details
+      );
+    }, args.toArray());
+  }
+
+  /**
+   * Tries every REGEX pattern on the database.
+   *
+   * @return for each rule, whether its pattern matches an empty description, which is how the
+   *     JVM matcher treats a null one
+   */
+  private boolean[] checkRegexes(List<Rule> rules) {
+    boolean[] matchesEmpty = new boolean[rules.size()];
+    for (int i = 0; i < rules.size(); i++) {
+      Rule rule = rules.get(i);
+      if (rule.getMatchType() != RuleMatchType.REGEX) {
+        continue;
+      }
+      try {
+        matchesEmpty[i] = Boolean.TRUE.equals(
+          jdbcTemplate.queryForObject("select '' ~* ?", Boolean.class, rule.getPattern())
+        );
+      } catch (DataAccessException ex) {
+        throw new IllegalArgumentException("regex da regra " + rule.getId() + " não é aceito pelo PostgreSQL");
+      }
+    }
+    return matchesEmpty;
+  }
+
+  private static void appendScope(
+    StringBuilder sql,
+    List<Object> args,
+    Long userId,
+    String month,
+    Long accountId,
+    boolean onlyUncategorized,
+    boolean overrideManual
+  ) {
+    sql.append("t.user_id = ? and t.is_active = true and t.status = 'POSTED'");
+    args.add(userId);
+    if (month != null) {
+      sql.append(" and t.month_ref = ?");
+      args.add(month);
+    }
+    if (accountId != null) {
+      sql.append(" and t.account_id = ?");
+      args.add(accountId);
+    }
+    appendGuards(sql, onlyUncategorized, overrideManual);
+  }
+
+  private static void appendGuards(StringBuilder sql, boolean onlyUncategorized, boolean overrideManual) {
+    if (onlyUncategorized) {
+      sql.append(" and t.category_id is null and t.subcategory_id is null");
+    }
+    if (!overrideManual) {
+      sql.append(" and (t.categorization_mode is null or t.categorization_mode <> 'MANUAL')");
+    }
+  }
+
+  private static void appendPredicate(StringBuilder sql, List<Object> args, Rule rule, boolean regexMatchesEmpty) {
+    Long ruleAccountId = rule.getAccount() == null ? null : rule.getAccount().getId();
+    sql.append('(');
+    if (ruleAccountId != null) {
+      sql.append("t.account_id = ? and ");
+      args.add(ruleAccountId);
+    }
+    String pattern = rule.getPattern();
+    if (rule.getMatchType() == RuleMatchType.REGEX) {
+      sql.append(regexMatchesEmpty ? "(t.description ~* ? or t.description is null)" : "t.description ~* ?");
+      args.add(pattern);
+    } else if (pattern.isEmpty()) {
+      // An empty pattern matches every description, a null one included
+      sql.append("true");
+    } else {
+      sql.append("t.description ilike ?");
+      String literal = escapeLike(pattern);
+      args.add(rule.getMatchType() == RuleMatchType.STARTS_WITH ? literal + "%" : "%" + literal + "%");
+    }
+    sql.append(')');
+  }
+
+  /** Escapes the {@code LIKE} wildcards and the default escape character itself. */
+  private static String escapeLike(String pattern) {
+    StringBuilder escaped = new StringBuilder(pattern.length() + 8);
+    for (int i = 0; i < pattern.length(); i++) {
+      char c = pattern.charAt(i);
+      if (c == '\\' || c == '%' || c == '_') {
+        escaped.append('\\');
+      }
+      escaped.append(c);
+    }
+    return escaped.toString();
+  }
+}
@@ -0,0 +1,49 @@
+package com.moneta.txn;
+
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * A de-duplication fingerprint as raw bytes, with value equality so it can be used in sets and
+ * as a query parameter. Stored as {@code bytea} through {@link FingerprintConverter}.
+ */
+public final class Fingerprint {
+  private final byte[] bytes;
+
+  private Fingerprint(byte[] bytes) {
+    this.bytes = bytes;
+  }
+
+  public static Fingerprint of(byte[] bytes) {
+    return bytes == null ? null : new Fingerprint(bytes.clone());
+  }
+
+  /** Builds a 128-bit fingerprint from its two halves, big-endian. */
+  public static Fingerprint of(long high, long low) {
+    byte[] bytes = new byte[16];
+    for (int i = 0; i < 8; i++) {
+      bytes[i] = (byte) (high >>> (56 - 8 * i));
+      bytes[8 + i] = (byte) (low >>> (56 - 8 * i));
+    }
+    return new Fingerprint(bytes);
+  }
+
+  public byte[] toBytes() {
+    return bytes.clone();
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return this == other || other instanceof Fingerprint fingerprint && Arrays.equals(bytes, fingerprint.bytes);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(bytes);
+  }
+
+  @Override
+  public String toString() {
+    return HexFormat.of().formatHex(bytes);
+  }
+}
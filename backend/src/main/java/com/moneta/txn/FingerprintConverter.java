@@ -0,0 +1,17 @@
+package com.moneta.txn;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+@Converter
+public class FingerprintConverter implements AttributeConverter<Fingerprint, byte[]> {
+  @Override
+  public byte[] convertToDatabaseColumn(Fingerprint fingerprint) {
+    return fingerprint == null ? null : fingerprint.toBytes();
+  }
+
+  @Override
+  public Fingerprint convertToEntityAttribute(byte[] bytes) {
+    return Fingerprint.of(bytes);
+  }
+}
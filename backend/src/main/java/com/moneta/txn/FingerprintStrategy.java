@@ -0,0 +1,24 @@
+package com.moneta.txn;
+
+/**
+ * Hash function behind {@link TxnFingerprinter}. Implementations must be thread-safe and
+ * deterministic across JVMs, since their output is stored and compared later.
+ *
+ * <p>Stored fingerprints are only comparable with ones from the same strategy. The name of the
+ * one that produced them is kept in {@code fingerprint_strategy}; when
+ * {@code app.fingerprint.strategy} names another, {@code R__fingerprint_strategy} clears them at
+ * migrate time so they are computed again.
+ */
+public interface FingerprintStrategy {
+  String name();
+
+  Fingerprint hash(byte[] input, int length);
+
+  static FingerprintStrategy named(String name) {
+    return switch (name) {
+      case Murmur3FingerprintStrategy.NAME -> new Murmur3FingerprintStrategy();
+      case Sha256FingerprintStrategy.NAME -> new Sha256FingerprintStrategy();
+      default -> throw new IllegalArgumentException("estratégia de fingerprint desconhecida: " + name);
+    };
+  }
+}
@@ -0,0 +1,110 @@
+package com.moneta.txn;
+
+/**
+ * MurmurHash3 x64 128-bit (seed 0). Not cryptographic, which is fine here: fingerprints only
+ * have to tell a user's own transactions apart, and 128 bits keeps accidental collisions out
+ * of reach at any realistic history size.
+ */
+public class Murmur3FingerprintStrategy implements FingerprintStrategy {
+  static final String NAME = "murmur3-128";
+
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public Fingerprint hash(byte[] input, int length) {
+    long h1 = 0;
+    long h2 = 0;
+    int blocks = length / 16;
+
+    for (int i = 0; i < blocks; i++) {
+      long k1 = getLong(input, i * 16);
+      long k2 = getLong(input, i * 16 + 8);
+
+      h1 ^= mixK1(k1);
+      h1 = Long.rotateLeft(h1, 27);
+      h1 += h2;
+      h1 = h1 * 5 + 0x52dce729;
+
+      h2 ^= mixK2(k2);
+      h2 = Long.rotateLeft(h2, 31);
+      h2 += h1;
+      h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    int tail = blocks * 16;
+    long k1 = 0;
+    long k2 = 0;
+    switch (length & 15) {
+      case 15: k2 ^= (long) (input[tail + 14] & 0xff) << 48;
+      case 14: k2 ^= (long) (input[tail + 13] & 0xff) << 40;
+      case 13: k2 ^= (long) (input[tail + 12] & 0xff) << 32;
+      case 12: k2 ^= (long) (input[tail + 11] & 0xff) << 24;
+      case 11: k2 ^= (long) (input[tail + 10] & 0xff) << 16;
+      case 10: k2 ^= (long) (input[tail + 9] & 0xff) << 8;
+      case 9:
+        k2 ^= input[tail + 8] & 0xff;
+        h2 ^= mixK2(k2);
+      case 8: k1 ^= (long) (input[tail + 7] & 0xff) << 56;
+      case 7: k1 ^= (long) (input[tail + 6] & 0xff) << 48;
+      case 6: k1 ^= (long) (input[tail + 5] & 0xff) << 40;
+      case 5: k1 ^= (long) (input[tail + 4] & 0xff) << 32;
+      case 4: k1 ^= (long) (input[tail + 3] & 0xff) << 24;
+      case 3: k1 ^= (long) (input[tail + 2] & 0xff) << 16;
+      case 2: k1 ^= (long) (input[tail + 1] & 0xff) << 8;
+      case 1:
+        k1 ^= input[tail] & 0xff;
+        h1 ^= mixK1(k1);
+      default:
+        break;
+    }
+
+    h1 ^= length;
+    h2 ^= length;
+    h1 += h2;
+    h2 += h1;
+    h1 = fmix64(h1);
+    h2 = fmix64(h2);
+    h1 += h2;
+    h2 += h1;
+    return Fingerprint.of(h1, h2);
+  }
+
+  private static long getLong(byte[] input, int offset) {
+    // Little-endian, as in the reference implementation
+    return (input[offset] & 0xffL)
+      | (input[offset + 1] & 0xffL) << 8
+      | (input[offset + 2] & 0xffL) << 16
+      | (input[offset + 3] & 0xffL) << 24
+      | (input[offset + 4] & 0xffL) << 32
+      | (input[offset + 5] & 0xffL) << 40
+      | (input[offset + 6] & 0xffL) << 48
+      | (input[offset + 7] & 0xffL) << 56;
+  }
+
+  private static long mixK1(long k1) {
+    k1 *= C1;
+    k1 = Long.rotateLeft(k1, 31);
+    return k1 * C2;
+  }
+
+  private static long mixK2(long k2) {
+    k2 *= C2;
+    k2 = Long.rotateLeft(k2, 33);
+    return k2 * C1;
+  }
+
+  private static long fmix64(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+}
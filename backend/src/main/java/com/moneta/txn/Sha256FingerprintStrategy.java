@@ -0,0 +1,25 @@
+package com.moneta.txn;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** SHA-256 over the fingerprint input, 32 bytes. Slower, kept for deployments that want it. */
+public class Sha256FingerprintStrategy implements FingerprintStrategy {
+  static final String NAME = "sha256";
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public Fingerprint hash(byte[] input, int length) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(input, 0, length);
+      return Fingerprint.of(digest.digest());
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException("hash algorithm missing", ex);
+    }
+  }
+}
@@ -18,15 +18,18 @@ public class TransferService {
   private final TxnRepository txnRepository;
   private final AccountRepository accountRepository;
   private final UserRepository userRepository;
+  private final TxnFingerprinter txnFingerprinter;
 
   public TransferService(
     TxnRepository txnRepository,
     AccountRepository accountRepository,
-    UserRepository userRepository
+    UserRepository userRepository,
+    TxnFingerprinter txnFingerprinter
   ) {
     this.txnRepository = txnRepository;
     this.accountRepository = accountRepository;
     this.userRepository = userRepository;
+    this.txnFingerprinter = txnFingerprinter;
   }
 
   @Transactional
@@ -81,6 +84,7 @@ public class TransferService {
     txn.setTxnType(TxnType.TRANSFER);
     txn.setTransferGroupId(transferGroupId);
     txn.setCategorizationMode(TxnCategorizationMode.MANUAL);
+    txn.setFingerprint(txnFingerprinter.fingerprint(txn));
     return txn;
   }
 }
@@ -5,6 +5,7 @@ import com.moneta.auth.User;
 import com.moneta.card.Card;
 import com.moneta.card.PaymentType;
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
@@ -87,6 +88,10 @@ public class Txn {
   @Column(name = "transfer_group_id")
   private UUID transferGroupId;
 
+  @Convert(converter = FingerprintConverter.class)
+  @Column
+  private Fingerprint fingerprint;
+
   @Column(name = "is_active", nullable = false)
   private boolean isActive = true;
 
@@ -241,6 +246,14 @@ public class Txn {
     this.transferGroupId = transferGroupId;
   }
 
+  public Fingerprint getFingerprint() {
+    return fingerprint;
+  }
+
+  public void setFingerprint(Fingerprint fingerprint) {
+    this.fingerprint = fingerprint;
+  }
+
   public boolean isActive() {
     return isActive;
   }
@@ -0,0 +1,7 @@
+package com.moneta.txn;
+
+public enum TxnBulkItemStatus {
+  CREATED,
+  DUPLICATE,
+  ERROR
+}
@@ -0,0 +1,371 @@
+package com.moneta.txn;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.moneta.account.Account;
+import com.moneta.account.AccountRepository;
+import com.moneta.alert.AlertService;
+import com.moneta.card.Card;
+import com.moneta.card.CardRepository;
+import com.moneta.card.PaymentType;
+import com.moneta.category.Category;
+import com.moneta.category.CategoryRepository;
+import com.moneta.txn.TxnBulkWriter.NewTxn;
+import com.moneta.txn.TxnDtos.TxnBulkItemResult;
+import com.moneta.txn.TxnDtos.TxnBulkResponse;
+import com.moneta.txn.TxnDtos.TxnRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Creates transactions from a JSON array or an NDJSON stream of {@link TxnRequest} items, for
+ * clients that push many at a time. The body is read one item at a time with Jackson's
+ * streaming parser and written {@value #CHUNK_SIZE} at a time through {@link TxnBulkWriter},
+ * so only the current chunk and the per-item results are held in memory.
+ *
+ * <p>Each item is validated like {@code POST /api/txns}; an invalid item is reported and
+ * skipped rather than failing the request. Items whose fingerprint matches an existing
+ * transaction, or an earlier item of the same request, are reported as duplicates, which also
+ * makes resending a request after a failure safe.
+ *
+ * <p>{@link #ingest} writes each chunk in its own transaction, so a slow client never keeps a
+ * transaction open while the body is still arriving.
+ */
+@Service
+public class TxnBulkService {
+  private static final Logger logger = LoggerFactory.getLogger(TxnBulkService.class);
+  private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM");
+  private static final int CHUNK_SIZE = 500;
+
+  private final ObjectMapper objectMapper;
+  private final Validator validator;
+  private final AccountRepository accountRepository;
+  private final CardRepository cardRepository;
+  private final CategoryRepository categoryRepository;
+  private final TxnFingerprintService txnFingerprintService;
+  private final TxnBulkWriter txnBulkWriter;
+  private final AlertService alertService;
+  private final TransactionTemplate transactionTemplate;
+  private final int maxItems;
+
+  public TxnBulkService(
+    ObjectMapper objectMapper,
+    Validator validator,
+    AccountRepository accountRepository,
+    CardRepository cardRepository,
+    CategoryRepository categoryRepository,
+    TxnFingerprintService txnFingerprintService,
+    TxnBulkWriter txnBulkWriter,
+    AlertService alertService,
+    TransactionTemplate transactionTemplate,
+    @Value("${app.txn.bulk-max-items:50000}") int maxItems
+  ) {
+    this.objectMapper = objectMapper;
+    this.validator = validator;
+    this.accountRepository = accountRepository;
+    this.cardRepository = cardRepository;
+    this.categoryRepository = categoryRepository;
+    this.txnFingerprintService = txnFingerprintService;
+    this.txnBulkWriter = txnBulkWriter;
+    this.alertService = alertService;
+    this.transactionTemplate = transactionTemplate;
+    this.maxItems = maxItems;
+  }
+
+  /**
+   * Reads {@code body} one item at a time and writes it {@value #CHUNK_SIZE} items at a time,
+   * each chunk in its own transaction. A body that is not valid JSON or has more than
+   * {@code app.txn.bulk-max-items} items fails with IllegalArgumentException if no chunk was
+   * written yet. Otherwise the written chunks stay: the response lists only their items, and
+   * {@code error} says why the rest was not read; the items read since the last chunk are
+   * dropped. A chunk that fails to write fails the request, with the chunks before it kept.
+   */
+  public TxnBulkResponse ingest(Long userId, InputStream body, boolean skipDuplicates) {
+    long started = System.nanoTime();
+    if (skipDuplicates) {
+      txnFingerprintService.fingerprintPending(userId);
+    }
+    Batch batch = new Batch(userId, skipDuplicates);
+    String error = null;
+    try {
+      read(body, batch);
+    } catch (IllegalArgumentException ex) {
+      if (batch.settled == 0) {
+        throw ex;
+      }
+      error = ex.getMessage();
+      batch.dropUnwritten();
+    }
+    batch.finish();
+    logger.info(
+      "Bulk txn ingest userId={} received={} created={} duplicates={} errors={} complete={} durationMs={}",
+      userId,
+      batch.results.size(),
+      batch.created,
+      batch.duplicates,
+      batch.errors,
+      error == null,
+      (System.nanoTime() - started) / 1_000_000
+    );
+    return new TxnBulkResponse(
+      batch.results.size(),
+      batch.created,
+      batch.duplicates,
+      batch.errors,
+      batch.results,
+      error
+    );
+  }
+
+  private void read(InputStream body, Batch batch) {
+    try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+      JsonToken token = parser.nextToken();
+      // A JSON array, or NDJSON: a sequence of root-level objects
+      boolean array = token == JsonToken.START_ARRAY;
+      if (array) {
+        token = parser.nextToken();
+      }
+      while (token != null && token != JsonToken.END_ARRAY) {
+        if (batch.results.size() >= maxItems) {
+          throw new IllegalArgumentException("lote excede o limite de " + maxItems + " itens");
+        }
+        JsonNode item = parser.readValueAsTree();
+        batch.add(item);
+        token = parser.nextToken();
+      }
+      if (array && token == null) {
+        throw new IllegalArgumentException("JSON inválido: array não foi fechado");
+      }
+    } catch (JsonProcessingException ex) {
+      throw new IllegalArgumentException("JSON inválido: " + ex.getOriginalMessage());
+    } catch (IOException ex) {
+      throw new IllegalStateException("erro ao ler lote de transações", ex);
+    }
+  }
+
+  /**
+   * Writes items that were already bound, on the caller's transaction, with the same
+   * validation and de-duplication as {@link #ingest}. With {@code skipDuplicates}, call
+   * {@link #fingerprintPending} for the user before opening that transaction.
+   *
+   * @return one result per request, in the same order
+   */
+  @Transactional
+  public List<TxnBulkItemResult> write(Long userId, List<TxnRequest> requests, boolean skipDuplicates) {
+    Batch batch = new Batch(userId, skipDuplicates);
+    for (TxnRequest request : requests) {
+      batch.add(request);
+    }
+    batch.finish();
+    return batch.results;
+  }
+
+  /** See {@link TxnFingerprintService#fingerprintPending}. */
+  public void fingerprintPending(Long userId) {
+    txnFingerprintService.fingerprintPending(userId);
+  }
+
+  /** Results so far, plus the valid items waiting to be written. */
+  private final class Batch {
+    private final Long userId;
+    private final boolean skipDuplicates;
+    private final Map<Long, Account> accounts;
+    private final Map<Long, Card> cards;
+    private final Set<Long> categoryIds;
+    private final List<TxnBulkItemResult> results = new ArrayList<>();
+    private final List<Pending> pending = new ArrayList<>(CHUNK_SIZE);
+    private final Set<Fingerprint> accepted = new HashSet<>();
+    private final Set<String> months = new TreeSet<>();
+    private int created;
+    private int duplicates;
+    private int errors;
+    // Results before this index belong to chunks already written
+    private int settled;
+
+    private Batch(Long userId, boolean skipDuplicates) {
+      this.userId = userId;
+      this.skipDuplicates = skipDuplicates;
+      this.accounts = accountRepository.findAllByUserIdOrderByIdAsc(userId).stream()
+        .collect(Collectors.toMap(Account::getId, Function.identity()));
+      this.cards = cardRepository.findAllByUserIdAndIsActiveTrueOrderByIdAsc(userId).stream()
+        .collect(Collectors.toMap(Card::getId, Function.identity()));
+      this.categoryIds = categoryRepository.findAllByUserIdOrderByIdAsc(userId).stream()
+        .map(Category::getId)
+        .collect(Collectors.toSet());
+    }
+
+    private void add(JsonNode item) {
+      TxnRequest request;
+      try {
+        request = objectMapper.treeToValue(item, TxnRequest.class);
+      } catch (JsonProcessingException ex) {
+        results.add(null);
+        error(results.size() - 1, "item inválido: " + ex.getOriginalMessage());
+        return;
+      }
+      add(request);
+    }
+
+    private void add(TxnRequest request) {
+      int index = results.size();
+      results.add(null);
+      NewTxn txn;
+      try {
+        txn = toNewTxn(request);
+      } catch (IllegalArgumentException ex) {
+        error(index, ex.getMessage());
+        return;
+      }
+      pending.add(new Pending(index, txn));
+      if (pending.size() >= CHUNK_SIZE) {
+        flush();
+      }
+    }
+
+    /**
+     * Checks a chunk against existing transactions and writes what is left in one go, in a
+     * transaction of its own unless the caller already has one.
+     */
+    private void flush() {
+      if (pending.isEmpty()) {
+        settled = results.size();
+        return;
+      }
+      transactionTemplate.executeWithoutResult(status -> writePending());
+      settled = results.size();
+    }
+
+    private void writePending() {
+      Set<Fingerprint> existing = skipDuplicates
+        ? txnFingerprintService.findExisting(userId, pending.stream().map(item -> item.txn().fingerprint()).toList())
+        : Set.of();
+      List<Pending> toInsert = new ArrayList<>(pending.size());
+      for (Pending item : pending) {
+        Fingerprint fingerprint = item.txn().fingerprint();
+        if (skipDuplicates && (existing.contains(fingerprint) || !accepted.add(fingerprint))) {
+          results.set(item.index(), new TxnBulkItemResult(item.index(), TxnBulkItemStatus.DUPLICATE, null, null));
+          duplicates++;
+        } else {
+          toInsert.add(item);
+        }
+      }
+      List<Long> ids = txnBulkWriter.insertAll(toInsert.stream().map(Pending::txn).toList());
+      for (int i = 0; i < toInsert.size(); i++) {
+        Pending item = toInsert.get(i);
+        results.set(item.index(), new TxnBulkItemResult(item.index(), TxnBulkItemStatus.CREATED, ids.get(i), null));
+        if (item.txn().status() == TxnStatus.POSTED && item.txn().direction() == TxnDirection.OUT) {
+          months.add(item.txn().monthRef());
+        }
+      }
+      created += toInsert.size();
+      pending.clear();
+    }
+
+    private void finish() {
+      flush();
+      if (!months.isEmpty()) {
+        transactionTemplate.executeWithoutResult(status -> alertService.evaluateBudgetsForMonths(userId, months));
+      }
+    }
+
+    /** Forgets the items read since the last chunk was written, valid or not. */
+    private void dropUnwritten() {
+      for (int index = results.size() - 1; index >= settled; index--) {
+        TxnBulkItemResult result = results.remove(index);
+        if (result != null && result.status() == TxnBulkItemStatus.ERROR) {
+          errors--;
+        }
+      }
+      pending.clear();
+    }
+
+    private void error(int index, String message) {
+      results.set(index, new TxnBulkItemResult(index, TxnBulkItemStatus.ERROR, null, message));
+      errors++;
+    }
+
+    /** Validates an item as {@code TxnService.create} would; failures are IllegalArgumentException. */
+    private NewTxn toNewTxn(TxnRequest request) {
+      Set<ConstraintViolation<TxnRequest>> violations = validator.validate(request);
+      if (!violations.isEmpty()) {
+        throw new IllegalArgumentException(violations.stream()
+          .sorted(Comparator.comparing(violation -> violation.getPropertyPath().toString()))
+          .map(ConstraintViolation::getMessage)
+          .collect(Collectors.joining(", ")));
+      }
+      PaymentType paymentType = request.paymentType() != null ? request.paymentType() : PaymentType.PIX;
+      TxnService.validatePaymentTypeConstraints(paymentType, request.accountId(), request.cardId());
+      Long accountId = null;
+      Long cardId = null;
+      if (paymentType == PaymentType.PIX) {
+        if (!accounts.containsKey(request.accountId())) {
+          throw new IllegalArgumentException("conta não encontrada");
+        }
+        accountId = request.accountId();
+      } else {
+        if (!cards.containsKey(request.cardId())) {
+          throw new IllegalArgumentException("cartão não encontrado ou inativo");
+        }
+        cardId = request.cardId();
+      }
+      if (request.categoryId() != null && !categoryIds.contains(request.categoryId())) {
+        throw new IllegalArgumentException("categoria não encontrada");
+      }
+
+      TxnStatus status = request.status() == null ? TxnStatus.POSTED : request.status();
+      Fingerprint fingerprint = txnFingerprintService.fingerprinter().fingerprint(
+        userId,
+        paymentType,
+        accountId != null ? accountId : cardId,
+        request.occurredAt().withOffsetSameInstant(ZoneOffset.UTC).toLocalDate(),
+        request.amountCents(),
+        request.direction(),
+        request.description()
+      );
+      return new NewTxn(
+        userId,
+        accountId,
+        cardId,
+        paymentType,
+        request.amountCents(),
+        request.direction(),
+        request.description(),
+        request.occurredAt(),
+        request.occurredAt().format(MONTH_FORMATTER),
+        status,
+        TxnType.NORMAL,
+        request.categoryId(),
+        request.subcategoryId(),
+        request.ruleId(),
+        TxnService.resolveCategorizationMode(request),
+        request.importBatchId(),
+        null,
+        fingerprint
+      );
+    }
+  }
+
+  private record Pending(int index, NewTxn txn) {}
+}
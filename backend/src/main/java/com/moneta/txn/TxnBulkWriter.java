@@ -0,0 +1,124 @@
+package com.moneta.txn;
+
+import com.moneta.card.PaymentType;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.util.List;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Inserts many transactions with multi-row {@code INSERT} statements. Ids are reserved from
+ * the {@code txn} sequence up front, which is what lets the rows be batched at all: with
+ * {@code GenerationType.IDENTITY} Hibernate has to insert one row at a time to learn each id.
+ * <p>
+ * Runs on the caller's transaction and bypasses the persistence context, so callers that
+ * need entities afterwards should load them by the returned ids.
+ */
+@Component
+public class TxnBulkWriter {
+  private static final int ROWS_PER_STATEMENT = 500;
+  private static final String INSERT_PREFIX = """
+    insert into txn (id, user_id, account_id, card_id, payment_type, amount_cents, direction,
+      description, occurred_at, month_ref, status, txn_type, category_id, subcategory_id, rule_id,
+      categorization_mode, import_batch_id, import_row_id, fingerprint)
+    values
+    """;
+  private static final String VALUES_ROW = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public TxnBulkWriter(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  /**
+   * @return the generated ids, in the same order as {@code txns}
+   */
+  public List<Long> insertAll(List<NewTxn> txns) {
+    if (txns.isEmpty()) {
+      return List.of();
+    }
+    List<Long> ids = jdbcTemplate.queryForList(
+      "select nextval(pg_get_serial_sequence('txn', 'id')) from generate_series(1, ?)",
+      Long.class,
+      txns.size()
+    );
+    for (int start = 0; start < txns.size(); start += ROWS_PER_STATEMENT) {
+      int end = Math.min(start + ROWS_PER_STATEMENT, txns.size());
+      insertChunk(txns.subList(start, end), ids.subList(start, end));
+    }
+    return ids;
+  }
+
+  private void insertChunk(List<NewTxn> txns, List<Long> ids) {
+    StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + txns.size() * (VALUES_ROW.length() + 2));
+    sql.append(INSERT_PREFIX);
+    for (int i = 0; i < txns.size(); i++) {
+      if (i > 0) {
+        sql.append(",\n");
+      }
+      sql.append(VALUES_ROW);
+    }
+    jdbcTemplate.update(sql.toString(), ps -> {
+      int index = 1;
+      for (int i = 0; i < txns.size(); i++) {
+        index = bind(ps, index, ids.get(i), txns.get(i));
+      }
+    });
+  }
+
+  private int bind(PreparedStatement ps, int index, Long id, NewTxn txn) throws SQLException {
+    ps.setLong(index++, id);
+    ps.setLong(index++, txn.userId());
+    setLong(ps, index++, txn.accountId());
+    setLong(ps, index++, txn.cardId());
+    ps.setString(index++, txn.paymentType().name());
+    ps.setLong(index++, txn.amountCents());
+    ps.setString(index++, txn.direction().name());
+    ps.setString(index++, txn.description());
+    ps.setObject(index++, txn.occurredAt());
+    ps.setString(index++, txn.monthRef());
+    ps.setString(index++, txn.status().name());
+    ps.setString(index++, txn.txnType().name());
+    setLong(ps, index++, txn.categoryId());
+    setLong(ps, index++, txn.subcategoryId());
+    setLong(ps, index++, txn.ruleId());
+    ps.setString(index++, txn.categorizationMode() == null ? null : txn.categorizationMode().name());
+    setLong(ps, index++, txn.importBatchId());
+    setLong(ps, index++, txn.importRowId());
+    ps.setBytes(index++, txn.fingerprint() == null ? null : txn.fingerprint().toBytes());
+    return index;
+  }
+
+  private void setLong(PreparedStatement ps, int index, Long value) throws SQLException {
+    if (value == null) {
+      ps.setNull(index, Types.BIGINT);
+    } else {
+      ps.setLong(index, value);
+    }
+  }
+
+  public record NewTxn(
+    Long userId,
+    Long accountId,
+    Long cardId,
+    PaymentType paymentType,
+    long amountCents,
+    TxnDirection direction,
+    String description,
+    OffsetDateTime occurredAt,
+    String monthRef,
+    TxnStatus status,
+    TxnType txnType,
+    Long categoryId,
+    Long subcategoryId,
+    Long ruleId,
+    TxnCategorizationMode categorizationMode,
+    Long importBatchId,
+    Long importRowId,
+    Fingerprint fingerprint
+  ) {}
+}
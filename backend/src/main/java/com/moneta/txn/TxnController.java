@@ -3,11 +3,16 @@ package com.moneta.txn;
 import com.moneta.config.UserPrincipal;
 import com.moneta.txn.TxnDtos.TransferRequest;
 import com.moneta.txn.TxnDtos.TransferResponse;
+import com.moneta.txn.TxnDtos.TxnBulkResponse;
+import com.moneta.txn.TxnDtos.TxnFeedResponse;
 import com.moneta.txn.TxnDtos.TxnFilter;
 import com.moneta.txn.TxnDtos.TxnRequest;
 import com.moneta.txn.TxnDtos.TxnResponse;
 import jakarta.validation.Valid;
+import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -24,10 +29,19 @@ import org.springframework.web.bind.annotation.RestController;
 public class TxnController {
   private final TxnService txnService;
   private final TransferService transferService;
+  private final TxnBulkService txnBulkService;
+  private final TxnIngestionService txnIngestionService;
 
-  public TxnController(TxnService txnService, TransferService transferService) {
+  public TxnController(
+    TxnService txnService,
+    TransferService transferService,
+    TxnBulkService txnBulkService,
+    TxnIngestionService txnIngestionService
+  ) {
     this.txnService = txnService;
     this.transferService = transferService;
+    this.txnBulkService = txnBulkService;
+    this.txnIngestionService = txnIngestionService;
   }
 
   @GetMapping
@@ -54,6 +68,25 @@ public class TxnController {
     return toResponse(txnService.create(principal.getId(), request));
   }
 
+  @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+  public TxnBulkResponse createBulk(
+    @AuthenticationPrincipal UserPrincipal principal,
+    @RequestParam(defaultValue = "true") boolean skipDuplicates,
+    InputStream body
+  ) {
+    return txnBulkService.ingest(principal.getId(), body, skipDuplicates);
+  }
+
+  /** Answers once the event is committed; 429 when the ingestion queue is full. */
+  @PostMapping("/feed")
+  public CompletableFuture<TxnFeedResponse> feed(
+    @AuthenticationPrincipal UserPrincipal principal,
+    @RequestParam(defaultValue = "true") boolean skipDuplicates,
+    @Valid @RequestBody TxnRequest request
+  ) {
+    return txnIngestionService.submit(principal.getId(), request, skipDuplicates);
+  }
+
   @PatchMapping("/{id}")
   public TxnResponse update(
     @AuthenticationPrincipal UserPrincipal principal,
@@ -4,6 +4,7 @@ import com.moneta.card.PaymentType;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.UUID;
 
 public class TxnDtos {
@@ -83,6 +84,39 @@ public class TxnDtos {
     boolean isActive
   ) {}
 
+  /** Outcome of one item of a bulk request; {@code index} is its 0-based position in the body. */
+  public record TxnBulkItemResult(
+    int index,
+    TxnBulkItemStatus status,
+    Long txnId,
+    String error
+  ) {}
+
+  /**
+   * Outcome of a bulk request. {@code error} is null when the whole body was read; otherwise
+   * it says why reading stopped, and {@code items} only covers the chunks written before that.
+   */
+  public record TxnBulkResponse(
+    int received,
+    int created,
+    int duplicates,
+    int errors,
+    List<TxnBulkItemResult> items,
+    String error
+  ) {}
+
+  /**
+   * Outcome of one feed event, sent once the micro-batch it was written in has committed;
+   * {@code batchSequence} and {@code batchSize} identify that batch.
+   */
+  public record TxnFeedResponse(
+    TxnBulkItemStatus status,
+    Long txnId,
+    String error,
+    long batchSequence,
+    int batchSize
+  ) {}
+
   public record TxnFilter(
     String monthRef,
     Long accountId,
@@ -0,0 +1,8 @@
+package com.moneta.txn;
+
+/** The feed queue stayed full for the whole offer timeout, or the service is shutting down. */
+public class TxnFeedRejectedException extends RuntimeException {
+  public TxnFeedRejectedException(String message) {
+    super(message);
+  }
+}
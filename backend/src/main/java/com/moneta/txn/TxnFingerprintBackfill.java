@@ -0,0 +1,90 @@
+package com.moneta.txn;
+
+import com.moneta.txn.TxnFingerprintService.BackfillChunk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills in {@code txn.fingerprint} for transactions that have none, e.g. after
+ * {@code app.fingerprint.strategy} changed and {@code R__fingerprint_strategy} cleared the
+ * column, on a background thread after startup. Each chunk of
+ * {@link TxnFingerprintService#backfillChunk} commits on its own. A user who imports before the
+ * thread reaches them is fingerprinted first by {@link TxnFingerprintService#fingerprintPending}.
+ *
+ * <p>Once every transaction has a fingerprint the first chunk comes back empty from
+ * {@code idx_txn_fingerprint_pending} and the thread ends. Chunks lock their rows with
+ * {@code SKIP LOCKED}, so nodes that start together split the work instead of repeating it.
+ */
+@Component
+@ConditionalOnProperty(name = "app.txn.fingerprint-backfill.enabled", havingValue = "true", matchIfMissing = true)
+public class TxnFingerprintBackfill implements SmartLifecycle {
+  private static final Logger logger = LoggerFactory.getLogger(TxnFingerprintBackfill.class);
+  private static final long STOP_TIMEOUT_MILLIS = 5_000;
+
+  private final TxnFingerprintService txnFingerprintService;
+  private volatile boolean running;
+  private Thread worker;
+
+  public TxnFingerprintBackfill(TxnFingerprintService txnFingerprintService) {
+    this.txnFingerprintService = txnFingerprintService;
+  }
+
+  @Override
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+    running = true;
+    worker = new Thread(this::backfill, "txn-fingerprint-backfill");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    try {
+      worker.join(STOP_TIMEOUT_MILLIS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  private void backfill() {
+    long started = System.nanoTime();
+    long afterId = 0L;
+    long count = 0;
+    try {
+      while (running) {
+        BackfillChunk chunk = txnFingerprintService.backfillChunk(afterId);
+        count += chunk.count();
+        afterId = chunk.lastId();
+        if (chunk.last()) {
+          break;
+        }
+      }
+    } catch (RuntimeException ex) {
+      // The next startup picks up where this one stopped
+      logger.warn("Txn fingerprint backfill stopped after {} transactions: {}", count, ex.getMessage());
+      return;
+    }
+    if (count > 0) {
+      logger.info(
+        "Backfilled txn fingerprints count={} durationMs={}",
+        count,
+        (System.nanoTime() - started) / 1_000_000
+      );
+    }
+  }
+}
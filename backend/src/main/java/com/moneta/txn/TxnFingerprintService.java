@@ -0,0 +1,102 @@
+package com.moneta.txn;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Answers "which of these fingerprints already exist for the user" against the stored
+ * {@code txn.fingerprint} column, instead of loading and re-hashing the user's whole history.
+ */
+@Service
+public class TxnFingerprintService {
+  private static final int LOOKUP_CHUNK_SIZE = 1000;
+  private static final int BACKFILL_CHUNK_SIZE = 500;
+
+  private final TxnRepository txnRepository;
+  private final TxnFingerprinter txnFingerprinter;
+  private final TransactionTemplate transactionTemplate;
+
+  public TxnFingerprintService(
+    TxnRepository txnRepository,
+    TxnFingerprinter txnFingerprinter,
+    TransactionTemplate transactionTemplate
+  ) {
+    this.txnRepository = txnRepository;
+    this.txnFingerprinter = txnFingerprinter;
+    this.transactionTemplate = transactionTemplate;
+  }
+
+  public TxnFingerprinter fingerprinter() {
+    return txnFingerprinter;
+  }
+
+  /**
+   * Read-only; looks the fingerprints up with the index only. Transactions without a
+   * fingerprint are not found, so callers run {@link #fingerprintPending} for the user first.
+   */
+  @Transactional(readOnly = true)
+  public Set<Fingerprint> findExisting(Long userId, Collection<Fingerprint> fingerprints) {
+    if (fingerprints.isEmpty()) {
+      return Set.of();
+    }
+    Set<Fingerprint> existing = new HashSet<>();
+    List<Fingerprint> pending = new ArrayList<>(fingerprints);
+    for (int start = 0; start < pending.size(); start += LOOKUP_CHUNK_SIZE) {
+      List<Fingerprint> chunk = pending.subList(start, Math.min(start + LOOKUP_CHUNK_SIZE, pending.size()));
+      existing.addAll(txnRepository.findExistingFingerprints(userId, chunk));
+    }
+    return existing;
+  }
+
+  /**
+   * Fingerprints the next active transactions, by id after {@code afterId}, that have none yet
+   * and that no other backfill holds.
+   *
+   * @return the number of transactions fingerprinted, and the id to continue after
+   */
+  @Transactional
+  public BackfillChunk backfillChunk(long afterId) {
+    return fingerprint(txnRepository.lockPendingFingerprints(afterId), afterId);
+  }
+
+  /**
+   * Fingerprints the user's active transactions that have none yet (cleared after a strategy
+   * change and not yet reached by {@link TxnFingerprintBackfill}), so {@link #findExisting}
+   * cannot miss them. Each chunk commits on its own: call it before opening the transaction
+   * that looks up duplicates, not inside it. Once the user is done,
+   * {@code idx_txn_fingerprint_pending} answers without touching a row.
+   */
+  public void fingerprintPending(Long userId) {
+    if (!txnRepository.existsByUserIdAndIsActiveTrueAndFingerprintIsNull(userId)) {
+      return;
+    }
+    long afterId = 0L;
+    BackfillChunk chunk;
+    do {
+      long after = afterId;
+      chunk = transactionTemplate.execute(status -> fingerprint(
+        txnRepository.findTop500ByUserIdAndIsActiveTrueAndFingerprintIsNullAndIdGreaterThanOrderByIdAsc(userId, after),
+        after
+      ));
+      afterId = chunk.lastId();
+    } while (!chunk.last());
+  }
+
+  private BackfillChunk fingerprint(List<Txn> txns, long afterId) {
+    long lastId = afterId;
+    for (Txn txn : txns) {
+      txn.setFingerprint(txnFingerprinter.fingerprint(txn));
+      lastId = txn.getId();
+    }
+    txnRepository.saveAll(txns);
+    return new BackfillChunk(txns.size(), lastId, txns.size() < BACKFILL_CHUNK_SIZE);
+  }
+
+  public record BackfillChunk(int count, long lastId, boolean last) {}
+}
@@ -0,0 +1,179 @@
+package com.moneta.txn;
+
+import com.moneta.card.PaymentType;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Computes the de-duplication fingerprint shared by transactions and import rows. Two entries
+ * with the same user, account or card, day, amount, direction and normalized description get
+ * the same fingerprint.
+ *
+ * <p>The fields are written as fixed-width binary into a per-thread buffer and handed to the
+ * configured {@link FingerprintStrategy}, so fingerprinting a row allocates little beyond the
+ * result.
+ */
+@Component
+public class TxnFingerprinter {
+  private static final int INITIAL_BUFFER_SIZE = 256;
+
+  private final FingerprintStrategy strategy;
+  private final ThreadLocal<Input> inputs = ThreadLocal.withInitial(Input::new);
+
+  public TxnFingerprinter() {
+    this(new Murmur3FingerprintStrategy());
+  }
+
+  @Autowired
+  public TxnFingerprinter(@Value("${app.fingerprint.strategy:murmur3-128}") String strategy) {
+    this(FingerprintStrategy.named(strategy));
+  }
+
+  public TxnFingerprinter(FingerprintStrategy strategy) {
+    this.strategy = strategy;
+  }
+
+  public FingerprintStrategy strategy() {
+    return strategy;
+  }
+
+  public Fingerprint fingerprint(
+    Long userId,
+    PaymentType paymentType,
+    Long accountOrCardId,
+    LocalDate date,
+    Long amountCents,
+    TxnDirection direction,
+    String description
+  ) {
+    Input input = inputs.get();
+    input.reset();
+    input.putLong(userId);
+    input.putByte(paymentType == null ? -1 : paymentType.ordinal());
+    input.putLong(accountOrCardId);
+    input.putLong(date == null ? null : date.toEpochDay());
+    input.putLong(amountCents);
+    input.putByte(direction == null ? -1 : direction.ordinal());
+    input.putNormalizedDescription(description);
+    return strategy.hash(input.bytes, input.length);
+  }
+
+  /**
+   * Fingerprints a transaction, using the UTC calendar day of {@code occurredAt} so the value
+   * does not depend on the offset the timestamp was written or read with.
+   *
+   * @return the fingerprint, or {@code null} when the transaction has no account or card yet
+   */
+  public Fingerprint fingerprint(Txn txn) {
+    return fingerprint(
+      txn.getUser() != null ? txn.getUser().getId() : null,
+      txn.getPaymentType(),
+      txn.getAccount() != null ? txn.getAccount().getId() : null,
+      txn.getCard() != null ? txn.getCard().getId() : null,
+      txn.getOccurredAt(),
+      txn.getAmountCents(),
+      txn.getDirection(),
+      txn.getDescription()
+    );
+  }
+
+  /**
+   * Like {@link #fingerprint(Txn)}, from the columns of a transaction row, for code that reads
+   * them without loading the entity.
+   */
+  public Fingerprint fingerprint(
+    Long userId,
+    PaymentType paymentType,
+    Long accountId,
+    Long cardId,
+    OffsetDateTime occurredAt,
+    Long amountCents,
+    TxnDirection direction,
+    String description
+  ) {
+    Long accountOrCardId = paymentType == PaymentType.PIX ? accountId : cardId;
+    if (accountOrCardId == null || occurredAt == null) {
+      return null;
+    }
+    LocalDate date = occurredAt.withOffsetSameInstant(ZoneOffset.UTC).toLocalDate();
+    return fingerprint(userId, paymentType, accountOrCardId, date, amountCents, direction, description);
+  }
+
+  /** Growable byte buffer the fields are serialized into. */
+  private static final class Input {
+    private byte[] bytes = new byte[INITIAL_BUFFER_SIZE];
+    private int length;
+
+    void reset() {
+      length = 0;
+    }
+
+    void putByte(int value) {
+      ensureCapacity(1);
+      bytes[length++] = (byte) value;
+    }
+
+    void putLong(Long value) {
+      // A presence byte keeps null distinct from every real value
+      if (value == null) {
+        putByte(0);
+        return;
+      }
+      putByte(1);
+      ensureCapacity(8);
+      long v = value;
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        bytes[length++] = (byte) (v >>> shift);
+      }
+    }
+
+    /**
+     * Drops leading and trailing whitespace, collapses inner runs to one space and
+     * upper-cases, writing UTF-16 code units directly instead of going through a regex and
+     * intermediate strings.
+     */
+    void putNormalizedDescription(String description) {
+      if (description == null) {
+        return;
+      }
+      ensureCapacity(description.length() * 2);
+      boolean pendingSpace = false;
+      boolean started = false;
+      for (int i = 0; i < description.length(); i++) {
+        char c = description.charAt(i);
+        if (isWhitespace(c)) {
+          pendingSpace = started;
+          continue;
+        }
+        if (pendingSpace) {
+          putChar(' ');
+          pendingSpace = false;
+        }
+        putChar(Character.toUpperCase(c));
+        started = true;
+      }
+    }
+
+    private void putChar(char c) {
+      bytes[length++] = (byte) (c >>> 8);
+      bytes[length++] = (byte) c;
+    }
+
+    private void ensureCapacity(int extra) {
+      if (length + extra > bytes.length) {
+        byte[] grown = new byte[Math.max(bytes.length * 2, length + extra)];
+        System.arraycopy(bytes, 0, grown, 0, length);
+        bytes = grown;
+      }
+    }
+
+    // Same set as the regex class \s
+    private static boolean isWhitespace(char c) {
+      return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+  }
+}
@@ -0,0 +1,252 @@
+package com.moneta.txn;
+
+import com.moneta.txn.TxnDtos.TxnBulkItemResult;
+import com.moneta.txn.TxnDtos.TxnFeedResponse;
+import com.moneta.txn.TxnDtos.TxnRequest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Continuous ingestion for bank feeds that push one transaction at a time. Events wait in a
+ * bounded queue and a single drainer thread writes them in micro-batches: whatever arrived
+ * within {@code app.txn.feed.max-delay-ms} of the first event, up to
+ * {@code app.txn.feed.max-batch}, goes in one database transaction, so the commit cost is
+ * shared by the whole batch instead of paid per event.
+ *
+ * <p>An event is only answered once the batch holding it has committed, so a response means
+ * the transaction is durable. When the queue stays full for {@code app.txn.feed.offer-timeout-ms}
+ * the event is rejected with {@link TxnFeedRejectedException} and the client is expected to
+ * retry later.
+ */
+@Service
+public class TxnIngestionService implements SmartLifecycle {
+  private static final Logger logger = LoggerFactory.getLogger(TxnIngestionService.class);
+  private static final long POLL_MILLIS = 100;
+  private static final long STOP_TIMEOUT_MILLIS = 30_000;
+
+  private final TxnBulkService txnBulkService;
+  private final TransactionTemplate transactionTemplate;
+  private final BlockingQueue<FeedEvent> queue;
+  private final int maxBatch;
+  private final long maxDelayNanos;
+  private final long offerTimeoutMillis;
+  private volatile boolean running;
+  private Thread drainer;
+  private long batchSequence;
+
+  public TxnIngestionService(
+    TxnBulkService txnBulkService,
+    TransactionTemplate transactionTemplate,
+    @Value("${app.txn.feed.queue-capacity:10000}") int queueCapacity,
+    @Value("${app.txn.feed.max-batch:500}") int maxBatch,
+    @Value("${app.txn.feed.max-delay-ms:10}") long maxDelayMillis,
+    @Value("${app.txn.feed.offer-timeout-ms:100}") long offerTimeoutMillis
+  ) {
+    if (queueCapacity < 1 || maxBatch < 1 || maxDelayMillis < 0 || offerTimeoutMillis < 0) {
+      throw new IllegalStateException("configuração inválida de app.txn.feed");
+    }
+    this.txnBulkService = txnBulkService;
+    this.transactionTemplate = transactionTemplate;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.maxBatch = maxBatch;
+    this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+    this.offerTimeoutMillis = offerTimeoutMillis;
+  }
+
+  /**
+   * Queues one transaction. The future completes after the batch it was written in has
+   * committed, with the item's outcome (an invalid or duplicate item is not an error here).
+   * With {@code skipDuplicates} off, an event identical to an existing transaction (two equal
+   * purchases on the same day, say) is written too, as with {@code POST /txns/bulk}.
+   */
+  public CompletableFuture<TxnFeedResponse> submit(Long userId, TxnRequest request, boolean skipDuplicates) {
+    if (!running) {
+      throw new TxnFeedRejectedException("serviço de ingestão indisponível, tente novamente em instantes");
+    }
+    FeedEvent event = new FeedEvent(userId, request, skipDuplicates, new CompletableFuture<>());
+    boolean queued;
+    try {
+      queued = queue.offer(event, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      queued = false;
+    }
+    if (!queued) {
+      throw new TxnFeedRejectedException("fila de ingestão cheia, tente novamente em instantes");
+    }
+    return event.result();
+  }
+
+  @Override
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+    running = true;
+    drainer = new Thread(this::drain, "txn-feed");
+    drainer.start();
+  }
+
+  /** Stops taking events, writes what is already queued and waits for the drainer to finish. */
+  @Override
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    try {
+      drainer.join(STOP_TIMEOUT_MILLIS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    List<FeedEvent> left = new ArrayList<>();
+    queue.drainTo(left);
+    left.forEach(event -> event.result().completeExceptionally(
+      new TxnFeedRejectedException("serviço de ingestão encerrando, tente novamente em instantes")));
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  /** Starts before and stops after the web server, so no accepted request loses its event. */
+  @Override
+  public int getPhase() {
+    return SmartLifecycle.DEFAULT_PHASE - 4096;
+  }
+
+  private void drain() {
+    List<FeedEvent> batch = new ArrayList<>(maxBatch);
+    while (running || !queue.isEmpty()) {
+      try {
+        FeedEvent first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < maxBatch) {
+          if (queue.drainTo(batch, maxBatch - batch.size()) > 0) {
+            continue;
+          }
+          long remaining = deadline - System.nanoTime();
+          FeedEvent next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+        }
+        commit(batch);
+      } catch (InterruptedException ex) {
+        // Nothing interrupts the drainer on purpose; write what was taken and let stop() fail the rest
+        Thread.currentThread().interrupt();
+        commit(batch);
+        return;
+      } catch (RuntimeException ex) {
+        logger.error("Txn feed drainer failed", ex);
+        batch.forEach(event -> event.result().completeExceptionally(ex));
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  /**
+   * Writes a batch in one transaction, one {@link TxnBulkService#write} call per user and
+   * duplicate setting. If the transaction fails, each of those groups is retried in a
+   * transaction of its own, so one user's failure does not fail the events of the others.
+   */
+  private void commit(List<FeedEvent> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    long sequence = ++batchSequence;
+    long started = System.nanoTime();
+    Map<FeedGroup, List<FeedEvent>> byGroup = new LinkedHashMap<>();
+    for (FeedEvent event : batch) {
+      byGroup.computeIfAbsent(new FeedGroup(event.userId(), event.skipDuplicates()), ignored -> new ArrayList<>())
+        .add(event);
+    }
+    // Before the transaction, so it does not wait on a user's history being fingerprinted
+    byGroup.keySet().stream()
+      .filter(FeedGroup::skipDuplicates)
+      .map(FeedGroup::userId)
+      .distinct()
+      .forEach(txnBulkService::fingerprintPending);
+    Map<FeedGroup, List<TxnBulkItemResult>> results;
+    try {
+      results = transactionTemplate.execute(status -> {
+        Map<FeedGroup, List<TxnBulkItemResult>> written = new LinkedHashMap<>();
+        byGroup.forEach((group, events) -> written.put(group, write(group, events)));
+        return written;
+      });
+    } catch (RuntimeException ex) {
+      if (byGroup.size() == 1) {
+        logger.error("Txn feed batch {} failed", sequence, ex);
+        batch.forEach(event -> event.result().completeExceptionally(ex));
+        return;
+      }
+      logger.warn("Txn feed batch {} failed, retrying per user: {}", sequence, ex.getMessage());
+      byGroup.forEach((group, events) -> commitAlone(sequence, batch.size(), group, events));
+      return;
+    }
+    for (Map.Entry<FeedGroup, List<FeedEvent>> entry : byGroup.entrySet()) {
+      complete(sequence, batch.size(), entry.getValue(), results.get(entry.getKey()));
+    }
+    logger.debug(
+      "Txn feed batch {} size={} users={} durationMs={}",
+      sequence,
+      batch.size(),
+      byGroup.keySet().stream().map(FeedGroup::userId).distinct().count(),
+      (System.nanoTime() - started) / 1_000_000
+    );
+  }
+
+  private void commitAlone(long sequence, int batchSize, FeedGroup group, List<FeedEvent> events) {
+    List<TxnBulkItemResult> results;
+    try {
+      results = transactionTemplate.execute(status -> write(group, events));
+    } catch (RuntimeException ex) {
+      logger.error("Txn feed batch {} failed for userId={}", sequence, group.userId(), ex);
+      events.forEach(event -> event.result().completeExceptionally(ex));
+      return;
+    }
+    complete(sequence, batchSize, events, results);
+  }
+
+  private List<TxnBulkItemResult> write(FeedGroup group, List<FeedEvent> events) {
+    List<TxnRequest> requests = events.stream().map(FeedEvent::request).toList();
+    return txnBulkService.write(group.userId(), requests, group.skipDuplicates());
+  }
+
+  private static void complete(long sequence, int batchSize, List<FeedEvent> events, List<TxnBulkItemResult> results) {
+    for (int i = 0; i < events.size(); i++) {
+      TxnBulkItemResult result = results.get(i);
+      events.get(i).result().complete(
+        new TxnFeedResponse(result.status(), result.txnId(), result.error(), sequence, batchSize)
+      );
+    }
+  }
+
+  private record FeedEvent(
+    Long userId,
+    TxnRequest request,
+    boolean skipDuplicates,
+    CompletableFuture<TxnFeedResponse> result
+  ) {}
+
+  private record FeedGroup(Long userId, boolean skipDuplicates) {}
+}
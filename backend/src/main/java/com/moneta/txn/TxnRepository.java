@@ -1,10 +1,13 @@
 package com.moneta.txn;
 
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -12,6 +15,36 @@ public interface TxnRepository extends JpaRepository<Txn, Long>, JpaSpecificatio
   Optional<Txn> findByIdAndUserIdAndIsActiveTrue(Long id, Long userId);
   List<Txn> findByUserIdAndAccountIdAndIsActiveTrue(Long userId, Long accountId);
   List<Txn> findAllByUserIdAndIsActiveTrue(Long userId);
+  boolean existsByUserIdAndIsActiveTrueAndFingerprintIsNull(Long userId);
+  List<Txn> findTop500ByUserIdAndIsActiveTrueAndFingerprintIsNullAndIdGreaterThanOrderByIdAsc(Long userId, Long afterId);
+
+  /**
+   * Locks the next active transactions after {@code afterId} that have no fingerprint, skipping
+   * ones another backfill has locked, so nodes backfilling at once each take different rows.
+   */
+  @Query(value = """
+    select *
+    from txn
+    where is_active = true
+      and fingerprint is null
+      and id > :afterId
+    order by id
+    limit 500
+    for update skip locked
+  """, nativeQuery = true)
+  List<Txn> lockPendingFingerprints(@Param("afterId") Long afterId);
+
+  @Query("""
+    select t.fingerprint
+    from Txn t
+    where t.user.id = :userId
+      and t.isActive = true
+      and t.fingerprint in :fingerprints
+  """)
+  List<Fingerprint> findExistingFingerprints(
+    @Param("userId") Long userId,
+    @Param("fingerprints") Collection<Fingerprint> fingerprints
+  );
 
   @Query("""
     select t.account.id as accountId,
@@ -138,6 +171,77 @@ public interface TxnRepository extends JpaRepository<Txn, Long>, JpaSpecificatio
     @Param("monthRef") String monthRef
   );
 
+  /**
+   * The next transactions, by id after {@code afterId}, that {@code POST /rules/apply} may
+   * categorize. Reads only what rule matching needs, so a whole ledger can be walked in
+   * chunks without loading entities.
+   */
+  @Query("""
+    select t.id as id,
+      a.id as accountId,
+      t.description as description,
+      t.categoryId as categoryId,
+      t.subcategoryId as subcategoryId
+    from Txn t
+      left join t.account a
+    where t.user.id = :userId
+      and t.id > :afterId
+      and t.isActive = true
+      and t.status = com.moneta.txn.TxnStatus.POSTED
+      and (:monthRef is null or t.monthRef = :monthRef)
+      and (:accountId is null or a.id = :accountId)
+      and (:onlyUncategorized = false or (t.categoryId is null and t.subcategoryId is null))
+      and (:overrideManual = true or t.categorizationMode is null
+        or t.categorizationMode <> com.moneta.txn.TxnCategorizationMode.MANUAL)
+    order by t.id
+  """)
+  List<RuleCandidateProjection> findRuleCandidates(
+    @Param("userId") Long userId,
+    @Param("afterId") Long afterId,
+    @Param("monthRef") String monthRef,
+    @Param("accountId") Long accountId,
+    @Param("onlyUncategorized") boolean onlyUncategorized,
+    @Param("overrideManual") boolean overrideManual,
+    Limit limit
+  );
+
+  /**
+   * Categorizes {@code ids} by one rule; a null category or subcategory keeps the current
+   * one. The candidate conditions are checked again, as the transactions may have changed
+   * since they were read.
+   *
+   * @return the number of transactions updated
+   */
+  @Modifying
+  @Query("""
+    update Txn t
+    set t.categoryId = coalesce(:categoryId, t.categoryId),
+      t.subcategoryId = coalesce(:subcategoryId, t.subcategoryId),
+      t.ruleId = :ruleId,
+      t.categorizationMode = com.moneta.txn.TxnCategorizationMode.RULE
+    where t.id in :ids
+      and t.isActive = true
+      and (:onlyUncategorized = false or (t.categoryId is null and t.subcategoryId is null))
+      and (:overrideManual = true or t.categorizationMode is null
+        or t.categorizationMode <> com.moneta.txn.TxnCategorizationMode.MANUAL)
+  """)
+  int applyRuleCategorization(
+    @Param("ids") Collection<Long> ids,
+    @Param("ruleId") Long ruleId,
+    @Param("categoryId") Long categoryId,
+    @Param("subcategoryId") Long subcategoryId,
+    @Param("onlyUncategorized") boolean onlyUncategorized,
+    @Param("overrideManual") boolean overrideManual
+  );
+
+  interface RuleCandidateProjection {
+    Long getId();
+    Long getAccountId();
+    String getDescription();
+    Long getCategoryId();
+    Long getSubcategoryId();
+  }
+
   interface TxnBalanceProjection {
     Long getAccountId();
     Long getBalanceCents();
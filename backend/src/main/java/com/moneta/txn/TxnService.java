@@ -34,6 +34,7 @@ public class TxnService {
   private final CardRepository cardRepository;
   private final CategoryRepository categoryRepository;
   private final AlertService alertService;
+  private final TxnFingerprinter txnFingerprinter;
 
   public TxnService(
     TxnRepository txnRepository,
@@ -41,7 +42,8 @@ public class TxnService {
     AccountRepository accountRepository,
     CardRepository cardRepository,
     CategoryRepository categoryRepository,
-    AlertService alertService
+    AlertService alertService,
+    TxnFingerprinter txnFingerprinter
   ) {
     this.txnRepository = txnRepository;
     this.userRepository = userRepository;
@@ -49,6 +51,7 @@ public class TxnService {
     this.cardRepository = cardRepository;
     this.categoryRepository = categoryRepository;
     this.alertService = alertService;
+    this.txnFingerprinter = txnFingerprinter;
   }
 
   @Transactional
@@ -60,7 +63,7 @@ public class TxnService {
     PaymentType paymentType = request.paymentType() != null ? request.paymentType() : PaymentType.PIX;
     
     // Validate payment type constraints
-    validatePaymentTypeConstraints(userId, paymentType, request.accountId(), request.cardId());
+    validatePaymentTypeConstraints(paymentType, request.accountId(), request.cardId());
     
     Account account = null;
     Card card = null;
@@ -97,6 +100,7 @@ public class TxnService {
     txn.setRuleId(request.ruleId());
     txn.setCategorizationMode(resolveCategorizationMode(request));
     txn.setImportBatchId(request.importBatchId());
+    txn.setFingerprint(txnFingerprinter.fingerprint(txn));
     Txn saved = txnRepository.save(txn);
     logger.info(
       "Transaction created userId={} txnId={} accountId={} cardId={} paymentType={} amountCents={} direction={} occurredAt={} categoryId={}",
@@ -159,7 +163,7 @@ public class TxnService {
     PaymentType paymentType = request.paymentType() != null ? request.paymentType() : PaymentType.PIX;
     
     // Validate payment type constraints
-    validatePaymentTypeConstraints(userId, paymentType, request.accountId(), request.cardId());
+    validatePaymentTypeConstraints(paymentType, request.accountId(), request.cardId());
     
     Account account = null;
     Card card = null;
@@ -193,6 +197,7 @@ public class TxnService {
     txn.setRuleId(request.ruleId());
     txn.setCategorizationMode(resolveCategorizationMode(request));
     txn.setImportBatchId(request.importBatchId());
+    txn.setFingerprint(txnFingerprinter.fingerprint(txn));
     Txn saved = txnRepository.save(txn);
     alertService.evaluateBudgetsForTxn(saved);
     return saved;
@@ -213,7 +218,7 @@ public class TxnService {
       .orElseThrow(() -> new IllegalArgumentException("categoria não encontrada"));
   }
 
-  private TxnCategorizationMode resolveCategorizationMode(TxnRequest request) {
+  static TxnCategorizationMode resolveCategorizationMode(TxnRequest request) {
     if (request.ruleId() != null) {
       return TxnCategorizationMode.RULE;
     }
@@ -224,7 +229,7 @@ public class TxnService {
     return null;
   }
 
-  private void validatePaymentTypeConstraints(Long userId, PaymentType paymentType, Long accountId, Long cardId) {
+  static void validatePaymentTypeConstraints(PaymentType paymentType, Long accountId, Long cardId) {
     if (paymentType == PaymentType.PIX) {
       if (accountId == null) {
         throw new IllegalArgumentException("transação PIX requer uma conta");
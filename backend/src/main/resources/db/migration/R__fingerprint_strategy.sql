@@ -0,0 +1,27 @@
+-- Keeps stored fingerprints comparable with the ones the configured strategy computes. Flyway
+-- re-runs this whenever the placeholder changes. The first run records the configured
+-- strategy, the only one anything was fingerprinted with since V13 cleared the old values. On a
+-- switch, txn.fingerprint is cleared so the startup backfill recomputes it (and a user who
+-- imports first is fingerprinted before the import), and READY rows lose their hash so
+-- committing them hashes them again. Rows of other statuses are never compared again. A no-op
+-- before V22 created the table (a migrate to an older target).
+DO $$
+DECLARE
+  stored TEXT;
+BEGIN
+  IF to_regclass('fingerprint_strategy') IS NULL THEN
+    RETURN;
+  END IF;
+  SELECT name INTO stored FROM fingerprint_strategy WHERE id = 1;
+  IF stored IS NULL THEN
+    INSERT INTO fingerprint_strategy (id, name) VALUES (1, '${fingerprint_strategy}');
+    RETURN;
+  END IF;
+  IF stored = '${fingerprint_strategy}' THEN
+    RETURN;
+  END IF;
+  UPDATE txn SET fingerprint = NULL WHERE fingerprint IS NOT NULL;
+  UPDATE import_row SET hash = NULL WHERE status = 'READY' AND hash IS NOT NULL;
+  UPDATE fingerprint_strategy SET name = '${fingerprint_strategy}', updated_at = now() WHERE id = 1;
+END
+$$;
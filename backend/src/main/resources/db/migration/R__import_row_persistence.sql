@@ -0,0 +1,18 @@
+-- Switches import_row_staged, the partition holding the rows of batches not yet committed,
+-- between UNLOGGED (no WAL, not replicated, emptied by crash recovery) and LOGGED. Committed and
+-- rejected rows are in import_row_kept, which stays logged either way. Flyway re-runs this
+-- whenever the placeholder changes; setting the table to the persistence it already has is a
+-- no-op, and so is running it before V18 created the partition (a migrate to an older target).
+DO $$
+BEGIN
+  IF to_regclass('import_row_staged') IS NULL THEN
+    RETURN;
+  END IF;
+  EXECUTE 'ALTER TABLE import_row_staged SET ${import_row_persistence}';
+  -- Ids must never be handed out twice, even if a crash empties the staged rows, since a row
+  -- keeps its id when it moves to import_row_kept
+  IF current_setting('server_version_num')::int >= 150000 THEN
+    EXECUTE 'ALTER SEQUENCE import_row_id_seq SET LOGGED';
+  END IF;
+END
+$$;
@@ -0,0 +1,18 @@
+-- Stored de-duplication fingerprint for transactions, so imports can check incoming rows
+-- against existing history with an index lookup instead of re-hashing every transaction.
+-- Existing rows are left NULL and filled in by the application on first use per user.
+ALTER TABLE txn ADD COLUMN fingerprint TEXT;
+
+CREATE INDEX idx_txn_user_fingerprint
+  ON txn (user_id, fingerprint)
+  WHERE is_active = TRUE;
+
+-- A batch can never produce the same transaction twice, even if it is committed concurrently
+CREATE UNIQUE INDEX uniq_txn_import_batch_fingerprint
+  ON txn (user_id, import_batch_id, fingerprint)
+  WHERE import_row_id IS NOT NULL AND is_active = TRUE;
+
+-- Keeps the "any fingerprints left to backfill?" check cheap once a user is done
+CREATE INDEX idx_txn_fingerprint_pending
+  ON txn (user_id, id)
+  WHERE fingerprint IS NULL AND is_active = TRUE;
@@ -0,0 +1,3 @@
+-- Bulk import commits link staged rows back to their transactions with a join on
+-- import_row_id; deleting staged rows also has to find referencing transactions.
+CREATE INDEX idx_txn_import_row_id ON txn (import_row_id) WHERE import_row_id IS NOT NULL;
@@ -0,0 +1,4 @@
+-- How many category/account/card names of a batch resolved against the user's reference data
+ALTER TABLE import_batch
+  ADD COLUMN reference_hits INTEGER NOT NULL DEFAULT 0,
+  ADD COLUMN reference_misses INTEGER NOT NULL DEFAULT 0;
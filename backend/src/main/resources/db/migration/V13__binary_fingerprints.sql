@@ -0,0 +1,11 @@
+-- Fingerprints are now 128-bit binary digests (murmur3 by default) instead of SHA-256 hex
+-- text, which halves the indexed key and drops the hex round-trip. The old values cannot be
+-- converted, so they are cleared, on txns and committed import rows alike.
+-- TxnFingerprintBackfill recomputes the txn ones after startup through
+-- idx_txn_fingerprint_pending, an import fingerprints its user's history first if it gets there
+-- sooner, and committing a batch re-hashes any READY row with a null hash. The indexes on both
+-- columns are rebuilt by the type change.
+
+ALTER TABLE txn ALTER COLUMN fingerprint TYPE BYTEA USING NULL;
+
+ALTER TABLE import_row ALTER COLUMN hash TYPE BYTEA USING NULL;
@@ -0,0 +1,5 @@
+-- Last row_index a chunked commit has fully written, so an interrupted commit resumes after it
+ALTER TABLE import_batch ADD COLUMN commit_checkpoint_row_index INTEGER;
+
+-- Chunked commits walk a batch's READY rows in row_index order
+CREATE INDEX idx_import_rows_batch_status_row_index ON import_row (batch_id, status, row_index);
@@ -0,0 +1,3 @@
+-- Keyset pagination of a batch's rows resumes after the last row_index of the previous page;
+-- the status-filtered listing uses idx_import_rows_batch_status_row_index from V14
+CREATE UNIQUE INDEX idx_import_rows_batch_row_index ON import_row (batch_id, row_index);
@@ -0,0 +1,16 @@
+-- The uploaded text of a batch is kept once, as deflated fixed-size blocks, and each row points
+-- at its record's character range in it instead of carrying a raw_line copy. raw_line stays for
+-- rows staged before this change.
+CREATE TABLE import_source_block (
+  batch_id BIGINT NOT NULL REFERENCES import_batch(id) ON DELETE CASCADE,
+  block_index INTEGER NOT NULL,
+  data BYTEA NOT NULL,
+  PRIMARY KEY (batch_id, block_index)
+);
+
+-- Blocks are already compressed; skip TOAST's own compression attempt
+ALTER TABLE import_source_block ALTER COLUMN data SET STORAGE EXTERNAL;
+
+ALTER TABLE import_row
+  ADD COLUMN raw_offset BIGINT,
+  ADD COLUMN raw_length INTEGER;
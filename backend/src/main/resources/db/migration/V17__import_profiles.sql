@@ -0,0 +1,29 @@
+-- How an institution's export is laid out: which header names carry each field, the CSV
+-- delimiter, the text charset and the date/amount formats. Null column names fall back to the
+-- default ones (date, description, amount, ...).
+CREATE TABLE import_profile (
+  id BIGSERIAL PRIMARY KEY,
+  user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+  institution_id BIGINT NOT NULL REFERENCES institution(id) ON DELETE CASCADE,
+  name TEXT NOT NULL,
+  delimiter TEXT NOT NULL DEFAULT ',',
+  charset TEXT NOT NULL DEFAULT 'UTF-8',
+  date_format TEXT NOT NULL DEFAULT 'yyyy-MM-dd',
+  amount_format TEXT NOT NULL DEFAULT 'DOT_DECIMAL',
+  date_column TEXT,
+  description_column TEXT,
+  amount_column TEXT,
+  category_column TEXT,
+  subcategory_column TEXT,
+  payment_method_column TEXT,
+  account_column TEXT,
+  card_column TEXT,
+  is_active BOOLEAN NOT NULL DEFAULT TRUE,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX idx_import_profile_user ON import_profile (user_id);
+
+ALTER TABLE import_batch
+  ADD COLUMN import_profile_id BIGINT REFERENCES import_profile(id) ON DELETE SET NULL;
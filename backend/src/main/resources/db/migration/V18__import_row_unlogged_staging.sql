@@ -0,0 +1,60 @@
+-- Staged import rows are scratch data until their batch is committed, so they may skip the WAL.
+-- import_row is split on whether its batch is still under review: rows of a batch that has not
+-- started committing live in import_row_staged, the only part R__import_row_persistence may make
+-- UNLOGGED (app.import.staging-persistence); committing moves them into import_row_kept, which is
+-- always logged, as are the rejected rows a direct import keeps. A crash can then only empty
+-- batches nobody committed. txn.import_row_id references import_row_kept, so a transaction can
+-- only point at a row that survives a crash.
+ALTER TABLE txn DROP CONSTRAINT txn_import_row_id_fkey;
+
+ALTER SEQUENCE import_row_id_seq OWNED BY NONE;
+
+CREATE TABLE import_row_new (
+  LIKE import_row INCLUDING DEFAULTS,
+  staged BOOLEAN NOT NULL DEFAULT TRUE,
+  PRIMARY KEY (id, staged)
+) PARTITION BY LIST (staged);
+
+CREATE TABLE import_row_staged PARTITION OF import_row_new FOR VALUES IN (TRUE);
+CREATE TABLE import_row_kept PARTITION OF import_row_new FOR VALUES IN (FALSE);
+
+-- Rows already linked to a transaction are kept whatever their batch's status
+INSERT INTO import_row_new
+SELECT r.*, b.status NOT IN ('COMMITTING', 'COMMITTED')
+  AND NOT EXISTS (SELECT 1 FROM txn t WHERE t.import_row_id = r.id)
+FROM import_row r
+JOIN import_batch b ON b.id = r.batch_id;
+
+DROP TABLE import_row;
+ALTER TABLE import_row_new RENAME TO import_row;
+ALTER TABLE import_row RENAME CONSTRAINT import_row_new_pkey TO import_row_pkey;
+ALTER SEQUENCE import_row_id_seq OWNED BY import_row.id;
+
+ALTER TABLE import_row
+  ADD CONSTRAINT import_row_batch_id_fkey FOREIGN KEY (batch_id) REFERENCES import_batch(id) ON DELETE CASCADE,
+  ADD CONSTRAINT import_row_user_id_fkey FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+  ADD CONSTRAINT import_row_resolved_category_id_fkey
+    FOREIGN KEY (resolved_category_id) REFERENCES category(id) ON DELETE SET NULL,
+  ADD CONSTRAINT import_row_resolved_account_id_fkey
+    FOREIGN KEY (resolved_account_id) REFERENCES account(id) ON DELETE SET NULL,
+  ADD CONSTRAINT import_row_resolved_card_id_fkey
+    FOREIGN KEY (resolved_card_id) REFERENCES card(id) ON DELETE SET NULL;
+
+-- Unique indexes on a partitioned table must include the partition key, so these only hold
+-- within a partition. A chunked commit moves a batch's rows into import_row_kept a range at a
+-- time, and until it ends they span both. Uniqueness still holds across them: rows are only
+-- inserted while the batch is UPLOADED, under its row lock, when they are all in one partition,
+-- and moving a row or clearing its hash cannot create a repeat
+CREATE INDEX idx_import_rows_user_batch_status ON import_row (user_id, batch_id, status);
+CREATE UNIQUE INDEX idx_import_rows_user_batch_hash ON import_row (user_id, batch_id, hash, staged)
+  WHERE hash IS NOT NULL;
+CREATE INDEX idx_import_row_resolved_account_id ON import_row (resolved_account_id);
+CREATE INDEX idx_import_row_resolved_card_id ON import_row (resolved_card_id);
+CREATE INDEX idx_import_rows_batch_status_row_index ON import_row (batch_id, status, row_index);
+CREATE UNIQUE INDEX idx_import_rows_batch_row_index ON import_row (batch_id, row_index, staged);
+
+ALTER TABLE import_row_kept ADD CONSTRAINT import_row_kept_id_key UNIQUE (id);
+
+ALTER TABLE txn
+  ADD CONSTRAINT txn_import_row_id_fkey
+    FOREIGN KEY (import_row_id) REFERENCES import_row_kept(id) ON DELETE SET NULL;
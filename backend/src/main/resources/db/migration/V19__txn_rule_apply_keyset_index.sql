@@ -0,0 +1,5 @@
+-- POST /rules/apply walks a user's posted transactions in id order, a chunk at a time
+-- (user_id = ? AND id > ? ORDER BY id LIMIT n); this serves each chunk straight from the index.
+CREATE INDEX idx_txn_user_posted_active_id
+  ON txn (user_id, id)
+  WHERE status = 'POSTED' AND is_active = TRUE;
@@ -0,0 +1,8 @@
+-- POST /rules/apply with strategy DATABASE filters txn by every rule pattern at once
+-- (description ILIKE '%...%' OR description ~* '...'); a trigram index serves those
+-- predicates, which a b-tree cannot. pg_trgm is a trusted extension, so the database owner
+-- may create it.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX idx_txn_description_trgm
+  ON txn USING gin (description gin_trgm_ops);
@@ -0,0 +1,11 @@
+-- Liveness of import jobs across nodes. The node running (or queueing) a batch's job refreshes
+-- heartbeat_at while the job lasts; an UPLOADED batch whose heartbeat is missing or stale has
+-- lost its job. Kept apart from import_batch so the refresh never waits on the row lock a
+-- staging transaction holds on the batch.
+CREATE TABLE import_job_heartbeat (
+  batch_id BIGINT PRIMARY KEY REFERENCES import_batch(id) ON DELETE CASCADE,
+  heartbeat_at TIMESTAMPTZ NOT NULL
+);
+
+-- The orphan sweep only looks at batches still waiting for their job
+CREATE INDEX idx_import_batch_uploaded ON import_batch (updated_at) WHERE status = 'UPLOADED';
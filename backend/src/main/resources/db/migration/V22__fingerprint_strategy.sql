@@ -0,0 +1,7 @@
+-- Name of the FingerprintStrategy that produced the stored txn.fingerprint and import_row.hash
+-- values. R__fingerprint_strategy compares it with app.fingerprint.strategy on every migrate.
+CREATE TABLE fingerprint_strategy (
+  id SMALLINT PRIMARY KEY DEFAULT 1 CHECK (id = 1),
+  name TEXT NOT NULL,
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
@@ -0,0 +1,46 @@
+package com.moneta.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.moneta.support.SyntheticCsvInputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Parser throughput on a file that uses every known column. Run with
+ * {@code mvn test -Pbench -Dtest=CsvParseThroughputBenchmark}; the first pass only warms up
+ * the JIT and is not reported. {@code -Dbench.parseParallelism=N} parses in segments on a pool
+ * of N threads.
+ */
+@Tag("benchmark")
+class CsvParseThroughputBenchmark {
+  private static final long ROWS = Long.getLong("bench.parseRows", 1_000_000L);
+  private static final int PASSES = Integer.getInteger("bench.passes", 3);
+  private static final int PARALLELISM = Integer.getInteger("bench.parseParallelism", 1);
+
+  private final CsvParserService csvParserService = new CsvParserService(new ForkJoinPool(PARALLELISM), 256 * 1024);
+
+  @Test
+  void parsesAllColumns() throws Exception {
+    parse(ROWS / 4);
+    for (int pass = 1; pass <= PASSES; pass++) {
+      long started = System.nanoTime();
+      long parsed = parse(ROWS);
+      double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+      System.out.printf("pass %d: parsed %d rows in %.2fs (%.0f rows/s)%n", pass, parsed, seconds, parsed / seconds);
+      assertThat(parsed).isEqualTo(ROWS);
+    }
+  }
+
+  private long parse(long rows) throws Exception {
+    AtomicLong parsed = new AtomicLong();
+    csvParserService.stream(new SyntheticCsvInputStream(rows, true), row -> {
+      if (row.status() == ImportRowStatus.PARSED) {
+        parsed.incrementAndGet();
+      }
+    });
+    return parsed.get();
+  }
+}
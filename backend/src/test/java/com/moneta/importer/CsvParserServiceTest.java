@@ -3,10 +3,16 @@ package com.moneta.importer;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
-import com.moneta.importer.CsvParserService.CsvParseResult;
+import com.moneta.importer.CsvParserService.CsvParsedRow;
 import com.moneta.txn.TxnDirection;
 import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.jupiter.api.Test;
 
 class CsvParserServiceTest {
@@ -16,12 +22,10 @@ class CsvParserServiceTest {
   void parsesMinimalCsv() throws Exception {
     String csv = "date,description,amount\n2024-01-05,Padaria,12.50";
 
-    CsvParseResult result = csvParserService.parse(
-      new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))
-    );
+    List<CsvParsedRow> rows = parse(csv);
 
-    assertThat(result.rows()).hasSize(1);
-    var row = result.rows().get(0);
+    assertThat(rows).hasSize(1);
+    var row = rows.get(0);
     assertThat(row.parsedDate()).hasToString("2024-01-05");
     assertThat(row.description()).isEqualTo("Padaria");
     assertThat(row.amountCents()).isEqualTo(1250L);
@@ -34,11 +38,9 @@ class CsvParserServiceTest {
   void parsesNegativeAmountAsOut() throws Exception {
     String csv = "date,description,amount\n2024-01-05,Taxi,-42.10";
 
-    CsvParseResult result = csvParserService.parse(
-      new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))
-    );
+    List<CsvParsedRow> rows = parse(csv);
 
-    var row = result.rows().get(0);
+    var row = rows.get(0);
     assertThat(row.amountCents()).isEqualTo(4210L);
     assertThat(row.direction()).isEqualTo(TxnDirection.OUT);
     assertThat(row.paymentType()).isNotNull();
@@ -48,22 +50,156 @@ class CsvParserServiceTest {
   void rejectsZeroAmountAndInvalidDate() throws Exception {
     String csv = "date,description,amount\n2024-99-01,Teste,0";
 
-    CsvParseResult result = csvParserService.parse(
-      new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))
-    );
+    List<CsvParsedRow> rows = parse(csv);
 
-    var row = result.rows().get(0);
+    var row = rows.get(0);
     assertThat(row.status()).isEqualTo(ImportRowStatus.ERROR);
     assertThat(row.errorMessage()).isNotBlank();
   }
 
+  @Test
+  void streamsRowsInFileOrder() throws Exception {
+    String csv = "date,description,amount\n2024-01-05,Padaria,12.50\n\n2024-01-06,Taxi,-8.00";
+    List<CsvParsedRow> rows = new ArrayList<>();
+
+    int count = csvParserService.stream(
+      new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+      rows::add
+    );
+
+    assertThat(count).isEqualTo(2);
+    assertThat(rows).extracting(CsvParsedRow::rowIndex).containsExactly(1, 2);
+    assertThat(rows).extracting(CsvParsedRow::description).containsExactly("Padaria", "Taxi");
+  }
+
+  @Test
+  void parsesLargeFileInSegmentsExactlyLikeSequentialRead() throws Exception {
+    StringBuilder csv = new StringBuilder("date,description,amount,category\r\n");
+    for (int i = 1; i <= 400; i++) {
+      String description = switch (i % 5) {
+        case 0 -> "\"Mercado, filial " + i + "\"";
+        case 1 -> "\"Nota \"\"" + i + "\"\"\nsegunda linha\r\nterceira\"";
+        case 2 -> "TV 50\" sala " + i;
+        case 3 -> "Padaria";
+        default -> "Taxi " + i;
+      };
+      csv.append(i % 7 == 0 ? "2024-13-01" : "2024-01-" + String.format("%02d", i % 28 + 1))
+        .append(',').append(description)
+        .append(',').append(i % 11 == 0 ? "abc" : "-" + i + ".50")
+        .append(i % 3 == 0 ? ",Lazer" : "")
+        .append(i % 4 == 0 ? "\n" : "\r\n")
+        .append(i % 9 == 0 ? "\r\n\n" : "");
+    }
+    byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+    List<CsvParsedRow> sequential = new ArrayList<>();
+    StringWriter sequentialSource = new StringWriter();
+    csvParserService.stream(new ByteArrayInputStream(bytes), sequentialSource, sequential::add);
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      CsvParserService parallelService = new CsvParserService(pool, 256);
+      List<CsvParsedRow> parallel = new ArrayList<>();
+      StringWriter parallelSource = new StringWriter();
+      Thread caller = Thread.currentThread();
+      // Short reads put the end of the text read so far anywhere, including between CR and LF
+      InputStream trickle = new ByteArrayInputStream(bytes) {
+        @Override
+        public synchronized int read(byte[] buffer, int offset, int length) {
+          return super.read(buffer, offset, Math.min(length, 7));
+        }
+      };
+      int count = parallelService.stream(trickle, parallelSource, row -> {
+        assertThat(Thread.currentThread()).isSameAs(caller);
+        parallel.add(row);
+      });
+
+      assertThat(count).isEqualTo(400);
+      assertThat(parallel).containsExactlyElementsOf(sequential);
+      assertThat(parallelSource.toString()).isEqualTo(sequentialSource.toString());
+      CsvParsedRow quoted = parallel.get(0);
+      assertThat(quoted.description()).isEqualTo("Nota \"1\"\nsegunda linha\r\nterceira");
+      assertThat(parallel).extracting(CsvParsedRow::status).contains(ImportRowStatus.ERROR);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  void matchesHeadersIgnoringCaseAndToleratesShortRecords() throws Exception {
+    String csv = "Date,Description,Amount,Payment_Method,Account\n" +
+      "2024-01-05,Padaria,-12.50,PIX,Conta Corrente\n" +
+      "2024-01-06,Taxi,-8.00";
+
+    List<CsvParsedRow> rows = parse(csv);
+
+    assertThat(rows).extracting(CsvParsedRow::status)
+      .containsExactly(ImportRowStatus.PARSED, ImportRowStatus.ERROR);
+    assertThat(rows.get(0).accountName()).isEqualTo("Conta Corrente");
+    CsvParsedRow shortRow = rows.get(1);
+    assertThat(csv.substring((int) shortRow.sourceOffset(), (int) shortRow.sourceOffset() + shortRow.sourceLength()).strip())
+      .isEqualTo("2024-01-06,Taxi,-8.00");
+    assertThat(rows.get(1).errorMessage()).isEqualTo("transação PIX requer coluna 'account'");
+  }
+
+  @Test
+  void readsFileWithInstitutionProfile() throws Exception {
+    ImportProfile profile = new ImportProfile();
+    profile.setDelimiter(";");
+    profile.setCharset("ISO-8859-1");
+    profile.setDateFormat("dd/MM/yyyy");
+    profile.setAmountFormat(ImportAmountFormat.COMMA_DECIMAL);
+    profile.setDateColumn("Data");
+    profile.setDescriptionColumn("Histórico");
+    profile.setAmountColumn("Valor");
+    String csv = "Data;Histórico;Valor\n" +
+      "05/01/2024;Padaria São João;-1.234,56\n" +
+      "06/01/2024;Salário;3.500\n" +
+      "07/01/2024;Taxi;12,3";
+    List<CsvParsedRow> rows = new ArrayList<>();
+
+    csvParserService.stream(
+      new ByteArrayInputStream(csv.getBytes(StandardCharsets.ISO_8859_1)),
+      Writer.nullWriter(),
+      csvParserService.compile(profile),
+      rows::add
+    );
+
+    assertThat(rows).extracting(CsvParsedRow::parsedDate).extracting(Object::toString)
+      .containsExactly("2024-01-05", "2024-01-06", "2024-01-07");
+    assertThat(rows).extracting(CsvParsedRow::description)
+      .containsExactly("Padaria São João", "Salário", "Taxi");
+    assertThat(rows).extracting(CsvParsedRow::amountCents).containsExactly(123456L, 350000L, 1230L);
+    assertThat(rows).extracting(CsvParsedRow::direction)
+      .containsExactly(TxnDirection.OUT, TxnDirection.IN, TxnDirection.IN);
+  }
+
+  @Test
+  void parsesAmountsWithoutBigDecimal() {
+    assertThat(AmountParser.DOT_DECIMAL.parseCents("-42.10")).isEqualTo(-4210L);
+    assertThat(AmountParser.DOT_DECIMAL.parseCents("+7")).isEqualTo(700L);
+    assertThat(AmountParser.DOT_DECIMAL.parseCents(".5")).isEqualTo(50L);
+    assertThat(AmountParser.DOT_DECIMAL.parseCents("1.999")).isEqualTo(199L);
+    assertThat(AmountParser.COMMA_DECIMAL.parseCents("12.345.678,9")).isEqualTo(1234567890L);
+    for (String invalid : List.of("", "-", "1,5", "1e3", "12.50x", "99999999999999999999")) {
+      assertThatThrownBy(() -> AmountParser.DOT_DECIMAL.parseCents(invalid))
+        .as(invalid)
+        .isInstanceOf(NumberFormatException.class);
+    }
+    assertThatThrownBy(() -> AmountParser.COMMA_DECIMAL.parseCents("1.23,00"))
+      .isInstanceOf(NumberFormatException.class);
+  }
+
   @Test
   void rejectsMissingRequiredColumns() {
     String csv = "description,amount\nPadaria,10";
 
-    assertThatThrownBy(() -> csvParserService.parse(
-      new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))
-    )).isInstanceOf(IllegalArgumentException.class)
+    assertThatThrownBy(() -> parse(csv)).isInstanceOf(IllegalArgumentException.class)
       .hasMessageContaining("coluna obrigatória");
   }
+
+  private List<CsvParsedRow> parse(String csv) throws Exception {
+    List<CsvParsedRow> rows = new ArrayList<>();
+    csvParserService.stream(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), rows::add);
+    return rows;
+  }
 }
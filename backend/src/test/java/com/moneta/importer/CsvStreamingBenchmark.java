@@ -0,0 +1,55 @@
+package com.moneta.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.moneta.support.LiveHeapProbe;
+import com.moneta.support.SyntheticCsvInputStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams a multi-million-row CSV through the parser. Run with {@code mvn test -Pbench}, which
+ * caps the heap at {@code bench.maxHeap}; materializing the rows would not fit. Fails if the
+ * live heap grows by more than {@code bench.maxHeapGrowthMb} over the run.
+ */
+@Tag("benchmark")
+class CsvStreamingBenchmark {
+  private static final Logger logger = LoggerFactory.getLogger(CsvStreamingBenchmark.class);
+  private static final long ROWS = Long.getLong("bench.rows", 3_000_000L);
+  private static final long MAX_HEAP_GROWTH_MB = Long.getLong("bench.maxHeapGrowthMb", 32);
+  private static final long SAMPLE_EVERY_BYTES = 8L * 1024 * 1024;
+
+  private final CsvParserService csvParserService = new CsvParserService();
+
+  @Test
+  void streamsLargeFileWithinSmallHeap() throws Exception {
+    AtomicLong parsed = new AtomicLong();
+    LiveHeapProbe heap = new LiveHeapProbe();
+    long started = System.nanoTime();
+
+    int count = csvParserService.stream(heap.sampling(new SyntheticCsvInputStream(ROWS), SAMPLE_EVERY_BYTES), row -> {
+      if (row.status() == ImportRowStatus.PARSED) {
+        parsed.incrementAndGet();
+      }
+    });
+
+    double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+    heap.sample();
+    long growthMb = heap.growthBytes() / (1024 * 1024);
+    logger.info(
+      "Parsed rows={} seconds={} rowsPerSecond={} maxHeapMb={} heapGrowthMb={}",
+      count,
+      String.format(Locale.ROOT, "%.1f", seconds),
+      Math.round(count / seconds),
+      Runtime.getRuntime().maxMemory() / (1024 * 1024),
+      growthMb
+    );
+    assertThat(count).isEqualTo(ROWS);
+    assertThat(parsed.get()).isEqualTo(ROWS);
+    assertThat(growthMb).as("live heap growth in MB").isLessThanOrEqualTo(MAX_HEAP_GROWTH_MB);
+  }
+}
@@ -0,0 +1,66 @@
+package com.moneta.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.moneta.account.Account;
+import com.moneta.account.AccountRepository;
+import com.moneta.auth.User;
+import com.moneta.auth.UserRepository;
+import com.moneta.importer.ImportDtos.ImportCommitRequest;
+import com.moneta.importer.ImportDtos.ImportCommitResponse;
+import com.moneta.support.PostgresContainerTest;
+import com.moneta.support.SyntheticCsvMultipartFile;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Measures bulk commit throughput in rows per second. Needs Docker; run with
+ * {@code mvn test -Pbench -Dtest=ImportCommitBenchmark} and size it with
+ * {@code -Dbench.commitRows=...}.
+ */
+@Tag("benchmark")
+class ImportCommitBenchmark extends PostgresContainerTest {
+  private static final int ROWS = Integer.getInteger("bench.commitRows", 200_000);
+
+  @Autowired
+  private ImportService importService;
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private AccountRepository accountRepository;
+
+  @Test
+  void commitsLargeBatch() {
+    User user = new User();
+    user.setEmail("bench-commit" + System.nanoTime() + "@moneta.test");
+    user.setName("Bench");
+    user.setPasswordHash("hash");
+    user = userRepository.save(user);
+
+    Account account = new Account();
+    account.setUser(user);
+    account.setName("Carteira");
+    account.setType("CHECKING");
+    account.setCurrency("BRL");
+    account.setInitialBalanceCents(0L);
+    account = accountRepository.save(account);
+
+    var batch = importService.uploadCsv(user.getId(), account.getId(), new SyntheticCsvMultipartFile(ROWS));
+
+    long started = System.nanoTime();
+    ImportCommitResponse response = importService.commitBatch(
+      user.getId(),
+      batch.batchId(),
+      new ImportCommitRequest(false, true, true, null)
+    );
+    double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+
+    System.out.printf("committed %d rows in %.1fs (%.0f rows/s)%n",
+      response.createdTxns(), seconds, response.createdTxns() / seconds);
+    assertThat(response.createdTxns()).isEqualTo(ROWS);
+    assertThat(response.batchStatus()).isEqualTo(ImportBatchStatus.COMMITTED);
+  }
+}
@@ -0,0 +1,89 @@
+package com.moneta.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.moneta.importer.CsvParserService.CsvParsedRow;
+import com.moneta.importer.CsvParserService.CsvProfile;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.Test;
+
+class ImportFileReaderTest {
+  private static final String CSV = "date,description,amount\n2024-01-05,Padaria,12.50\n2024-01-06,Taxi,-8.00";
+
+  private final ImportFileReader reader = reader(1024 * 1024);
+
+  @Test
+  void inflatesGzipAndZipUploads() throws Exception {
+    ByteArrayOutputStream zip = new ByteArrayOutputStream();
+    try (ZipOutputStream out = new ZipOutputStream(zip)) {
+      out.putNextEntry(new ZipEntry("__MACOSX/._extrato.csv"));
+      out.write(new byte[] {0, 5, 22, 7});
+      out.putNextEntry(new ZipEntry("extrato/extrato.csv"));
+      out.write(CSV.getBytes(StandardCharsets.UTF_8));
+    }
+
+    for (byte[] upload : List.of(gzip(CSV.getBytes(StandardCharsets.UTF_8)), zip.toByteArray())) {
+      StringWriter source = new StringWriter();
+      List<CsvParsedRow> rows = new ArrayList<>();
+      reader.stream(new ByteArrayInputStream(upload), source, CsvProfile.DEFAULT, rows::add);
+
+      assertThat(rows).extracting(CsvParsedRow::description).containsExactly("Padaria", "Taxi");
+      assertThat(source.toString()).isEqualTo(CSV);
+    }
+  }
+
+  @Test
+  void unwrapsOnlyOnce() throws Exception {
+    byte[] nested = gzip(gzip(CSV.getBytes(StandardCharsets.UTF_8)));
+    List<CsvParsedRow> rows = new ArrayList<>();
+
+    // The inner gzip is what the outer one holds, so it is read as (unusable) CSV text
+    assertThatThrownBy(() ->
+      reader.stream(new ByteArrayInputStream(nested), Writer.nullWriter(), CsvProfile.DEFAULT, rows::add)
+    ).isInstanceOf(IllegalArgumentException.class);
+    assertThat(rows).extracting(CsvParsedRow::description).doesNotContain("Padaria");
+  }
+
+  @Test
+  void rejectsUploadInflatingPastLimit() throws Exception {
+    StringBuilder csv = new StringBuilder("date,description,amount\n");
+    for (int i = 0; i < 1000; i++) {
+      csv.append("2024-01-05,Padaria,12.50\n");
+    }
+    byte[] upload = gzip(csv.toString().getBytes(StandardCharsets.UTF_8));
+
+    ImportFileReader limited = reader(1024);
+    assertThatThrownBy(() ->
+      limited.stream(new ByteArrayInputStream(upload), Writer.nullWriter(), CsvProfile.DEFAULT, row -> { })
+    ).isInstanceOf(IllegalArgumentException.class)
+      .hasMessageContaining("excede o limite");
+  }
+
+  private static ImportFileReader reader(long maxInflatedBytes) {
+    return new ImportFileReader(
+      new CsvParserService(),
+      new OfxStatementParser(),
+      new QifStatementParser(),
+      maxInflatedBytes
+    );
+  }
+
+  private static byte[] gzip(byte[] content) throws IOException {
+    ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+      out.write(content);
+    }
+    return gzip.toByteArray();
+  }
+}
@@ -0,0 +1,197 @@
+package com.moneta.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.moneta.importer.ImportDtos.ImportBatchDetailResponse;
+import com.moneta.importer.ImportDtos.ImportBatchResponse;
+import com.moneta.importer.ImportDtos.ImportBatchTotals;
+import com.moneta.importer.ImportDtos.ImportJobResponse;
+import com.moneta.importer.ImportDtos.ImportReferenceStats;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.mock.web.MockMultipartFile;
+
+@ExtendWith(MockitoExtension.class)
+class ImportJobServiceTest {
+  @Mock
+  private ImportService importService;
+
+  @Mock
+  private ImportJobHeartbeat importJobHeartbeat;
+
+  private final MockMultipartFile file = new MockMultipartFile(
+    "file",
+    "import.csv",
+    "text/csv",
+    "date,description,amount\n2024-05-10,Mercado,-50.00".getBytes(StandardCharsets.UTF_8)
+  );
+
+  @Test
+  void submitRunsJobAndReportsProgress() {
+    ImportJobService importJobService = new ImportJobService(importService, Runnable::run, Runnable::run, importJobHeartbeat, 100);
+    when(importService.createBatch(1L, 2L, null, "import.csv")).thenReturn(batch(ImportBatchStatus.UPLOADED));
+    when(importService.stageUpload(eq(1L), eq(10L), any(InputStream.class), any(ImportProgress.class)))
+      .thenAnswer(invocation -> {
+        ImportProgress progress = invocation.getArgument(3);
+        progress.rowParsed();
+        progress.rowResolved();
+        progress.rowHashed();
+        return batch(ImportBatchStatus.PARSED);
+      });
+
+    importJobService.submitCsv(1L, 2L, file);
+    ImportJobResponse progress = importJobService.getProgress(1L, 10L);
+
+    assertThat(progress.status()).isEqualTo(ImportBatchStatus.PARSED);
+    assertThat(progress.rowsParsed()).isEqualTo(1);
+    assertThat(progress.rowsHashed()).isEqualTo(1);
+    assertThat(progress.finishedAt()).isNotNull();
+  }
+
+  @Test
+  void cancelBeforeWorkerStartsMarksBatchCancelled() {
+    List<Runnable> queued = new ArrayList<>();
+    ImportJobService importJobService = new ImportJobService(importService, queued::add, Runnable::run, importJobHeartbeat, 100);
+    when(importService.createBatch(1L, 2L, null, "import.csv")).thenReturn(batch(ImportBatchStatus.UPLOADED));
+
+    importJobService.submitCsv(1L, 2L, file);
+    assertThat(importJobService.cancel(1L, 10L).cancelRequested()).isTrue();
+    queued.forEach(Runnable::run);
+
+    assertThat(importJobService.getProgress(1L, 10L).status()).isEqualTo(ImportBatchStatus.CANCELLED);
+    verify(importService).markBatchStatus(1L, 10L, ImportBatchStatus.CANCELLED);
+    verify(importService, never()).stageUpload(any(), any(), any(), any());
+  }
+
+  @Test
+  void rejectedSubmissionRemovesBatch() {
+    ImportJobService importJobService = new ImportJobService(importService, task -> {
+      throw new TaskRejectedException("fila cheia");
+    }, Runnable::run, importJobHeartbeat, 100);
+    when(importService.createBatch(1L, 2L, null, "import.csv")).thenReturn(batch(ImportBatchStatus.UPLOADED));
+
+    assertThatThrownBy(() -> importJobService.submitCsv(1L, 2L, file))
+      .isInstanceOf(ImportJobRejectedException.class)
+      .hasMessageContaining("importações")
+      .hasCauseInstanceOf(TaskRejectedException.class);
+    verify(importService).deleteBatch(1L, 10L);
+    verify(importJobHeartbeat).release(10L);
+  }
+
+  @Test
+  void deletesSmallBatchInlineAndPurgesLargeOneInBackground() {
+    List<Runnable> queued = new ArrayList<>();
+    ImportJobService importJobService = new ImportJobService(importService, Runnable::run, queued::add, importJobHeartbeat, 100);
+    when(importService.getBatch(1L, 10L)).thenReturn(detail(10L, 99));
+    when(importService.getBatch(1L, 11L)).thenReturn(detail(11L, 250));
+    when(importService.purgeRows(1L, 11L, 10_000)).thenReturn(250, 0);
+
+    assertThat(importJobService.deleteBatch(1L, 10L)).isFalse();
+    assertThat(importJobService.deleteBatch(1L, 11L)).isTrue();
+
+    verify(importService).deleteBatch(1L, 10L);
+    verify(importService).markDeleting(1L, 11L);
+    verify(importService, never()).deleteBatch(1L, 11L);
+    queued.forEach(Runnable::run);
+    verify(importService).deleteBatch(1L, 11L);
+  }
+
+  @Test
+  void refusesDeletingUploadedBatchWhileItsJobIsAliveElsewhere() {
+    ImportJobService importJobService = new ImportJobService(importService, Runnable::run, Runnable::run, importJobHeartbeat, 100);
+    when(importService.getBatch(1L, 10L)).thenReturn(detail(10L, ImportBatchStatus.UPLOADED, 0));
+    when(importJobHeartbeat.isAlive(10L)).thenReturn(true);
+
+    assertThatThrownBy(() -> importJobService.deleteBatch(1L, 10L))
+      .isInstanceOf(ImportBatchConflictException.class)
+      .hasMessageContaining("em andamento");
+    verify(importService, never()).deleteBatch(1L, 10L);
+  }
+
+  @Test
+  void deletesUploadedBatchOnceItsJobIsDead() {
+    ImportJobService importJobService = new ImportJobService(importService, Runnable::run, Runnable::run, importJobHeartbeat, 100);
+    when(importService.getBatch(1L, 10L)).thenReturn(detail(10L, ImportBatchStatus.UPLOADED, 0));
+    when(importJobHeartbeat.isAlive(10L)).thenReturn(false);
+
+    assertThat(importJobService.deleteBatch(1L, 10L)).isFalse();
+    verify(importService).deleteBatch(1L, 10L);
+  }
+
+  @Test
+  void repeatedDeleteDoesNotResubmitPurgeStillInFlight() {
+    List<Runnable> queued = new ArrayList<>();
+    ImportJobService importJobService = new ImportJobService(importService, Runnable::run, queued::add, importJobHeartbeat, 100);
+    when(importService.getBatch(1L, 11L))
+      .thenReturn(detail(11L, 250), detail(11L, ImportBatchStatus.DELETING, 250), detail(11L, ImportBatchStatus.DELETING, 250));
+    when(importService.purgeRows(1L, 11L, 10_000)).thenReturn(0);
+
+    assertThat(importJobService.deleteBatch(1L, 11L)).isTrue();
+    assertThat(importJobService.deleteBatch(1L, 11L)).isTrue();
+    assertThat(queued).hasSize(1);
+    verify(importService).markDeleting(1L, 11L);
+
+    // Once the purge is over, deleting again submits a new one
+    queued.remove(0).run();
+    assertThat(importJobService.deleteBatch(1L, 11L)).isTrue();
+    assertThat(queued).hasSize(1);
+  }
+
+  @Test
+  void rejectedPurgeRestoresBatchStatus() {
+    ImportJobService importJobService = new ImportJobService(importService, Runnable::run, task -> {
+      throw new TaskRejectedException("fila cheia");
+    }, importJobHeartbeat, 100);
+    when(importService.getBatch(1L, 11L)).thenReturn(detail(11L, ImportBatchStatus.FAILED, 250));
+
+    assertThatThrownBy(() -> importJobService.deleteBatch(1L, 11L))
+      .isInstanceOf(ImportJobRejectedException.class)
+      .hasMessageContaining("exclusões")
+      .hasCauseInstanceOf(TaskRejectedException.class);
+    verify(importService).markDeleting(1L, 11L);
+    verify(importService).markBatchStatus(1L, 11L, ImportBatchStatus.FAILED);
+  }
+
+  private ImportBatchDetailResponse detail(Long batchId, int totalRows) {
+    return detail(batchId, ImportBatchStatus.PARSED, totalRows);
+  }
+
+  private ImportBatchDetailResponse detail(Long batchId, ImportBatchStatus status, int totalRows) {
+    return new ImportBatchDetailResponse(
+      batchId,
+      2L,
+      null,
+      "import.csv",
+      OffsetDateTime.now(),
+      status,
+      new ImportBatchTotals(totalRows, 0, 0, totalRows, 0),
+      new ImportReferenceStats(0, 0)
+    );
+  }
+
+  private ImportBatchResponse batch(ImportBatchStatus status) {
+    return new ImportBatchResponse(
+      10L,
+      2L,
+      null,
+      "import.csv",
+      OffsetDateTime.now(),
+      status,
+      new ImportBatchTotals(0, 0, 0, 0, 0)
+    );
+  }
+}
@@ -0,0 +1,85 @@
+package com.moneta.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.moneta.auth.User;
+import com.moneta.auth.UserRepository;
+import com.moneta.importer.CsvParserService.CsvProfile;
+import com.moneta.importer.ImportDtos.ImportProfileRequest;
+import com.moneta.institution.Institution;
+import com.moneta.institution.InstitutionRepository;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ImportProfileServiceTest {
+  @Mock
+  private ImportProfileRepository importProfileRepository;
+
+  @Mock
+  private InstitutionRepository institutionRepository;
+
+  @Mock
+  private UserRepository userRepository;
+
+  private final CsvParserService csvParserService = spy(new CsvParserService());
+
+  private ImportProfileService importProfileService;
+
+  @BeforeEach
+  void setup() {
+    importProfileService = new ImportProfileService(
+      importProfileRepository,
+      institutionRepository,
+      userRepository,
+      csvParserService
+    );
+  }
+
+  @Test
+  void createRejectsUnknownCharset() {
+    when(userRepository.findById(1L)).thenReturn(Optional.of(new User()));
+    when(institutionRepository.findByIdAndUserId(3L, 1L)).thenReturn(Optional.of(new Institution()));
+    ImportProfileRequest request = new ImportProfileRequest(
+      3L, "Banco XYZ", ";", "LATIN-99", "dd/MM/yyyy", ImportAmountFormat.COMMA_DECIMAL,
+      null, null, null, null, null, null, null, null
+    );
+
+    assertThatThrownBy(() -> importProfileService.create(1L, request))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessageContaining("charset inválido");
+  }
+
+  @Test
+  void compilesProfileOnceUntilItChanges() {
+    ImportProfile profile = mock(ImportProfile.class);
+    OffsetDateTime updatedAt = OffsetDateTime.now();
+    when(profile.getId()).thenReturn(5L);
+    when(profile.getUpdatedAt()).thenReturn(updatedAt);
+    when(profile.getDelimiter()).thenReturn(";");
+    when(profile.getCharset()).thenReturn("ISO-8859-1");
+    when(profile.getDateFormat()).thenReturn("dd/MM/yyyy");
+    when(profile.getAmountFormat()).thenReturn(ImportAmountFormat.COMMA_DECIMAL);
+
+    CsvProfile first = importProfileService.parserFor(profile);
+    CsvProfile second = importProfileService.parserFor(profile);
+    when(profile.getUpdatedAt()).thenReturn(updatedAt.plusSeconds(1));
+    CsvProfile third = importProfileService.parserFor(profile);
+
+    assertThat(second).isSameAs(first);
+    assertThat(third).isNotSameAs(first);
+    verify(csvParserService, times(2)).compile(profile);
+    assertThat(importProfileService.parserFor(null)).isSameAs(CsvProfile.DEFAULT);
+  }
+}
@@ -0,0 +1,65 @@
+package com.moneta.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.moneta.account.Account;
+import com.moneta.card.Card;
+import com.moneta.category.Category;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ImportReferenceResolverTest {
+  @Test
+  void resolvesNamesCaseInsensitivelyAndCountsHitsAndMisses() {
+    ImportReferenceResolver resolver = new ImportReferenceResolver(
+      List.of(category(1L, "Mercado"), category(2L, "mercado")),
+      List.of(account(10L, "Conta Corrente", true)),
+      List.of(card(20L, "Nubank"))
+    );
+
+    assertThat(resolver.resolveCategory(" MERCADO ")).contains(1L);
+    assertThat(resolver.resolveAccount("conta corrente")).contains(10L);
+    assertThat(resolver.resolveCard("20")).contains(20L);
+    assertThat(resolver.resolveCard("Inter")).isEmpty();
+    assertThat(resolver.resolveCategory("")).isEmpty();
+
+    assertThat(resolver.getHits()).isEqualTo(3);
+    assertThat(resolver.getMisses()).isEqualTo(1);
+  }
+
+  @Test
+  void inactiveAccountResolvesByIdButNotByName() {
+    ImportReferenceResolver resolver = new ImportReferenceResolver(
+      List.of(),
+      List.of(account(10L, "Antiga", false)),
+      List.of()
+    );
+
+    assertThat(resolver.resolveAccount("10")).contains(10L);
+    assertThat(resolver.resolveAccount("Antiga")).isEmpty();
+  }
+
+  private Category category(Long id, String name) {
+    Category category = mock(Category.class);
+    when(category.getId()).thenReturn(id);
+    when(category.getName()).thenReturn(name);
+    return category;
+  }
+
+  private Account account(Long id, String name, boolean active) {
+    Account account = mock(Account.class);
+    when(account.getId()).thenReturn(id);
+    when(account.getName()).thenReturn(name);
+    when(account.isActive()).thenReturn(active);
+    return account;
+  }
+
+  private Card card(Long id, String name) {
+    Card card = mock(Card.class);
+    when(card.getId()).thenReturn(id);
+    when(card.getName()).thenReturn(name);
+    return card;
+  }
+}
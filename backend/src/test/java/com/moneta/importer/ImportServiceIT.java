@@ -1,6 +1,8 @@
 package com.moneta.importer;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
@@ -13,6 +15,7 @@ import com.moneta.category.Category;
 import com.moneta.category.CategoryRepository;
 import com.moneta.importer.ImportDtos.ImportCommitRequest;
 import com.moneta.importer.ImportDtos.ImportCommitResponse;
+import com.moneta.importer.ImportRowRepository.StatusCount;
 import com.moneta.rule.RuleService;
 import com.moneta.txn.Txn;
 import com.moneta.txn.TxnCategorizationMode;
@@ -21,15 +24,24 @@ import com.moneta.txn.TxnRepository;
 import com.moneta.txn.TxnStatus;
 import com.moneta.txn.TxnType;
 import com.moneta.support.PostgresContainerTest;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import org.flywaydb.core.Flyway;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 @Tag("integration")
@@ -56,6 +68,15 @@ class ImportServiceIT extends PostgresContainerTest {
   @Autowired
   private TxnRepository txnRepository;
 
+  @Autowired
+  private ImportJobHeartbeat importJobHeartbeat;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private Flyway flyway;
+
   @MockBean
   private RuleService ruleService;
 
@@ -87,6 +108,8 @@ class ImportServiceIT extends PostgresContainerTest {
     assertThat(response.totals().errorRows()).isEqualTo(1);
     assertThat(response.totals().duplicateRows()).isEqualTo(1);
     assertThat(response.totals().readyRows()).isEqualTo(1);
+    assertThat(importService.getBatch(user.getId(), response.batchId()).referenceStats())
+      .isEqualTo(new ImportDtos.ImportReferenceStats(2, 0));
   }
 
   @Test
@@ -109,12 +132,12 @@ class ImportServiceIT extends PostgresContainerTest {
     ImportCommitResponse firstCommit = importService.commitBatch(
       user.getId(),
       batchResponse.batchId(),
-      new ImportCommitRequest(true, true, true)
+      new ImportCommitRequest(true, true, true, null)
     );
     ImportCommitResponse secondCommit = importService.commitBatch(
       user.getId(),
       batchResponse.batchId(),
-      new ImportCommitRequest(true, true, true)
+      new ImportCommitRequest(true, true, true, null)
     );
 
     assertThat(firstCommit.createdTxns()).isEqualTo(1);
@@ -123,6 +146,67 @@ class ImportServiceIT extends PostgresContainerTest {
       .hasSize(1);
   }
 
+  @Test
+  void movesRowsIntoLoggedPartitionOnCommit() {
+    User user = createUser();
+    Account account = createAccount(user);
+
+    String csv = "date,description,amount\n" +
+      "2024-02-01,Salário,100.00\n" +
+      "2024-02-02,Erro,0";
+
+    MockMultipartFile file = new MockMultipartFile(
+      "file",
+      "import.csv",
+      "text/csv",
+      csv.getBytes(StandardCharsets.UTF_8)
+    );
+
+    Long batchId = importService.uploadCsv(user.getId(), account.getId(), file).batchId();
+    assertThat(countRows("import_row_staged", batchId)).isEqualTo(2);
+
+    importService.commitBatch(user.getId(), batchId, new ImportCommitRequest(true, true, true, null));
+
+    assertThat(countRows("import_row_staged", batchId)).isZero();
+    assertThat(countRows("import_row_kept", batchId)).isEqualTo(2);
+    Long txnId = txnRepository.findByUserIdAndAccountIdAndIsActiveTrue(user.getId(), account.getId()).get(0).getId();
+    assertThat(jdbcTemplate.queryForObject(
+      "select count(*) from txn t join import_row_kept r on r.id = t.import_row_id where t.id = ?",
+      Integer.class,
+      txnId
+    )).isEqualTo(1);
+  }
+
+  @Test
+  void stagesWithoutWalAndMovesRowsChunkByChunkOnCommit() {
+    User user = createUser();
+    Account account = createAccount(user);
+
+    StringBuilder csv = new StringBuilder("date,description,amount\n");
+    for (int i = 0; i < 2000; i++) {
+      csv.append("2024-02-01,Compra número ").append(i).append(" no mercado do bairro,-").append(i + 1).append(".00\n");
+    }
+    csv.append("2024-02-02,Erro,0");
+    MockMultipartFile file = new MockMultipartFile(
+      "file",
+      "import.csv",
+      "text/csv",
+      csv.toString().getBytes(StandardCharsets.UTF_8)
+    );
+
+    long beforeStaging = walPosition();
+    Long batchId = importService.uploadCsv(user.getId(), account.getId(), file).batchId();
+    long stagingWal = walPosition() - beforeStaging;
+    importService.commitBatchInChunks(user.getId(), batchId, new ImportCommitRequest(false, true, true, 500));
+    long commitWal = walPosition() - beforeStaging - stagingWal;
+
+    // Staged rows skip the WAL, only the batch and its source blocks are logged; committing logs
+    // every row in import_row_kept and as a txn
+    assertThat(stagingWal).isLessThan(commitWal / 50);
+    assertThat(countRows("import_row_staged", batchId)).isZero();
+    assertThat(countRows("import_row_kept", batchId)).isEqualTo(2001);
+  }
+
   @Test
   void appliesRulesAfterCommit() {
     User user = createUser();
@@ -153,7 +237,7 @@ class ImportServiceIT extends PostgresContainerTest {
         return txns;
       });
 
-    importService.commitBatch(user.getId(), batchResponse.batchId(), new ImportCommitRequest(true, true, true));
+    importService.commitBatch(user.getId(), batchResponse.batchId(), new ImportCommitRequest(true, true, true, null));
 
     Txn saved = txnRepository.findByUserIdAndAccountIdAndIsActiveTrue(user.getId(), account.getId())
       .get(0);
@@ -162,7 +246,282 @@ class ImportServiceIT extends PostgresContainerTest {
   }
 
   @Test
-  void detectsDuplicatesAgainstExistingTxns() {
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void chunkedCommitResumesFromCheckpoint() {
+    User user = createUser();
+    Account account = createAccount(user);
+
+    String csv = "date,description,amount\n" +
+      "2024-05-01,Padaria,-10.00\n" +
+      "2024-05-02,Taxi,-20.00\n" +
+      "2024-05-03,Erro,0\n" +
+      "2024-05-04,Farmácia,-30.00\n" +
+      "2024-05-05,Cinema,-40.00\n" +
+      "2024-05-06,Livraria,-50.00";
+
+    MockMultipartFile file = new MockMultipartFile(
+      "file",
+      "import.csv",
+      "text/csv",
+      csv.getBytes(StandardCharsets.UTF_8)
+    );
+
+    var batchResponse = importService.uploadCsv(user.getId(), account.getId(), file);
+
+    // The second chunk fails after the first has been committed on its own
+    when(ruleService.applyRules(eq(user.getId()), any(List.class)))
+      .thenAnswer(invocation -> invocation.getArgument(1))
+      .thenThrow(new IllegalStateException("falha simulada"))
+      .thenAnswer(invocation -> invocation.getArgument(1));
+    ImportCommitRequest request = new ImportCommitRequest(true, true, true, 2);
+
+    assertThatThrownBy(() -> importService.commitBatchInChunks(user.getId(), batchResponse.batchId(), request))
+      .isInstanceOf(IllegalStateException.class);
+
+    ImportBatch interrupted = importBatchRepository.findById(batchResponse.batchId()).orElseThrow();
+    assertThat(interrupted.getStatus()).isEqualTo(ImportBatchStatus.COMMITTING);
+    assertThat(interrupted.getCommitCheckpointRowIndex()).isEqualTo(2);
+    // Only the committed chunk left the staged partition
+    assertThat(countRows("import_row_kept", batchResponse.batchId())).isEqualTo(2);
+    assertThat(countRows("import_row_staged", batchResponse.batchId())).isEqualTo(4);
+    assertThat(txnRepository.findByUserIdAndAccountIdAndIsActiveTrue(user.getId(), account.getId())).hasSize(2);
+
+    ImportCommitResponse resumed = importService.commitBatchInChunks(user.getId(), batchResponse.batchId(), request);
+
+    ImportBatch finished = importBatchRepository.findById(batchResponse.batchId()).orElseThrow();
+    assertThat(resumed.createdTxns()).isEqualTo(3);
+    assertThat(resumed.errors()).isEqualTo(1);
+    assertThat(resumed.batchStatus()).isEqualTo(ImportBatchStatus.COMMITTED);
+    assertThat(finished.getCommitCheckpointRowIndex()).isNull();
+    assertThat(finished.getCommittedRows()).isEqualTo(5);
+    assertThat(finished.getErrorRows()).isEqualTo(1);
+    assertThat(finished.getReadyRows()).isZero();
+    assertThat(importRowRepository.countByStatus(batchResponse.batchId(), user.getId()))
+      .extracting(StatusCount::getStatus, StatusCount::getRowCount)
+      .containsExactlyInAnyOrder(tuple(ImportRowStatus.COMMITTED, 5L), tuple(ImportRowStatus.ERROR, 1L));
+    assertThat(txnRepository.findByUserIdAndAccountIdAndIsActiveTrue(user.getId(), account.getId())).hasSize(5);
+    assertThat(countRows("import_row_kept", batchResponse.batchId())).isEqualTo(6);
+  }
+
+  @Test
+  void deletesBatchAndRowsInBulk() {
+    User user = createUser();
+    Account account = createAccount(user);
+
+    String csv = "date,description,amount\n" +
+      "2024-06-01,Padaria,-10.00\n" +
+      "2024-06-02,Taxi,-20.00";
+
+    MockMultipartFile file = new MockMultipartFile(
+      "file",
+      "import.csv",
+      "text/csv",
+      csv.getBytes(StandardCharsets.UTF_8)
+    );
+
+    var batchResponse = importService.uploadCsv(user.getId(), account.getId(), file);
+    importService.markDeleting(user.getId(), batchResponse.batchId());
+    int purged = importService.purgeRows(user.getId(), batchResponse.batchId(), 1);
+    importService.deleteBatch(user.getId(), batchResponse.batchId());
+
+    assertThat(purged).isEqualTo(1);
+    assertThat(importBatchRepository.findById(batchResponse.batchId())).isEmpty();
+    assertThat(importRowRepository.countByBatchIdAndUserId(batchResponse.batchId(), user.getId())).isZero();
+  }
+
+  @Test
+  void stagesRowsUnloggedAndUnlinksTxnsOfPurgedRows() {
+    User user = createUser();
+    Account account = createAccount(user);
+
+    MockMultipartFile file = new MockMultipartFile(
+      "file",
+      "import.csv",
+      "text/csv",
+      "date,description,amount\n2024-06-05,Padaria,-10.00".getBytes(StandardCharsets.UTF_8)
+    );
+    var batchResponse = importService.uploadCsv(user.getId(), account.getId(), file);
+    importService.commitBatch(user.getId(), batchResponse.batchId(), new ImportCommitRequest(false, true, true, null));
+    String linked = "select count(*) from txn where import_batch_id = ? and import_row_id is not null";
+    assertThat(jdbcTemplate.queryForObject(linked, Long.class, batchResponse.batchId())).isEqualTo(1L);
+
+    importService.purgeRows(user.getId(), batchResponse.batchId(), 10);
+
+    assertThat(jdbcTemplate.queryForObject(linked, Long.class, batchResponse.batchId())).isZero();
+    assertThat(jdbcTemplate.queryForList(
+      "select relpersistence from pg_class "
+        + "where relname in ('import_row_id_seq', 'import_row_kept', 'import_row_staged') order by relname",
+      String.class
+    )).containsExactly("p", "p", "u");
+  }
+
+  @Test
+  void refusesToCommitBatchWhoseStagedRowsWereLost() {
+    User user = createUser();
+    Account account = createAccount(user);
+
+    MockMultipartFile file = new MockMultipartFile(
+      "file",
+      "import.csv",
+      "text/csv",
+      "date,description,amount\n2024-06-06,Padaria,-10.00".getBytes(StandardCharsets.UTF_8)
+    );
+    var batchResponse = importService.uploadCsv(user.getId(), account.getId(), file);
+    // What crash recovery leaves of an unlogged table
+    importService.purgeRows(user.getId(), batchResponse.batchId(), 10);
+
+    assertThatThrownBy(() -> importService.commitBatch(
+      user.getId(),
+      batchResponse.batchId(),
+      new ImportCommitRequest(false, true, true, null)
+    )).isInstanceOf(IllegalArgumentException.class)
+      .hasMessageContaining("envie o arquivo novamente");
+  }
+
+  @Test
+  void pagesRowsWithCursor() {
+    User user = createUser();
+    Account account = createAccount(user);
+
+    String csv = "date,description,amount\n" +
+      "2024-07-01,Padaria,-10.00\n" +
+      "2024-07-02,Erro,0\n" +
+      "2024-07-03,Farmácia,-30.00\n" +
+      "2024-07-04,Cinema,-40.00\n" +
+      "2024-07-05,Livraria,-50.00";
+
+    MockMultipartFile file = new MockMultipartFile(
+      "file",
+      "import.csv",
+      "text/csv",
+      csv.getBytes(StandardCharsets.UTF_8)
+    );
+
+    var batchResponse = importService.uploadCsv(user.getId(), account.getId(), file);
+
+    var first = importService.listRows(user.getId(), batchResponse.batchId(), ImportRowStatus.READY, 0, 2, null, false);
+    var second = importService.listRows(
+      user.getId(), batchResponse.batchId(), ImportRowStatus.READY, 0, 2, first.nextCursor(), false
+    );
+    var all = importService.listRows(user.getId(), batchResponse.batchId(), null, 0, 10, null, true);
+
+    assertThat(first.rows()).extracting(ImportDtos.ImportRowResponse::rowIndex).containsExactly(1, 3);
+    assertThat(first.totalElements()).isEqualTo(4);
+    assertThat(second.rows()).extracting(ImportDtos.ImportRowResponse::rowIndex).containsExactly(4, 5);
+    assertThat(second.nextCursor()).isNull();
+    assertThat(all.rows()).hasSize(5);
+    assertThat(all.rows()).extracting(ImportDtos.ImportRowResponse::rawLine)
+      .containsExactly(csv.lines().skip(1).toArray(String[]::new));
+    assertThat(all.nextCursor()).isNull();
+    assertThatThrownBy(() -> importService.listRows(user.getId(), batchResponse.batchId(), null, 0, 2, "x!", false))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void servesRawLinesSpanningSourceBlocks() {
+    User user = createUser();
+    Account account = createAccount(user);
+
+    String longDescription = "Descrição 😀 ".repeat(6_000);
+    String csv = "date,description,amount\r\n" +
+      "2024-08-01,Padaria,-10.00\r\n" +
+      "2024-08-02,\"" + longDescription + "\",-20.00\r\n" +
+      "2024-08-03,Taxi,-30.00\r\n";
+
+    MockMultipartFile file = new MockMultipartFile(
+      "file",
+      "import.csv",
+      "text/csv",
+      csv.getBytes(StandardCharsets.UTF_8)
+    );
+
+    var batchResponse = importService.uploadCsv(user.getId(), account.getId(), file);
+    var rows = importService.listRows(user.getId(), batchResponse.batchId(), null, 0, 10, null, true).rows();
+
+    assertThat(rows).extracting(ImportDtos.ImportRowResponse::rawLine).containsExactly(
+      "2024-08-01,Padaria,-10.00",
+      "2024-08-02,\"" + longDescription + "\",-20.00",
+      "2024-08-03,Taxi,-30.00"
+    );
+  }
+
+  @Test
+  void importsDirectlyAndKeepsOnlyRejectedRows() {
+    User user = createUser();
+    Account account = createAccount(user);
+
+    String csv = "date,description,amount\n" +
+      "2024-09-01,Padaria,-10.00\n" +
+      "2024-09-02,Erro,0\n" +
+      "2024-09-01,Padaria,-10.00\n" +
+      "2024-09-03,Taxi,-30.00";
+
+    var first = importService.createBatch(user.getId(), account.getId(), "feed.csv");
+    var response = importService.importDirect(
+      user.getId(),
+      first.batchId(),
+      new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+      new ImportProgress(user.getId(), first.batchId())
+    );
+
+    assertThat(response.status()).isEqualTo(ImportBatchStatus.COMMITTED);
+    assertThat(response.totals()).isEqualTo(new ImportDtos.ImportBatchTotals(4, 1, 1, 0, 2));
+    assertThat(txnRepository.findByUserIdAndAccountIdAndIsActiveTrue(user.getId(), account.getId()))
+      .extracting(Txn::getDescription)
+      .containsExactlyInAnyOrder("Padaria", "Taxi");
+    assertThat(importRowRepository.findByBatchIdAndUserId(first.batchId(), user.getId()))
+      .extracting(ImportRow::getRowIndex, ImportRow::getStatus)
+      .containsExactlyInAnyOrder(tuple(2, ImportRowStatus.ERROR), tuple(3, ImportRowStatus.DUPLICATE));
+
+    var second = importService.createBatch(user.getId(), account.getId(), "feed.csv");
+    var repeated = importService.importDirect(
+      user.getId(),
+      second.batchId(),
+      new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+      new ImportProgress(user.getId(), second.batchId())
+    );
+
+    assertThat(repeated.totals()).isEqualTo(new ImportDtos.ImportBatchTotals(4, 1, 3, 0, 0));
+    assertThat(txnRepository.findByUserIdAndAccountIdAndIsActiveTrue(user.getId(), account.getId())).hasSize(2);
+  }
+
+  @Test
+  void stagesOfxStatementLikeCsv() {
+    User user = createUser();
+    Account account = createAccount(user);
+
+    String ofx = "OFXHEADER:100\nDATA:OFXSGML\nCHARSET:1252\n\n<OFX><BANKMSGSRSV1><STMTTRNRS><STMTRS>" +
+      "<BANKTRANLIST>\n" +
+      "<STMTTRN>\n<DTPOSTED>20240901\n<TRNAMT>-10.00\n<NAME>Padaria\n</STMTTRN>\n" +
+      "<STMTTRN>\n<DTPOSTED>20240901\n<TRNAMT>-10.00\n<NAME>Padaria\n</STMTTRN>\n" +
+      "</BANKTRANLIST></STMTRS></STMTTRNRS></BANKMSGSRSV1></OFX>\n";
+
+    MockMultipartFile file = new MockMultipartFile(
+      "file",
+      "extrato.ofx",
+      "application/x-ofx",
+      ofx.getBytes(StandardCharsets.ISO_8859_1)
+    );
+
+    var batchResponse = importService.uploadCsv(user.getId(), account.getId(), file);
+    var rows = importService.listRows(user.getId(), batchResponse.batchId(), null, 0, 10, null, true).rows();
+
+    assertThat(batchResponse.totals()).isEqualTo(new ImportDtos.ImportBatchTotals(2, 0, 1, 1, 0));
+    assertThat(rows).extracting(ImportDtos.ImportRowResponse::rawLine).containsExactly(
+      "<STMTTRN>\n<DTPOSTED>20240901\n<TRNAMT>-10.00\n<NAME>Padaria\n</STMTTRN>",
+      "<STMTTRN>\n<DTPOSTED>20240901\n<TRNAMT>-10.00\n<NAME>Padaria\n</STMTTRN>"
+    );
+    ImportCommitResponse commit = importService.commitBatch(
+      user.getId(),
+      batchResponse.batchId(),
+      new ImportCommitRequest(false, true, true, null)
+    );
+    assertThat(commit.createdTxns()).isEqualTo(1);
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void detectsDuplicatesAgainstExistingTxnsBeforeTheBackfillReachesThem() {
     User user = createUser();
     Account account = createAccount(user);
 
@@ -178,6 +537,8 @@ class ImportServiceIT extends PostgresContainerTest {
     existing.setTxnType(TxnType.NORMAL);
     existing.setCategorizationMode(TxnCategorizationMode.MANUAL);
     txnRepository.save(existing);
+    // Written without a fingerprint, as after a strategy change; the import fingerprints the
+    // user's history before staging instead of waiting for the startup backfill
 
     String csv = "date,description,amount\n" +
       "2024-04-10,Mercado,-50.00";
@@ -196,6 +557,140 @@ class ImportServiceIT extends PostgresContainerTest {
       .allMatch(row -> row.getStatus() == ImportRowStatus.DUPLICATE);
   }
 
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void commitsEachStagedChunkAndLeavesBatchUploadedWhenStagingFails() {
+    User user = createUser();
+    Account account = createAccount(user);
+    Long batchId = importService.createBatch(user.getId(), account.getId(), "import.csv").batchId();
+
+    StringBuilder csv = new StringBuilder("date,description,amount\n");
+    for (int i = 0; i < 5_000; i++) {
+      csv.append("2024-03-01,Compra ").append(i).append(",-").append(i + 1).append(".00\n");
+    }
+    byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+    // The upload breaks off after the whole file was read, as a dropped connection would
+    InputStream broken = new SequenceInputStream(new ByteArrayInputStream(bytes), new InputStream() {
+      @Override
+      public int read() throws IOException {
+        throw new IOException("conexão perdida");
+      }
+    });
+
+    assertThatThrownBy(() -> importService.stageUpload(user.getId(), batchId, broken, new ImportProgress(user.getId(), batchId)))
+      .hasRootCauseInstanceOf(IOException.class);
+
+    // The chunks written before the failure stay, under a batch that never left UPLOADED
+    assertThat(statusOf(batchId)).isEqualTo(ImportBatchStatus.UPLOADED);
+    int staged = countRows("import_row_staged", batchId);
+    assertThat(staged).isPositive();
+    assertThat(staged % 1000).isZero();
+    assertThat(jdbcTemplate.queryForObject("select total_rows from import_batch where id = ?", Integer.class, batchId))
+      .isEqualTo(staged);
+
+    importService.markBatchStatus(user.getId(), batchId, ImportBatchStatus.FAILED);
+    importService.deleteBatch(user.getId(), batchId);
+    assertThat(countRows("import_row_staged", batchId)).isZero();
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void recomputesFingerprintsWhenTheStrategyChanges() {
+    User user = createUser();
+    Account account = createAccount(user);
+    var committed = importService.uploadCsv(user.getId(), account.getId(), csvFile("2024-05-02,Mercado,-50.00"));
+    importService.commitBatch(user.getId(), committed.batchId(), new ImportCommitRequest(false, true, true, null));
+    var staged = importService.uploadCsv(user.getId(), account.getId(), csvFile("2024-05-03,Padaria,-12.00"));
+
+    String configured = flyway.getConfiguration().getPlaceholders().get("fingerprint_strategy");
+    String other = configured.equals("sha256") ? "murmur3-128" : "sha256";
+    try {
+      migrateWithFingerprintStrategy(other);
+
+      assertThat(jdbcTemplate.queryForObject("select name from fingerprint_strategy", String.class)).isEqualTo(other);
+      assertThat(jdbcTemplate.queryForObject(
+        "select count(*) from txn where user_id = ? and fingerprint is not null",
+        Integer.class,
+        user.getId()
+      )).isZero();
+      assertThat(importRowRepository.findByBatchIdAndUserId(staged.batchId(), user.getId()))
+        .allMatch(row -> row.getStatus() == ImportRowStatus.READY && row.getHash() == null);
+    } finally {
+      migrateWithFingerprintStrategy(configured);
+    }
+
+    // Back on the configured strategy, the cleared values are computed again with it
+    assertThat(jdbcTemplate.queryForObject("select name from fingerprint_strategy", String.class)).isEqualTo(configured);
+    var repeated = importService.uploadCsv(user.getId(), account.getId(), csvFile("2024-05-02,Mercado,-50.00"));
+    assertThat(repeated.totals().duplicateRows()).isEqualTo(1);
+    ImportCommitResponse commit = importService.commitBatch(
+      user.getId(),
+      staged.batchId(),
+      new ImportCommitRequest(false, true, true, null)
+    );
+    assertThat(commit.createdTxns()).isEqualTo(1);
+  }
+
+  @Test
+  void failsUploadedBatchesWhoseJobIsDead() {
+    User user = createUser();
+    Account account = createAccount(user);
+    Long orphan = importService.createBatch(user.getId(), account.getId(), "orphan.csv").batchId();
+    Long running = importService.createBatch(user.getId(), account.getId(), "running.csv").batchId();
+    Long fresh = importService.createBatch(user.getId(), account.getId(), "fresh.csv").batchId();
+    jdbcTemplate.update(
+      "update import_batch set updated_at = now() - interval '10 minutes' where id in (?, ?)",
+      orphan,
+      running
+    );
+    importJobHeartbeat.register(running);
+
+    try {
+      importJobHeartbeat.failOrphans();
+
+      assertThat(statusOf(orphan)).isEqualTo(ImportBatchStatus.FAILED);
+      assertThat(statusOf(running)).isEqualTo(ImportBatchStatus.UPLOADED);
+      assertThat(statusOf(fresh)).isEqualTo(ImportBatchStatus.UPLOADED);
+      assertThat(importJobHeartbeat.isAlive(running)).isTrue();
+      assertThat(importJobHeartbeat.isAlive(orphan)).isFalse();
+    } finally {
+      importJobHeartbeat.release(running);
+    }
+  }
+
+  private MockMultipartFile csvFile(String line) {
+    return new MockMultipartFile(
+      "file",
+      "import.csv",
+      "text/csv",
+      ("date,description,amount\n" + line).getBytes(StandardCharsets.UTF_8)
+    );
+  }
+
+  private void migrateWithFingerprintStrategy(String strategy) {
+    Map<String, String> placeholders = new HashMap<>(flyway.getConfiguration().getPlaceholders());
+    placeholders.put("fingerprint_strategy", strategy);
+    Flyway.configure().configuration(flyway.getConfiguration()).placeholders(placeholders).load().migrate();
+  }
+
+  private int countRows(String partition, Long batchId) {
+    return jdbcTemplate.queryForObject(
+      "select count(*) from " + partition + " where batch_id = ?",
+      Integer.class,
+      batchId
+    );
+  }
+
+  private long walPosition() {
+    return jdbcTemplate.queryForObject("select pg_current_wal_insert_lsn() - '0/0'::pg_lsn", Long.class);
+  }
+
+  private ImportBatchStatus statusOf(Long batchId) {
+    return ImportBatchStatus.valueOf(
+      jdbcTemplate.queryForObject("select status from import_batch where id = ?", String.class, batchId)
+    );
+  }
+
   private User createUser() {
     User user = new User();
     user.setEmail("user" + System.nanoTime() + "@moneta.test");
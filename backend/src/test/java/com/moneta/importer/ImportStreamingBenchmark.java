@@ -0,0 +1,81 @@
+package com.moneta.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.moneta.account.Account;
+import com.moneta.account.AccountRepository;
+import com.moneta.auth.User;
+import com.moneta.auth.UserRepository;
+import com.moneta.support.LiveHeapProbe;
+import com.moneta.support.PostgresContainerTest;
+import com.moneta.support.SyntheticCsvInputStream;
+import java.util.Locale;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Stages a multi-million-row synthetic CSV end to end under the {@code bench} profile's small
+ * heap, and fails if the live heap grows by more than {@code bench.maxHeapGrowthMb} over the
+ * upload. Needs Docker for the Postgres container; tune the size with {@code -Dbench.rows=...}.
+ */
+@Tag("benchmark")
+class ImportStreamingBenchmark extends PostgresContainerTest {
+  private static final Logger logger = LoggerFactory.getLogger(ImportStreamingBenchmark.class);
+  private static final long ROWS = Long.getLong("bench.rows", 2_000_000L);
+  private static final long MAX_HEAP_GROWTH_MB = Long.getLong("bench.maxHeapGrowthMb", 32);
+  private static final long SAMPLE_EVERY_BYTES = 8L * 1024 * 1024;
+
+  @Autowired
+  private ImportService importService;
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private AccountRepository accountRepository;
+
+  @Test
+  void uploadsLargeFileWithFlatHeap() {
+    User user = new User();
+    user.setEmail("bench" + System.nanoTime() + "@moneta.test");
+    user.setName("Bench");
+    user.setPasswordHash("hash");
+    user = userRepository.save(user);
+
+    Account account = new Account();
+    account.setUser(user);
+    account.setName("Carteira");
+    account.setType("CHECKING");
+    account.setCurrency("BRL");
+    account.setInitialBalanceCents(0L);
+    account = accountRepository.save(account);
+
+    Long batchId = importService.createBatch(user.getId(), account.getId(), "synthetic.csv").batchId();
+    LiveHeapProbe heap = new LiveHeapProbe();
+    long started = System.nanoTime();
+    var response = importService.stageUpload(
+      user.getId(),
+      batchId,
+      heap.sampling(new SyntheticCsvInputStream(ROWS), SAMPLE_EVERY_BYTES),
+      new ImportProgress(user.getId(), batchId)
+    );
+    double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+    heap.sample();
+    long growthMb = heap.growthBytes() / (1024 * 1024);
+
+    logger.info(
+      "Staged rows={} seconds={} rowsPerSecond={} maxHeapMb={} heapGrowthMb={}",
+      ROWS,
+      String.format(Locale.ROOT, "%.1f", seconds),
+      Math.round(ROWS / seconds),
+      Runtime.getRuntime().maxMemory() / (1024 * 1024),
+      growthMb
+    );
+    assertThat(response.totals().totalRows()).isEqualTo((int) ROWS);
+    assertThat(response.totals().readyRows()).isEqualTo((int) ROWS);
+    assertThat(growthMb).as("live heap growth in MB").isLessThanOrEqualTo(MAX_HEAP_GROWTH_MB);
+  }
+}
@@ -0,0 +1,71 @@
+package com.moneta.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.moneta.importer.CsvParserService.CsvParsedRow;
+import com.moneta.importer.CsvParserService.CsvProfile;
+import com.moneta.txn.TxnDirection;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class OfxStatementParserTest {
+  private final OfxStatementParser parser = new OfxStatementParser();
+
+  @Test
+  void readsSgmlStatementWithoutEndTags() throws Exception {
+    String ofx = "OFXHEADER:100\r\nDATA:OFXSGML\r\nVERSION:102\r\nENCODING:USASCII\r\nCHARSET:1252\r\n\r\n" +
+      "<OFX><BANKMSGSRSV1><STMTTRNRS><STMTRS><BANKTRANLIST>\r\n" +
+      "<DTSTART>20240101\r\n" +
+      "<STMTTRN>\r\n<TRNTYPE>DEBIT\r\n<DTPOSTED>20240105120000[-3:BRT]\r\n<TRNAMT>-12.50\r\n" +
+      "<FITID>1\r\n<NAME>Padaria S&amp;A\r\n</STMTTRN>\r\n" +
+      "<STMTTRN>\r\n<TRNTYPE>CREDIT\r\n<DTPOSTED>20240106\r\n<TRNAMT>1500,00\r\n" +
+      "<FITID>2\r\n<MEMO>Salário\r\n</STMTTRN>\r\n" +
+      "<STMTTRN>\r\n<DTPOSTED>2024\r\n<TRNAMT>-1.00\r\n</STMTTRN>\r\n" +
+      "</BANKTRANLIST></STMTRS></STMTTRNRS></BANKMSGSRSV1></OFX>\r\n";
+    StringWriter source = new StringWriter();
+
+    List<CsvParsedRow> rows = parse(ofx, Charset.forName("windows-1252"), source);
+
+    assertThat(rows).extracting(CsvParsedRow::rowIndex).containsExactly(1, 2, 3);
+    assertThat(rows).extracting(CsvParsedRow::description).containsExactly("Padaria S&A", "Salário", null);
+    assertThat(rows).extracting(CsvParsedRow::amountCents).containsExactly(1250L, 150000L, null);
+    assertThat(rows).extracting(CsvParsedRow::direction).containsExactly(TxnDirection.OUT, TxnDirection.IN, null);
+    assertThat(rows.get(0).parsedDate()).hasToString("2024-01-05");
+    assertThat(rows.get(2).errorMessage()).isEqualTo("data inválida");
+    CsvParsedRow first = rows.get(0);
+    assertThat(source.toString().substring((int) first.sourceOffset(), (int) first.sourceOffset() + first.sourceLength()))
+      .startsWith("<STMTTRN>")
+      .endsWith("</STMTTRN>");
+  }
+
+  @Test
+  void readsXmlStatement() throws Exception {
+    String ofx = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<?OFX OFXHEADER=\"200\" VERSION=\"220\"?>\n" +
+      "<OFX><CREDITCARDMSGSRSV1><CCSTMTTRNRS><CCSTMTRS><BANKTRANLIST>\n" +
+      "<STMTTRN><TRNTYPE>DEBIT</TRNTYPE><DTPOSTED>20240310</DTPOSTED><TRNAMT>-99.90</TRNAMT>" +
+      "<NAME>Mercado Açaí</NAME></STMTTRN>\n" +
+      "</BANKTRANLIST></CCSTMTRS></CCSTMTTRNRS></CREDITCARDMSGSRSV1></OFX>";
+
+    List<CsvParsedRow> rows = parse(ofx, StandardCharsets.UTF_8, new StringWriter());
+
+    assertThat(rows).singleElement().satisfies(row -> {
+      assertThat(row.description()).isEqualTo("Mercado Açaí");
+      assertThat(row.amountCents()).isEqualTo(9990L);
+      assertThat(row.status()).isEqualTo(ImportRowStatus.PARSED);
+    });
+  }
+
+  private List<CsvParsedRow> parse(String ofx, Charset charset, StringWriter source) throws Exception {
+    BufferedInputStream inputStream = new BufferedInputStream(new ByteArrayInputStream(ofx.getBytes(charset)));
+    assertThat(parser.accepts(new String(ofx.getBytes(charset), StandardCharsets.ISO_8859_1))).isTrue();
+    List<CsvParsedRow> rows = new ArrayList<>();
+    parser.stream(inputStream, source, CsvProfile.DEFAULT, rows::add);
+    return rows;
+  }
+}
@@ -0,0 +1,67 @@
+package com.moneta.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.moneta.importer.CsvParserService.CsvParsedRow;
+import com.moneta.importer.CsvParserService.CsvProfile;
+import com.moneta.txn.TxnDirection;
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class QifStatementParserTest {
+  private final QifStatementParser parser = new QifStatementParser();
+
+  @Test
+  void readsBankTransactionsAndSkipsOtherSections() throws Exception {
+    String qif = "!Type:Cat\nNFood\nE\n^\n" +
+      "!Type:Bank\n" +
+      "D1/5'24\nT-1,234.56\nPPadaria\nLFood:Bakery\n^\n" +
+      "D01/06/2024\nT100.00\nMSalário\nL[Poupança]\n^\n" +
+      "D13/45/2024\nT-1.00\n^\n";
+    StringWriter source = new StringWriter();
+    List<CsvParsedRow> rows = new ArrayList<>();
+
+    assertThat(parser.accepts(qif)).isTrue();
+    parser.stream(new ByteArrayInputStream(qif.getBytes(StandardCharsets.UTF_8)), source, CsvProfile.DEFAULT, rows::add);
+
+    assertThat(rows).extracting(CsvParsedRow::rowIndex).containsExactly(1, 2, 3);
+    assertThat(rows).extracting(CsvParsedRow::description).containsExactly("Padaria", "Salário", null);
+    assertThat(rows).extracting(CsvParsedRow::amountCents).containsExactly(123456L, 10000L, null);
+    assertThat(rows).extracting(CsvParsedRow::direction).containsExactly(TxnDirection.OUT, TxnDirection.IN, null);
+    assertThat(rows).extracting(CsvParsedRow::categoryName).containsExactly("Food", null, null);
+    assertThat(rows.get(0).parsedDate()).hasToString("2024-01-05");
+    assertThat(rows.get(2).errorMessage()).isEqualTo("data inválida");
+    CsvParsedRow first = rows.get(0);
+    assertThat(source.toString().substring((int) first.sourceOffset(), (int) first.sourceOffset() + first.sourceLength()))
+      .isEqualTo("D1/5'24\nT-1,234.56\nPPadaria\nLFood:Bakery\n^\n");
+  }
+
+  @Test
+  void usesProfileFormats() throws Exception {
+    ImportProfile profile = new ImportProfile();
+    profile.setDelimiter(",");
+    profile.setCharset("ISO-8859-1");
+    profile.setDateFormat("dd/MM/yyyy");
+    profile.setAmountFormat(ImportAmountFormat.COMMA_DECIMAL);
+    String qif = "!Type:Bank\r\nD25/12/2024\r\nT-1.234,56\r\nPCafé\r\n^\r\n";
+    List<CsvParsedRow> rows = new ArrayList<>();
+
+    parser.stream(
+      new ByteArrayInputStream(qif.getBytes(StandardCharsets.ISO_8859_1)),
+      Writer.nullWriter(),
+      new CsvParserService().compile(profile),
+      rows::add
+    );
+
+    assertThat(rows).singleElement().satisfies(row -> {
+      assertThat(row.parsedDate()).hasToString("2024-12-25");
+      assertThat(row.amountCents()).isEqualTo(123456L);
+      assertThat(row.description()).isEqualTo("Café");
+    });
+  }
+}
@@ -39,12 +39,20 @@ class ImportFlowIntegrationTest extends WebIntegrationTest {
         .file(file)
         .param("accountId", accountId.toString())
         .header("Authorization", bearerToken(token)))
-      .andExpect(status().isOk())
+      .andExpect(status().isAccepted())
       .andReturn();
 
     JsonNode uploadJson = objectMapper.readTree(uploadResult.getResponse().getContentAsString());
     Long batchId = uploadJson.get("batchId").asLong();
-    JsonNode totals = uploadJson.get("totals");
+    JsonNode progressJson = awaitImport(token, batchId);
+    assertThat(progressJson.get("status").asText()).isEqualTo("PARSED");
+    assertThat(progressJson.get("rowsParsed").asInt()).isEqualTo(2);
+
+    MvcResult batchResult = mockMvc.perform(get("/api/import/batches/{id}", batchId)
+        .header("Authorization", bearerToken(token)))
+      .andExpect(status().isOk())
+      .andReturn();
+    JsonNode totals = objectMapper.readTree(batchResult.getResponse().getContentAsString()).get("totals");
     assertThat(totals.get("totalRows").asInt()).isEqualTo(2);
     assertThat(totals.get("duplicateRows").asInt()).isEqualTo(1);
     assertThat(totals.get("readyRows").asInt()).isEqualTo(1);
@@ -93,6 +101,21 @@ class ImportFlowIntegrationTest extends WebIntegrationTest {
     assertThat(txns.get(0).get("categorizationMode").asText()).isEqualTo("RULE");
   }
 
+  private JsonNode awaitImport(String token, Long batchId) throws Exception {
+    for (int attempt = 0; attempt < 100; attempt++) {
+      MvcResult result = mockMvc.perform(get("/api/import/batches/{id}/progress", batchId)
+          .header("Authorization", bearerToken(token)))
+        .andExpect(status().isOk())
+        .andReturn();
+      JsonNode progress = objectMapper.readTree(result.getResponse().getContentAsString());
+      if (!"UPLOADED".equals(progress.get("status").asText())) {
+        return progress;
+      }
+      Thread.sleep(100);
+    }
+    throw new AssertionError("importação não terminou");
+  }
+
   private Long createAccount(String token) throws Exception {
     Map<String, Object> accountRequest = Map.of(
       "name", "Conta Import",
@@ -2,19 +2,32 @@ package com.moneta.integration;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.moneta.support.WebIntegrationTest;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Tag("integration")
 class RuleApplyIntegrationTest extends WebIntegrationTest {
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
   @Test
   void applyRulesDoesNotOverrideManualCategorization() throws Exception {
     String token = registerUser("rule-apply@moneta.test").accessToken();
@@ -58,6 +71,220 @@ class RuleApplyIntegrationTest extends WebIntegrationTest {
     assertThat(ruleTxn.get("categorizationMode").asText()).isEqualTo("RULE");
   }
 
+  @Test
+  void appliesRulesAcrossTheWholeHistory() throws Exception {
+    String token = registerUser("rule-history@moneta.test").accessToken();
+    Long accountId = createAccount(token);
+    Long manualCategory = createCategory(token, "Manual");
+    Long ruleCategory = createCategory(token, "Farmácia");
+    createTxn(token, accountId, "Drogaria Sul", null, "2023-01-10T00:00:00Z");
+    createTxn(token, accountId, "DROGARIA SUL 0042", null, "2023-11-02T00:00:00Z");
+    createTxn(token, accountId, "Drogaria Sul", null, "2024-05-20T00:00:00Z");
+    createTxn(token, accountId, "Drogaria Sul", manualCategory, "2024-05-21T00:00:00Z");
+    createTxn(token, accountId, "Posto Shell", null, "2024-05-22T00:00:00Z");
+    createRule(token, "drogaria", ruleCategory);
+
+    MvcResult applyResult = mockMvc.perform(post("/api/rules/apply")
+        .header("Authorization", bearerToken(token))
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(objectMapper.writeValueAsString(Map.of("accountId", accountId))))
+      .andExpect(status().isOk())
+      .andReturn();
+
+    JsonNode applyJson = objectMapper.readTree(applyResult.getResponse().getContentAsString());
+    assertThat(applyJson.get("evaluated").asInt()).isEqualTo(4);
+    assertThat(applyJson.get("matched").asInt()).isEqualTo(3);
+    assertThat(applyJson.get("updated").asInt()).isEqualTo(3);
+    assertThat(applyJson.get("detailsSample").findValuesAsText("categoryId"))
+      .containsOnly(ruleCategory.toString());
+
+    MvcResult txnsResult = mockMvc.perform(get("/api/txns")
+        .param("q", "drogaria")
+        .header("Authorization", bearerToken(token)))
+      .andExpect(status().isOk())
+      .andReturn();
+    JsonNode txns = objectMapper.readTree(txnsResult.getResponse().getContentAsString());
+    assertThat(txns.findValuesAsText("categorizationMode")).containsExactlyInAnyOrder("RULE", "RULE", "RULE", "MANUAL");
+
+    MvcResult progressResult = mockMvc.perform(get("/api/rules/apply/progress")
+        .header("Authorization", bearerToken(token)))
+      .andExpect(status().isOk())
+      .andReturn();
+    assertThat(objectMapper.readTree(progressResult.getResponse().getContentAsString()).get("running").asBoolean())
+      .isFalse();
+  }
+
+  @Test
+  void databaseStrategyAppliesTheSameRulesAsTheJvm() throws Exception {
+    String token = registerUser("rule-database@moneta.test").accessToken();
+    Long accountId = createAccount(token);
+    Long manualCategory = createCategory(token, "Manual");
+    Long pixCategory = createCategory(token, "Pix");
+    Long discountCategory = createCategory(token, "Descontos");
+    Long rideCategory = createCategory(token, "Transporte");
+    Long storeCategory = createCategory(token, "Lojas");
+    createRule(token, "STARTS_WITH", "pix ", 0, pixCategory);
+    // LIKE wildcards in a pattern are literal characters
+    createRule(token, "CONTAINS", "50%", 1, discountCategory);
+    createRule(token, "REGEX", "^uber\\s+\\d+", 2, rideCategory);
+    createRule(token, "CONTAINS", "loja", 3, storeCategory);
+    createTxn(token, accountId, "PIX Loja Centro", null, "2024-09-01T00:00:00Z");
+    createTxn(token, accountId, "Desconto 50% Loja", null, "2024-09-02T00:00:00Z");
+    createTxn(token, accountId, "Desconto 500 Loja", null, "2024-09-03T00:00:00Z");
+    createTxn(token, accountId, "UBER  123 loja", null, "2024-09-04T00:00:00Z");
+    createTxn(token, accountId, "Uber Eats", null, "2024-09-05T00:00:00Z");
+    createTxn(token, accountId, "Loja manual", manualCategory, "2024-09-06T00:00:00Z");
+
+    Map<String, Object> dryRun = Map.of("month", "2024-09", "onlyUncategorized", false, "dryRun", true);
+    JsonNode jvm = apply(token, dryRun);
+    Map<String, Object> databaseDryRun = new java.util.HashMap<>(dryRun);
+    databaseDryRun.put("strategy", "DATABASE");
+    JsonNode database = apply(token, databaseDryRun);
+    assertThat(database.get("evaluated").asInt()).isEqualTo(jvm.get("evaluated").asInt()).isEqualTo(5);
+    assertThat(database.get("matched").asInt()).isEqualTo(jvm.get("matched").asInt()).isEqualTo(4);
+    assertThat(database.get("updated").asInt()).isZero();
+    assertThat(database.get("detailsSample")).isEqualTo(jvm.get("detailsSample"));
+
+    databaseDryRun.remove("dryRun");
+    assertThat(apply(token, databaseDryRun).get("updated").asInt()).isEqualTo(4);
+
+    MvcResult txnsResult = mockMvc.perform(get("/api/txns")
+        .param("month", "2024-09")
+        .header("Authorization", bearerToken(token)))
+      .andExpect(status().isOk())
+      .andReturn();
+    Map<String, String> categories = new java.util.HashMap<>();
+    for (JsonNode txn : objectMapper.readTree(txnsResult.getResponse().getContentAsString())) {
+      categories.put(txn.get("description").asText(), txn.hasNonNull("categoryId") ? txn.get("categoryId").asText() : "");
+    }
+    assertThat(categories).containsEntry("PIX Loja Centro", pixCategory.toString())
+      .containsEntry("Desconto 50% Loja", discountCategory.toString())
+      .containsEntry("Desconto 500 Loja", storeCategory.toString())
+      .containsEntry("UBER  123 loja", rideCategory.toString())
+      .containsEntry("Uber Eats", "")
+      .containsEntry("Loja manual", manualCategory.toString());
+  }
+
+  @Test
+  void ruleChangesReachTheCachedRuleSet() throws Exception {
+    String token = registerUser("rule-cache@moneta.test").accessToken();
+    Long accountId = createAccount(token);
+    Long categoryId = createCategory(token, "Compras");
+    createTxn(token, accountId, "Mercado Livre", null, "2024-08-03T00:00:00Z");
+
+    Long ruleId = createRule(token, "Padaria", categoryId);
+    assertThat(dryRunMatches(token)).isZero();
+
+    Map<String, Object> update = Map.of(
+      "name", "Regra Mercado",
+      "priority", 0,
+      "matchType", "CONTAINS",
+      "pattern", "Mercado",
+      "categoryId", categoryId,
+      "isActive", true
+    );
+    mockMvc.perform(patch("/api/rules/" + ruleId)
+        .header("Authorization", bearerToken(token))
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(objectMapper.writeValueAsString(update)))
+      .andExpect(status().isOk());
+    assertThat(dryRunMatches(token)).isEqualTo(1);
+
+    // Another node changes the rule and notifies, as RuleService does
+    transactionTemplate.executeWithoutResult(status -> {
+      jdbcTemplate.update("update rules set pattern = 'Farmacia' where id = ?", ruleId);
+      Long userId = jdbcTemplate.queryForObject("select user_id from rules where id = ?", Long.class, ruleId);
+      jdbcTemplate.queryForObject("select pg_notify('rule_set_changed', ?)", Object.class, userId.toString());
+    });
+    long deadline = System.currentTimeMillis() + 5_000;
+    while (dryRunMatches(token) != 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+    assertThat(dryRunMatches(token)).isZero();
+  }
+
+  @Test
+  void answersConflictWhileTheUsersApplyIsRunning() throws Exception {
+    String token = registerUser("rule-conflict@moneta.test").accessToken();
+    Long accountId = createAccount(token);
+    Long categoryId = createCategory(token, "Padaria");
+    createTxn(token, accountId, "Padaria Central", null, "2024-10-01T00:00:00Z");
+    createRule(token, categoryId);
+
+    // Another transaction locks the txn, so the first apply's UPDATE waits on it
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread lockHolder = new Thread(() -> transactionTemplate.executeWithoutResult(status -> {
+      jdbcTemplate.queryForList("select id from txn where account_id = ? for update", accountId);
+      locked.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }));
+    lockHolder.start();
+    assertThat(locked.await(5, TimeUnit.SECONDS)).isTrue();
+
+    Map<String, Object> request = Map.of("month", "2024-10", "strategy", "DATABASE");
+    CompletableFuture<JsonNode> first = CompletableFuture.supplyAsync(() -> {
+      try {
+        return apply(token, request);
+      } catch (Exception ex) {
+        throw new IllegalStateException(ex);
+      }
+    });
+    try {
+      long deadline = System.currentTimeMillis() + 5_000;
+      while (!applyRunning(token) && System.currentTimeMillis() < deadline) {
+        Thread.sleep(50);
+      }
+      assertThat(applyRunning(token)).isTrue();
+
+      MvcResult conflict = mockMvc.perform(post("/api/rules/apply")
+          .header("Authorization", bearerToken(token))
+          .contentType(MediaType.APPLICATION_JSON)
+          .content(objectMapper.writeValueAsString(Map.of("month", "2024-10", "dryRun", true))))
+        .andExpect(status().isConflict())
+        .andReturn();
+      assertThat(objectMapper.readTree(conflict.getResponse().getContentAsString()).get("error").asText())
+        .isEqualTo("CONFLICT");
+    } finally {
+      release.countDown();
+      lockHolder.join();
+    }
+    assertThat(first.get(5, TimeUnit.SECONDS).get("updated").asInt()).isEqualTo(1);
+  }
+
+  private JsonNode apply(String token, Map<String, Object> request) throws Exception {
+    MvcResult result = mockMvc.perform(post("/api/rules/apply")
+        .header("Authorization", bearerToken(token))
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(objectMapper.writeValueAsString(request)))
+      .andExpect(status().isOk())
+      .andReturn();
+    return objectMapper.readTree(result.getResponse().getContentAsString());
+  }
+
+  private boolean applyRunning(String token) throws Exception {
+    MvcResult result = mockMvc.perform(get("/api/rules/apply/progress")
+        .header("Authorization", bearerToken(token)))
+      .andExpect(status().isOk())
+      .andReturn();
+    return objectMapper.readTree(result.getResponse().getContentAsString()).get("running").asBoolean();
+  }
+
+  private int dryRunMatches(String token) throws Exception {
+    Map<String, Object> request = Map.of("month", "2024-08", "dryRun", true);
+    MvcResult result = mockMvc.perform(post("/api/rules/apply")
+        .header("Authorization", bearerToken(token))
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(objectMapper.writeValueAsString(request)))
+      .andExpect(status().isOk())
+      .andReturn();
+    return objectMapper.readTree(result.getResponse().getContentAsString()).get("matched").asInt();
+  }
+
   private Long createAccount(String token) throws Exception {
     Map<String, Object> request = Map.of(
       "name", "Conta Regra",
@@ -104,19 +331,30 @@ class RuleApplyIntegrationTest extends WebIntegrationTest {
   }
 
   private void createRule(String token, Long categoryId) throws Exception {
+    createRule(token, "Padaria", categoryId);
+  }
+
+  private Long createRule(String token, String pattern, Long categoryId) throws Exception {
+    return createRule(token, "CONTAINS", pattern, 0, categoryId);
+  }
+
+  private Long createRule(String token, String matchType, String pattern, int priority, Long categoryId)
+    throws Exception {
     Map<String, Object> request = Map.of(
-      "name", "Regra Padaria",
-      "priority", 0,
-      "matchType", "CONTAINS",
-      "pattern", "Padaria",
+      "name", "Regra " + pattern,
+      "priority", priority,
+      "matchType", matchType,
+      "pattern", pattern,
       "categoryId", categoryId,
       "isActive", true
     );
-    mockMvc.perform(post("/api/rules")
+    MvcResult result = mockMvc.perform(post("/api/rules")
         .header("Authorization", bearerToken(token))
         .contentType(MediaType.APPLICATION_JSON)
         .content(objectMapper.writeValueAsString(request)))
-      .andExpect(status().isOk());
+      .andExpect(status().isOk())
+      .andReturn();
+    return objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asLong();
   }
 
   private JsonNode findTxnByCategory(JsonNode txns, Long categoryId) {
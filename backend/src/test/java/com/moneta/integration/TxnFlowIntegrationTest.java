@@ -1,14 +1,18 @@
 package com.moneta.integration;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.moneta.support.WebIntegrationTest;
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.util.Map;
+import java.util.StringJoiner;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.MediaType;
@@ -69,6 +73,144 @@ class TxnFlowIntegrationTest extends WebIntegrationTest {
     assertThat(transferJson.get("incoming").get("direction").asText()).isEqualTo("IN");
   }
 
+  @Test
+  void ingestsBulkJsonAndNdjsonWithPerItemResults() throws Exception {
+    String token = registerUser("txn-bulk@moneta.test").accessToken();
+    Long accountId = createAccount(token, "Carteira", 0L);
+    createTxn(token, accountId, 2000L, "2024-06-05T00:00:00Z", "Mercado", "OUT");
+
+    String array = "[" +
+      item(accountId, 2000L, "2024-06-05T10:00:00Z", "Mercado") + "," +
+      item(accountId, 1500L, "2024-06-06T00:00:00Z", "Padaria") + "," +
+      item(accountId, -5L, "2024-06-06T00:00:00Z", "Negativo") + "," +
+      item(accountId, 1500L, "2024-06-06T00:00:00Z", "Padaria") + "," +
+      "{\"accountId\":" + accountId + ",\"amountCents\":\"abc\"}" +
+      "]";
+    JsonNode arrayResult = postBulk(token, MediaType.APPLICATION_JSON, array);
+
+    assertThat(arrayResult.get("received").asInt()).isEqualTo(5);
+    assertThat(arrayResult.get("created").asInt()).isEqualTo(1);
+    assertThat(arrayResult.get("duplicates").asInt()).isEqualTo(2);
+    assertThat(arrayResult.get("errors").asInt()).isEqualTo(2);
+    JsonNode items = arrayResult.get("items");
+    assertThat(items.findValuesAsText("status"))
+      .containsExactly("DUPLICATE", "CREATED", "ERROR", "DUPLICATE", "ERROR");
+    assertThat(items.get(1).get("txnId").asLong()).isPositive();
+    assertThat(items.get(2).get("error").asText()).isEqualTo("valor deve ser positivo");
+    assertThat(items.get(4).get("error").asText()).startsWith("item inválido");
+
+    String ndjson = item(accountId, 3000L, "2024-06-07T00:00:00Z", "Farmácia") + "\n" +
+      item(999_999L, 3000L, "2024-06-07T00:00:00Z", "Outra conta") + "\n";
+    JsonNode ndjsonResult = postBulk(token, MediaType.APPLICATION_NDJSON, ndjson);
+
+    assertThat(ndjsonResult.get("created").asInt()).isEqualTo(1);
+    assertThat(ndjsonResult.get("items").get(1).get("error").asText()).isEqualTo("conta não encontrada");
+
+    MvcResult listResult = mockMvc.perform(get("/api/txns")
+        .param("month", "2024-06")
+        .header("Authorization", bearerToken(token)))
+      .andExpect(status().isOk())
+      .andReturn();
+    assertThat(objectMapper.readTree(listResult.getResponse().getContentAsString())).hasSize(3);
+
+    mockMvc.perform(post("/api/txns/bulk")
+        .header("Authorization", bearerToken(token))
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("[" + item(accountId, 100L, "2024-06-08T00:00:00Z", "Truncado")))
+      .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void keepsTheBulkChunksWrittenBeforeTheBodyBreaks() throws Exception {
+    String token = registerUser("txn-bulk-partial@moneta.test").accessToken();
+    Long accountId = createAccount(token, "Carteira", 0L);
+
+    StringJoiner items = new StringJoiner(",", "[", "");
+    for (int i = 0; i < 501; i++) {
+      items.add(item(accountId, 100L + i, "2024-06-10T00:00:00Z", "Item " + i));
+    }
+    JsonNode result = postBulk(token, MediaType.APPLICATION_JSON, items + ",{\"accountId\":");
+
+    // The first chunk of 500 was written; the item read after it is dropped with the rest
+    assertThat(result.get("received").asInt()).isEqualTo(500);
+    assertThat(result.get("created").asInt()).isEqualTo(500);
+    assertThat(result.get("items")).hasSize(500);
+    assertThat(result.get("error").asText()).startsWith("JSON inválido");
+
+    JsonNode complete = postBulk(token, MediaType.APPLICATION_JSON, items + "]");
+    assertThat(complete.get("created").asInt()).isEqualTo(1);
+    assertThat(complete.get("duplicates").asInt()).isEqualTo(500);
+    assertThat(complete.get("error").isNull()).isTrue();
+  }
+
+  @Test
+  void feedAnswersOnceTheEventIsCommitted() throws Exception {
+    String token = registerUser("txn-feed@moneta.test").accessToken();
+    Long accountId = createAccount(token, "Carteira", 0L);
+
+    JsonNode created = postFeed(token, item(accountId, 4200L, "2024-07-01T12:00:00Z", "Assinatura"));
+    assertThat(created.get("status").asText()).isEqualTo("CREATED");
+    assertThat(created.get("txnId").asLong()).isPositive();
+    assertThat(created.get("batchSequence").asLong()).isPositive();
+
+    JsonNode duplicate = postFeed(token, item(accountId, 4200L, "2024-07-01T12:00:00Z", "Assinatura"));
+    assertThat(duplicate.get("status").asText()).isEqualTo("DUPLICATE");
+
+    // A second identical purchase on the same day is legitimate when the feed says so
+    JsonNode repeated = postFeed(token, item(accountId, 4200L, "2024-07-01T12:00:00Z", "Assinatura"), false);
+    assertThat(repeated.get("status").asText()).isEqualTo("CREATED");
+    assertThat(repeated.get("txnId").asLong()).isNotEqualTo(created.get("txnId").asLong());
+
+    JsonNode error = postFeed(token, item(999_999L, 100L, "2024-07-02T12:00:00Z", "Outra conta"));
+    assertThat(error.get("status").asText()).isEqualTo("ERROR");
+    assertThat(error.get("error").asText()).isEqualTo("conta não encontrada");
+
+    MvcResult listResult = mockMvc.perform(get("/api/txns")
+        .param("month", "2024-07")
+        .header("Authorization", bearerToken(token)))
+      .andExpect(status().isOk())
+      .andReturn();
+    assertThat(objectMapper.readTree(listResult.getResponse().getContentAsString())).hasSize(2);
+  }
+
+  private String item(Long accountId, long amountCents, String occurredAt, String description) throws Exception {
+    return objectMapper.writeValueAsString(Map.of(
+      "accountId", accountId,
+      "amountCents", amountCents,
+      "direction", "OUT",
+      "description", description,
+      "occurredAt", occurredAt
+    ));
+  }
+
+  private JsonNode postBulk(String token, MediaType contentType, String body) throws Exception {
+    MvcResult result = mockMvc.perform(post("/api/txns/bulk")
+        .header("Authorization", bearerToken(token))
+        .contentType(contentType)
+        .content(body))
+      .andExpect(status().isOk())
+      .andReturn();
+    return objectMapper.readTree(result.getResponse().getContentAsString(StandardCharsets.UTF_8));
+  }
+
+  private JsonNode postFeed(String token, String body) throws Exception {
+    return postFeed(token, body, true);
+  }
+
+  private JsonNode postFeed(String token, String body, boolean skipDuplicates) throws Exception {
+    MvcResult started = mockMvc.perform(post("/api/txns/feed")
+        .param("skipDuplicates", String.valueOf(skipDuplicates))
+        .header("Authorization", bearerToken(token))
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(body))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+    MvcResult result = mockMvc.perform(asyncDispatch(started))
+      .andExpect(status().isOk())
+      .andReturn();
+    return objectMapper.readTree(result.getResponse().getContentAsString(StandardCharsets.UTF_8));
+  }
+
   private Long createAccount(String token, String name, long initialBalance) throws Exception {
     Map<String, Object> accountRequest = Map.of(
       "name", name,
@@ -0,0 +1,147 @@
+package com.moneta.rule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.moneta.account.Account;
+import com.moneta.rule.CompiledRuleSet.CompiledRule;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class CompiledRuleSetTest {
+
+  @Test
+  void returnsTheFirstRuleInPriorityOrder() {
+    CompiledRuleSet rules = CompiledRuleSet.compile(List.of(
+      rule(1L, RuleMatchType.CONTAINS, "mercado", null),
+      rule(2L, RuleMatchType.CONTAINS, "super", null),
+      rule(3L, RuleMatchType.REGEX, "^super", null)
+    ));
+
+    assertThat(rules.firstMatch("SUPERMERCADO EXTRA", 10L).id()).isEqualTo(1L);
+    assertThat(rules.firstMatch("Super Bom", 10L).id()).isEqualTo(2L);
+    assertThat(rules.firstMatch("Padaria", 10L)).isNull();
+    assertThat(rules.firstMatch(null, 10L)).isNull();
+  }
+
+  @Test
+  void startsWithOnlyMatchesAtTheBeginning() {
+    CompiledRuleSet rules = CompiledRuleSet.compile(List.of(
+      rule(1L, RuleMatchType.STARTS_WITH, "uber", null),
+      rule(2L, RuleMatchType.CONTAINS, "trip", null)
+    ));
+
+    assertThat(rules.firstMatch("Uber Trip", 10L).id()).isEqualTo(1L);
+    assertThat(rules.firstMatch("Pix Uber Trip", 10L).id()).isEqualTo(2L);
+    assertThat(rules.firstMatch("Pix Uber", 10L)).isNull();
+  }
+
+  @Test
+  void regexOnlyWinsWhenItComesFirst() {
+    CompiledRuleSet rules = CompiledRuleSet.compile(List.of(
+      rule(1L, RuleMatchType.REGEX, "^\\d{3}", null),
+      rule(2L, RuleMatchType.CONTAINS, "abc", null),
+      rule(3L, RuleMatchType.REGEX, "x+y", null)
+    ));
+
+    assertThat(rules.firstMatch("123ABC", 10L).id()).isEqualTo(1L);
+    assertThat(rules.firstMatch("12ABC", 10L).id()).isEqualTo(2L);
+    assertThat(rules.firstMatch("XXY", 10L).id()).isEqualTo(3L);
+  }
+
+  @Test
+  void skipsRulesOfOtherAccounts() {
+    CompiledRuleSet rules = CompiledRuleSet.compile(List.of(
+      rule(1L, RuleMatchType.CONTAINS, "ifood", 20L),
+      rule(2L, RuleMatchType.CONTAINS, "food", null)
+    ));
+
+    assertThat(rules.firstMatch("IFOOD *Pedido", 20L).id()).isEqualTo(1L);
+    assertThat(rules.firstMatch("IFOOD *Pedido", 10L).id()).isEqualTo(2L);
+    assertThat(rules.firstMatch("IFOOD *Pedido", null).id()).isEqualTo(2L);
+  }
+
+  @Test
+  void rejectsInvalidRegex() {
+    assertThatThrownBy(() -> CompiledRuleSet.compile(List.of(rule(7L, RuleMatchType.REGEX, "(", null))))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("regex inválido na regra 7");
+  }
+
+  @Test
+  void matchesLikeTryingEachRuleInTurn() {
+    Random random = new Random(42);
+    String alphabet = "abcAB çÇã";
+    for (int round = 0; round < 200; round++) {
+      List<Rule> rules = new ArrayList<>();
+      int count = 1 + random.nextInt(30);
+      for (int i = 0; i < count; i++) {
+        RuleMatchType matchType = RuleMatchType.values()[random.nextInt(3)];
+        String pattern = randomText(random, alphabet, 1 + random.nextInt(4));
+        if (matchType == RuleMatchType.REGEX) {
+          pattern = Pattern.quote(pattern) + (random.nextBoolean() ? "$" : "");
+        }
+        rules.add(rule((long) i, matchType, pattern, random.nextInt(4) == 0 ? 1L + random.nextInt(2) : null));
+      }
+      CompiledRuleSet compiled = CompiledRuleSet.compile(rules);
+      for (int txn = 0; txn < 50; txn++) {
+        String description = randomText(random, alphabet, random.nextInt(12));
+        Long accountId = 1L + random.nextInt(2);
+        Rule expected = firstMatchOneByOne(rules, description, accountId);
+        CompiledRule actual = compiled.firstMatch(description, accountId);
+        assertThat(actual == null ? null : actual.id())
+          .as("%s in %s", description, rules.stream().map(Rule::getPattern).toList())
+          .isEqualTo(expected == null ? null : expected.getId());
+      }
+    }
+  }
+
+  /** The matching {@code RuleService} did before rules were compiled. */
+  static Rule firstMatchOneByOne(List<Rule> rules, String description, Long accountId) {
+    String text = description == null ? "" : description;
+    String target = text.toLowerCase(Locale.ROOT);
+    for (Rule rule : rules) {
+      if (rule.getAccount() != null && !Objects.equals(rule.getAccount().getId(), accountId)) {
+        continue;
+      }
+      String pattern = rule.getPattern();
+      boolean matches = switch (rule.getMatchType()) {
+        case CONTAINS -> target.contains(pattern.toLowerCase(Locale.ROOT));
+        case STARTS_WITH -> target.startsWith(pattern.toLowerCase(Locale.ROOT));
+        case REGEX -> Pattern.compile(pattern, Pattern.CASE_INSENSITIVE).matcher(text).find();
+      };
+      if (matches) {
+        return rule;
+      }
+    }
+    return null;
+  }
+
+  static Rule rule(Long id, RuleMatchType matchType, String pattern, Long accountId) {
+    Rule rule = new Rule();
+    ReflectionTestUtils.setField(rule, "id", id);
+    rule.setMatchType(matchType);
+    rule.setPattern(pattern);
+    rule.setCategoryId(100L + id);
+    if (accountId != null) {
+      Account account = new Account();
+      ReflectionTestUtils.setField(account, "id", accountId);
+      rule.setAccount(account);
+    }
+    return rule;
+  }
+
+  private static String randomText(Random random, String alphabet, int length) {
+    StringBuilder text = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+    }
+    return text.toString();
+  }
+}
@@ -0,0 +1,178 @@
+package com.moneta.rule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.moneta.rule.CompiledRuleSet.CompiledRule;
+import com.moneta.txn.TxnRepository.RuleCandidateProjection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Rule matching throughput of the previous path (each rule tried in turn, lower-casing the
+ * description and pattern per pair and compiling REGEX patterns per evaluation; kept in
+ * {@link CompiledRuleSetTest#firstMatchOneByOne}) against {@link CompiledRuleSet}, on one
+ * thread and through {@link ParallelRuleMatcher} in apply-sized chunks. Run with
+ * {@code mvn test -Pbench -Dtest=RuleMatchBenchmark}; {@code -Dbench.rules} and
+ * {@code -Dbench.ruleTxns} size the workload, {@code -Dbench.matchParallelism} (every processor
+ * by default) and {@code -Dbench.matchChunk} set up the parallel variant, and the first pass of
+ * each variant only warms up the JIT and is not reported.
+ */
+@Tag("benchmark")
+class RuleMatchBenchmark {
+  private static final int RULES = Integer.getInteger("bench.rules", 300);
+  private static final int TXNS = Integer.getInteger("bench.ruleTxns", 100_000);
+  private static final int PASSES = Integer.getInteger("bench.passes", 3);
+  private static final int PARALLELISM =
+    Integer.getInteger("bench.matchParallelism", Runtime.getRuntime().availableProcessors());
+  private static final int CHUNK = Integer.getInteger("bench.matchChunk", 1000);
+  private static final String[] MERCHANTS = {
+    "SUPERMERCADO", "PADARIA", "POSTO", "FARMACIA", "RESTAURANTE", "UBER", "IFOOD", "NETFLIX",
+    "SPOTIFY", "LOJA", "ACADEMIA", "ESCOLA", "PET SHOP", "ESTACIONAMENTO", "CINEMA"
+  };
+
+  @Test
+  void comparesMatchingPaths() {
+    Random random = new Random(7);
+    List<Rule> rules = rules(random);
+    List<String> descriptions = new ArrayList<>(TXNS);
+    for (int i = 0; i < TXNS; i++) {
+      descriptions.add("COMPRA " + MERCHANTS[random.nextInt(MERCHANTS.length)] + " " + random.nextInt(5_000)
+        + " SAO PAULO BR");
+    }
+
+    long legacy = run("legacy one-by-one", descriptions, description -> {
+      Rule rule = CompiledRuleSetTest.firstMatchOneByOne(rules, description, 1L);
+      return rule == null ? 0 : rule.getId();
+    });
+    long started = System.nanoTime();
+    CompiledRuleSet compiledRules = CompiledRuleSet.compile(rules);
+    System.out.printf("compile %d rules: %.2fms%n", RULES, (System.nanoTime() - started) / 1_000_000.0);
+    long compiled = run("compiled", descriptions, description -> {
+      CompiledRuleSet.CompiledRule rule = compiledRules.firstMatch(description, 1L);
+      return rule == null ? 0 : rule.id();
+    });
+    assertThat(compiled).isEqualTo(legacy);
+
+    List<RuleCandidateProjection> candidates = new ArrayList<>(TXNS);
+    for (int i = 0; i < TXNS; i++) {
+      candidates.add(new Candidate(i + 1L, descriptions.get(i)));
+    }
+    ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+    try {
+      ParallelRuleMatcher matcher = new ParallelRuleMatcher(pool, 128);
+      long parallel = runChunked("parallel x" + PARALLELISM, candidates, chunk -> matcher.match(compiledRules, chunk));
+      assertThat(parallel).isEqualTo(legacy);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private long runChunked(
+    String name,
+    List<RuleCandidateProjection> candidates,
+    Function<List<RuleCandidateProjection>, CompiledRule[]> match
+  ) {
+    measureChunked(candidates.subList(0, candidates.size() / 4), match);
+    long checksum = 0;
+    for (int pass = 1; pass <= PASSES; pass++) {
+      long started = System.nanoTime();
+      checksum = measureChunked(candidates, match);
+      double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+      System.out.printf("%s pass %d: %d rules x %d txns in chunks of %d in %.2fs (%.0f txns/s)%n",
+        name, pass, RULES, candidates.size(), CHUNK, seconds, candidates.size() / seconds);
+    }
+    return checksum;
+  }
+
+  private static long measureChunked(
+    List<RuleCandidateProjection> candidates,
+    Function<List<RuleCandidateProjection>, CompiledRule[]> match
+  ) {
+    long checksum = 0;
+    for (int from = 0; from < candidates.size(); from += CHUNK) {
+      for (CompiledRule rule : match.apply(candidates.subList(from, Math.min(from + CHUNK, candidates.size())))) {
+        checksum = checksum * 31 + (rule == null ? 0 : rule.id());
+      }
+    }
+    return checksum;
+  }
+
+  private long run(String name, List<String> descriptions, ToLongFunction<String> match) {
+    measure(descriptions.subList(0, descriptions.size() / 4), match);
+    long checksum = 0;
+    for (int pass = 1; pass <= PASSES; pass++) {
+      long started = System.nanoTime();
+      checksum = measure(descriptions, match);
+      double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+      System.out.printf("%s pass %d: %d rules x %d txns in %.2fs (%.0f txns/s)%n",
+        name, pass, RULES, descriptions.size(), seconds, descriptions.size() / seconds);
+    }
+    return checksum;
+  }
+
+  private static long measure(List<String> descriptions, ToLongFunction<String> match) {
+    // Folds the results so the JIT cannot drop the work
+    long checksum = 0;
+    for (String description : descriptions) {
+      checksum = checksum * 31 + match.applyAsLong(description);
+    }
+    return checksum;
+  }
+
+  private record Candidate(Long id, String description) implements RuleCandidateProjection {
+    @Override
+    public Long getId() {
+      return id;
+    }
+
+    @Override
+    public Long getAccountId() {
+      return 1L;
+    }
+
+    @Override
+    public String getDescription() {
+      return description;
+    }
+
+    @Override
+    public Long getCategoryId() {
+      return null;
+    }
+
+    @Override
+    public Long getSubcategoryId() {
+      return null;
+    }
+  }
+
+  /**
+   * Mostly CONTAINS rules on store numbers that rarely hit, so most descriptions go through
+   * every rule, plus some STARTS_WITH and REGEX rules and a catch-all per merchant at the end.
+   */
+  private static List<Rule> rules(Random random) {
+    List<Rule> rules = new ArrayList<>(RULES);
+    for (long id = 1; rules.size() < RULES - MERCHANTS.length; id++) {
+      RuleMatchType matchType = id % 10 == 0 ? RuleMatchType.REGEX
+        : id % 5 == 0 ? RuleMatchType.STARTS_WITH : RuleMatchType.CONTAINS;
+      String merchant = MERCHANTS[random.nextInt(MERCHANTS.length)];
+      String pattern = switch (matchType) {
+        case CONTAINS -> merchant.toLowerCase(Locale.ROOT) + " " + (5_000 + random.nextInt(5_000));
+        case STARTS_WITH -> "pix " + merchant.toLowerCase(Locale.ROOT);
+        case REGEX -> merchant + " 9\\d{3}\\b";
+      };
+      rules.add(CompiledRuleSetTest.rule(id, matchType, pattern, null));
+    }
+    for (String merchant : MERCHANTS) {
+      rules.add(CompiledRuleSetTest.rule((long) rules.size() + 1, RuleMatchType.CONTAINS, merchant, null));
+    }
+    return rules;
+  }
+}
@@ -2,26 +2,35 @@ package com.moneta.rule;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import com.moneta.account.Account;
 import com.moneta.account.AccountRepository;
 import com.moneta.auth.UserRepository;
 import com.moneta.category.CategoryRepository;
+import com.moneta.rule.RuleDtos.RuleApplyDetail;
 import com.moneta.rule.RuleDtos.RuleApplyRequest;
-import com.moneta.txn.Txn;
-import com.moneta.txn.TxnCategorizationMode;
+import com.moneta.rule.RuleDtos.RuleApplyResponse;
 import com.moneta.txn.TxnRepository;
-import com.moneta.txn.TxnStatus;
+import com.moneta.txn.TxnRepository.RuleCandidateProjection;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @ExtendWith(MockitoExtension.class)
 class RuleServiceTest {
@@ -40,11 +49,14 @@ class RuleServiceTest {
   @Mock
   private TxnRepository txnRepository;
 
+  @Mock
+  private RuleSqlApplier ruleSqlApplier;
+
   private RuleService ruleService;
 
   @BeforeEach
   void setup() {
-    ruleService = new RuleService(ruleRepository, userRepository, categoryRepository, accountRepository, txnRepository);
+    ruleService = newService(1000, null);
   }
 
   @Test
@@ -59,18 +71,16 @@ class RuleServiceTest {
     second.setCategoryId(20L);
     when(ruleRepository.findAllByUserIdAndIsActiveTrueOrderByPriorityAsc(1L)).thenReturn(List.of(first, second));
 
-    Txn txn = new Txn();
-    txn.setStatus(TxnStatus.POSTED);
-    txn.setDescription("Supermercado");
-    txn.setAccount(new Account());
-    when(txnRepository.findAll(any(Specification.class))).thenReturn(List.of(txn));
-    when(txnRepository.saveAll(any())).thenReturn(List.of(txn));
+    when(txnRepository.findRuleCandidates(eq(1L), eq(0L), isNull(), isNull(), eq(true), eq(false), any()))
+      .thenReturn(List.of(candidate(1L, "Supermercado")));
+    when(txnRepository.applyRuleCategorization(List.of(1L), null, 10L, null, true, false)).thenReturn(1);
 
-    var response = ruleService.apply(1L, new RuleApplyRequest(null, null, true, false, false));
+    var response = ruleService.apply(1L, new RuleApplyRequest(null, null, true, false, false, null));
 
-    assertThat(txn.getCategoryId()).isEqualTo(10L);
+    assertThat(response.detailsSample().get(0).categoryId()).isEqualTo(10L);
     assertThat(response.matched()).isEqualTo(1);
-    verify(txnRepository).saveAll(any());
+    assertThat(response.updated()).isEqualTo(1);
+    verify(txnRepository).applyRuleCategorization(List.of(1L), null, 10L, null, true, false);
   }
 
   @Test
@@ -82,9 +92,10 @@ class RuleServiceTest {
     when(ruleRepository.findAllByUserIdAndIsActiveTrueOrderByPriorityAsc(1L)).thenReturn(List.of(rule));
 
     // When overrideManual is false, manual txns are filtered at query level
-    when(txnRepository.findAll(any(Specification.class))).thenReturn(List.of());
+    when(txnRepository.findRuleCandidates(eq(1L), eq(0L), isNull(), isNull(), eq(true), eq(false), any()))
+      .thenReturn(List.of());
 
-    var response = ruleService.apply(1L, new RuleApplyRequest(null, null, true, false, false));
+    var response = ruleService.apply(1L, new RuleApplyRequest(null, null, true, false, false, null));
 
     assertThat(response.evaluated()).isEqualTo(0);
   }
@@ -106,26 +117,14 @@ class RuleServiceTest {
     when(ruleRepository.findAllByUserIdAndIsActiveTrueOrderByPriorityAsc(1L))
       .thenReturn(List.of(contains, startsWith, regex));
 
-    Txn txn1 = new Txn();
-    txn1.setStatus(TxnStatus.POSTED);
-    txn1.setDescription("Netflix");
-    txn1.setAccount(new Account());
-    Txn txn2 = new Txn();
-    txn2.setStatus(TxnStatus.POSTED);
-    txn2.setDescription("Uber Trip");
-    txn2.setAccount(new Account());
-    Txn txn3 = new Txn();
-    txn3.setStatus(TxnStatus.POSTED);
-    txn3.setDescription("123ABC");
-    txn3.setAccount(new Account());
-    when(txnRepository.findAll(any(Specification.class))).thenReturn(List.of(txn1, txn2, txn3));
-    when(txnRepository.saveAll(any())).thenReturn(List.of(txn1, txn2, txn3));
-
-    ruleService.apply(1L, new RuleApplyRequest(null, null, true, false, false));
-
-    assertThat(txn1.getCategoryId()).isEqualTo(1L);
-    assertThat(txn2.getCategoryId()).isEqualTo(2L);
-    assertThat(txn3.getCategoryId()).isEqualTo(3L);
+    when(txnRepository.findRuleCandidates(eq(1L), eq(0L), isNull(), isNull(), eq(true), eq(false), any()))
+      .thenReturn(List.of(candidate(1L, "Netflix"), candidate(2L, "Uber Trip"), candidate(3L, "123ABC")));
+
+    ruleService.apply(1L, new RuleApplyRequest(null, null, true, false, false, null));
+
+    verify(txnRepository).applyRuleCategorization(List.of(1L), null, 1L, null, true, false);
+    verify(txnRepository).applyRuleCategorization(List.of(2L), null, 2L, null, true, false);
+    verify(txnRepository).applyRuleCategorization(List.of(3L), null, 3L, null, true, false);
   }
 
   @Test
@@ -136,15 +135,152 @@ class RuleServiceTest {
     rule.setCategoryId(10L);
     when(ruleRepository.findAllByUserIdAndIsActiveTrueOrderByPriorityAsc(1L)).thenReturn(List.of(rule));
 
-    Txn txn = new Txn();
-    txn.setStatus(TxnStatus.POSTED);
-    txn.setDescription("Cafe");
-    txn.setAccount(new Account());
-    when(txnRepository.findAll(any(Specification.class))).thenReturn(List.of(txn));
+    when(txnRepository.findRuleCandidates(eq(1L), eq(0L), isNull(), isNull(), eq(true), eq(false), any()))
+      .thenReturn(List.of(candidate(1L, "Cafe")));
 
-    var response = ruleService.apply(1L, new RuleApplyRequest(null, null, true, true, false));
+    var response = ruleService.apply(1L, new RuleApplyRequest(null, null, true, true, false, null));
 
+    assertThat(response.matched()).isEqualTo(1);
     assertThat(response.updated()).isEqualTo(0);
-    verify(txnRepository, never()).saveAll(any());
+    verify(txnRepository, never()).applyRuleCategorization(any(), any(), any(), any(), anyBoolean(), anyBoolean());
+  }
+
+  @Test
+  void applyWalksTransactionsInChunksAfterTheLastId() {
+    ruleService = newService(2, null);
+    Rule rule = new Rule();
+    rule.setMatchType(RuleMatchType.CONTAINS);
+    rule.setPattern("cafe");
+    rule.setCategoryId(10L);
+    when(ruleRepository.findAllByUserIdAndIsActiveTrueOrderByPriorityAsc(1L)).thenReturn(List.of(rule));
+
+    when(txnRepository.findRuleCandidates(eq(1L), eq(0L), eq("2024-07"), isNull(), eq(false), eq(true), eq(Limit.of(2))))
+      .thenReturn(List.of(candidate(3L, "Cafe"), candidate(5L, "Padaria")));
+    when(txnRepository.findRuleCandidates(eq(1L), eq(5L), eq("2024-07"), isNull(), eq(false), eq(true), eq(Limit.of(2))))
+      .thenReturn(List.of(candidate(8L, "Cafe")));
+    when(txnRepository.applyRuleCategorization(any(), any(), any(), any(), anyBoolean(), anyBoolean())).thenReturn(1);
+
+    var response = ruleService.apply(1L, new RuleApplyRequest("2024-07", null, false, false, true, null));
+
+    assertThat(response.evaluated()).isEqualTo(3);
+    assertThat(response.matched()).isEqualTo(2);
+    assertThat(response.updated()).isEqualTo(2);
+    verify(txnRepository).applyRuleCategorization(List.of(3L), null, 10L, null, false, true);
+    verify(txnRepository).applyRuleCategorization(List.of(8L), null, 10L, null, false, true);
+    verify(txnRepository, never()).findRuleCandidates(eq(1L), eq(8L), any(), any(), anyBoolean(), anyBoolean(), any());
+    assertThat(ruleService.getApplyProgress(1L).running()).isFalse();
+  }
+
+  @Test
+  void applyMatchesInParallelAndWritesInIdOrder() {
+    Rule cafe = new Rule();
+    cafe.setMatchType(RuleMatchType.CONTAINS);
+    cafe.setPattern("cafe");
+    cafe.setCategoryId(10L);
+    Rule uber = new Rule();
+    uber.setMatchType(RuleMatchType.STARTS_WITH);
+    uber.setPattern("uber");
+    uber.setCategoryId(20L);
+    when(ruleRepository.findAllByUserIdAndIsActiveTrueOrderByPriorityAsc(1L)).thenReturn(List.of(cafe, uber));
+
+    List<RuleCandidateProjection> candidates = new ArrayList<>();
+    List<Long> cafeIds = new ArrayList<>();
+    List<Long> uberIds = new ArrayList<>();
+    for (long id = 1; id <= 500; id++) {
+      String description = id % 3 == 0 ? "Uber Trip " + id : id % 3 == 1 ? "Cafe " + id : "Padaria " + id;
+      candidates.add(candidate(id, description));
+      if (id % 3 == 0) {
+        uberIds.add(id);
+      } else if (id % 3 == 1) {
+        cafeIds.add(id);
+      }
+    }
+    when(txnRepository.findRuleCandidates(eq(1L), eq(0L), isNull(), isNull(), eq(true), eq(false), any()))
+      .thenReturn(candidates);
+    when(txnRepository.applyRuleCategorization(any(), any(), any(), any(), anyBoolean(), anyBoolean()))
+      .thenAnswer(invocation -> invocation.<List<Long>>getArgument(0).size());
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      ruleService = newService(1000, pool);
+      var response = ruleService.apply(1L, new RuleApplyRequest(null, null, true, false, false, null));
+
+      assertThat(response.evaluated()).isEqualTo(500);
+      assertThat(response.matched()).isEqualTo(cafeIds.size() + uberIds.size());
+      assertThat(response.detailsSample()).extracting(RuleApplyDetail::txnId)
+        .containsExactly(1L, 3L, 4L, 6L, 7L, 9L, 10L, 12L, 13L, 15L, 16L, 18L, 19L, 21L, 22L, 24L, 25L, 27L, 28L, 30L);
+      InOrder writes = inOrder(txnRepository);
+      writes.verify(txnRepository).applyRuleCategorization(cafeIds, null, 10L, null, true, false);
+      writes.verify(txnRepository).applyRuleCategorization(uberIds, null, 20L, null, true, false);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  void applyWithTheDatabaseStrategyLeavesMatchingToPostgres() {
+    Rule rule = new Rule();
+    rule.setMatchType(RuleMatchType.CONTAINS);
+    rule.setPattern("cafe");
+    rule.setCategoryId(10L);
+    when(ruleRepository.findAllByUserIdAndIsActiveTrueOrderByPriorityAsc(1L)).thenReturn(List.of(rule));
+    when(ruleSqlApplier.apply(1L, List.of(rule), "2024-07", null, true, false, false))
+      .thenReturn(new RuleApplyResponse(5, 2, 2, List.of(new RuleApplyDetail(7L, null, 10L, null))));
+
+    var response = ruleService.apply(
+      1L,
+      new RuleApplyRequest("2024-07", null, true, false, false, RuleApplyStrategy.DATABASE)
+    );
+
+    assertThat(response.evaluated()).isEqualTo(5);
+    assertThat(response.updated()).isEqualTo(2);
+    assertThat(response.detailsSample()).extracting(RuleApplyDetail::txnId).containsExactly(7L);
+    verify(txnRepository, never()).findRuleCandidates(any(), any(), any(), any(), anyBoolean(), anyBoolean(), any());
+    assertThat(ruleService.getApplyProgress(1L).running()).isFalse();
+  }
+
+  private RuleService newService(int applyChunkSize, ForkJoinPool matchPool) {
+    return new RuleService(
+      ruleRepository,
+      userRepository,
+      categoryRepository,
+      accountRepository,
+      txnRepository,
+      new RuleSetCache(null, 100, false),
+      new TransactionTemplate(mock(PlatformTransactionManager.class)),
+      applyChunkSize,
+      matchPool,
+      8,
+      ruleSqlApplier
+    );
+  }
+
+  private static RuleCandidateProjection candidate(Long id, String description) {
+    return new RuleCandidateProjection() {
+      @Override
+      public Long getId() {
+        return id;
+      }
+
+      @Override
+      public Long getAccountId() {
+        return 100L;
+      }
+
+      @Override
+      public String getDescription() {
+        return description;
+      }
+
+      @Override
+      public Long getCategoryId() {
+        return null;
+      }
+
+      @Override
+      public Long getSubcategoryId() {
+        return null;
+      }
+    };
   }
 }
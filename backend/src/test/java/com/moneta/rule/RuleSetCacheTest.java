@@ -0,0 +1,80 @@
+package com.moneta.rule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class RuleSetCacheTest {
+  private final RuleSetCache cache = new RuleSetCache(null, 2, false);
+  private final AtomicInteger loads = new AtomicInteger();
+
+  @AfterEach
+  void tearDown() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  void keepsTheMostRecentlyUsedUsers() {
+    CompiledRuleSet first = cache.get(1L, this::load);
+    cache.get(2L, this::load);
+    assertThat(cache.get(1L, this::load)).isSameAs(first);
+    cache.get(3L, this::load);
+
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.get(1L, this::load)).isSameAs(first);
+    cache.get(2L, this::load);
+    assertThat(loads).hasValue(4);
+  }
+
+  @Test
+  void doesNotKeepALoadThatRacedAnEviction() {
+    CompiledRuleSet stale = cache.get(1L, () -> {
+      // A rule change commits while the rules are being read
+      cache.evict(1L);
+      return load();
+    });
+
+    assertThat(cache.get(1L, this::load)).isNotSameAs(stale);
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  void evictsOnlyAfterCommit() {
+    CompiledRuleSet cached = cache.get(1L, this::load);
+    TransactionSynchronizationManager.initSynchronization();
+
+    cache.invalidate(1L);
+    assertThat(cache.get(1L, this::load)).isSameAs(cached);
+
+    List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+    synchronizations.forEach(TransactionSynchronization::afterCommit);
+    assertThat(cache.get(1L, this::load)).isNotSameAs(cached);
+  }
+
+  @Test
+  void notifiesTheClusterOutsideATransactionToo() {
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    RuleSetCache clustered = new RuleSetCache(jdbcTemplate, 2, true);
+    CompiledRuleSet cached = clustered.get(1L, this::load);
+
+    clustered.invalidate(1L);
+
+    verify(jdbcTemplate).queryForObject("select pg_notify(?, ?)", Object.class, RuleSetCache.CHANNEL, "1");
+    assertThat(clustered.get(1L, this::load)).isNotSameAs(cached);
+  }
+
+  private CompiledRuleSet load() {
+    loads.incrementAndGet();
+    return CompiledRuleSet.compile(List.of());
+  }
+}
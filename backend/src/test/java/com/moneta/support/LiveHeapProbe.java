@@ -0,0 +1,67 @@
+package com.moneta.support;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures how far the live heap grows past where it stood when the probe was created. Every
+ * sample forces a full collection first, so only what is still reachable counts, not what was
+ * merely allocated; take a handful per run rather than one per row.
+ */
+public class LiveHeapProbe {
+  private final long baseline;
+  private long peak;
+
+  public LiveHeapProbe() {
+    baseline = liveBytes();
+    peak = baseline;
+  }
+
+  public synchronized void sample() {
+    peak = Math.max(peak, liveBytes());
+  }
+
+  public synchronized long growthBytes() {
+    return peak - baseline;
+  }
+
+  /** Wraps {@code inputStream} so that reading it takes a sample every {@code everyBytes}. */
+  public InputStream sampling(InputStream inputStream, long everyBytes) {
+    return new FilterInputStream(inputStream) {
+      private long untilSample = everyBytes;
+
+      @Override
+      public int read() throws IOException {
+        int value = super.read();
+        if (value >= 0) {
+          advance(1);
+        }
+        return value;
+      }
+
+      @Override
+      public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+          advance(read);
+        }
+        return read;
+      }
+
+      private void advance(int read) {
+        untilSample -= read;
+        if (untilSample <= 0) {
+          sample();
+          untilSample = everyBytes;
+        }
+      }
+    };
+  }
+
+  private static long liveBytes() {
+    System.gc();
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+}
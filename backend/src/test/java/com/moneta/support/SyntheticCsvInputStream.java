@@ -0,0 +1,72 @@
+package com.moneta.support;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Generates a {@code date,description,amount} CSV of the requested size on the fly, so
+ * benchmarks can feed millions of rows without the file ever existing in memory or on disk.
+ * Every row is distinct, which keeps them all READY after de-duplication. With
+ * {@code allColumns} every optional column the parser knows is present as well.
+ */
+public class SyntheticCsvInputStream extends InputStream {
+  private static final LocalDate START = LocalDate.of(2020, 1, 1);
+
+  private final long rows;
+  private final boolean allColumns;
+  private long nextRow;
+  private byte[] current;
+  private int position;
+
+  public SyntheticCsvInputStream(long rows) {
+    this(rows, false);
+  }
+
+  public SyntheticCsvInputStream(long rows, boolean allColumns) {
+    this.rows = rows;
+    this.allColumns = allColumns;
+    String header = allColumns
+      ? "date,description,amount,category,subcategory,payment_method,account,card\n"
+      : "date,description,amount\n";
+    this.current = header.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  @Override
+  public int read() {
+    if (!ensureAvailable()) {
+      return -1;
+    }
+    return current[position++];
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) {
+    if (length == 0) {
+      return 0;
+    }
+    if (!ensureAvailable()) {
+      return -1;
+    }
+    int count = Math.min(length, current.length - position);
+    System.arraycopy(current, position, buffer, offset, count);
+    position += count;
+    return count;
+  }
+
+  private boolean ensureAvailable() {
+    if (position < current.length) {
+      return true;
+    }
+    if (nextRow >= rows) {
+      return false;
+    }
+    long row = nextRow++;
+    long cents = row % 99_999 + 1;
+    String line = START.plusDays(row % 1_500) + ",Compra " + row + ",-" + cents / 100 + "."
+      + (cents % 100 < 10 ? "0" : "") + cents % 100 + (allColumns ? ",Mercado,,PIX,Conta Corrente,\n" : "\n");
+    current = line.getBytes(StandardCharsets.US_ASCII);
+    position = 0;
+    return true;
+  }
+}
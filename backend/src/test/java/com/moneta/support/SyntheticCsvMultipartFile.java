@@ -0,0 +1,57 @@
+package com.moneta.support;
+
+import java.io.File;
+import java.io.InputStream;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * {@link MultipartFile} backed by {@link SyntheticCsvInputStream}, for driving the import
+ * service with uploads far larger than the test heap.
+ */
+public class SyntheticCsvMultipartFile implements MultipartFile {
+  private final long rows;
+
+  public SyntheticCsvMultipartFile(long rows) {
+    this.rows = rows;
+  }
+
+  @Override
+  public String getName() {
+    return "file";
+  }
+
+  @Override
+  public String getOriginalFilename() {
+    return "synthetic.csv";
+  }
+
+  @Override
+  public String getContentType() {
+    return "text/csv";
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return false;
+  }
+
+  @Override
+  public long getSize() {
+    return -1;
+  }
+
+  @Override
+  public byte[] getBytes() {
+    throw new UnsupportedOperationException("synthetic uploads are stream-only");
+  }
+
+  @Override
+  public InputStream getInputStream() {
+    return new SyntheticCsvInputStream(rows);
+  }
+
+  @Override
+  public void transferTo(File dest) {
+    throw new UnsupportedOperationException("synthetic uploads are stream-only");
+  }
+}
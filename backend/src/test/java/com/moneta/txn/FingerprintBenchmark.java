@@ -0,0 +1,69 @@
+package com.moneta.txn;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.moneta.card.PaymentType;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.function.LongFunction;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Fingerprint throughput of the previous SHA-256 hex path (string concatenation, regex
+ * normalization, hex encoding; kept here as a copy) against the binary strategies. Run with
+ * {@code mvn test -Pbench -Dtest=FingerprintBenchmark}; the first pass of each variant only
+ * warms up the JIT and is not reported.
+ */
+@Tag("benchmark")
+class FingerprintBenchmark {
+  private static final int ROWS = Integer.getInteger("bench.fingerprintRows", 2_000_000);
+  private static final int PASSES = Integer.getInteger("bench.passes", 3);
+  private static final LocalDate START = LocalDate.of(2020, 1, 1);
+
+  @Test
+  void comparesFingerprintPaths() throws Exception {
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    TxnFingerprinter murmur = new TxnFingerprinter(new Murmur3FingerprintStrategy());
+    TxnFingerprinter sha256 = new TxnFingerprinter(new Sha256FingerprintStrategy());
+
+    run("legacy sha256-hex", row -> legacyFingerprint(digest, row));
+    run("sha256", row -> fingerprint(sha256, row));
+    run("murmur3-128", row -> fingerprint(murmur, row));
+  }
+
+  private void run(String name, LongFunction<Object> fingerprint) {
+    measure(fingerprint, ROWS / 4);
+    for (int pass = 1; pass <= PASSES; pass++) {
+      long started = System.nanoTime();
+      int distinct = measure(fingerprint, ROWS);
+      double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+      System.out.printf("%s pass %d: %d rows in %.2fs (%.0f rows/s)%n", name, pass, ROWS, seconds, ROWS / seconds);
+      assertThat(distinct).isPositive();
+    }
+  }
+
+  private int measure(LongFunction<Object> fingerprint, int rows) {
+    // Folds the results so the JIT cannot drop the work
+    int sink = 0;
+    for (long row = 0; row < rows; row++) {
+      sink += fingerprint.apply(row).hashCode() & 1;
+    }
+    return sink + 1;
+  }
+
+  private static Fingerprint fingerprint(TxnFingerprinter fingerprinter, long row) {
+    return fingerprinter.fingerprint(1L, PaymentType.PIX, 10L, START.plusDays(row % 1_500), row % 99_999 + 1,
+      TxnDirection.OUT, "  Compra  no mercado " + row);
+  }
+
+  private static String legacyFingerprint(MessageDigest digest, long row) {
+    String description = ("  Compra  no mercado " + row).trim().replaceAll("\\s+", " ").toUpperCase(Locale.ROOT);
+    String input = 1L + "|" + PaymentType.PIX + "|" + 10L + "|" + START.plusDays(row % 1_500) + "|"
+      + (row % 99_999 + 1) + "|" + TxnDirection.OUT + "|" + description;
+    return HexFormat.of().formatHex(digest.digest(input.getBytes(StandardCharsets.UTF_8)));
+  }
+}
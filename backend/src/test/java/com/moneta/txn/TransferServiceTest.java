@@ -33,7 +33,7 @@ class TransferServiceTest {
 
   @BeforeEach
   void setup() {
-    transferService = new TransferService(txnRepository, accountRepository, userRepository);
+    transferService = new TransferService(txnRepository, accountRepository, userRepository, new TxnFingerprinter());
   }
 
   @Test
@@ -0,0 +1,107 @@
+package com.moneta.txn;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import com.moneta.account.Account;
+import com.moneta.auth.User;
+import com.moneta.card.PaymentType;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class TxnFingerprintServiceTest {
+  @Mock
+  private TxnRepository txnRepository;
+
+  private final TxnFingerprinter txnFingerprinter = new TxnFingerprinter();
+
+  @Test
+  void findExistingOnlyLooksUpFingerprints() {
+    TxnFingerprintService service = service();
+    Fingerprint fingerprint = txnFingerprinter.fingerprint(
+      1L, PaymentType.PIX, 2L, null, 1000L, TxnDirection.OUT, "Padaria"
+    );
+    when(txnRepository.findExistingFingerprints(1L, List.of(fingerprint))).thenReturn(List.of(fingerprint));
+
+    assertThat(service.findExisting(1L, List.of(fingerprint))).isEqualTo(Set.of(fingerprint));
+    verify(txnRepository).findExistingFingerprints(1L, List.of(fingerprint));
+    verifyNoMoreInteractions(txnRepository);
+  }
+
+  @Test
+  void fingerprintPendingFillsInTheUsersTxnsWithoutOne() {
+    TxnFingerprintService service = service();
+    Txn pending = txn(3L, "Padaria");
+    when(txnRepository.existsByUserIdAndIsActiveTrueAndFingerprintIsNull(1L)).thenReturn(true);
+    when(txnRepository.findTop500ByUserIdAndIsActiveTrueAndFingerprintIsNullAndIdGreaterThanOrderByIdAsc(1L, 0L))
+      .thenReturn(List.of(pending));
+
+    service.fingerprintPending(1L);
+
+    assertThat(pending.getFingerprint()).isEqualTo(txnFingerprinter.fingerprint(pending));
+    verify(txnRepository).saveAll(List.of(pending));
+  }
+
+  @Test
+  void fingerprintPendingOnlyChecksTheIndexOnceTheUserIsDone() {
+    service().fingerprintPending(1L);
+
+    verify(txnRepository).existsByUserIdAndIsActiveTrueAndFingerprintIsNull(1L);
+    verifyNoMoreInteractions(txnRepository);
+  }
+
+  @Test
+  void backfillChunkFingerprintsAndReportsWhereToContinue() {
+    TxnFingerprintService service = service();
+    Txn first = txn(3L, "Padaria");
+    Txn second = txn(8L, "Mercado");
+    when(txnRepository.lockPendingFingerprints(0L))
+      .thenReturn(List.of(first, second));
+
+    TxnFingerprintService.BackfillChunk chunk = service.backfillChunk(0L);
+
+    assertThat(chunk.count()).isEqualTo(2);
+    assertThat(chunk.lastId()).isEqualTo(8L);
+    assertThat(chunk.last()).isTrue();
+    assertThat(first.getFingerprint()).isEqualTo(txnFingerprinter.fingerprint(first));
+    assertThat(second.getFingerprint()).isNotNull().isNotEqualTo(first.getFingerprint());
+    verify(txnRepository).saveAll(List.of(first, second));
+  }
+
+  private TxnFingerprintService service() {
+    return new TxnFingerprintService(
+      txnRepository,
+      txnFingerprinter,
+      new TransactionTemplate(mock(PlatformTransactionManager.class))
+    );
+  }
+
+  private static Txn txn(Long id, String description) {
+    User user = new User();
+    ReflectionTestUtils.setField(user, "id", 1L);
+    Account account = new Account();
+    ReflectionTestUtils.setField(account, "id", 2L);
+    Txn txn = new Txn();
+    ReflectionTestUtils.setField(txn, "id", id);
+    txn.setUser(user);
+    txn.setAccount(account);
+    txn.setPaymentType(PaymentType.PIX);
+    txn.setOccurredAt(OffsetDateTime.parse("2024-07-03T10:00:00Z"));
+    txn.setAmountCents(1000L);
+    txn.setDirection(TxnDirection.OUT);
+    txn.setDescription(description);
+    return txn;
+  }
+}
@@ -0,0 +1,95 @@
+package com.moneta.txn;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.moneta.account.Account;
+import com.moneta.auth.User;
+import com.moneta.card.PaymentType;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import org.junit.jupiter.api.Test;
+
+class TxnFingerprinterTest {
+  private final TxnFingerprinter fingerprinter = new TxnFingerprinter();
+
+  @Test
+  void txnFingerprintMatchesImportedRowFingerprint() {
+    Txn txn = txn(OffsetDateTime.parse("2024-04-10T00:00:00Z"), "  super   mercado ");
+
+    Fingerprint imported = fingerprinter.fingerprint(
+      1L,
+      PaymentType.PIX,
+      10L,
+      LocalDate.of(2024, 4, 10),
+      5000L,
+      TxnDirection.OUT,
+      "Super Mercado"
+    );
+
+    assertThat(fingerprinter.fingerprint(txn)).isEqualTo(imported);
+  }
+
+  @Test
+  void usesUtcDayRegardlessOfOffset() {
+    Txn utc = txn(OffsetDateTime.parse("2024-04-10T01:00:00Z"), "Mercado");
+    Txn saoPaulo = txn(OffsetDateTime.parse("2024-04-09T22:00:00-03:00"), "Mercado");
+
+    assertThat(fingerprinter.fingerprint(saoPaulo)).isEqualTo(fingerprinter.fingerprint(utc));
+  }
+
+  @Test
+  void returnsNullWithoutAccountOrCard() {
+    Txn txn = new Txn();
+    txn.setOccurredAt(OffsetDateTime.parse("2024-04-10T00:00:00Z"));
+
+    assertThat(fingerprinter.fingerprint(txn)).isNull();
+  }
+
+  @Test
+  void distinguishesDescriptionsAndNullFields() {
+    Fingerprint base = fingerprinter.fingerprint(1L, PaymentType.PIX, 10L, LocalDate.of(2024, 4, 10), 5000L,
+      TxnDirection.OUT, "Mercado");
+
+    assertThat(fingerprinter.fingerprint(1L, PaymentType.PIX, 10L, LocalDate.of(2024, 4, 10), 5000L,
+      TxnDirection.OUT, "Mercado 2")).isNotEqualTo(base);
+    assertThat(fingerprinter.fingerprint(1L, PaymentType.PIX, 10L, LocalDate.of(2024, 4, 10), null,
+      TxnDirection.OUT, "Mercado")).isNotEqualTo(base);
+  }
+
+  @Test
+  void murmurMatchesReferenceVector() {
+    byte[] input = "hello".getBytes(StandardCharsets.US_ASCII);
+
+    Fingerprint fingerprint = new Murmur3FingerprintStrategy().hash(input, input.length);
+
+    assertThat(fingerprint).isEqualTo(Fingerprint.of(0xcbd8a7b341bd9b02L, 0x5b1e906a48ae1d19L));
+  }
+
+  @Test
+  void resolvesConfiguredStrategy() {
+    assertThat(new TxnFingerprinter("sha256").strategy()).isInstanceOf(Sha256FingerprintStrategy.class);
+    assertThat(new TxnFingerprinter("sha256").fingerprint(1L, PaymentType.PIX, 10L, LocalDate.of(2024, 4, 10),
+      5000L, TxnDirection.OUT, "Mercado").toBytes()).hasSize(32);
+    assertThatThrownBy(() -> new TxnFingerprinter("md5")).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private Txn txn(OffsetDateTime occurredAt, String description) {
+    User user = mock(User.class);
+    when(user.getId()).thenReturn(1L);
+    Account account = mock(Account.class);
+    when(account.getId()).thenReturn(10L);
+
+    Txn txn = new Txn();
+    txn.setUser(user);
+    txn.setAccount(account);
+    txn.setAmountCents(5000L);
+    txn.setDirection(TxnDirection.OUT);
+    txn.setDescription(description);
+    txn.setOccurredAt(occurredAt);
+    return txn;
+  }
+}
@@ -0,0 +1,149 @@
+package com.moneta.txn;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.moneta.txn.TxnDtos.TxnBulkItemResult;
+import com.moneta.txn.TxnDtos.TxnFeedResponse;
+import com.moneta.txn.TxnDtos.TxnRequest;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class TxnIngestionServiceTest {
+  @Mock
+  private TxnBulkService txnBulkService;
+
+  private TxnIngestionService service;
+
+  @AfterEach
+  void tearDown() {
+    if (service != null) {
+      service.stop();
+    }
+  }
+
+  @Test
+  void commitsEventsOfSeveralUsersInOneBatch() throws Exception {
+    when(txnBulkService.write(anyLong(), anyList(), eq(true))).thenAnswer(invocation -> created(invocation.getArgument(1)));
+    // A long delay keeps the batch open until all events are queued
+    service = newService(16, 8, 2_000);
+    service.start();
+
+    List<CompletableFuture<TxnFeedResponse>> results = List.of(
+      service.submit(1L, request(100L), true),
+      service.submit(2L, request(200L), true),
+      service.submit(1L, request(300L), true),
+      service.submit(2L, request(400L), true)
+    );
+    // The fifth through eighth events fill the batch, which is written at once
+    IntStream.range(0, 4).forEach(i -> service.submit(3L, request(500L + i), true));
+
+    for (CompletableFuture<TxnFeedResponse> result : results) {
+      TxnFeedResponse response = result.get(5, TimeUnit.SECONDS);
+      assertThat(response.status()).isEqualTo(TxnBulkItemStatus.CREATED);
+      assertThat(response.batchSequence()).isEqualTo(1L);
+      assertThat(response.batchSize()).isEqualTo(8);
+    }
+    assertThat(results.get(0).get().txnId()).isEqualTo(100L);
+    assertThat(results.get(2).get().txnId()).isEqualTo(300L);
+    assertThat(results.get(3).get().txnId()).isEqualTo(400L);
+  }
+
+  @Test
+  void writesEachUserAndDuplicateSettingSeparately() throws Exception {
+    when(txnBulkService.write(anyLong(), anyList(), anyBoolean())).thenAnswer(invocation -> created(invocation.getArgument(1)));
+    service = newService(16, 3, 2_000);
+    service.start();
+
+    List<CompletableFuture<TxnFeedResponse>> results = List.of(
+      service.submit(1L, request(100L), true),
+      service.submit(1L, request(100L), false),
+      service.submit(1L, request(300L), true)
+    );
+
+    for (CompletableFuture<TxnFeedResponse> result : results) {
+      assertThat(result.get(5, TimeUnit.SECONDS).batchSize()).isEqualTo(3);
+    }
+    verify(txnBulkService).write(eq(1L), eq(List.of(request(100L), request(300L))), eq(true));
+    verify(txnBulkService).write(eq(1L), eq(List.of(request(100L))), eq(false));
+  }
+
+  @Test
+  void rejectsEventsWhenTheQueueIsFull() throws Exception {
+    CountDownLatch writing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(txnBulkService.write(anyLong(), anyList(), eq(true))).thenAnswer(invocation -> {
+      writing.countDown();
+      release.await(5, TimeUnit.SECONDS);
+      return created(invocation.getArgument(1));
+    });
+    service = newService(1, 1, 0);
+    service.start();
+
+    CompletableFuture<TxnFeedResponse> first = service.submit(1L, request(100L), true);
+    assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+    CompletableFuture<TxnFeedResponse> queued = service.submit(1L, request(200L), true);
+
+    assertThatThrownBy(() -> service.submit(1L, request(300L), true))
+      .isInstanceOf(TxnFeedRejectedException.class)
+      .hasMessage("fila de ingestão cheia, tente novamente em instantes");
+
+    release.countDown();
+    assertThat(first.get(5, TimeUnit.SECONDS).txnId()).isEqualTo(100L);
+    assertThat(queued.get(5, TimeUnit.SECONDS).txnId()).isEqualTo(200L);
+  }
+
+  @Test
+  void rejectsEventsWhenStopped() {
+    service = newService(4, 4, 0);
+
+    assertThatThrownBy(() -> service.submit(1L, request(100L), true))
+      .isInstanceOf(TxnFeedRejectedException.class);
+  }
+
+  private TxnIngestionService newService(int queueCapacity, int maxBatch, long maxDelayMillis) {
+    TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+    return new TxnIngestionService(txnBulkService, transactionTemplate, queueCapacity, maxBatch, maxDelayMillis, 10);
+  }
+
+  /** Reports every request as created, with the amount as its id. */
+  private static List<TxnBulkItemResult> created(List<TxnRequest> requests) {
+    return IntStream.range(0, requests.size())
+      .mapToObj(i -> new TxnBulkItemResult(i, TxnBulkItemStatus.CREATED, requests.get(i).amountCents(), null))
+      .toList();
+  }
+
+  private static TxnRequest request(long amountCents) {
+    return new TxnRequest(
+      10L,
+      amountCents,
+      TxnDirection.OUT,
+      "Feed",
+      OffsetDateTime.parse("2024-08-20T10:15:30Z"),
+      null,
+      null,
+      null,
+      null,
+      null
+    );
+  }
+}
@@ -50,7 +50,7 @@ class TxnServiceTest {
 
   @BeforeEach
   void setup() {
-    txnService = new TxnService(txnRepository, userRepository, accountRepository, cardRepository, categoryRepository, alertService);
+    txnService = new TxnService(txnRepository, userRepository, accountRepository, cardRepository, categoryRepository, alertService, new TxnFingerprinter());
   }
 
   @Test